@@ -0,0 +1,73 @@
+package fragrant.bench;
+
+import fragrant.temple.loot.DesertTempleLoot;
+import fragrant.temple.loot.DesertTempleLootGenerator;
+import fragrant.temple.loot.DesertTempleLootTable;
+import fragrant.temple.loot.LootType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * チェストシードの生成と戦利品の生成
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LootBenchmark {
+    @Param({"0", "2147483648", "4294967295"})
+    public long worldSeed;
+
+    @Param({"0", "-12"})
+    public int chunkX;
+
+    @Param({"0", "7"})
+    public int chunkZ;
+
+    private LootType.LootTable table;
+    private long offset;
+
+    @Setup
+    public void setup() {
+        table = DesertTempleLootTable.getDesertTempleLootTable();
+    }
+
+    private long nextSeed() {
+        return worldSeed + (offset++ & 1023);
+    }
+
+    @Benchmark
+    public List<Integer> generateChestSeed() {
+        return DesertTempleLoot.generateChestSeed(nextSeed(), chunkX, chunkZ);
+    }
+
+    /**
+     * 1チェスト分（チェストシードは事前に求めない）
+     */
+    @Benchmark
+    public List<LootType.LootItem> generateLootItems() {
+        return DesertTempleLootGenerator.generateLootItems(table, (int) nextSeed());
+    }
+
+    /**
+     * 1ピラミッド分（チェストシード＋4チェスト）
+     */
+    @Benchmark
+    public List<LootType.LootItem> generateLoot() {
+        return DesertTempleLoot.generateLoot(nextSeed(), chunkX, chunkZ);
+    }
+}
@@ -0,0 +1,81 @@
+package fragrant.bench;
+
+import fragrant.app.search.ConditionalItem;
+import fragrant.app.search.Searcher;
+import fragrant.temple.loot.DesertTempleLoot;
+import fragrant.temple.loot.LootType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 生成済みの戦利品に対する条件判定とチェストへの分配
+ * 戦利品は事前に生成しておき、判定だけを測る
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MatchBenchmark {
+    private static final int LOOT_SAMPLES = 1024;
+
+    @Param({"0", "2147483648"})
+    public long worldSeed;
+
+    /**
+     * 条件の種類（total: 全チェスト合計のみ、perChest: チェストごと、mixed: 両方と EQ/LE）
+     */
+    @Param({"total", "perChest", "mixed"})
+    public String conditions;
+
+    private final List<List<LootType.LootItem>> loot = new ArrayList<>(LOOT_SAMPLES);
+    private List<ConditionalItem> required;
+    private int index;
+
+    @Setup
+    public void setup() {
+        for (int i = 0; i < LOOT_SAMPLES; i++) {
+            loot.add(DesertTempleLoot.generateLoot(worldSeed + i, 0, 0));
+        }
+        required = switch (conditions) {
+            case "total" -> List.of(
+                    new ConditionalItem("minecraft:gold_ingot", 2, ConditionalItem.Condition.GREATER_OR_EQUAL, -1));
+            case "perChest" -> List.of(
+                    new ConditionalItem("minecraft:gold_ingot", 1, ConditionalItem.Condition.GREATER_OR_EQUAL, 0),
+                    new ConditionalItem("minecraft:bone", 1, ConditionalItem.Condition.GREATER_OR_EQUAL, 2));
+            default -> List.of(
+                    new ConditionalItem("minecraft:gold_ingot", 1, ConditionalItem.Condition.GREATER_OR_EQUAL, -1),
+                    new ConditionalItem("minecraft:rotten_flesh", 20, ConditionalItem.Condition.LESS_OR_EQUAL, -1),
+                    new ConditionalItem("minecraft:string", 3, ConditionalItem.Condition.EQUAL, 1));
+        };
+    }
+
+    private List<LootType.LootItem> nextLoot() {
+        return loot.get(index++ & (LOOT_SAMPLES - 1));
+    }
+
+    @Benchmark
+    public boolean checkMatch() {
+        return Searcher.checkMatch(required, nextLoot());
+    }
+
+    @Benchmark
+    public Map<Integer, List<LootType.LootItem>> chestSplit() {
+        return Searcher.chestSplit(nextLoot());
+    }
+}
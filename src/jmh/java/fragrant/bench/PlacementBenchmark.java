@@ -0,0 +1,81 @@
+package fragrant.bench;
+
+import fragrant.temple.generator.DesertTempleGenerator;
+import fragrant.utils.Position;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 1チャンクずつの isTempleChunk と範囲での getTemplesArea
+ * range は範囲の一辺のチャンク数（中心は centerX, centerZ）
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PlacementBenchmark {
+    @Param({"0", "2147483648", "4294967295"})
+    public long worldSeed;
+
+    @Param({"1", "8", "32", "128"})
+    public int range;
+
+    @Param({"0", "-1000"})
+    public int center;
+
+    private Position.ChunkPos fixed;
+    private int minX, minZ, maxX, maxZ;
+    private long offset;
+
+    @Setup
+    public void setup() {
+        fixed = new Position.ChunkPos(center, center);
+        minX = center - range / 2;
+        minZ = center - range / 2;
+        maxX = minX + range - 1;
+        maxZ = minZ + range - 1;
+    }
+
+    private long nextSeed() {
+        return worldSeed + (offset++ & 1023);
+    }
+
+    @Benchmark
+    public boolean isTempleChunk() {
+        return DesertTempleGenerator.isTempleChunk(nextSeed(), fixed);
+    }
+
+    /**
+     * 範囲内の全チャンクを isTempleChunk で判定した場合
+     */
+    @Benchmark
+    public int isTempleChunkPerChunk() {
+        long seed = nextSeed();
+        int found = 0;
+        for (int x = minX; x <= maxX; x++) {
+            for (int z = minZ; z <= maxZ; z++) {
+                if (DesertTempleGenerator.isTempleChunk(seed, new Position.ChunkPos(x, z))) found++;
+            }
+        }
+        return found;
+    }
+
+    @Benchmark
+    public List<Position.ChunkPos> getTemplesArea() {
+        return DesertTempleGenerator.getTemplesArea(nextSeed(), minX, minZ, maxX, maxZ);
+    }
+}
@@ -0,0 +1,70 @@
+package fragrant.bench;
+
+import fragrant.utils.BedrockRandom;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * BedrockRandom の生成と genNums
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RandomBenchmark {
+    @Param({"0", "-1", "2147483647", "14357617"})
+    public int seed;
+
+    private int offset;
+
+    /**
+     * 毎回異なるシードを使い、結果の使い回しを防ぐ
+     */
+    private int nextSeed() {
+        return seed + (offset++ & 1023);
+    }
+
+    @Benchmark
+    public BedrockRandom construct() {
+        return new BedrockRandom(nextSeed());
+    }
+
+    /**
+     * 生成直後の1回目（遅延初期化の分も含む）
+     */
+    @Benchmark
+    public int constructAndNextInt() {
+        return new BedrockRandom(nextSeed()).nextInt();
+    }
+
+    @Benchmark
+    public int genNums() {
+        int[] nums = BedrockRandom.genNums(nextSeed(), 2);
+        return nums[0] ^ nums[1];
+    }
+
+    /**
+     * 戦利品の生成1チェスト分に近い回数の乱数
+     */
+    @Benchmark
+    public int nextInt64() {
+        BedrockRandom random = new BedrockRandom(nextSeed());
+        int x = 0;
+        for (int i = 0; i < 64; i++) {
+            x ^= random.nextInt(1000);
+        }
+        return x;
+    }
+}
@@ -1,18 +1,96 @@
 package fragrant.app;
 
+import fragrant.app.bench.MacroBenchmark;
+import fragrant.app.search.EngineVerifier;
+import fragrant.app.search.SeedSetOperation;
+import fragrant.app.search.WorldScan;
+import fragrant.app.service.SearchService;
+import fragrant.app.ui.EdtMonitor;
 import fragrant.app.ui.Frame;
+import fragrant.app.ui.Startup;
+import fragrant.app.worker.WorkerMain;
 import javax.swing.*;
+import java.net.InetSocketAddress;
+import java.nio.file.Path;
+import java.util.Arrays;
 
 public class Main {
-    public static void main(String[] args) {
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && "--verify".equals(args[0])) {
+            // 高速化した判定と基準の実装の差分検証: --verify [samples] [randomSeed]
+            EngineVerifier.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        if (args.length > 0 && "--bench".equals(args[0])) {
+            // 検索全体のベンチマークと基準値との比較（オプションは MacroBenchmark を参照）
+            MacroBenchmark.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        if (args.length > 0 && "--seedset".equals(args[0])) {
+            // シードの集合のファイルの作成と演算（コマンドは SeedSetOperation を参照）
+            SeedSetOperation.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        if (args.length > 0 && "--worldscan".equals(args[0])) {
+            // 1つのワールドシードで範囲内のピラミッドを近い順に判定（オプションは WorldScan を参照）
+            WorldScan.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        if (args.length > 1 && "--worker".equals(args[0])) {
+            // 別プロセス検索の子プロセスとして起動された場合（--worker チャネルファイル 親のpid）
+            long parentPid = args.length > 2 ? Long.parseLong(args[2]) : -1;
+            System.exit(WorkerMain.run(Path.of(args[1]), parentPid));
+        }
+
+        EngineVerifier.selfCheck();
+        if (args.length > 0 && "--serve".equals(args[0])) {
+            serve(args);
+            return;
+        }
+
+        // 言語ファイル・戦利品テーブル・アイコンの読み込みを先に裏で始める
+        Startup.preload();
+        // -Dfragrant.edtmonitor=true でEDTの応答時間を起動時から計測する
+        EdtMonitor.startIfRequested();
         SwingUtilities.invokeLater(() -> {
-            try {
-                UIManager.setLookAndFeel(UIManager.getSystemLookAndFeelClassName());
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
-            Frame gui = new Frame();
-            gui.setVisible(true);
+            Startup.time("look and feel", () -> {
+                try {
+                    UIManager.setLookAndFeel(UIManager.getSystemLookAndFeelClassName());
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            });
+            Frame gui = Startup.time("frame", Frame::new);
+            Startup.time("show window", () -> gui.setVisible(true));
+            SwingUtilities.invokeLater(Startup::report);
         });
     }
+
+    /**
+     * サービスモードで起動
+     * --serve [--host 127.0.0.1] [--port 8642] [--data jobs] [--threads N] [--origin http://localhost:3000]
+     */
+    private static void serve(String[] args) throws Exception {
+        String host = "127.0.0.1";
+        int port = 8642;
+        Path data = Path.of("jobs");
+        int threads = Runtime.getRuntime().availableProcessors();
+        String origin = null;  // GET 以外を許可するオリジン
+
+        for (int i = 1; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--host" -> host = args[i + 1];
+                case "--port" -> port = Integer.parseInt(args[i + 1]);
+                case "--data" -> data = Path.of(args[i + 1]);
+                case "--threads" -> threads = Integer.parseInt(args[i + 1]);
+                case "--origin" -> origin = args[i + 1];
+                default -> throw new IllegalArgumentException("unknown option: " + args[i]);
+            }
+        }
+
+        SearchService service = new SearchService(new InetSocketAddress(host, port), data, threads, origin);
+        Runtime.getRuntime().addShutdownHook(new Thread(service::stop));
+        service.start();
+        System.out.println("Search service listening on " + service.getAddress());
+    }
 }
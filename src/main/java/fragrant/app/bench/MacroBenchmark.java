@@ -0,0 +1,281 @@
+package fragrant.app.bench;
+
+import fragrant.app.search.ConditionalItem;
+import fragrant.app.search.Searcher;
+import fragrant.temple.loot.LootType;
+import fragrant.utils.Json;
+import fragrant.utils.Position;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 決まった検索条件を Searcher で実行し、スレッド数ごとの速度を基準値と比較する
+ * スケジューリングやヒットの配信、条件の形による性能の低下を検出するためのもの
+ *
+ * <pre>
+ * --bench [--baseline bench/macro-baseline.json] [--threads N] [--scale 1.0] [--tolerance 0.2] [--update-baseline]
+ * </pre>
+ * 基準値より tolerance 以上遅い組み合わせがあれば終了コード1で終了する
+ * 基準値と CPU 数や JVM が異なる場合は比較せず、警告だけを表示する
+ * 基準値には CPU 数を超えるスレッド数の結果は書かない（並列化ではなく詰め込みの測定になるため）
+ */
+public final class MacroBenchmark {
+    public static final long START_SEED = 1L << 20;
+    public static final double DEFAULT_TOLERANCE = 0.2;
+
+    /**
+     * ベンチマークの検索条件（Templeタブ/Chestタブ形式）
+     *
+     * @param name 名前（基準値ファイルのキー）
+     * @param seedCount scale 1.0 での検索するシード数
+     */
+    public record Scenario(String name, long seedCount, List<Position.ChunkPos> positions,
+                           Map<Position.ChunkPos, List<ConditionalItem>> chests, Map<Integer, int[]> ranges) { }
+
+    /**
+     * 1回の計測結果
+     *
+     * @param firstHitMs 検索開始から最初のヒットが届くまでの時間（ヒットがない場合は-1）
+     * @param allocatedMbPerSecond 計測中のJVM全体の割り当て速度（取得できない場合は-1）
+     */
+    public record Result(String scenario, int threads, long seeds, long elapsedMs, long seedsPerSecond,
+                         long hits, long firstHitMs, double allocatedMbPerSecond) { }
+
+    /**
+     * 基準値ファイルの内容
+     *
+     * @param seedsPerSecond シナリオ名 → スレッド数 → 基準の速度
+     */
+    record Baseline(int processors, String jvm, Map<String, Map<Integer, Long>> seedsPerSecond) { }
+
+    private MacroBenchmark() { }
+
+    public static List<Scenario> scenarios() {
+        List<Scenario> list = new ArrayList<>();
+
+        // 座標指定のピラミッド1つ（配置判定でほぼすべて落ちる）
+        Position.ChunkPos origin = new Position.ChunkPos(3, 5);
+        list.add(new Scenario("single-fixed", 1L << 22, List.of(origin),
+                Map.of(origin, List.of(item("gold_ingot", 1, ConditionalItem.Condition.GREATER_OR_EQUAL, -1))),
+                Map.of()));
+
+        // 座標指定のピラミッド1つと、1区画分の範囲のピラミッド2つ（複数のピラミッドの判定と戦利品の生成）
+        // 3つとも座標指定にするとほぼ一致しないため、残りの2つは区画全体を範囲にする（区画ごとに必ず1つある）
+        List<Position.ChunkPos> three = List.of(new Position.ChunkPos(3, 5), new Position.ChunkPos(40, -20),
+                new Position.ChunkPos(-60, 70));
+        list.add(new Scenario("three-temples", 1L << 22, three,
+                Map.of(three.get(0), List.of(item("gold_ingot", 1, ConditionalItem.Condition.GREATER_OR_EQUAL, -1)),
+                        three.get(1), List.of(item("gold_ingot", 1, ConditionalItem.Condition.GREATER_OR_EQUAL, -1))),
+                Map.of(2, new int[]{32, -32, 63, -1}, 3, new int[]{-64, 64, -33, 95})));
+
+        // 広い範囲（1シードあたり数十個のピラミッドの戦利品を生成する）
+        Position.ChunkPos center = new Position.ChunkPos(0, 0);
+        list.add(new Scenario("wide-range", 1L << 11, List.of(center),
+                Map.of(center, List.of(item("diamond", 3, ConditionalItem.Condition.GREATER_OR_EQUAL, -1))),
+                Map.of(1, new int[]{-100, -100, 100, 100})));
+
+        // ほぼすべての候補が一致する条件（ヒットの配信が多い）
+        list.add(new Scenario("broad-loot", 1L << 15, List.of(center),
+                Map.of(center, List.of(item("bone", 1, ConditionalItem.Condition.GREATER_OR_EQUAL, -1))),
+                Map.of(1, new int[]{-24, -24, 24, 24})));
+        return list;
+    }
+
+    private static ConditionalItem item(String name, int count, ConditionalItem.Condition op, int chest) {
+        return new ConditionalItem("minecraft:" + name, count, op, chest);
+    }
+
+    public static void main(String[] args) throws Exception {
+        Path baselineFile = Path.of("bench", "macro-baseline.json");
+        int maxThreads = Runtime.getRuntime().availableProcessors();
+        double scale = 1.0;
+        double tolerance = DEFAULT_TOLERANCE;
+        boolean update = false;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--baseline" -> baselineFile = Path.of(args[++i]);
+                case "--threads" -> maxThreads = Integer.parseInt(args[++i]);
+                case "--scale" -> scale = Double.parseDouble(args[++i]);
+                case "--tolerance" -> tolerance = Double.parseDouble(args[++i]);
+                case "--update-baseline" -> update = true;
+                default -> throw new IllegalArgumentException("unknown option: " + args[i]);
+            }
+        }
+
+        List<Result> results = new ArrayList<>();
+        for (Scenario scenario : scenarios()) {
+            long seeds = Math.max(1, (long) (scenario.seedCount() * scale));
+            // 1回目は判定器のコンパイルとJITのための空回し
+            run(scenario, maxThreads, Math.max(1, seeds / 4));
+            for (int threads : threadCounts(maxThreads)) {
+                Result result = run(scenario, threads, seeds);
+                results.add(result);
+                System.out.printf("%-14s threads=%-3d %,12d seeds/s  hits=%-8d firstHit=%d ms  alloc=%.1f MB/s%n",
+                        result.scenario(), threads, result.seedsPerSecond(), result.hits(), result.firstHitMs(),
+                        result.allocatedMbPerSecond());
+            }
+        }
+
+        if (update) {
+            if (maxThreads > Runtime.getRuntime().availableProcessors()) {
+                System.out.println("Thread counts above " + Runtime.getRuntime().availableProcessors()
+                        + " processors are not written to the baseline");
+            }
+            Files.createDirectories(baselineFile.toAbsolutePath().getParent());
+            Files.writeString(baselineFile, Json.write(toJson(results, tolerance)) + "\n", StandardCharsets.UTF_8);
+            System.out.println("Baseline written to " + baselineFile);
+            return;
+        }
+        if (!Files.exists(baselineFile)) {
+            System.out.println("No baseline at " + baselineFile + " (run with --update-baseline to create one)");
+            return;
+        }
+        Baseline baseline = readBaseline(baselineFile);
+        if (!isComparable(baseline)) return;
+        if (compare(results, baseline.seedsPerSecond(), tolerance) > 0) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * 1, 2, 4, ... maxThreads
+     */
+    static List<Integer> threadCounts(int maxThreads) {
+        List<Integer> counts = new ArrayList<>();
+        for (int t = 1; t < maxThreads; t *= 2) {
+            counts.add(t);
+        }
+        counts.add(Math.max(1, maxThreads));
+        return counts;
+    }
+
+    public static Result run(Scenario scenario, int threads, long seeds) throws InterruptedException {
+        Searcher searcher = new Searcher(threads);
+        searcher.setSearchParams(scenario.positions(), scenario.chests(), scenario.ranges());
+
+        CountDownLatch done = new CountDownLatch(1);
+        AtomicLong hits = new AtomicLong();
+        AtomicLong firstHitNanos = new AtomicLong();
+        searcher.setResultCallback(new Searcher.ResultCallback() {
+            @Override
+            public void onSearchResult(long seed, Position.ChunkPos position, List<LootType.LootItem> loot) {
+                if (hits.getAndIncrement() == 0) firstHitNanos.set(System.nanoTime());
+            }
+
+            @Override
+            public void onSearchComplete() {
+                done.countDown();
+            }
+        });
+
+        long allocatedBefore = allocatedBytes();
+        long begin = System.nanoTime();
+        searcher.startSearch(START_SEED, START_SEED + seeds);
+        done.await();
+        long elapsedNanos = System.nanoTime() - begin;
+        long allocatedAfter = allocatedBytes();
+
+        long elapsedMs = Math.max(1, elapsedNanos / 1_000_000);
+        long firstHitMs = hits.get() > 0 ? (firstHitNanos.get() - begin) / 1_000_000 : -1;
+        double allocated = allocatedBefore >= 0 && allocatedAfter >= 0
+                ? (allocatedAfter - allocatedBefore) / 1e6 / (elapsedNanos / 1e9)
+                : -1;
+        return new Result(scenario.name(), threads, seeds, elapsedMs, (long) (seeds * 1e9 / elapsedNanos),
+                hits.get(), firstHitMs, allocated);
+    }
+
+    /**
+     * JVM全体で割り当てたバイト数（終了したスレッドの分も含む）
+     */
+    private static long allocatedBytes() {
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean threads) {
+            return threads.getTotalThreadAllocatedBytes();
+        }
+        return -1;
+    }
+
+    /**
+     * 基準値が同じ CPU 数と JVM で記録されたか（異なる場合は警告を表示する）
+     */
+    static boolean isComparable(Baseline baseline) {
+        int processors = Runtime.getRuntime().availableProcessors();
+        if (baseline.processors() == processors && jvmName().equals(baseline.jvm())) return true;
+        System.out.println("WARNING: baseline was recorded with " + baseline.processors() + " processors on "
+                + baseline.jvm() + ", this run has " + processors + " on " + jvmName()
+                + "; skipping the comparison (re-record it with --update-baseline on this machine)");
+        return false;
+    }
+
+    private static String jvmName() {
+        return System.getProperty("java.vm.name") + " " + System.getProperty("java.version");
+    }
+
+    /**
+     * 基準値と比較して結果を表示する
+     *
+     * @return 基準値より遅かった組み合わせの数
+     */
+    static int compare(List<Result> results, Map<String, Map<Integer, Long>> baseline, double tolerance) {
+        int regressions = 0;
+        for (Result result : results) {
+            Long expected = baseline.getOrDefault(result.scenario(), Map.of()).get(result.threads());
+            if (expected == null || expected <= 0) continue;
+
+            double ratio = (double) result.seedsPerSecond() / expected;
+            boolean regressed = ratio < 1 - tolerance;
+            if (regressed) regressions++;
+            System.out.printf("%-14s threads=%-3d %6.1f%% of baseline%s%n", result.scenario(), result.threads(),
+                    ratio * 100, regressed ? "  REGRESSION" : "");
+        }
+        return regressions;
+    }
+
+    private static Map<String, Object> toJson(List<Result> results, double tolerance) {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("tolerance", tolerance);
+        json.put("jvm", jvmName());
+        json.put("processors", Runtime.getRuntime().availableProcessors());
+
+        Map<String, Object> scenarios = new LinkedHashMap<>();
+        for (Result result : results) {
+            if (result.threads() > Runtime.getRuntime().availableProcessors()) continue;
+            @SuppressWarnings("unchecked")
+            Map<String, Object> byThreads = (Map<String, Object>) scenarios.computeIfAbsent(
+                    result.scenario(), _ -> new LinkedHashMap<String, Object>());
+            Map<String, Object> r = new LinkedHashMap<>();
+            r.put("seedsPerSecond", result.seedsPerSecond());
+            r.put("hits", result.hits());
+            r.put("firstHitMs", result.firstHitMs());
+            r.put("allocatedMbPerSecond", Math.round(result.allocatedMbPerSecond() * 10) / 10.0);
+            byThreads.put(String.valueOf(result.threads()), r);
+        }
+        json.put("scenarios", scenarios);
+        return json;
+    }
+
+    private static Baseline readBaseline(Path file) throws IOException {
+        Map<String, Object> json = Json.parseObject(Files.readString(file, StandardCharsets.UTF_8));
+        Map<String, Map<Integer, Long>> baseline = new HashMap<>();
+        Map<String, Object> scenarios = Json.asObject(json.get("scenarios"));
+        for (Map.Entry<String, Object> scenario : scenarios.entrySet()) {
+            Map<Integer, Long> byThreads = new HashMap<>();
+            for (Map.Entry<String, Object> entry : Json.asObject(scenario.getValue()).entrySet()) {
+                byThreads.put(Integer.parseInt(entry.getKey()),
+                        Json.getLong(Json.asObject(entry.getValue()), "seedsPerSecond", 0));
+            }
+            baseline.put(scenario.getKey(), byThreads);
+        }
+        return new Baseline(Json.getInt(json, "processors", 0), String.valueOf(json.get("jvm")), baseline);
+    }
+}
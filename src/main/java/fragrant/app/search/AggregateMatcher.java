@@ -0,0 +1,119 @@
+package fragrant.app.search;
+
+import fragrant.temple.loot.DesertTempleLoot;
+import fragrant.temple.loot.LootType;
+import fragrant.utils.Position;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 集計検索用の判定器（ワーカーごとに1つ）
+ * ヒットは発行せず、条件を満たしたシードのアイテム数をこのワーカーの分布に加える
+ */
+class AggregateMatcher extends SeedMatcher {
+    private final int templeIndex;
+    private final int maxCount;
+    private final String[] items;
+    private final int[] chests;
+    private final int[] counts;
+    private final int[] best;
+    private final long[][] histograms;
+    private long candidates = 0;
+    private long matched = 0;
+
+    AggregateMatcher(SearchQuery query, AggregateSpec spec) {
+        super(query);
+        this.templeIndex = spec.templeIndex();
+        this.maxCount = spec.maxCount();
+        int size = spec.metrics().size();
+        this.items = new String[size];
+        this.chests = new int[size];
+        this.counts = new int[size];
+        this.best = new int[size];
+        this.histograms = new long[size][maxCount + 1];
+        for (int m = 0; m < size; m++) {
+            items[m] = spec.metrics().get(m).item();
+            chests[m] = spec.metrics().get(m).chestId();
+        }
+    }
+
+    @Override
+    public SearchHit match(long seed) {
+        if (!findTemples(seed)) return null;
+        candidates++;
+
+        // 範囲内に条件を満たすピラミッドが複数ある場合は、アイテムごとに最も多いものを数える
+        // （n 個以上のシード数が「n 個以上」の条件を加えた通常の検索のヒット数と一致する）
+        List<ConditionalItem> conditions = temple(templeIndex).conditions();
+        boolean found = false;
+        for (Position.ChunkPos pos : foundTemples(templeIndex)) {
+            List<LootType.LootItem> loot = DesertTempleLoot.generateLoot(seed, pos.x(), pos.z());
+            if (!Searcher.checkMatch(conditions, loot)) continue;
+            if (!found) Arrays.fill(best, 0);
+            found = true;
+            count(loot);
+        }
+        if (!found || !otherTemplesMatch(seed)) return null;
+
+        matched++;
+        for (int m = 0; m < items.length; m++) {
+            histograms[m][Math.min(best[m], maxCount)]++;
+        }
+        return null;
+    }
+
+    /**
+     * 集計するピラミッド以外の戦利品条件を確認
+     * 通常の検索と異なり、条件が1つもない場合は配置だけで一致とする
+     */
+    private boolean otherTemplesMatch(long seed) {
+        for (int i = 0; i < templeCount(); i++) {
+            if (i == templeIndex) continue;
+            List<ConditionalItem> conditions = temple(i).conditions();
+            if (conditions.isEmpty()) continue;
+
+            boolean found = false;
+            for (Position.ChunkPos pos : foundTemples(i)) {
+                if (Searcher.checkMatch(conditions, DesertTempleLoot.generateLoot(seed, pos.x(), pos.z()))) {
+                    found = true;
+                    break;
+                }
+            }
+            if (!found) return false;
+        }
+        return true;
+    }
+
+    /**
+     * アイテム数を数えて best を更新（チェストの分け方は Searcher.chestSplit と同じ）
+     */
+    private void count(List<LootType.LootItem> loot) {
+        Arrays.fill(counts, 0);
+        int perChest = Math.max(1, (loot.size() + ScoreSpec.CHEST_COUNT - 1) / ScoreSpec.CHEST_COUNT);
+        for (int i = 0; i < loot.size(); i++) {
+            LootType.LootItem item = loot.get(i);
+            int chest = i / perChest;
+            for (int m = 0; m < items.length; m++) {
+                if ((chests[m] == -1 || chests[m] == chest) && items[m].equals(item.getName())) {
+                    counts[m] += item.getCount();
+                }
+            }
+        }
+        for (int m = 0; m < items.length; m++) {
+            best[m] = Math.max(best[m], counts[m]);
+        }
+    }
+
+    long candidates() {
+        return candidates;
+    }
+
+    long matched() {
+        return matched;
+    }
+
+    long[][] histograms() {
+        return histograms;
+    }
+}
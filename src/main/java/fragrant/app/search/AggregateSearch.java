@@ -0,0 +1,150 @@
+package fragrant.app.search;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * シードを列挙せずに件数とアイテム数の分布だけを求める検索
+ * ワーカーごとの分布（プリミティブ配列）を最後にまとめるため、ヒット数によらずメモリは一定
+ *
+ * <pre>{@code
+ * AggregateSearch search = AggregateSearch.start(new SearchEngine(), query,
+ *         new AggregateSpec(0, List.of(new AggregateSpec.Metric("minecraft:diamond", 0))));
+ * AggregateSearch.Report report = search.report().join();
+ * long[] sweep = report.sweep(0);  // sweep[n] = ダイヤが n 個以上のシード数
+ * }</pre>
+ */
+public final class AggregateSearch {
+    private final SearchQuery query;
+    private final AggregateSpec spec;
+    private final List<AggregateMatcher> matchers = Collections.synchronizedList(new ArrayList<>());
+    private SearchHandle handle;
+    private CompletableFuture<Report> report;
+
+    /**
+     * 集計結果（中断した場合は coverage の範囲での集計）
+     *
+     * @param spec 集計の定義
+     * @param coverage 終了時点の進捗
+     * @param candidates ピラミッドの配置条件を満たしたシード数
+     * @param matched 戦利品条件まで満たしたシード数
+     * @param histograms アイテムごとの分布（[metric][個数]、最後の要素は maxCount 以上）
+     */
+    public record Report(AggregateSpec spec, SearchProgress coverage, long candidates, long matched,
+                         long[][] histograms) {
+        /**
+         * アイテム数ごとのシード数
+         */
+        public long[] histogram(int metric) {
+            return histograms[metric].clone();
+        }
+
+        /**
+         * しきい値ごとのシード数（[n] = n 個以上のシード数）
+         */
+        public long[] sweep(int metric) {
+            long[] histogram = histograms[metric];
+            long[] atLeast = new long[histogram.length];
+            long sum = 0;
+            for (int n = histogram.length - 1; n >= 0; n--) {
+                sum += histogram[n];
+                atLeast[n] = sum;
+            }
+            return atLeast;
+        }
+
+        public long countAtLeast(int metric, int count) {
+            if (count <= 0) return matched;
+            if (count > spec.maxCount()) {
+                throw new IllegalArgumentException("count exceeds maxCount: " + count);
+            }
+            return sweep(metric)[count];
+        }
+
+        /**
+         * 平均個数（maxCount 以上はまとめて数えるため、それを超える場合は下限値）
+         */
+        public double mean(int metric) {
+            if (matched == 0) return 0;
+            long total = 0;
+            long[] histogram = histograms[metric];
+            for (int n = 0; n < histogram.length; n++) {
+                total += n * histogram[n];
+            }
+            return (double) total / matched;
+        }
+    }
+
+    private AggregateSearch(SearchQuery query, AggregateSpec spec) {
+        validate(query, spec);
+        this.query = query;
+        this.spec = spec;
+    }
+
+    /**
+     * 検索条件と集計の組み合わせを確認する（ジョブとして投入する前の確認にも使う）
+     */
+    public static void validate(SearchQuery query, AggregateSpec spec) {
+        if (spec.templeIndex() >= query.temples().size()) {
+            throw new IllegalArgumentException("templeIndex out of range: " + spec.templeIndex());
+        }
+        if (query.cluster() != null) {
+            throw new IllegalArgumentException("cluster conditions are not supported in aggregate searches");
+        }
+    }
+
+    /**
+     * 専用のスレッドプールで集計検索を開始する
+     */
+    public static AggregateSearch start(SearchEngine engine, SearchQuery query, AggregateSpec spec) {
+        AggregateSearch search = new AggregateSearch(query, spec);
+        search.handle = engine.createHandle(query, query.threadCount());
+        engine.start(search.handle, q -> {
+            AggregateMatcher matcher = new AggregateMatcher(q, spec);
+            search.matchers.add(matcher);
+            return matcher;
+        });
+        search.report = search.handle.completion().thenApply(search::buildReport);
+        return search;
+    }
+
+    public SearchQuery query() {
+        return query;
+    }
+
+    public SearchHandle handle() {
+        return handle;
+    }
+
+    /**
+     * 検索終了時に完了するFuture
+     */
+    public CompletableFuture<Report> report() {
+        return report;
+    }
+
+    public void cancel() {
+        handle.cancel();
+    }
+
+    private Report buildReport(SearchProgress progress) {
+        long[][] histograms = new long[spec.metrics().size()][spec.maxCount() + 1];
+        long candidates = 0;
+        long matched = 0;
+        synchronized (matchers) {
+            for (AggregateMatcher matcher : matchers) {
+                candidates += matcher.candidates();
+                matched += matcher.matched();
+                long[][] partial = matcher.histograms();
+                for (int m = 0; m < histograms.length; m++) {
+                    for (int n = 0; n < histograms[m].length; n++) {
+                        histograms[m][n] += partial[m][n];
+                    }
+                }
+            }
+        }
+        return new Report(spec, progress, candidates, matched, histograms);
+    }
+}
@@ -0,0 +1,50 @@
+package fragrant.app.search;
+
+import java.util.List;
+
+/**
+ * 集計検索で数えるアイテム
+ * 範囲内に条件を満たすピラミッドが複数ある場合は、アイテムごとに最も多いピラミッドの個数を数える
+ *
+ * @param templeIndex 集計するピラミッド（SearchQuery.temples() の番号）
+ * @param metrics 個数の分布を取るアイテム
+ * @param maxCount 分布の上限（これ以上の個数はまとめて maxCount として数える）
+ */
+public record AggregateSpec(int templeIndex, List<Metric> metrics, int maxCount) {
+    public static final int DEFAULT_MAX_COUNT = 64;
+
+    /**
+     * 分布を取るアイテム
+     * チェストの分け方は検索条件（Searcher.checkMatch）と同じため、条件付き検索のヒット数と一致する
+     *
+     * @param item アイテム名
+     * @param chestId 対象チェスト番号（0～3）、-1の場合は全チェスト
+     */
+    public record Metric(String item, int chestId) {
+        public Metric {
+            if (item == null || item.isEmpty()) {
+                throw new IllegalArgumentException("item must not be empty");
+            }
+            if (chestId < -1 || chestId >= ScoreSpec.CHEST_COUNT) {
+                throw new IllegalArgumentException("invalid chestId: " + chestId);
+            }
+        }
+    }
+
+    public AggregateSpec {
+        if (templeIndex < 0) {
+            throw new IllegalArgumentException("templeIndex must not be negative: " + templeIndex);
+        }
+        if (metrics == null || metrics.isEmpty()) {
+            throw new IllegalArgumentException("metrics must not be empty");
+        }
+        if (maxCount < 1) {
+            throw new IllegalArgumentException("maxCount must be positive: " + maxCount);
+        }
+        metrics = List.copyOf(metrics);
+    }
+
+    public AggregateSpec(int templeIndex, List<Metric> metrics) {
+        this(templeIndex, metrics, DEFAULT_MAX_COUNT);
+    }
+}
@@ -0,0 +1,64 @@
+package fragrant.app.search;
+
+/**
+ * [0, size) 上の鍵付き全単射（ブロックの訪問順をかき混ぜるため）
+ * 2のべき乗の範囲でFeistel構造を使い、範囲外の値はもう一度適用して戻す（cycle walking）
+ */
+final class BlockPermutation {
+    private static final int ROUNDS = 4;
+    private final long size;
+    private final int halfBits;
+    private final long halfMask;
+    private final long[] roundKeys = new long[ROUNDS];
+
+    BlockPermutation(long size, long key) {
+        if (size < 1) {
+            throw new IllegalArgumentException("size must be positive: " + size);
+        }
+        this.size = size;
+
+        int bits = Math.max(2, 64 - Long.numberOfLeadingZeros(size - 1));
+        if ((bits & 1) != 0) bits++;
+        this.halfBits = bits / 2;
+        this.halfMask = (1L << halfBits) - 1;
+
+        long k = key;
+        for (int i = 0; i < ROUNDS; i++) {
+            k = mix(k + 0x9E3779B97F4A7C15L);
+            roundKeys[i] = k;
+        }
+    }
+
+    /**
+     * 訪問順の番号から実際のブロック番号を求める
+     */
+    long apply(long index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        long x = index;
+        do {
+            x = feistel(x);
+        } while (x >= size);
+        return x;
+    }
+
+    private long feistel(long x) {
+        long left = x >>> halfBits;
+        long right = x & halfMask;
+        for (int i = 0; i < ROUNDS; i++) {
+            long f = mix(right ^ roundKeys[i]) & halfMask;
+            long next = left ^ f;
+            left = right;
+            right = next;
+        }
+        return (left << halfBits) | right;
+    }
+
+    // multiply-xorshift（SplitMix64 の最終化関数）
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
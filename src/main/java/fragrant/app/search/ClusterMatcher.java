@@ -0,0 +1,142 @@
+package fragrant.app.search;
+
+import fragrant.temple.generator.DesertTempleGenerator;
+import fragrant.temple.loot.DesertTempleLoot;
+import fragrant.temple.loot.LootType;
+import fragrant.utils.Position;
+
+import java.util.List;
+
+/**
+ * ピラミッドの密集の条件（SearchQuery.Cluster）を判定する判定器（ワーカーごとに1つ）
+ * 最初のピラミッドの範囲にかかる区画ごとに、その区画のピラミッド（起点）だけを先に求め、
+ * 起点の位置から距離内に入りうる隣の区画が足りなければ他の区画は計算しない
+ * 隣の区画は1つずつ計算し、残りの区画では数が足りなくなった時点で打ち切る
+ */
+class ClusterMatcher extends SeedMatcher {
+    private static final int SPACING = DesertTempleGenerator.SPACING;
+    private static final int LAST_OFFSET = DesertTempleGenerator.SEPARATION - 1;
+
+    private final SearchQuery.Cluster cluster;
+    private final List<ConditionalItem> anchorConditions;
+    private final SearchQuery.Area area;
+    private final boolean otherTemples;
+    private final long radius2;
+    private final int reach;  // 隣として調べる区画の距離（区画数）
+    private final int minGridX, minGridZ, maxGridX, maxGridZ;
+    // 起点から距離内に入りうる区画と、距離内にあったピラミッド
+    private final int[] cellX, cellZ;
+    private final int[] nearX, nearZ;
+    private final int[] chosen = new int[SearchQuery.Cluster.MAX_COUNT];
+
+    ClusterMatcher(SearchQuery query) {
+        super(query);
+        this.cluster = query.cluster();
+        SearchQuery.TempleQuery first = query.temples().get(0);
+        this.anchorConditions = first.conditions();
+        Position.ChunkPos fixed = first.fixedPosition();
+        this.area = first.area() != null ? first.area() : new SearchQuery.Area(fixed.x(), fixed.z(), fixed.x(), fixed.z());
+        this.otherTemples = query.temples().size() > 1;
+        this.radius2 = (long) cluster.radius() * cluster.radius();
+        this.reach = (cluster.radius() + LAST_OFFSET) / SPACING + 1;
+        this.minGridX = (int) Math.floorDiv((long) area.minX() - LAST_OFFSET, SPACING);
+        this.minGridZ = (int) Math.floorDiv((long) area.minZ() - LAST_OFFSET, SPACING);
+        this.maxGridX = Math.floorDiv(area.maxX(), SPACING);
+        this.maxGridZ = Math.floorDiv(area.maxZ(), SPACING);
+
+        int cells = (2 * reach + 1) * (2 * reach + 1);
+        this.cellX = new int[cells];
+        this.cellZ = new int[cells];
+        this.nearX = new int[cells];
+        this.nearZ = new int[cells];
+    }
+
+    @Override
+    public SearchHit match(long seed) {
+        for (int gridX = minGridX; gridX <= maxGridX; gridX++) {
+            for (int gridZ = minGridZ; gridZ <= maxGridZ; gridZ++) {
+                Position.ChunkPos anchor = DesertTempleGenerator.getTempleInCell(seed, gridX, gridZ);
+                if (anchor.x() < area.minX() || anchor.x() > area.maxX()
+                        || anchor.z() < area.minZ() || anchor.z() > area.maxZ()) {
+                    continue;
+                }
+                if (!hasCluster(seed, anchor, gridX, gridZ)) continue;
+
+                List<LootType.LootItem> loot = DesertTempleLoot.generateLoot(seed, anchor.x(), anchor.z());
+                if (!Searcher.checkMatch(anchorConditions, loot)) continue;
+
+                // 他のピラミッドの条件は通常どおり判定する
+                if (otherTemples && super.match(seed) == null) return null;
+                return new SearchHit(seed, anchor, loot);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 起点を含み、互いに距離内にある cluster.count() 個のピラミッドがあるか
+     */
+    private boolean hasCluster(long seed, Position.ChunkPos anchor, int anchorGridX, int anchorGridZ) {
+        int need = cluster.count() - 1;
+
+        // 起点の位置だけから、距離内にピラミッドが来うる区画を絞る
+        int cells = 0;
+        for (int dx = -reach; dx <= reach; dx++) {
+            for (int dz = -reach; dz <= reach; dz++) {
+                if (dx == 0 && dz == 0) continue;
+                int gridX = anchorGridX + dx;
+                int gridZ = anchorGridZ + dz;
+                long ox = Math.max(0, Math.max((long) gridX * SPACING - anchor.x(),
+                        anchor.x() - ((long) gridX * SPACING + LAST_OFFSET)));
+                long oz = Math.max(0, Math.max((long) gridZ * SPACING - anchor.z(),
+                        anchor.z() - ((long) gridZ * SPACING + LAST_OFFSET)));
+                if (ox * ox + oz * oz > radius2) continue;
+                cellX[cells] = gridX;
+                cellZ[cells] = gridZ;
+                cells++;
+            }
+        }
+        if (cells < need) return false;
+
+        int near = 0;
+        for (int i = 0; i < cells; i++) {
+            if (near + (cells - i) < need) return false;
+            Position.ChunkPos pos = DesertTempleGenerator.getTempleInCell(seed, cellX[i], cellZ[i]);
+            if (distance2(anchor.x(), anchor.z(), pos.x(), pos.z()) > radius2) continue;
+            nearX[near] = pos.x();
+            nearZ[near] = pos.z();
+            near++;
+            // 追加したピラミッドを含む組だけを調べればよい
+            if (near < need) continue;
+            chosen[0] = near - 1;
+            if (extend(1, need - 1, near - 1)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * nearX/nearZ の [0, limit) から、chosen[0, size) のすべてと距離内のものをさらに remaining 個選べるか
+     */
+    private boolean extend(int size, int remaining, int limit) {
+        if (remaining == 0) return true;
+        for (int i = limit - 1; i >= remaining - 1; i--) {
+            if (!nearAll(i, size)) continue;
+            chosen[size] = i;
+            if (extend(size + 1, remaining - 1, i)) return true;
+        }
+        return false;
+    }
+
+    private boolean nearAll(int index, int size) {
+        for (int k = 0; k < size; k++) {
+            if (distance2(nearX[index], nearZ[index], nearX[chosen[k]], nearZ[chosen[k]]) > radius2) return false;
+        }
+        return true;
+    }
+
+    private static long distance2(int x1, int z1, int x2, int z2) {
+        long dx = x1 - x2;
+        long dz = z1 - z2;
+        return dx * dx + dz * dz;
+    }
+}
@@ -68,6 +68,27 @@ public class ConditionalItem extends LootType.LootItem {
         };
     }
 
+    /**
+     * この条件を満たす数量がすべて other の条件も満たすか
+     * 同じアイテム・同じチェストの条件どうしでのみ判定する
+     */
+    public boolean implies(ConditionalItem other) {
+        if (!getName().equals(other.getName()) || targetChestId != other.targetChestId) return false;
+        int a = getCount();
+        int b = other.getCount();
+        if (other.compareOperator == Condition.GREATER_OR_EQUAL && b <= 0) return true;  // 常に成り立つ条件
+
+        return switch (compareOperator) {
+            case EQUAL -> other.matchesCount(a);
+            case GREATER_OR_EQUAL -> other.compareOperator == Condition.GREATER_OR_EQUAL && a >= b;
+            case LESS_OR_EQUAL -> switch (other.compareOperator) {
+                case LESS_OR_EQUAL -> a <= b;
+                case EQUAL -> a <= 0 && b == 0;
+                case GREATER_OR_EQUAL -> false;
+            };
+        };
+    }
+
     public Condition getCompareOperator() {
         return compareOperator;
     }
@@ -0,0 +1,67 @@
+package fragrant.app.search;
+
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
+
+/**
+ * 検索ワーカーのCPU使用率を目標値に抑える
+ * ブロックを処理するたびに「処理時間 × (1 - 目標) / 目標」だけ休止する（デューティ比制御）
+ * 目標値は検索中でも変更でき、次のブロックから反映される
+ */
+public final class CpuThrottle {
+    private static final long MIN_SLEEP_NANOS = 1_000_000L;
+    private static final long MAX_SLICE_NANOS = 50_000_000L;  // 中断や設定変更に反応できるよう分割して休止する
+    private final ThreadLocal<long[]> owed = ThreadLocal.withInitial(() -> new long[1]);
+    private volatile double targetFraction = 1.0;
+
+    /**
+     * @param targetFraction 1スレッドあたりの目標使用率（0より大きく1以下、1で制限なし）
+     */
+    public void setTargetFraction(double targetFraction) {
+        if (!(targetFraction > 0 && targetFraction <= 1)) {
+            throw new IllegalArgumentException("targetFraction must be in (0, 1]: " + targetFraction);
+        }
+        this.targetFraction = targetFraction;
+    }
+
+    public double getTargetFraction() {
+        return targetFraction;
+    }
+
+    public boolean isActive() {
+        return targetFraction < 1.0;
+    }
+
+    /**
+     * ブロックを処理した後に呼び、目標の使用率になるまで休止する
+     * 制限中はワーカーの優先度も下げる
+     *
+     * @param busyNanos ブロックの処理にかかった時間
+     * @param stopped 休止を打ち切る条件
+     */
+    void pace(long busyNanos, BooleanSupplier stopped) {
+        double fraction = targetFraction;
+        Thread thread = Thread.currentThread();
+        int priority = fraction < 1.0 ? Thread.MIN_PRIORITY : Thread.NORM_PRIORITY;
+        if (thread.getPriority() != priority) {
+            thread.setPriority(priority);
+        }
+
+        long[] debt = owed.get();
+        if (fraction >= 1.0) {
+            debt[0] = 0;
+            return;
+        }
+
+        debt[0] += (long) (busyNanos * (1 - fraction) / fraction);
+        while (debt[0] >= MIN_SLEEP_NANOS && !stopped.getAsBoolean()) {
+            long start = System.nanoTime();
+            LockSupport.parkNanos(Math.min(debt[0], MAX_SLICE_NANOS));
+            debt[0] -= System.nanoTime() - start;  // 寝過ぎた分は次の休止から差し引く
+            if (targetFraction != fraction) {
+                debt[0] = 0;
+                break;
+            }
+        }
+    }
+}
@@ -0,0 +1,376 @@
+package fragrant.app.search;
+
+import fragrant.temple.generator.DesertTempleGenerator;
+import fragrant.utils.BedrockRandom;
+import fragrant.utils.Position;
+
+import javax.tools.ToolProvider;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.SplittableRandom;
+
+/**
+ * 高速化した判定が基準の実装と一致するかを、ランダムなシードと境界値で比較する
+ * <ul>
+ *   <li>random: KernelRandom と BedrockRandom の乱数列（状態の再生成をまたぐまで）</li>
+ *   <li>cellOffset: KernelRandom.cellOffset と BedrockRandom.genNums / nextInt</li>
+ *   <li>placement: DesertTempleGenerator.isTempleChunk と BedrockRandom を直接使った判定</li>
+ *   <li>area: DesertTempleGenerator.getTemplesArea と範囲内の全チャンクの判定</li>
+ *   <li>cluster: ClusterMatcher と SeedTracer の密集の条件の判定（範囲内の全ピラミッドの組み合わせ）</li>
+ *   <li>kernel: 生成した判定器と SeedMatcher（javac がない環境では省略）</li>
+ * </ul>
+ * 座標には負の値や Integer.MIN_VALUE / MAX_VALUE 付近、シードには int の符号や桁あふれの境界を含める
+ *
+ * <pre>
+ * java -jar app.jar --verify [samples] [randomSeed]
+ * gradle verifyEngines -PverifySamples=1000000
+ * </pre>
+ */
+public final class EngineVerifier {
+    public static final long DEFAULT_SAMPLES = 200_000;
+    public static final long SELF_CHECK_SAMPLES = 5_000;
+    public static final String SELF_CHECK_PROPERTY = "fragrant.selfcheck";
+    private static final int SEPARATION = DesertTempleGenerator.SEPARATION;
+    private static final int SPACING = DesertTempleGenerator.SPACING;
+    private static final int DRAWS = 700;  // 624個を超えて状態の再生成まで比較する
+    private static final int MAX_AREA_SIZE = 24;
+    private static final long[] EDGE_SEEDS = {
+            0, 1, 2, 0x7fffffffL, 0x80000000L, 0x80000001L, 0xfffffffeL, 0xffffffffL,
+            0x80000000L - DesertTempleGenerator.SALT, 0x100000000L - DesertTempleGenerator.SALT,
+            0x6C078965L, 0x9908b0dfL, 12345, 0xdeadbeefL
+    };
+    private static final int[] EDGE_COORDINATES = {
+            0, -1, 1, SEPARATION - 1, SEPARATION, -SEPARATION, SPACING - 1, SPACING, -SPACING, -SPACING - 1,
+            -1_875_000, 1_875_000, Integer.MIN_VALUE, Integer.MIN_VALUE + 1, Integer.MIN_VALUE + SPACING,
+            Integer.MAX_VALUE, Integer.MAX_VALUE - 1, Integer.MAX_VALUE - SPACING
+    };
+
+    /**
+     * 最初に見つかった不一致
+     *
+     * @param check 検査の名前
+     * @param seed 不一致になったシード（乱数の検査では初期値）
+     * @param detail 期待値と実際の値
+     * @param trace 基準の実装での判定の記録（検索条件を使う検査のみ、それ以外はnull）
+     */
+    public record Divergence(String check, long seed, String detail, SeedTrace trace) { }
+
+    /**
+     * @param comparisons 検査ごとの比較回数
+     * @param skipped 実行できなかった検査と理由
+     * @param divergence 最初の不一致、すべて一致した場合はnull
+     * @param randomSeed サンプルの選択に使った乱数の初期値（再現用）
+     */
+    public record Report(Map<String, Long> comparisons, Map<String, String> skipped, Divergence divergence,
+                         long randomSeed, long elapsedTimeMs) {
+        public boolean passed() {
+            return divergence == null;
+        }
+
+        public String format() {
+            StringBuilder sb = new StringBuilder();
+            sb.append(passed() ? "Engine verification passed" : "Engine verification FAILED")
+                    .append(" (randomSeed=").append(randomSeed).append(", ").append(elapsedTimeMs).append(" ms)\n");
+            comparisons.forEach((check, count) -> sb.append("  ").append(check).append(": ").append(count).append('\n'));
+            skipped.forEach((check, reason) -> sb.append("  ").append(check).append(": skipped (").append(reason).append(")\n"));
+            if (divergence != null) {
+                sb.append("First divergence in ").append(divergence.check()).append(" at seed ").append(divergence.seed())
+                        .append(": ").append(divergence.detail()).append('\n');
+                if (divergence.trace() != null) {
+                    sb.append("  reference trace: ").append(divergence.trace()).append('\n');
+                }
+            }
+            return sb.toString();
+        }
+    }
+
+    private final long samples;
+    private final long randomSeed;
+    private final SplittableRandom random;
+    private final Map<String, Long> comparisons = new LinkedHashMap<>();
+    private final Map<String, String> skipped = new LinkedHashMap<>();
+
+    private EngineVerifier(long samples, long randomSeed) {
+        if (samples < 1) {
+            throw new IllegalArgumentException("samples must be positive: " + samples);
+        }
+        this.samples = samples;
+        this.randomSeed = randomSeed;
+        this.random = new SplittableRandom(randomSeed);
+    }
+
+    /**
+     * @param samples 検査ごとの基本のサンプル数（重い検査はこれより少なくする）
+     * @param randomSeed サンプルの選択に使う乱数の初期値
+     * @param kernels 生成した判定器も検査するか（コンパイルに時間がかかる）
+     */
+    public static Report run(long samples, long randomSeed, boolean kernels) {
+        EngineVerifier verifier = new EngineVerifier(samples, randomSeed);
+        long begin = System.nanoTime();
+        Divergence divergence = verifier.checkRandom();
+        if (divergence == null) divergence = verifier.checkCellOffset();
+        if (divergence == null) divergence = verifier.checkPlacement();
+        if (divergence == null) divergence = verifier.checkArea();
+        if (divergence == null) divergence = verifier.checkCluster();
+        if (divergence == null) {
+            if (!kernels) {
+                verifier.skipped.put("kernel", "disabled");
+            } else if (ToolProvider.getSystemJavaCompiler() == null) {
+                verifier.skipped.put("kernel", "no system Java compiler");
+            } else {
+                divergence = verifier.checkKernels();
+            }
+        }
+        return new Report(verifier.comparisons, verifier.skipped, divergence, randomSeed,
+                (System.nanoTime() - begin) / 1_000_000);
+    }
+
+    /**
+     * 起動時の自己診断（-Dfragrant.selfcheck=true の場合のみ）
+     * 不一致があれば報告し、生成した判定器を使わないようにする
+     */
+    public static void selfCheck() {
+        if (!Boolean.getBoolean(SELF_CHECK_PROPERTY)) return;
+        // 判定器は使用前に条件ごとに検証されるため、ここでは共通部分だけを確認する
+        Report report = run(SELF_CHECK_SAMPLES, 0, false);
+        if (!report.passed()) {
+            System.err.print(report.format());
+            System.err.println("Falling back to the generic matcher");
+            System.setProperty(KernelCompiler.MODE_PROPERTY, "generic");
+        }
+    }
+
+    public static void main(String[] args) {
+        long samples = args.length > 0 ? Long.parseLong(args[0]) : DEFAULT_SAMPLES;
+        long randomSeed = args.length > 1 ? Long.parseLong(args[1]) : System.nanoTime();
+        Report report = run(samples, randomSeed, true);
+        System.out.print(report.format());
+        if (!report.passed()) System.exit(1);
+    }
+
+    private Divergence checkRandom() {
+        KernelRandom fast = new KernelRandom();
+        long count = Math.max(1, samples / 10);
+        for (long i = 0; i < count; i++) {
+            int seed = (int) worldSeed(i);
+            BedrockRandom reference = new BedrockRandom(seed);
+            fast.setSeed(seed);  // 同じインスタンスを使い回し、再設定後の状態も確認する
+            for (int draw = 0; draw < DRAWS; draw++) {
+                int bound = draw % 3 == 0 ? 0 : 1 + (draw * 7919) % 1000;
+                int expected = bound == 0 ? reference.nextInt() : reference.nextInt(bound);
+                int actual = bound == 0 ? fast.nextInt() : fast.nextInt(bound);
+                if (expected != actual) {
+                    return new Divergence("random", seed, "draw " + draw + (bound == 0 ? " nextInt()" : " nextInt(" + bound + ")")
+                            + ": expected " + expected + ", got " + actual, null);
+                }
+            }
+            count("random", DRAWS);
+        }
+        return null;
+    }
+
+    private Divergence checkCellOffset() {
+        for (long i = 0; i < samples; i++) {
+            int s = i < EDGE_COORDINATES.length ? EDGE_COORDINATES[(int) i] : random.nextInt();
+            BedrockRandom reference = new BedrockRandom(s);
+            int expectedX = reference.nextInt(SEPARATION);
+            int expectedZ = reference.nextInt(SEPARATION);
+            int[] nums = BedrockRandom.genNums(s, 2);
+            int offset = KernelRandom.cellOffset(s, SEPARATION);
+
+            String detail = null;
+            if (BedrockRandom.mod(nums[0], SEPARATION) != expectedX || BedrockRandom.mod(nums[1], SEPARATION) != expectedZ) {
+                detail = "genNums " + nums[0] + ", " + nums[1];
+            } else if ((offset >>> 16) != expectedX || (offset & 0xffff) != expectedZ) {
+                detail = "cellOffset " + (offset >>> 16) + ", " + (offset & 0xffff);
+            }
+            if (detail != null) {
+                return new Divergence("cellOffset", s, "expected " + expectedX + ", " + expectedZ + ", got " + detail, null);
+            }
+            count("cellOffset", 1);
+        }
+        return null;
+    }
+
+    private Divergence checkPlacement() {
+        for (long i = 0; i < samples; i++) {
+            long seed = worldSeed(i);
+            Position.ChunkPos pos = new Position.ChunkPos(coordinate(i), coordinate(i / 3));
+            boolean expected = referenceTempleChunk(seed, pos.x(), pos.z());
+            boolean actual = DesertTempleGenerator.isTempleChunk(seed, pos);
+            if (expected != actual) {
+                SearchQuery query = new SearchQuery(List.of(new SearchQuery.TempleQuery(pos, null, List.of())),
+                        0, SearchQuery.SEED_LIMIT, 1);
+                return new Divergence("placement", seed, "isTempleChunk" + pos + ": expected " + expected
+                        + ", got " + actual, SeedTracer.evaluate(query, seed));
+            }
+            count("placement", 1);
+        }
+        return null;
+    }
+
+    private Divergence checkArea() {
+        long count = Math.max(1, samples / 200);
+        Comparator<Position.ChunkPos> order = Comparator.comparingInt(Position.ChunkPos::x)
+                .thenComparingInt(Position.ChunkPos::z);
+        for (long i = 0; i < count; i++) {
+            long seed = worldSeed(i);
+            SearchQuery.Area area = area(i);
+
+            List<Position.ChunkPos> expected = new ArrayList<>();
+            for (long x = area.minX(); x <= area.maxX(); x++) {
+                for (long z = area.minZ(); z <= area.maxZ(); z++) {
+                    if (referenceTempleChunk(seed, (int) x, (int) z)) {
+                        expected.add(new Position.ChunkPos((int) x, (int) z));
+                    }
+                }
+            }
+            List<Position.ChunkPos> actual = new ArrayList<>(DesertTempleGenerator.getTemplesArea(
+                    seed, area.minX(), area.minZ(), area.maxX(), area.maxZ()));
+            expected.sort(order);
+            actual.sort(order);
+            if (!expected.equals(actual)) {
+                return new Divergence("area", seed, "getTemplesArea " + area + ": expected " + expected
+                        + ", got " + actual, null);
+            }
+            count("area", 1);
+        }
+        return null;
+    }
+
+    private Divergence checkCluster() {
+        long count = Math.max(1, samples / 50);
+        for (SearchQuery query : clusterQueries()) {
+            ClusterMatcher matcher = new ClusterMatcher(query);
+            for (long i = 0; i < count; i++) {
+                long seed = worldSeed(i);
+                SeedTrace expected = SeedTracer.evaluate(query, seed);
+                SearchHit actual = matcher.match(seed);
+                // 一致した場合、基準の実装では最後に戦利品を生成した起点がヒットの座標になる
+                Position.ChunkPos expectedPos = expected.matched()
+                        ? expected.temples().getFirst().loot().getLast().position()
+                        : null;
+                Position.ChunkPos actualPos = actual != null ? actual.position() : null;
+                if (!Objects.equals(expectedPos, actualPos)) {
+                    return new Divergence("cluster", seed, "query " + query.temples() + " " + query.cluster()
+                            + ": expected " + expectedPos + ", got " + actualPos, expected);
+                }
+                if (expected.matched()) count("cluster hits", 1);
+            }
+            count("cluster", count);
+        }
+        return null;
+    }
+
+    private Divergence checkKernels() {
+        long count = Math.max(1, samples / 20);
+        for (SearchQuery query : kernelQueries()) {
+            SeedMatcher kernel = KernelCompiler.compileNow(query);
+            SeedMatcher reference = new SeedMatcher(query);
+            for (long i = 0; i < count; i++) {
+                long seed = worldSeed(i);
+                SearchHit expected = reference.match(seed);
+                SearchHit actual = kernel.match(seed);
+                if (!KernelCompiler.sameHit(expected, actual)) {
+                    return new Divergence("kernel", seed, "query " + query.temples() + ": expected " + expected
+                            + ", got " + actual, SeedTracer.evaluate(query, seed));
+                }
+                if (expected != null) count("kernel hits", 1);
+            }
+            count("kernel", count);
+        }
+        return null;
+    }
+
+    /**
+     * 生成した判定器の検査に使う検索条件（固定・範囲・展開しない広い範囲・座標の端）
+     */
+    private static List<SearchQuery> kernelQueries() {
+        int min = Integer.MIN_VALUE;
+        int max = Integer.MAX_VALUE;
+        return List.of(
+                query(temple(new SearchQuery.Area(-40, -40, 40, 40), condition("minecraft:gold_ingot", 3, ConditionalItem.Condition.GREATER_OR_EQUAL, 0))),
+                query(temple(new SearchQuery.Area(-40, -40, 40, 40), condition("minecraft:bone", 10, ConditionalItem.Condition.LESS_OR_EQUAL, -1),
+                        condition("minecraft:sand", 1, ConditionalItem.Condition.GREATER_OR_EQUAL, -1))),
+                query(temple(new SearchQuery.Area(-300, -300, 300, 300), condition("minecraft:string", 8, ConditionalItem.Condition.EQUAL, 1))),
+                query(temple(new SearchQuery.Area(-1, -1, -1, -1)),
+                        temple(new SearchQuery.Area(-100, -100, -33, -33), condition("minecraft:emerald", 1, ConditionalItem.Condition.GREATER_OR_EQUAL, -1))),
+                query(temple(new SearchQuery.Area(min, min, min + 60, min + 60), condition("minecraft:gold_ingot", 1, ConditionalItem.Condition.GREATER_OR_EQUAL, -1))),
+                query(temple(new SearchQuery.Area(max - 60, max - 60, max, max), condition("minecraft:gold_ingot", 1, ConditionalItem.Condition.GREATER_OR_EQUAL, -1))),
+                query(temple(new SearchQuery.Area(min, max - 23, min, max - 23), condition("minecraft:bone", 1, ConditionalItem.Condition.GREATER_OR_EQUAL, -1)))
+        );
+    }
+
+    /**
+     * 密集の条件の検査に使う検索条件（個数・距離・戦利品条件・他のピラミッドの有無を変える）
+     */
+    private static List<SearchQuery> clusterQueries() {
+        return List.of(
+                query(temple(new SearchQuery.Area(-20, -20, 20, 20),
+                        condition("minecraft:gold_ingot", 4, ConditionalItem.Condition.GREATER_OR_EQUAL, -1)))
+                        .withCluster(new SearchQuery.Cluster(3, 24)),
+                query(temple(new SearchQuery.Area(-8, -8, 8, 8))).withCluster(new SearchQuery.Cluster(2, 20)),
+                query(temple(new SearchQuery.Area(-1_875_000, -1_875_000, -1_874_970, -1_874_970)))
+                        .withCluster(new SearchQuery.Cluster(4, 40)),
+                query(temple(new SearchQuery.Area(-24, -24, 24, 24)),
+                        temple(new SearchQuery.Area(-100, -100, -33, -33), condition("minecraft:emerald", 5, ConditionalItem.Condition.GREATER_OR_EQUAL, -1)))
+                        .withCluster(new SearchQuery.Cluster(3, 24))
+        );
+    }
+
+    private static SearchQuery query(SearchQuery.TempleQuery... temples) {
+        return new SearchQuery(List.of(temples), 0, SearchQuery.SEED_LIMIT, 1);
+    }
+
+    private static SearchQuery.TempleQuery temple(SearchQuery.Area area, ConditionalItem... conditions) {
+        Position.ChunkPos center = new Position.ChunkPos(
+                (int) (((long) area.minX() + area.maxX()) / 2), (int) (((long) area.minZ() + area.maxZ()) / 2));
+        return new SearchQuery.TempleQuery(center, area, List.of(conditions));
+    }
+
+    private static ConditionalItem condition(String item, int count, ConditionalItem.Condition op, int chest) {
+        return new ConditionalItem(item, count, op, chest);
+    }
+
+    /**
+     * 基準の判定（グリッドのシードから BedrockRandom で2つの乱数を引く）
+     */
+    private static boolean referenceTempleChunk(long seed, int x, int z) {
+        int gridX = Math.floorDiv(x, SPACING);
+        int gridZ = Math.floorDiv(z, SPACING);
+        BedrockRandom random = new BedrockRandom(DesertTempleGenerator.SALT + (int) seed
+                + DesertTempleGenerator.GRID_X_FACTOR * gridX + DesertTempleGenerator.GRID_Z_FACTOR * gridZ);
+        int offsetX = random.nextInt(SEPARATION);
+        int offsetZ = random.nextInt(SEPARATION);
+        return Math.floorMod(x, SPACING) == offsetX && Math.floorMod(z, SPACING) == offsetZ;
+    }
+
+    private long worldSeed(long i) {
+        return i < EDGE_SEEDS.length ? EDGE_SEEDS[(int) i] : random.nextLong(SearchQuery.SEED_LIMIT);
+    }
+
+    /**
+     * 境界値を一巡した後は、ワールドの範囲付近を中心に、たまに int 全体から選ぶ
+     */
+    private int coordinate(long i) {
+        if (i < EDGE_COORDINATES.length) return EDGE_COORDINATES[(int) i];
+        if (random.nextInt(8) == 0) return random.nextInt();
+        return random.nextInt(-2_000_000, 2_000_001);
+    }
+
+    private SearchQuery.Area area(long i) {
+        int width = random.nextInt(MAX_AREA_SIZE);
+        int height = random.nextInt(MAX_AREA_SIZE);
+        int minX = (int) Math.min(coordinate(i), (long) Integer.MAX_VALUE - width);
+        int minZ = (int) Math.min(coordinate(i / 2), (long) Integer.MAX_VALUE - height);
+        return new SearchQuery.Area(minX, minZ, minX + width, minZ + height);
+    }
+
+    private void count(String check, long n) {
+        comparisons.merge(check, n, Long::sum);
+    }
+}
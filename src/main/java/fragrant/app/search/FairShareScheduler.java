@@ -0,0 +1,189 @@
+package fragrant.app.search;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * 1つのワーカープールで複数の検索を同時に実行するスケジューラ
+ * ブロック単位で重みに応じて割り当て（ストライドスケジューリング）、
+ * プレビュー検索は通常検索より常に優先される（ブロック境界で横取り）
+ */
+public class FairShareScheduler {
+    private final SearchEngine engine;
+    private final Thread[] workers;
+    private final List<Entry> entries = new ArrayList<>();
+    private volatile boolean shutdown = false;
+
+    /**
+     * スケジューラに登録された検索の統計
+     *
+     * @param handle 検索のハンドル（どの検索の統計かの照合用）
+     * @param query 検索条件
+     * @param weight 重み
+     * @param preview プレビュー（優先）検索か
+     * @param runningBlocks 現在処理中のブロック数（使用中のワーカー数）
+     * @param seedsProcessed 処理済みシード数
+     * @param recentSeedsPerSecond 前回の取得以降の処理速度
+     */
+    public record SearchStats(SearchHandle handle, SearchQuery query, int weight, boolean preview, int runningBlocks,
+                              long seedsProcessed, long recentSeedsPerSecond) { }
+
+    private static final class Entry {
+        final SearchHandle handle;
+        final int weight;
+        final boolean preview;
+        double pass;
+        int running = 0;
+        long lastProcessed = 0;
+        long lastNanos = System.nanoTime();
+
+        Entry(SearchHandle handle, int weight, boolean preview, double pass) {
+            this.handle = handle;
+            this.weight = weight;
+            this.preview = preview;
+            this.pass = pass;
+        }
+    }
+
+    public FairShareScheduler(SearchEngine engine, int workerCount) {
+        this.engine = engine;
+        this.workers = new Thread[Math.max(1, workerCount)];
+        for (int i = 0; i < workers.length; i++) {
+            final int slot = i;
+            workers[i] = new Thread(() -> workerLoop(slot), "shared-search-worker-" + (i + 1));
+            workers[i].setDaemon(true);
+            workers[i].start();
+        }
+    }
+
+    public int workerCount() {
+        return workers.length;
+    }
+
+    public SearchEngine engine() {
+        return engine;
+    }
+
+    /**
+     * 検索を登録する
+     * 同時に使うワーカー数は query.threadCount() までに制限される
+     *
+     * @param weight 重み（大きいほど多くのワーカーを割り当てる）
+     * @param preview trueの場合は通常検索より優先して実行
+     */
+    public SearchHandle submit(SearchQuery query, int weight, boolean preview) {
+        if (weight < 1) {
+            throw new IllegalArgumentException("weight must be positive: " + weight);
+        }
+        SearchHandle handle = engine.createHandle(query, workers.length);
+        handle.setOnFinish(this::wakeUp);
+        handle.setOnWorkAdded(this::wakeUp);
+
+        synchronized (this) {
+            // 新しい検索は現在の最小パスから始め、過去の分をまとめて取り返さないようにする
+            double pass = 0;
+            boolean first = true;
+            for (Entry e : entries) {
+                if (e.preview == preview && (first || e.pass < pass)) {
+                    pass = e.pass;
+                    first = false;
+                }
+            }
+            entries.add(new Entry(handle, weight, preview, pass));
+            notifyAll();
+        }
+        return handle;
+    }
+
+    /**
+     * 登録中の検索ごとの統計を取得
+     */
+    public synchronized List<SearchStats> stats() {
+        List<SearchStats> stats = new ArrayList<>(entries.size());
+        long now = System.nanoTime();
+        for (Entry e : entries) {
+            long processed = e.handle.progress().seedsProcessed();
+            long elapsed = now - e.lastNanos;
+            long rate = elapsed > 0 ? (processed - e.lastProcessed) * 1_000_000_000L / elapsed : 0;
+            e.lastProcessed = processed;
+            e.lastNanos = now;
+            stats.add(new SearchStats(e.handle, e.handle.query(), e.weight, e.preview, e.running, processed, rate));
+        }
+        return stats;
+    }
+
+    public void shutdown() {
+        shutdown = true;
+        synchronized (this) {
+            for (Entry e : entries) {
+                e.handle.cancel();
+            }
+            notifyAll();
+        }
+    }
+
+    private synchronized void wakeUp() {
+        notifyAll();
+    }
+
+    /**
+     * 次にブロックを処理する検索を選ぶ
+     */
+    private synchronized Entry next() throws InterruptedException {
+        while (!shutdown) {
+            Entry best = null;
+            Iterator<Entry> it = entries.iterator();
+            while (it.hasNext()) {
+                Entry e = it.next();
+                if (e.handle.isDone()) {
+                    it.remove();
+                    continue;
+                }
+                if (!e.handle.hasWork() || e.running >= e.handle.query().threadCount()) continue;
+                if (best == null
+                        || (e.preview && !best.preview)
+                        || (e.preview == best.preview && e.pass < best.pass)) {
+                    best = e;
+                }
+            }
+
+            if (best != null) {
+                best.running++;
+                best.pass += 1.0 / best.weight;
+                return best;
+            }
+            wait();
+        }
+        return null;
+    }
+
+    private synchronized void release(Entry entry) {
+        entry.running--;
+        notifyAll();
+    }
+
+    private void workerLoop(int slot) {
+        Map<SearchHandle, MatcherCache> matchers = new IdentityHashMap<>();
+        Function<SearchQuery, SeedMatcher> factory = KernelCompiler.matchers();
+        try {
+            while (true) {
+                Entry entry = next();
+                if (entry == null) return;
+
+                matchers.keySet().removeIf(SearchHandle::isDone);
+                MatcherCache cache = matchers.computeIfAbsent(entry.handle, _ -> new MatcherCache(factory));
+                try {
+                    entry.handle.processBlock(slot, cache);
+                } finally {
+                    release(entry);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
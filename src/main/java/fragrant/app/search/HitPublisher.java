@@ -0,0 +1,155 @@
+package fragrant.app.search;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+
+/**
+ * ヒットを1購読者へ配信するPublisher
+ * 購読者の要求数（request）が尽きてバッファが満杯になると、検索スレッド側の publish が待機する
+ */
+final class HitPublisher implements Flow.Publisher<SearchHit> {
+    private static final long OFFER_TIMEOUT_MS = 50;
+    private final BlockingQueue<SearchHit> buffer;
+    private final Executor deliveryExecutor;
+    private final Runnable onCancel;
+    private final AtomicReference<Flow.Subscriber<? super SearchHit>> subscriber = new AtomicReference<>();
+    private final AtomicLong demand = new AtomicLong();
+    private final AtomicInteger wip = new AtomicInteger();
+    private volatile boolean completed = false;  // 検索側の送信終了
+    private volatile boolean cancelled = false;  // 購読者によるキャンセル
+    private volatile boolean terminated = false; // onComplete/onError 通知済み
+    private volatile Throwable failure;
+
+    HitPublisher(int bufferSize, Executor deliveryExecutor, Runnable onCancel) {
+        this.buffer = new ArrayBlockingQueue<>(bufferSize);
+        this.deliveryExecutor = deliveryExecutor;
+        this.onCancel = onCancel;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super SearchHit> s) {
+        if (!subscriber.compareAndSet(null, s)) {
+            s.onSubscribe(new Flow.Subscription() {
+                @Override public void request(long n) { }
+                @Override public void cancel() { }
+            });
+            s.onError(new IllegalStateException("search results can only be subscribed once"));
+            return;
+        }
+
+        s.onSubscribe(new Flow.Subscription() {
+            @Override
+            public void request(long n) {
+                if (n <= 0) {
+                    // 仕様違反（§3.9）: 上流の検索を止めてから onError を通知する
+                    failure = new IllegalArgumentException("non-positive request: " + n);
+                    cancel();
+                    drain();
+                    return;
+                }
+                demand.accumulateAndGet(n, (a, b) -> a + b < 0 ? Long.MAX_VALUE : a + b);
+                drain();
+            }
+
+            @Override
+            public void cancel() {
+                if (!cancelled) {
+                    cancelled = true;
+                    buffer.clear();
+                    onCancel.run();
+                }
+            }
+        });
+        drain();
+    }
+
+    /**
+     * ヒットをバッファへ追加（空きができるまで待機）
+     *
+     * @param stopped 待機を打ち切る条件
+     * @return 追加できた場合はtrue
+     */
+    boolean publish(SearchHit hit, BooleanSupplier stopped) {
+        try {
+            while (!cancelled && !stopped.getAsBoolean()) {
+                if (buffer.offer(hit, OFFER_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                    drain();
+                    return true;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return false;
+    }
+
+    /**
+     * 送信終了を通知（バッファ内のヒットを配信した後に onComplete）
+     */
+    void complete() {
+        completed = true;
+        drain();
+    }
+
+    /**
+     * エラー終了を通知
+     */
+    void fail(Throwable error) {
+        if (cancelled) return;  // 購読者がキャンセル済みなら通知しない
+        failure = error;
+        completed = true;
+        drain();
+    }
+
+    private void drain() {
+        if (wip.getAndIncrement() == 0) {
+            deliveryExecutor.execute(this::drainLoop);
+        }
+    }
+
+    private void drainLoop() {
+        int missed = 1;
+        do {
+            Flow.Subscriber<? super SearchHit> s = subscriber.get();
+            if (s != null && !terminated) {
+                try {
+                    deliver(s);
+                } catch (RuntimeException e) {
+                    cancelled = true;
+                    terminated = true;
+                    buffer.clear();
+                    onCancel.run();
+                    s.onError(e);
+                }
+            }
+            missed = wip.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    private void deliver(Flow.Subscriber<? super SearchHit> s) {
+        while (!cancelled && failure == null && demand.get() > 0) {
+            SearchHit hit = buffer.poll();
+            if (hit == null) break;
+            if (demand.get() != Long.MAX_VALUE) demand.decrementAndGet();
+            s.onNext(hit);
+        }
+
+        if (failure != null) {
+            terminated = true;
+            buffer.clear();
+            s.onError(failure);
+        } else if (cancelled) {
+            terminated = true;
+        } else if (completed && buffer.isEmpty()) {
+            terminated = true;
+            s.onComplete();
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package fragrant.app.search;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.invoke.MethodHandle;
+import java.lang.management.ManagementFactory;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+
+/**
+ * 検索条件ごとに特化した判定器（KernelSource）を実行時にコンパイルし、隠しクラスとして定義する
+ * コンパイルはバックグラウンドで行い、完了するまでは通常の判定を使う
+ * コンパイラがない環境（JRE）やコンパイル・検証に失敗した場合も通常の判定を使い続ける
+ *
+ * 動作はシステムプロパティ {@value #MODE_PROPERTY} で切り替える
+ * <ul>
+ *   <li>specialized（既定）: 生成した判定器を使う（少数のシードで一致を確認してから切り替える）</li>
+ *   <li>verify: {@value #SAMPLES_PROPERTY} 個のシードで通常の判定と一致するか確認し、結果を表示する</li>
+ *   <li>generic: 常に通常の判定を使う</li>
+ * </ul>
+ */
+final class KernelCompiler {
+    static final String MODE_PROPERTY = "fragrant.kernel";
+    static final String SAMPLES_PROPERTY = "fragrant.kernel.samples";
+    private static final int QUICK_SAMPLES = 20_000;
+    private static final int DEFAULT_VERIFY_SAMPLES = 1_000_000;
+    private static final int MAX_CACHED = 32;
+    private static final int SWAP_CHECK_INTERVAL = 4096;
+    private static final Map<String, CompletableFuture<MethodHandle>> KERNELS = new ConcurrentHashMap<>();
+    private static final ExecutorService COMPILER = Executors.newSingleThreadExecutor(
+            SearchEngine.workerThreadFactory("kernel-compiler-"));
+
+    enum Mode { GENERIC, SPECIALIZED, VERIFY }
+
+    private KernelCompiler() { }
+
+    static Mode mode() {
+        return switch (System.getProperty(MODE_PROPERTY, "specialized")) {
+            case "generic" -> Mode.GENERIC;
+            case "verify" -> Mode.VERIFY;
+            default -> Mode.SPECIALIZED;
+        };
+    }
+
+    /**
+     * 検索条件からワーカー用の判定器を作成する関数
+     */
+    static Function<SearchQuery, SeedMatcher> matchers() {
+        Function<SearchQuery, SeedMatcher> matchers = mode() == Mode.GENERIC
+                ? SeedMatcher::new
+                : query -> new SwitchingMatcher(query, kernel(query));
+        // 密集の条件は生成した判定器では扱わない
+        return query -> query.cluster() != null ? new ClusterMatcher(query) : matchers.apply(query);
+    }
+
+    /**
+     * 判定器のコンストラクタを取得（同じ条件のものはコンパイル済みを使い回す）
+     */
+    static CompletableFuture<MethodHandle> kernel(SearchQuery query) {
+        String source = KernelSource.generate(query);
+        if (KERNELS.size() >= MAX_CACHED) KERNELS.clear();
+        return KERNELS.computeIfAbsent(source, src -> CompletableFuture.supplyAsync(() -> {
+            MethodHandle constructor = define(compile(src));
+            verify(constructor, query);
+            return constructor;
+        }, COMPILER).whenComplete((_, e) -> {
+            if (e != null) {
+                // 失敗は条件ごとに1回だけ報告し、以降は通常の判定を使う
+                Throwable cause = e.getCause() != null ? e.getCause() : e;
+                System.err.println("Specialized kernel unavailable, using generic matcher: " + cause.getMessage());
+            }
+        }));
+    }
+
+    /**
+     * 検証なしで判定器をその場でコンパイルする（差分検証用）
+     */
+    static SeedMatcher compileNow(SearchQuery query) {
+        return instantiate(define(compile(KernelSource.generate(query))), query);
+    }
+
+    private static byte[] compile(String source) {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler == null) {
+            throw new IllegalStateException("no system Java compiler (running on a JRE)");
+        }
+
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        ByteArrayOutputStream classFile = new ByteArrayOutputStream();
+        try (StandardJavaFileManager standard = compiler.getStandardFileManager(diagnostics, null, null)) {
+            ForwardingJavaFileManager<StandardJavaFileManager> files = new ForwardingJavaFileManager<>(standard) {
+                @Override
+                public JavaFileObject getJavaFileForOutput(Location location, String className,
+                                                           JavaFileObject.Kind kind, FileObject sibling) {
+                    return new SimpleJavaFileObject(URI.create("mem:///" + className.replace('.', '/') + kind.extension), kind) {
+                        @Override
+                        public OutputStream openOutputStream() {
+                            return classFile;
+                        }
+                    };
+                }
+            };
+            JavaFileObject unit = new SimpleJavaFileObject(
+                    URI.create("mem:///fragrant/app/search/" + KernelSource.CLASS_NAME + ".java"), JavaFileObject.Kind.SOURCE) {
+                @Override
+                public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                    return source;
+                }
+            };
+            List<String> options = new ArrayList<>(List.of("-classpath", System.getProperty("java.class.path"), "-proc:none", "-g:none"));
+            if (ManagementFactory.getRuntimeMXBean().getInputArguments().contains("--enable-preview")) {
+                // プレビュー機能付きでコンパイルされたクラスを参照できるようにする
+                options.addAll(List.of("--enable-preview", "--release", String.valueOf(Runtime.version().feature())));
+            }
+            if (!compiler.getTask(null, files, diagnostics, options, null, List.of(unit)).call()) {
+                StringBuilder message = new StringBuilder("kernel compilation failed");
+                for (Diagnostic<? extends JavaFileObject> d : diagnostics.getDiagnostics()) {
+                    message.append('\n').append(d.getLineNumber()).append(": ").append(d.getMessage(null));
+                }
+                throw new IllegalStateException(message.toString());
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return classFile.toByteArray();
+    }
+
+    private static MethodHandle define(byte[] classFile) {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup().defineHiddenClass(classFile, true);
+            return lookup.findConstructor(lookup.lookupClass(), MethodType.methodType(void.class, SearchQuery.class))
+                    .asType(MethodType.methodType(SeedMatcher.class, SearchQuery.class));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 検索範囲から選んだシードで通常の判定と結果が一致するか確認する
+     */
+    private static void verify(MethodHandle constructor, SearchQuery query) {
+        Mode mode = mode();
+        int samples = mode == Mode.VERIFY ? Integer.getInteger(SAMPLES_PROPERTY, DEFAULT_VERIFY_SAMPLES) : QUICK_SAMPLES;
+        SeedMatcher kernel = instantiate(constructor, query);
+        SeedMatcher generic = new SeedMatcher(query);
+        SplittableRandom random = new SplittableRandom(query.startSeed() ^ query.endSeed());
+        long startSeed = query.seedCount() > 0 ? query.startSeed() : 0;
+        long range = query.seedCount() > 0 ? query.seedCount() : SearchQuery.SEED_LIMIT;
+
+        long hits = 0;
+        long begin = System.nanoTime();
+        for (int i = 0; i < samples; i++) {
+            long seed = startSeed + random.nextLong(range);
+            SearchHit expected = generic.match(seed);
+            SearchHit actual = kernel.match(seed);
+            if (!sameHit(expected, actual)) {
+                throw new IllegalStateException("kernel mismatch at seed " + seed + ": expected " + expected + ", got " + actual);
+            }
+            if (expected != null) hits++;
+        }
+        if (mode == Mode.VERIFY) {
+            System.err.printf("Kernel verified on %d seeds (%d hits) in %d ms%n",
+                    samples, hits, (System.nanoTime() - begin) / 1_000_000);
+        }
+    }
+
+    static boolean sameHit(SearchHit a, SearchHit b) {
+        if (a == null || b == null) return a == b;
+        return a.seed() == b.seed() && a.position().equals(b.position())
+                && a.loot().toString().equals(b.loot().toString());
+    }
+
+    private static SeedMatcher instantiate(MethodHandle constructor, SearchQuery query) {
+        try {
+            return (SeedMatcher) constructor.invokeExact(query);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 生成した判定器の準備ができるまで通常の判定を行い、できしだい切り替える
+     */
+    private static final class SwitchingMatcher extends SeedMatcher {
+        private final SearchQuery query;
+        private CompletableFuture<MethodHandle> pending;
+        private SeedMatcher kernel;
+        private int untilCheck = 0;
+
+        SwitchingMatcher(SearchQuery query, CompletableFuture<MethodHandle> pending) {
+            super(query);
+            this.query = query;
+            this.pending = pending;
+        }
+
+        @Override
+        public SearchHit match(long seed) {
+            if (kernel != null) return kernel.match(seed);
+            if (pending != null && --untilCheck < 0) {
+                untilCheck = SWAP_CHECK_INTERVAL;
+                trySwitch();
+            }
+            return super.match(seed);
+        }
+
+        private void trySwitch() {
+            if (!pending.isDone()) return;
+            if (!pending.isCompletedExceptionally()) {
+                kernel = instantiate(pending.join(), query);
+            }
+            pending = null;
+        }
+    }
+}
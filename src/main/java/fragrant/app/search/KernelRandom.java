@@ -0,0 +1,99 @@
+package fragrant.app.search;
+
+/**
+ * 生成した判定器用の乱数（BedrockRandom と同じ系列を返す）
+ * 状態配列を使い回し、シードごとの確保をなくしている
+ * 生成されたクラスから使うため、メソッドは単純に保つ
+ */
+final class KernelRandom {
+    private static final int N = 624;
+    private static final int M = 397;
+    private static final int MATRIX_A = 0x9908b0df;
+    private static final int U_MASK = 0x80000000;
+    private static final int L_MASK = 0x7fffffff;
+    private final int[] mt = new int[N];
+    private int mti;
+    private int mtiFast;
+
+    void setSeed(int seed) {
+        int[] mt = this.mt;
+        mt[0] = seed;
+        for (int i = 1; i <= M; i++) {
+            mt[i] = 1812433253 * ((mt[i - 1] >>> 30) ^ mt[i - 1]) + i;
+        }
+        mti = 0;
+        mtiFast = M + 1;
+    }
+
+    int next() {
+        int[] mt = this.mt;
+        if (mti >= N - M) return nextSlow();
+
+        int mtCurrent = mt[mti];
+        int mtNext = mt[mti + 1];
+        mt[mti] = ((mtNext & 1) * MATRIX_A) ^ ((mtNext & L_MASK | mtCurrent & U_MASK) >>> 1) ^ mt[mti + M];
+        if (mtiFast < N) {
+            mt[mtiFast] = 1812433253 * ((mt[mtiFast - 1] >>> 30) ^ mt[mtiFast - 1]) + mtiFast;
+            mtiFast++;
+        }
+        return temper(mt[mti++]);
+    }
+
+    /**
+     * 先頭 N - M 個を使い切った後（戦利品の生成ではほぼ起きない）
+     */
+    private int nextSlow() {
+        int[] mt = this.mt;
+        if (mti == N) mti = 0;
+        int mtCurrent = mt[mti];
+        if (mti == N - 1) {
+            int mtNext = mt[0];
+            mt[N - 1] = ((mtNext & 1) * MATRIX_A) ^ ((mtNext & L_MASK | mtCurrent & U_MASK) >>> 1) ^ mt[M - 1];
+        } else if (mti >= N - M) {
+            int mtNext = mt[mti + 1];
+            mt[mti] = ((mtNext & 1) * MATRIX_A) ^ ((mtNext & L_MASK | mtCurrent & U_MASK) >>> 1) ^ mt[mti - (N - M)];
+        } else {
+            int mtNext = mt[mti + 1];
+            mt[mti] = ((mtNext & 1) * MATRIX_A) ^ ((mtNext & L_MASK | mtCurrent & U_MASK) >>> 1) ^ mt[mti + M];
+        }
+        return temper(mt[mti++]);
+    }
+
+    int nextInt() {
+        return next() >>> 1;
+    }
+
+    int nextInt(int bound) {
+        return (int) (Integer.toUnsignedLong(next()) % bound);
+    }
+
+    private static int temper(int y) {
+        y ^= y >>> 11;
+        y ^= (y << 7) & 0x9d2c5680;
+        y ^= (y << 15) & 0xefc60000;
+        return y ^ (y >>> 18);
+    }
+
+    /**
+     * グリッドのシードから構造物のグリッド内オフセットを求める（BedrockRandom.genNums の2個分）
+     *
+     * @return (x << 16) | z
+     */
+    static int cellOffset(int s, int separation) {
+        int st0 = s;
+        int st1 = 0x6C078965 * (st0 ^ (st0 >>> 30)) + 1;
+        int st2 = 0x6C078965 * (st1 ^ (st1 >>> 30)) + 2;
+        int prev = st2;
+        for (int i = 3; i <= M; i++) {
+            prev = 0x6C078965 * (prev ^ (prev >>> 30)) + i;
+        }
+        int stM = prev;
+        int stM1 = 0x6C078965 * (stM ^ (stM >>> 30)) + M + 1;
+
+        int y0 = (st0 & U_MASK) | (st1 & L_MASK);
+        int y1 = (st1 & U_MASK) | (st2 & L_MASK);
+        int x = temper(stM ^ (y0 >>> 1) ^ ((y0 & 1) * MATRIX_A));
+        int z = temper(stM1 ^ (y1 >>> 1) ^ ((y1 & 1) * MATRIX_A));
+        return (Integer.remainderUnsigned(x, separation) << 16) | Integer.remainderUnsigned(z, separation);
+    }
+}
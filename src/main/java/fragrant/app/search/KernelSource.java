@@ -0,0 +1,410 @@
+package fragrant.app.search;
+
+import fragrant.temple.generator.DesertTempleGenerator;
+import fragrant.temple.loot.DesertTempleLootTable;
+import fragrant.temple.loot.LootType;
+import fragrant.utils.Position;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 検索条件に特化した判定器のソースコードを生成する
+ * ピラミッドの座標・グリッド定数・戦利品の重み・条件の閾値を定数として埋め込み、
+ * 固定回数のループは展開する
+ *
+ * 生成したクラスは SeedMatcher を継承し、match の結果は元の判定と一致する
+ */
+final class KernelSource {
+    static final String CLASS_NAME = "QueryKernel";
+    private static final int UNROLL_CELLS = 16;  // これ以下のグリッド数なら範囲検索を展開する
+    private static final int UNROLL_ROLLS = 8;
+    private final SearchQuery query;
+    private final LootType.LootTable table = DesertTempleLootTable.getDesertTempleLootTable();
+    private final StringBuilder fields = new StringBuilder();
+    private final StringBuilder methods = new StringBuilder();
+    private final StringBuilder body = new StringBuilder();
+
+    private KernelSource(SearchQuery query) {
+        this.query = query;
+    }
+
+    /**
+     * 検索条件からソースコードを生成（シード範囲と訪問順は含まない）
+     */
+    static String generate(SearchQuery query) {
+        return new KernelSource(query).build();
+    }
+
+    private String build() {
+        List<SearchQuery.TempleQuery> temples = query.temples();
+        line(body, 2, "int s = (int) seed;");
+        line(body, 2, "int c;");
+
+        // 配置の判定（元の判定と同じく、すべてのピラミッドを先に確認する）
+        for (int i = 0; i < temples.size(); i++) {
+            SearchQuery.TempleQuery temple = temples.get(i);
+            if (temple.isFixed()) {
+                fixedTemple(i, temple.fixedPosition());
+            } else {
+                areaTemple(i, temple.area(), temple.hasConditions());
+            }
+        }
+
+        // 戦利品の判定（最初に条件を持つピラミッドの一致した座標をヒットとする）
+        boolean first = true;
+        for (int i = 0; i < temples.size(); i++) {
+            SearchQuery.TempleQuery temple = temples.get(i);
+            if (!temple.hasConditions()) continue;
+            if (first) {
+                line(body, 2, "random.setSeed(s);");
+                line(body, 2, "long mulX = random.nextInt() | 1;");
+                line(body, 2, "long mulZ = random.nextInt() | 1;");
+                line(body, 2, "int hitX, hitZ;");
+            }
+            lootMethod(i, temple.conditions());
+            if (temple.isFixed()) {
+                Position.ChunkPos pos = temple.fixedPosition();
+                line(body, 2, "if (!loot" + i + "(seed, mulX, mulZ, " + pos.x() + ", " + pos.z() + ")) return null;");
+                if (first) {
+                    line(body, 2, "hitX = " + pos.x() + ";");
+                    line(body, 2, "hitZ = " + pos.z() + ";");
+                }
+            } else {
+                line(body, 2, "int match" + i + " = -1;");
+                line(body, 2, "for (int k = 0; k < found" + i + "; k++) {");
+                line(body, 3, "if (loot" + i + "(seed, mulX, mulZ, foundX" + i + "[k], foundZ" + i + "[k])) {");
+                line(body, 4, "match" + i + " = k;");
+                line(body, 4, "break;");
+                line(body, 3, "}");
+                line(body, 2, "}");
+                line(body, 2, "if (match" + i + " < 0) return null;");
+                if (first) {
+                    line(body, 2, "hitX = foundX" + i + "[match" + i + "];");
+                    line(body, 2, "hitZ = foundZ" + i + "[match" + i + "];");
+                }
+            }
+            first = false;
+        }
+        if (first) {
+            // 戦利品条件が1つもない検索は何にも一致しない
+            line(body, 2, "return null;");
+        } else {
+            line(body, 2, "return new SearchHit(seed, new Position.ChunkPos(hitX, hitZ), "
+                    + "DesertTempleLoot.generateLoot(seed, hitX, hitZ));");
+        }
+
+        StringBuilder out = new StringBuilder();
+        out.append("package fragrant.app.search;\n\n");
+        out.append("import fragrant.temple.loot.DesertTempleLoot;\n");
+        out.append("import fragrant.utils.Position;\n\n");
+        out.append("final class ").append(CLASS_NAME).append(" extends SeedMatcher {\n");
+        out.append("    private final KernelRandom random = new KernelRandom();\n");
+        out.append("    private final int[] chestSeeds = new int[4];\n");
+        out.append(fields);
+        out.append("\n    public ").append(CLASS_NAME).append("(SearchQuery query) {\n");
+        out.append("        super(query);\n");
+        out.append("    }\n\n");
+        out.append("    @Override\n");
+        out.append("    public SearchHit match(long seed) {\n");
+        out.append(body);
+        out.append("    }\n");
+        out.append(methods);
+        out.append("}\n");
+        return out.toString();
+    }
+
+    private void fixedTemple(int index, Position.ChunkPos pos) {
+        int spacing = DesertTempleGenerator.SPACING;
+        int offsetX = Math.floorMod(pos.x(), spacing);
+        int offsetZ = Math.floorMod(pos.z(), spacing);
+        line(body, 2, "// ピラミッド" + (index + 1) + ": " + pos.x() + ", " + pos.z());
+        if (offsetX >= DesertTempleGenerator.SEPARATION || offsetZ >= DesertTempleGenerator.SEPARATION) {
+            line(body, 2, "if (true) return null;  // 生成されない位置");
+            return;
+        }
+        line(body, 2, "c = KernelRandom.cellOffset(s + " + gridSalt(Math.floorDiv(pos.x(), spacing), Math.floorDiv(pos.z(), spacing))
+                + ", " + DesertTempleGenerator.SEPARATION + ");");
+        line(body, 2, "if (c != " + ((offsetX << 16) | offsetZ) + ") return null;");
+    }
+
+    private void areaTemple(int index, SearchQuery.Area area, boolean keepPositions) {
+        int spacing = DesertTempleGenerator.SPACING;
+        int sep = DesertTempleGenerator.SEPARATION;
+        int minGridX = (int) Math.floorDiv((long) area.minX() - (sep - 1), spacing);
+        int maxGridX = Math.floorDiv(area.maxX(), spacing);
+        int minGridZ = (int) Math.floorDiv((long) area.minZ() - (sep - 1), spacing);
+        int maxGridZ = Math.floorDiv(area.maxZ(), spacing);
+        long cells = (long) (maxGridX - minGridX + 1) * (maxGridZ - minGridZ + 1);
+        String label = "temple" + index;
+
+        line(body, 2, "// ピラミッド" + (index + 1) + ": " + area.minX() + ", " + area.minZ()
+                + " - " + area.maxX() + ", " + area.maxZ());
+        if (keepPositions) {
+            fields.append("    private final int[] foundX").append(index).append(" = new int[").append(cells).append("];\n");
+            fields.append("    private final int[] foundZ").append(index).append(" = new int[").append(cells).append("];\n");
+            line(body, 2, "int found" + index + " = 0;");
+        } else {
+            // 戦利品条件がなければ1つ見つかった時点で次へ進む
+            line(body, 2, label + ": {");
+        }
+        int indent = keepPositions ? 2 : 3;
+
+        if (cells <= UNROLL_CELLS) {
+            for (int gridX = minGridX; gridX <= maxGridX; gridX++) {
+                for (int gridZ = minGridZ; gridZ <= maxGridZ; gridZ++) {
+                    line(body, indent, "c = KernelRandom.cellOffset(s + " + gridSalt(gridX, gridZ) + ", " + sep + ");");
+                    String inside = cellCondition(area, gridX * spacing, gridZ * spacing);
+                    String x = (gridX * spacing) + " + (c >>> 16)";
+                    String z = (gridZ * spacing) + " + (c & 0xffff)";
+                    if (keepPositions) {
+                        line(body, indent, "if (" + inside + ") {");
+                        line(body, indent + 1, "foundX" + index + "[found" + index + "] = " + x + ";");
+                        line(body, indent + 1, "foundZ" + index + "[found" + index + "++] = " + z + ";");
+                        line(body, indent, "}");
+                    } else {
+                        line(body, indent, "if (" + inside + ") break " + label + ";");
+                    }
+                }
+            }
+        } else {
+            line(body, indent, "for (int gridX = " + minGridX + "; gridX <= " + maxGridX + "; gridX++) {");
+            line(body, indent + 1, "for (int gridZ = " + minGridZ + "; gridZ <= " + maxGridZ + "; gridZ++) {");
+            line(body, indent + 2, "c = KernelRandom.cellOffset(s + " + DesertTempleGenerator.SALT
+                    + " + " + DesertTempleGenerator.GRID_X_FACTOR + " * gridX + " + DesertTempleGenerator.GRID_Z_FACTOR
+                    + " * gridZ, " + sep + ");");
+            line(body, indent + 2, "int x = gridX * " + spacing + " + (c >>> 16);");
+            line(body, indent + 2, "int z = gridZ * " + spacing + " + (c & 0xffff);");
+            String inside = "x >= " + area.minX() + " && x <= " + area.maxX()
+                    + " && z >= " + area.minZ() + " && z <= " + area.maxZ();
+            if (keepPositions) {
+                line(body, indent + 2, "if (" + inside + ") {");
+                line(body, indent + 3, "foundX" + index + "[found" + index + "] = x;");
+                line(body, indent + 3, "foundZ" + index + "[found" + index + "++] = z;");
+                line(body, indent + 2, "}");
+            } else {
+                line(body, indent + 2, "if (" + inside + ") break " + label + ";");
+            }
+            line(body, indent + 1, "}");
+            line(body, indent, "}");
+        }
+
+        if (keepPositions) {
+            line(body, 2, "if (found" + index + " == 0) return null;");
+        } else {
+            line(body, 3, "return null;");
+            line(body, 2, "}");
+        }
+    }
+
+    /**
+     * グリッドの基準座標が originX, originZ のとき、オフセット c が範囲内になる条件
+     * 常に範囲内になる辺の比較は省く
+     */
+    private static String cellCondition(SearchQuery.Area area, int originX, int originZ) {
+        int max = DesertTempleGenerator.SEPARATION - 1;
+        List<String> checks = new ArrayList<>();
+        int loX = area.minX() - originX, hiX = area.maxX() - originX;
+        int loZ = area.minZ() - originZ, hiZ = area.maxZ() - originZ;
+        if (loX > max || hiX < 0 || loZ > max || hiZ < 0) return "false";
+        if (loX > 0) checks.add("(c >>> 16) >= " + loX);
+        if (hiX < max) checks.add("(c >>> 16) <= " + hiX);
+        if (loZ > 0) checks.add("(c & 0xffff) >= " + loZ);
+        if (hiZ < max) checks.add("(c & 0xffff) <= " + hiZ);
+        return checks.isEmpty() ? "true" : String.join(" && ", checks);
+    }
+
+    private static int gridSalt(int gridX, int gridZ) {
+        return DesertTempleGenerator.SALT + DesertTempleGenerator.GRID_X_FACTOR * gridX
+                + DesertTempleGenerator.GRID_Z_FACTOR * gridZ;
+    }
+
+    /**
+     * 1つのピラミッドの戦利品条件を判定するメソッドを生成
+     * 条件に出てくるアイテムの数だけを数え、チェストごとの条件があれば出現順も記録する
+     * （Searcher.checkMatch と同じく、全チェストのアイテムを出現順に4等分してチェストとみなす）
+     */
+    private void lootMethod(int index, List<ConditionalItem> conditions) {
+        Map<String, Integer> kinds = new LinkedHashMap<>();
+        boolean perChest = false;
+        for (ConditionalItem condition : conditions) {
+            kinds.putIfAbsent(condition.getName(), kinds.size());
+            if (condition.getTargetChestId() != -1) perChest = true;
+        }
+        String prefix = "t" + index;
+        int maxItems = 4 * maxItemsPerChest();
+
+        fields.append("    private int ").append(prefix).append("Items;\n");
+        for (int k = 0; k < kinds.size(); k++) {
+            fields.append("    private int ").append(prefix).append("Count").append(k).append(";\n");
+        }
+        if (perChest) {
+            fields.append("    private int ").append(prefix).append("Recorded;\n");
+            fields.append("    private final int[] ").append(prefix).append("Order = new int[").append(maxItems).append("];\n");
+            fields.append("    private final int[] ").append(prefix).append("Kind = new int[").append(maxItems).append("];\n");
+            fields.append("    private final int[] ").append(prefix).append("Amount = new int[").append(maxItems).append("];\n");
+        }
+
+        StringBuilder m = methods;
+        m.append('\n');
+        line(m, 1, "private boolean loot" + index + "(long seed, long mulX, long mulZ, int x, int z) {");
+        line(m, 2, "KernelRandom r = random;");
+        line(m, 2, "r.setSeed((int) (seed ^ (mulX * x + mulZ * z)));");
+        line(m, 2, "r.next();");
+        for (int chest = 0; chest < 4; chest++) {
+            line(m, 2, "chestSeeds[" + chest + "] = r.nextInt();");
+        }
+        line(m, 2, prefix + "Items = 0;");
+        for (int k = 0; k < kinds.size(); k++) {
+            line(m, 2, prefix + "Count" + k + " = 0;");
+        }
+        if (perChest) line(m, 2, prefix + "Recorded = 0;");
+
+        for (int chest = 0; chest < 4; chest++) {
+            line(m, 2, "r.setSeed(chestSeeds[" + chest + "]);");
+            List<LootType.LootPool> pools = table.pools();
+            for (int p = 0; p < pools.size(); p++) {
+                LootType.LootPool pool = pools.get(p);
+                if (totalWeight(pool) <= 0) continue;
+                line(m, 2, "r.next();");
+                String roll = prefix + "Pool" + p + "(r);";
+                if (pool.getRolls() instanceof LootType.RollRange range) {
+                    line(m, 2, "for (int roll = " + rangeExpression(range.min(), range.max()) + "; roll > 0; roll--) " + roll);
+                } else {
+                    int rolls = (Integer) pool.getRolls();
+                    line(m, 2, "r.next();");
+                    if (rolls <= UNROLL_ROLLS) {
+                        for (int i = 0; i < rolls; i++) line(m, 2, roll);
+                    } else {
+                        line(m, 2, "for (int roll = 0; roll < " + rolls + "; roll++) " + roll);
+                    }
+                }
+            }
+        }
+
+        line(m, 2, "if (" + prefix + "Items == 0) return false;");
+        if (perChest) {
+            line(m, 2, "int perChest = (" + prefix + "Items + 3) / 4;");
+        }
+        for (ConditionalItem condition : conditions) {
+            int kind = kinds.get(condition.getName());
+            String count = condition.getTargetChestId() == -1
+                    ? prefix + "Count" + kind
+                    : prefix + "ChestCount(" + kind + ", " + condition.getTargetChestId() + ", perChest)";
+            line(m, 2, "if (!(" + count + " " + condition.getCompareOperator().getSymbol() + " "
+                    + condition.getCount() + ")) return false;");
+        }
+        line(m, 2, "return true;");
+        line(m, 1, "}");
+
+        if (perChest) {
+            m.append('\n');
+            line(m, 1, "private int " + prefix + "ChestCount(int kind, int chest, int perChest) {");
+            line(m, 2, "int sum = 0;");
+            line(m, 2, "for (int i = 0; i < " + prefix + "Recorded; i++) {");
+            line(m, 3, "if (" + prefix + "Kind[i] == kind && " + prefix + "Order[i] / perChest == chest) sum += "
+                    + prefix + "Amount[i];");
+            line(m, 2, "}");
+            line(m, 2, "return sum;");
+            line(m, 1, "}");
+        }
+
+        List<LootType.LootPool> pools = table.pools();
+        for (int p = 0; p < pools.size(); p++) {
+            if (totalWeight(pools.get(p)) > 0) {
+                poolMethod(prefix, p, pools.get(p), kinds, perChest);
+            }
+        }
+    }
+
+    /**
+     * 1回の抽選（重みの閾値を定数で比較する）
+     */
+    private void poolMethod(String prefix, int p, LootType.LootPool pool, Map<String, Integer> kinds, boolean perChest) {
+        StringBuilder m = methods;
+        m.append('\n');
+        line(m, 1, "private void " + prefix + "Pool" + p + "(KernelRandom r) {");
+        line(m, 2, "int w = r.nextInt(" + totalWeight(pool) + ");");
+
+        List<LootType.LootEntry> entries = new ArrayList<>();
+        for (LootType.LootEntry entry : pool.getEntries()) {
+            if (entry.weight() > 0) entries.add(entry);
+        }
+        int threshold = 0;
+        for (int e = 0; e < entries.size(); e++) {
+            LootType.LootEntry entry = entries.get(e);
+            threshold += entry.weight();
+            String head = e == 0 ? "if (w < " + threshold + ") {"
+                    : e == entries.size() - 1 ? "} else {"
+                    : "} else if (w < " + threshold + ") {";
+            line(m, 2, head + (entry.name().isEmpty() ? "" : "  // " + entry.name()));
+            if ("item".equals(entry.type())) {
+                itemCode(m, prefix, entry, kinds.get(entry.name()), perChest);
+            }
+        }
+        if (!entries.isEmpty()) line(m, 2, "}");
+        line(m, 1, "}");
+    }
+
+    /**
+     * 関数の適用順どおりに乱数を消費し、条件に出てくるアイテムなら数量を数える
+     */
+    private void itemCode(StringBuilder m, String prefix, LootType.LootEntry entry, Integer kind, boolean perChest) {
+        if (kind != null) line(m, 3, "int count = 1;");
+        if (entry.functions() != null) {
+            for (LootType.LootFunction function : entry.functions()) {
+                switch (function.function()) {
+                    case "set_count" -> {
+                        LootType.CountRange range = function.count();
+                        if (kind != null) {
+                            line(m, 3, "count = " + rangeExpression(range.min(), range.max()) + ";");
+                        } else if (range.min() < range.max()) {
+                            line(m, 3, "r.next();");
+                        }
+                    }
+                    case "enchant_randomly" -> line(m, 3, "r.next();");
+                    default -> { }
+                }
+            }
+        }
+        if (kind != null) {
+            line(m, 3, prefix + "Count" + kind + " += count;");
+            if (perChest) {
+                line(m, 3, prefix + "Order[" + prefix + "Recorded] = " + prefix + "Items;");
+                line(m, 3, prefix + "Kind[" + prefix + "Recorded] = " + kind + ";");
+                line(m, 3, prefix + "Amount[" + prefix + "Recorded++] = count;");
+            }
+        }
+        line(m, 3, prefix + "Items++;");
+    }
+
+    /**
+     * BedrockRandom.genRandIntRange と同じ値になる式
+     */
+    private static String rangeExpression(int min, int max) {
+        if (min >= max) return String.valueOf(min);
+        return min + " + r.nextInt(" + (max - min + 1) + ")";
+    }
+
+    private static int totalWeight(LootType.LootPool pool) {
+        int total = 0;
+        for (LootType.LootEntry entry : pool.getEntries()) {
+            total += entry.weight();
+        }
+        return total;
+    }
+
+    private int maxItemsPerChest() {
+        int items = 0;
+        for (LootType.LootPool pool : table.pools()) {
+            items += pool.getRolls() instanceof LootType.RollRange range ? range.max() : (Integer) pool.getRolls();
+        }
+        return items;
+    }
+
+    private static void line(StringBuilder out, int indent, String text) {
+        out.append("    ".repeat(indent)).append(text).append('\n');
+    }
+}
@@ -0,0 +1,30 @@
+package fragrant.app.search;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * ワーカーごとの判定器を検索条件ごとに保持する
+ * 検索中に条件が変わっても、以前の条件の判定器を追いつき検索での比較に使える
+ */
+final class MatcherCache {
+    private static final int MAX_ENTRIES = 8;
+    private final Function<SearchQuery, ? extends SeedMatcher> factory;
+    private final Map<SearchQuery, SeedMatcher> matchers = new IdentityHashMap<>();
+
+    MatcherCache(Function<SearchQuery, ? extends SeedMatcher> factory) {
+        this.factory = factory;
+    }
+
+    SeedMatcher get(SearchQuery query) {
+        SeedMatcher matcher = matchers.get(query);
+        if (matcher == null) {
+            // 条件の変更が続いた場合は古い判定器を捨てる（必要になれば作り直す）
+            if (matchers.size() >= MAX_ENTRIES) matchers.clear();
+            matcher = factory.apply(query);
+            matchers.put(query, matcher);
+        }
+        return matcher;
+    }
+}
@@ -0,0 +1,309 @@
+package fragrant.app.search;
+
+import fragrant.utils.Json;
+import fragrant.utils.Position;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * SearchQuery / SearchHit とJSONの相互変換
+ *
+ * <pre>{@code
+ * {"startSeed": 0, "endSeed": 4294967296, "threads": 4,
+ *  "order": {"scrambled": true, "key": 12345, "blockSize": 65536},
+ *  "cluster": {"count": 3, "radius": 16},
+ *  "temples": [{"x": 0, "z": 0, "area": [-10, -10, 10, 10],
+ *               "conditions": [{"item": "diamond", "op": ">=", "count": 2, "chest": 1}]}]}
+ * }</pre>
+ * chest は1～4、省略時は全チェスト合計
+ * order は省略時は昇順、scrambled で key を省略した場合は乱数の鍵を使う
+ * cluster は省略時はなし（最初のピラミッドを含む count 個が互いに radius チャンク以内）
+ */
+public final class QueryJson {
+    private QueryJson() { }
+
+    public static SearchQuery fromJson(Map<String, Object> json, int defaultThreads) {
+        List<SearchQuery.TempleQuery> temples = new ArrayList<>();
+        for (Object t : Json.getList(json, "temples")) {
+            temples.add(templeFromJson(Json.asObject(t)));
+        }
+        return new SearchQuery(temples,
+                Json.getLong(json, "startSeed", 0),
+                Json.getLong(json, "endSeed", SearchQuery.SEED_LIMIT),
+                Json.getInt(json, "threads", defaultThreads),
+                orderFromJson(json.get("order")),
+                clusterFromJson(json.get("cluster")));
+    }
+
+    private static SearchQuery.Cluster clusterFromJson(Object value) {
+        if (value == null) return null;
+        Map<String, Object> json = Json.asObject(value);
+        return new SearchQuery.Cluster(Json.getInt(json, "count", 2), Json.getInt(json, "radius", 0));
+    }
+
+    private static SearchQuery.VisitOrder orderFromJson(Object value) {
+        if (value == null) return SearchQuery.VisitOrder.SEQUENTIAL;
+        Map<String, Object> json = Json.asObject(value);
+        if (!Json.getBoolean(json, "scrambled", false)) return SearchQuery.VisitOrder.SEQUENTIAL;
+
+        long key = json.containsKey("key") ? Json.getLong(json, "key", 0) : ThreadLocalRandom.current().nextLong();
+        return SearchQuery.VisitOrder.scrambled(key, Json.getInt(json, "blockSize", SearchEngine.DEFAULT_BLOCK_SIZE))
+                .resumeAt(Json.getLong(json, "resumeBlock", 0));
+    }
+
+    private static SearchQuery.TempleQuery templeFromJson(Map<String, Object> json) {
+        SearchQuery.Area area = null;
+        List<Object> range = Json.getList(json, "area");
+        if (!range.isEmpty()) {
+            if (range.size() != 4) throw new IllegalArgumentException("area must be [minX, minZ, maxX, maxZ]");
+            area = new SearchQuery.Area(toInt(range.get(0)), toInt(range.get(1)),
+                    toInt(range.get(2)), toInt(range.get(3)));
+        }
+
+        Position.ChunkPos pos;
+        if (json.containsKey("x") || area == null) {
+            pos = new Position.ChunkPos(Json.getInt(json, "x", 0), Json.getInt(json, "z", 0));
+        } else {
+            pos = new Position.ChunkPos((area.minX() + area.maxX()) / 2, (area.minZ() + area.maxZ()) / 2);
+        }
+
+        List<ConditionalItem> conditions = new ArrayList<>();
+        for (Object c : Json.getList(json, "conditions")) {
+            conditions.add(conditionFromJson(Json.asObject(c)));
+        }
+        return new SearchQuery.TempleQuery(pos, area, conditions);
+    }
+
+    private static ConditionalItem conditionFromJson(Map<String, Object> json) {
+        String item = Json.getString(json, "item", null);
+        if (item == null || item.isEmpty()) throw new IllegalArgumentException("condition item is required");
+        if (!item.contains(":")) item = "minecraft:" + item;
+
+        int chest = Json.getInt(json, "chest", 0);
+        if (chest < 0 || chest > 4) throw new IllegalArgumentException("chest must be 1-4: " + chest);
+
+        return new ConditionalItem(item,
+                Json.getInt(json, "count", 1),
+                ConditionalItem.Condition.fromSymbol(Json.getString(json, "op", ">=")),
+                chest - 1);
+    }
+
+    private static int toInt(Object value) {
+        if (value instanceof Number n) {
+            if (n.longValue() != n.intValue()) throw new IllegalArgumentException("out of int range: " + value);
+            return n.intValue();
+        }
+        throw new IllegalArgumentException("number expected: " + value);
+    }
+
+    public static Map<String, Object> toJson(SearchQuery query) {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("startSeed", query.startSeed());
+        json.put("endSeed", query.endSeed());
+        json.put("threads", query.threadCount());
+        SearchQuery.VisitOrder order = query.order();
+        if (order.scrambled()) {
+            Map<String, Object> o = new LinkedHashMap<>();
+            o.put("scrambled", true);
+            o.put("key", order.key());
+            o.put("blockSize", order.blockSize());
+            if (order.resumeBlock() > 0) o.put("resumeBlock", order.resumeBlock());
+            json.put("order", o);
+        }
+        if (query.cluster() != null) {
+            json.put("cluster", Map.of("count", query.cluster().count(), "radius", query.cluster().radius()));
+        }
+
+        List<Object> temples = new ArrayList<>();
+        for (SearchQuery.TempleQuery t : query.temples()) {
+            Map<String, Object> temple = new LinkedHashMap<>();
+            temple.put("x", t.position().x());
+            temple.put("z", t.position().z());
+            if (t.area() != null) {
+                SearchQuery.Area a = t.area();
+                temple.put("area", List.of(a.minX(), a.minZ(), a.maxX(), a.maxZ()));
+            }
+            List<Object> conditions = new ArrayList<>();
+            for (ConditionalItem item : t.conditions()) {
+                Map<String, Object> c = new LinkedHashMap<>();
+                c.put("item", item.getName());
+                c.put("op", item.getCompareOperator().getSymbol());
+                c.put("count", item.getCount());
+                if (item.getTargetChestId() >= 0) c.put("chest", item.getTargetChestId() + 1);
+                conditions.add(c);
+            }
+            temple.put("conditions", conditions);
+            temples.add(temple);
+        }
+        json.put("temples", temples);
+        return json;
+    }
+
+    /**
+     * スコアの定義を読み込む
+     * {@code {"temple": 1, "terms": [{"item": "diamond", "weight": 1, "chest": 1}]}}
+     * temple は1から、chest は1～4で省略時は全チェスト
+     */
+    public static ScoreSpec scoreFromJson(Map<String, Object> json) {
+        List<ScoreSpec.Term> terms = new ArrayList<>();
+        for (Object t : Json.getList(json, "terms")) {
+            Map<String, Object> term = Json.asObject(t);
+            String item = Json.getString(term, "item", null);
+            if (item == null || item.isEmpty()) throw new IllegalArgumentException("term item is required");
+            if (!item.contains(":")) item = "minecraft:" + item;
+
+            int chest = Json.getInt(term, "chest", 0);
+            if (chest < 0 || chest > 4) throw new IllegalArgumentException("chest must be 1-4: " + chest);
+            terms.add(new ScoreSpec.Term(item, chest - 1, Json.getDouble(term, "weight", 1)));
+        }
+        return new ScoreSpec(Json.getInt(json, "temple", 1) - 1, terms);
+    }
+
+    /**
+     * 集計の定義を読み込む
+     * {@code {"temple": 1, "maxCount": 64, "items": [{"item": "diamond", "chest": 1}]}}
+     * temple は1から、chest は1～4で省略時は全チェスト
+     */
+    public static AggregateSpec aggregateFromJson(Map<String, Object> json) {
+        List<AggregateSpec.Metric> metrics = new ArrayList<>();
+        for (Object m : Json.getList(json, "items")) {
+            Map<String, Object> metric = Json.asObject(m);
+            String item = Json.getString(metric, "item", null);
+            if (item == null || item.isEmpty()) throw new IllegalArgumentException("item is required");
+            if (!item.contains(":")) item = "minecraft:" + item;
+
+            int chest = Json.getInt(metric, "chest", 0);
+            if (chest < 0 || chest > 4) throw new IllegalArgumentException("chest must be 1-4: " + chest);
+            metrics.add(new AggregateSpec.Metric(item, chest - 1));
+        }
+        return new AggregateSpec(Json.getInt(json, "temple", 1) - 1, metrics,
+                Json.getInt(json, "maxCount", AggregateSpec.DEFAULT_MAX_COUNT));
+    }
+
+    public static Map<String, Object> aggregateReportToJson(AggregateSearch.Report report) {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("candidates", report.candidates());
+        json.put("matched", report.matched());
+
+        List<Object> items = new ArrayList<>();
+        for (int m = 0; m < report.spec().metrics().size(); m++) {
+            AggregateSpec.Metric metric = report.spec().metrics().get(m);
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("item", metric.item());
+            item.put("chest", metric.chestId() + 1);
+            item.put("mean", report.mean(m));
+            item.put("histogram", toList(report.histogram(m)));
+            item.put("atLeast", toList(report.sweep(m)));
+            items.add(item);
+        }
+        json.put("items", items);
+
+        SearchProgress coverage = report.coverage();
+        Map<String, Object> c = new LinkedHashMap<>();
+        c.put("seedsProcessed", coverage.seedsProcessed());
+        c.put("fraction", coverage.fractionComplete());
+        c.put("checkpointSeed", coverage.checkpointSeed());
+        c.put("elapsedTimeMs", coverage.elapsedTimeMs());
+        c.put("cancelled", coverage.cancelled());
+        json.put("coverage", c);
+        return json;
+    }
+
+    private static List<Object> toList(long[] values) {
+        List<Object> list = new ArrayList<>(values.length);
+        for (long value : values) {
+            list.add(value);
+        }
+        return list;
+    }
+
+    public static Map<String, Object> reportToJson(TopKSearch.Report report) {
+        Map<String, Object> json = new LinkedHashMap<>();
+        List<Object> top = new ArrayList<>();
+        for (RankedHit hit : report.top()) {
+            Map<String, Object> h = new LinkedHashMap<>();
+            h.put("seed", hit.seed());
+            h.put("x", hit.position().x());
+            h.put("z", hit.position().z());
+            h.put("score", hit.score());
+            h.put("loot", Searcher.formatCounts(hit.loot()));
+            top.add(h);
+        }
+        json.put("top", top);
+        json.put("stopReason", report.stopReason().name());
+        json.put("exact", report.isExact());
+        json.put("maxScore", report.maxScore());
+
+        SearchProgress coverage = report.coverage();
+        Map<String, Object> c = new LinkedHashMap<>();
+        c.put("seedsProcessed", coverage.seedsProcessed());
+        c.put("fraction", coverage.fractionComplete());
+        c.put("checkpointSeed", coverage.checkpointSeed());
+        c.put("elapsedTimeMs", coverage.elapsedTimeMs());
+        c.put("candidates", report.candidates());
+        c.put("prunedTemples", report.prunedTemples());
+        json.put("coverage", c);
+        return json;
+    }
+
+    public static Map<String, Object> traceToJson(SeedTrace trace) {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("seed", trace.seed());
+        json.put("stage", trace.stage().name());
+        json.put("detail", trace.detail());
+        json.put("placementNanos", trace.placementNanos());
+        json.put("lootNanos", trace.lootNanos());
+
+        List<Object> temples = new ArrayList<>();
+        for (SeedTrace.TempleTrace temple : trace.temples()) {
+            Map<String, Object> t = new LinkedHashMap<>();
+            t.put("temple", temple.index() + 1);
+            t.put("fixed", temple.fixed());
+            List<Object> found = new ArrayList<>();
+            for (Position.ChunkPos pos : temple.found()) {
+                found.add(List.of(pos.x(), pos.z()));
+            }
+            t.put("found", found);
+            if (temple.cellTemple() != null) {
+                t.put("cellTemple", List.of(temple.cellTemple().x(), temple.cellTemple().z()));
+            }
+
+            List<Object> loot = new ArrayList<>();
+            for (SeedTrace.LootTrace l : temple.loot()) {
+                Map<String, Object> lj = new LinkedHashMap<>();
+                lj.put("x", l.position().x());
+                lj.put("z", l.position().z());
+                lj.put("chunkSeed", l.chunkSeed());
+                lj.put("chestSeeds", l.chestSeeds());
+                lj.put("chests", l.chestCounts());
+                lj.put("failedCondition", l.failedCondition());
+                loot.add(lj);
+            }
+            t.put("loot", loot);
+            temples.add(t);
+        }
+        json.put("temples", temples);
+        return json;
+    }
+
+    public static List<Object> tracesToJson(List<SeedTrace> traces) {
+        List<Object> list = new ArrayList<>(traces.size());
+        for (SeedTrace trace : traces) {
+            list.add(traceToJson(trace));
+        }
+        return list;
+    }
+
+    public static Map<String, Object> hitToJson(SearchHit hit) {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("seed", hit.seed());
+        json.put("x", hit.position().x());
+        json.put("z", hit.position().z());
+        json.put("loot", Searcher.formatCounts(hit.loot()));
+        return json;
+    }
+}
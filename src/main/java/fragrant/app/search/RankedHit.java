@@ -0,0 +1,23 @@
+package fragrant.app.search;
+
+import fragrant.temple.loot.LootType;
+import fragrant.utils.Position;
+
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * スコア付きのヒット
+ *
+ * @param seed ワールドシード
+ * @param position スコアが最も高かったピラミッドのチャンク座標
+ * @param score スコア
+ * @param loot そのピラミッドの戦利品（4チェスト分）
+ */
+public record RankedHit(long seed, Position.ChunkPos position, double score, List<LootType.LootItem> loot) {
+    /**
+     * スコアの高い順（同点はシードの小さい順）
+     */
+    public static final Comparator<RankedHit> BEST_FIRST =
+            Comparator.comparingDouble(RankedHit::score).reversed().thenComparingLong(RankedHit::seed);
+}
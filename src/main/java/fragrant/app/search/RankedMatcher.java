@@ -0,0 +1,127 @@
+package fragrant.app.search;
+
+import fragrant.temple.loot.DesertTempleLoot;
+import fragrant.temple.loot.DesertTempleLootGenerator;
+import fragrant.temple.loot.DesertTempleLootTable;
+import fragrant.temple.loot.LootType;
+import fragrant.utils.Position;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * 上位K件検索用の判定器（ワーカーごとに1つ）
+ * ヒットは発行せず、このワーカーの上位K件をヒープに保持する
+ * チェストを1つ生成するごとに「生成済みの分の上限＋残りチェストの上限」が
+ * K件目のスコアに届かなくなった時点でそのピラミッドを打ち切る
+ * K件目と同点のシードは残し、シードの小さい順の優先（RankedHit.BEST_FIRST）はヒープで決める
+ */
+class RankedMatcher extends SeedMatcher {
+    private final TopKSearch search;
+    private final ScoreSpec score;
+    private final int k;
+    private final boolean otherConditions;
+    private final Map<String, Double> upperWeights;
+    private final double[] remainingBound = new double[ScoreSpec.CHEST_COUNT + 1];  // i番目以降に生成するチェストの上限の合計
+    private final PriorityQueue<RankedHit> heap;  // 先頭が最も悪い候補
+    private long candidates = 0;
+    private long pruned = 0;
+
+    RankedMatcher(SearchQuery query, TopKSearch search, ScoreSpec score, int k) {
+        super(query);
+        this.search = search;
+        this.score = score;
+        this.k = k;
+        this.heap = new PriorityQueue<>(k + 1, RankedHit.BEST_FIRST.reversed());
+        this.otherConditions = hasOtherConditions(query, score.templeIndex());
+        this.upperWeights = score.upperWeights();
+        for (int chest = ScoreSpec.CHEST_COUNT - 1; chest >= 0; chest--) {
+            remainingBound[chest] = remainingBound[chest + 1] + score.chestUpperBound();
+        }
+    }
+
+    @Override
+    public SearchHit match(long seed) {
+        if (!findTemples(seed)) return null;
+        candidates++;
+
+        SearchQuery.TempleQuery temple = temple(score.templeIndex());
+        double threshold = search.threshold();
+        RankedHit best = null;
+        for (Position.ChunkPos pos : foundTemples(score.templeIndex())) {
+            RankedHit hit = scoreTemple(seed, pos, best != null ? Math.max(threshold, best.score()) : threshold);
+            // 同じシードで同点なら先に見つけたピラミッドを残す
+            if (hit != null && (best == null || hit.score() > best.score())
+                    && Searcher.checkMatch(temple.conditions(), hit.loot())) {
+                best = hit;
+            }
+        }
+
+        // 他のピラミッドの条件は上位に入りうるシードだけ確認する
+        if (best == null || (otherConditions && checkLoot(seed) == null)) return null;
+        offer(best);
+        return null;
+    }
+
+    /**
+     * チェストを順に生成してスコアを計算
+     *
+     * @return スコアが threshold 以上の場合はヒット、threshold に届かない場合はnull
+     *         （途中で届かないことが分かった場合は打ち切ったピラミッドとして数える）
+     */
+    private RankedHit scoreTemple(long seed, Position.ChunkPos pos, double threshold) {
+        List<Integer> chestSeeds = DesertTempleLoot.generateChestSeed(seed, pos.x(), pos.z());
+        List<LootType.LootItem> loot = new ArrayList<>();
+        double bound = 0;
+        for (int chest = 0; chest < ScoreSpec.CHEST_COUNT; chest++) {
+            if (bound + remainingBound[chest] < threshold) {
+                pruned++;
+                return null;
+            }
+            List<LootType.LootItem> items = DesertTempleLootGenerator.generateLootItems(
+                    DesertTempleLootTable.getDesertTempleLootTable(), chestSeeds.get(chest));
+            bound += partialUpperBound(items);
+            loot.addAll(items);
+        }
+        double total = score.score(loot);
+        return total >= threshold ? new RankedHit(seed, pos, total, loot) : null;
+    }
+
+    /**
+     * 生成済みのアイテムが最終的なスコアに加えうる値の上限（チェストを指定した項がなければスコアと同じ）
+     */
+    private double partialUpperBound(List<LootType.LootItem> items) {
+        double bound = 0;
+        for (LootType.LootItem item : items) {
+            bound += upperWeights.getOrDefault(item.getName(), 0.0) * item.getCount();
+        }
+        return bound;
+    }
+
+    private static boolean hasOtherConditions(SearchQuery query, int templeIndex) {
+        for (int i = 0; i < query.temples().size(); i++) {
+            if (i != templeIndex && !query.temples().get(i).conditions().isEmpty()) return true;
+        }
+        return false;
+    }
+
+    private void offer(RankedHit hit) {
+        heap.add(hit);
+        if (heap.size() > k) heap.poll();
+        search.onAccepted(heap.size() == k ? heap.peek().score() : Double.NEGATIVE_INFINITY);
+    }
+
+    List<RankedHit> top() {
+        return new ArrayList<>(heap);
+    }
+
+    long candidates() {
+        return candidates;
+    }
+
+    long pruned() {
+        return pruned;
+    }
+}
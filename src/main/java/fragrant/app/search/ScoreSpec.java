@@ -0,0 +1,104 @@
+package fragrant.app.search;
+
+import fragrant.temple.loot.DesertTempleLootTable;
+import fragrant.temple.loot.LootType;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 上位K件検索のスコア（チェストごとのアイテム数の線形和）
+ *
+ * @param templeIndex スコアを付けるピラミッド（SearchQuery.temples() の番号）
+ * @param terms スコアの項
+ */
+public record ScoreSpec(int templeIndex, List<Term> terms) {
+    public static final int CHEST_COUNT = 4;
+
+    /**
+     * スコアの1項（weight × アイテム数）
+     *
+     * @param item アイテム名
+     * @param chestId 対象チェスト番号（0～3、Searcher.chestSplit の区分）、-1の場合は全チェスト
+     * @param weight 重み（負の値も可）
+     */
+    public record Term(String item, int chestId, double weight) {
+        public Term {
+            if (item == null || item.isEmpty()) {
+                throw new IllegalArgumentException("item must not be empty");
+            }
+            if (chestId < -1 || chestId >= CHEST_COUNT) {
+                throw new IllegalArgumentException("invalid chestId: " + chestId);
+            }
+        }
+
+        boolean appliesTo(int chest) {
+            return chestId == -1 || chestId == chest;
+        }
+    }
+
+    public ScoreSpec {
+        if (templeIndex < 0) {
+            throw new IllegalArgumentException("templeIndex must not be negative: " + templeIndex);
+        }
+        if (terms == null || terms.isEmpty()) {
+            throw new IllegalArgumentException("terms must not be empty");
+        }
+        terms = List.copyOf(terms);
+    }
+
+    /**
+     * ピラミッド全体のスコア（チェストの区分は ConditionalItem と同じ Searcher.chestSplit）
+     */
+    public double score(List<LootType.LootItem> loot) {
+        Map<Integer, List<LootType.LootItem>> chests = Searcher.chestSplit(loot);
+        double score = 0;
+        for (Term term : terms) {
+            for (int chest = 0; chest < CHEST_COUNT; chest++) {
+                if (!term.appliesTo(chest)) continue;
+                for (LootType.LootItem item : chests.get(chest)) {
+                    if (item.getName().equals(term.item())) {
+                        score += term.weight() * item.getCount();
+                    }
+                }
+            }
+        }
+        return score;
+    }
+
+    /**
+     * 生成する1つのチェストの分が加えうる値の上限
+     * 正の重みは DesertTempleLootTable の最大個数、負の重みは0個として見積もる
+     */
+    public double chestUpperBound() {
+        return DesertTempleLootTable.maxWeightedCountPerChest(upperWeights());
+    }
+
+    /**
+     * 1つのピラミッドで取りうるスコアの上限
+     */
+    public double upperBound() {
+        return CHEST_COUNT * chestUpperBound();
+    }
+
+    /**
+     * アイテムごとの1個あたりの重みの上限（全チェストの項の和と、チェストを指定した項の区分ごとの和の最大値）
+     * どの区分に入るかは全チェストを生成するまで決まらないので、最も得になる区分に入るとみなす
+     */
+    Map<String, Double> upperWeights() {
+        Map<String, Double> weights = new HashMap<>();
+        Map<String, double[]> chestWeights = new HashMap<>();
+        for (Term term : terms) {
+            if (term.chestId() == -1) {
+                weights.merge(term.item(), term.weight(), Double::sum);
+            } else {
+                chestWeights.computeIfAbsent(term.item(), _ -> new double[CHEST_COUNT])[term.chestId()] += term.weight();
+            }
+        }
+        chestWeights.forEach((item, perChest) ->
+                weights.merge(item, Math.max(0, Arrays.stream(perChest).max().orElse(0)), Double::sum));
+        return weights;
+    }
+}
@@ -0,0 +1,133 @@
+package fragrant.app.search;
+
+import java.io.IOException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * GUIに依存しない検索エンジン
+ *
+ * <pre>{@code
+ * SearchHandle handle = new SearchEngine().start(query);
+ * handle.subscribe(subscriber);
+ * SearchProgress result = handle.completion().join();
+ * }</pre>
+ */
+public class SearchEngine {
+    public static final int DEFAULT_BLOCK_SIZE = 1 << 16;
+    public static final int DEFAULT_HIT_BUFFER = 1024;
+    private final int blockSize;
+    private final int hitBufferSize;
+    private final Executor deliveryExecutor;
+    private final CpuThrottle throttle = new CpuThrottle();
+    private final SeedTracer tracer = new SeedTracer();
+
+    public SearchEngine() {
+        this(DEFAULT_BLOCK_SIZE, DEFAULT_HIT_BUFFER, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param blockSize ワーカーが一度に取り出すシード数
+     * @param hitBufferSize 購読者へ未配信のヒットを保持できる数
+     * @param deliveryExecutor 購読者への通知を行うExecutor
+     */
+    public SearchEngine(int blockSize, int hitBufferSize, Executor deliveryExecutor) {
+        if (blockSize < 1 || hitBufferSize < 1) {
+            throw new IllegalArgumentException("blockSize and hitBufferSize must be positive");
+        }
+        this.blockSize = blockSize;
+        this.hitBufferSize = hitBufferSize;
+        this.deliveryExecutor = deliveryExecutor;
+    }
+
+    /**
+     * このエンジンで実行する検索すべてに適用されるCPU使用率の制限
+     */
+    public CpuThrottle throttle() {
+        return throttle;
+    }
+
+    /**
+     * このエンジンで実行する検索すべてに適用される判定のトレース（既定では無効）
+     */
+    public SeedTracer tracer() {
+        return tracer;
+    }
+
+    /**
+     * 専用のスレッドプールで検索を開始する
+     * ヒットはハンドルを購読して受け取る（購読しないままバッファが満杯になると検索は待機する）
+     */
+    public SearchHandle start(SearchQuery query) {
+        return start(createHandle(query, query.threadCount()), KernelCompiler.matchers());
+    }
+
+    /**
+     * 作成済みのハンドルを専用のスレッドプールで実行する
+     *
+     * @param matchers 検索条件からワーカーごとの判定器を作成する
+     */
+    SearchHandle start(SearchHandle handle, Function<SearchQuery, ? extends SeedMatcher> matchers) {
+        SearchQuery query = handle.query();
+        ExecutorService executor = Executors.newFixedThreadPool(query.threadCount(), workerThreadFactory("search-worker-"));
+        handle.setOnFinish(executor::shutdown);
+
+        for (int worker = 0; worker < query.threadCount(); worker++) {
+            final int slot = worker;
+            executor.execute(() -> {
+                MatcherCache cache = new MatcherCache(matchers);
+                while (handle.processBlock(slot, cache)) {
+                    // ブロックがなくなるまで処理
+                }
+            });
+        }
+        return handle;
+    }
+
+    /**
+     * 候補シードのリストファイルだけを判定する検索を開始する（query のシード範囲は使わない）
+     * ヒットはファイル内の順に配信される
+     */
+    public SeedListSearch start(SearchQuery query, SeedFile seeds) throws IOException {
+        SeedListSearch search = new SeedListSearch(query, seeds, hitBufferSize, deliveryExecutor, throttle, tracer);
+        ExecutorService executor = Executors.newFixedThreadPool(query.threadCount(), workerThreadFactory("seed-list-worker-"));
+        Function<SearchQuery, SeedMatcher> matchers = KernelCompiler.matchers();
+        for (int worker = 0; worker < query.threadCount(); worker++) {
+            executor.execute(() -> search.runWorker(matchers.apply(query)));
+        }
+        executor.shutdown();
+        return search;
+    }
+
+    /**
+     * 1つのワールドシードで範囲内のピラミッドを判定するワールドスキャンを開始する
+     * ヒットは中心に近い順に配信される
+     */
+    public WorldScan start(WorldScan.Query query) {
+        WorldScan scan = new WorldScan(query, hitBufferSize, deliveryExecutor);
+        ExecutorService executor = Executors.newFixedThreadPool(query.threadCount(), workerThreadFactory("world-scan-worker-"));
+        for (int worker = 0; worker < query.threadCount(); worker++) {
+            executor.execute(scan::runWorker);
+        }
+        executor.shutdown();
+        return scan;
+    }
+
+    SearchHandle createHandle(SearchQuery query, int slots) {
+        return new SearchHandle(query, blockSize, hitBufferSize, deliveryExecutor, slots, throttle, tracer);
+    }
+
+    static ThreadFactory workerThreadFactory(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, prefix + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+}
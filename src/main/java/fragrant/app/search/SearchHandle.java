@@ -0,0 +1,402 @@
+package fragrant.app.search;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 実行中の検索を操作するハンドル
+ * ヒットは Flow.Publisher として1回だけ購読できる
+ * 検索中に戦利品条件を変更でき、検索済みの範囲は必要に応じて追いつき検索する
+ */
+public final class SearchHandle implements Flow.Publisher<SearchHit> {
+    private static final long IDLE = Long.MAX_VALUE;
+    private volatile SearchQuery query;
+    private final int blockSize;
+    private final long totalBlocks;
+    private final BlockPermutation permutation;  // 順番どおりに訪問する場合はnull
+    private final HitPublisher hits;
+    private final CpuThrottle throttle;
+    private final SeedTracer tracer;
+    private final AtomicLong nextBlock;
+    private final long firstBlock;
+    // 検索済みの区間（訪問順の番号）ごとに、どの条件のヒットまで通知済みか（firstBlock～mainStart）
+    private final TreeMap<Long, SearchQuery> covered = new TreeMap<>();
+    private long mainStart;  // これ以降は現在の条件で検索している
+    private volatile long catchUpNext = 0;
+    private volatile long catchUpEnd = 0;
+    private final AtomicLong seedsProcessed = new AtomicLong(0);
+    private final AtomicLong hitCount = new AtomicLong(0);
+    private final AtomicLongArray inFlight;  // ワーカー枠ごとの処理中ブロック（訪問順の番号）
+    private final AtomicInteger activeBlocks = new AtomicInteger(0);
+    private final AtomicBoolean finished = new AtomicBoolean(false);
+    private final CompletableFuture<SearchProgress> completion = new CompletableFuture<>();
+    private final long startNanos = System.nanoTime();
+    private volatile boolean cancelled = false;
+    private volatile boolean exhausted = false;
+    private volatile long finishedNanos = 0;
+    private volatile Runnable onFinish;
+    private volatile Runnable onWorkAdded;
+
+    /**
+     * 取り出したブロックと、その判定に使う条件
+     *
+     * @param previous 追いつき検索の場合は通知済みの条件、通常の検索ではnull
+     */
+    private record Claim(long ordinal, SearchQuery query, SearchQuery previous) { }
+
+    /**
+     * @param slots 同時にブロックを処理するワーカー枠の数
+     */
+    SearchHandle(SearchQuery query, int blockSize, int hitBufferSize, Executor deliveryExecutor, int slots,
+                 CpuThrottle throttle, SeedTracer tracer) {
+        SearchQuery.VisitOrder order = query.order();
+        this.query = query;
+        this.blockSize = order.scrambled() ? order.blockSize() : blockSize;
+        this.totalBlocks = (query.seedCount() + this.blockSize - 1) / this.blockSize;
+        this.permutation = order.scrambled() && totalBlocks > 0 ? new BlockPermutation(totalBlocks, order.key()) : null;
+        this.firstBlock = Math.min(order.resumeBlock(), totalBlocks);
+        this.nextBlock = new AtomicLong(firstBlock);
+        this.mainStart = firstBlock;
+        this.hits = new HitPublisher(hitBufferSize, deliveryExecutor, this::cancel);
+        this.throttle = throttle;
+        this.tracer = tracer;
+        this.inFlight = new AtomicLongArray(slots);
+        for (int i = 0; i < slots; i++) {
+            inFlight.set(i, IDLE);
+        }
+    }
+
+    /**
+     * 終了時の後処理を設定（スレッドプールの停止など）
+     */
+    void setOnFinish(Runnable onFinish) {
+        this.onFinish = onFinish;
+    }
+
+    /**
+     * 追いつき検索の対象が増えたときの通知先を設定（待機中のワーカーを起こすなど）
+     */
+    void setOnWorkAdded(Runnable onWorkAdded) {
+        this.onWorkAdded = onWorkAdded;
+    }
+
+    /**
+     * 現在の検索条件（条件を変更した場合は変更後のもの）
+     */
+    public SearchQuery query() {
+        return query;
+    }
+
+    /**
+     * 検索中にピラミッドの配置・戦利品条件を変更する（シード範囲と訪問順は変わらない）
+     * 各ワーカーは次のブロックから新しい条件で判定する
+     * 条件が狭まったことを確認できない場合は、検索済みの範囲を新しい条件で追いつき検索し、
+     * 以前の条件では見つからなかったヒットだけを通知する
+     *
+     * 変更前に取り出されていたブロックからは以前の条件のヒットが届くことがあるため、
+     * 購読者は必要に応じて新しい条件で確認し直す
+     *
+     * @return 追いつき検索を行う場合はtrue
+     * @throws IllegalStateException 検索が終了または中断している場合
+     */
+    public boolean updateTemples(List<SearchQuery.TempleQuery> temples) {
+        boolean catchUp;
+        synchronized (this) {
+            if (finished.get() || cancelled) {
+                throw new IllegalStateException("search is no longer running");
+            }
+            SearchQuery previous = query;
+            SearchQuery next = previous.withTemples(temples);
+            long boundary = nextBlock.get();
+            relabel(mainStart, boundary, previous);
+            mainStart = boundary;
+            query = next;
+
+            // 新しい条件のヒットがすべて通知済みの区間は、新しい条件で検索済みとみなす
+            catchUp = false;
+            for (Map.Entry<Long, SearchQuery> segment : covered.entrySet()) {
+                if (next.narrows(segment.getValue())) {
+                    segment.setValue(next);
+                } else {
+                    catchUp = true;
+                }
+            }
+            mergeSegments();
+            if (catchUp) {
+                catchUpEnd = boundary;
+                catchUpNext = firstBlock;
+            }
+        }
+
+        Runnable callback = onWorkAdded;
+        if (catchUp && callback != null) {
+            callback.run();
+        }
+        return catchUp;
+    }
+
+    /**
+     * 追いつき検索の途中か
+     */
+    public boolean isCatchingUp() {
+        return catchUpNext < catchUpEnd;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super SearchHit> subscriber) {
+        hits.subscribe(subscriber);
+    }
+
+    /**
+     * 終了を確定する（条件の変更で追いつき検索が追加されるのと同時に行わない）
+     */
+    private synchronized boolean markFinished() {
+        if (activeBlocks.get() != 0 || hasWork()) return false;
+        return finished.compareAndSet(false, true);
+    }
+
+    /**
+     * 検索を中断する（処理中のブロックを切り上げて終了）
+     */
+    public void cancel() {
+        cancelled = true;
+        tryFinish();
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public boolean isDone() {
+        return finishedNanos != 0;
+    }
+
+    /**
+     * 未割り当てのブロックが残っているか
+     */
+    boolean hasWork() {
+        return !cancelled && (!exhausted || catchUpNext < catchUpEnd);
+    }
+
+    /**
+     * 検索終了時に最終進捗で完了するFuture
+     */
+    public CompletableFuture<SearchProgress> completion() {
+        return completion;
+    }
+
+    /**
+     * 現在の進捗スナップショットを取得
+     */
+    public SearchProgress progress() {
+        long end = finishedNanos != 0 ? finishedNanos : System.nanoTime();
+        long checkpointBlock = checkpointBlock();
+        return new SearchProgress(
+                query.startSeed(),
+                query.endSeed(),
+                seedsProcessed.get(),
+                checkpointSeed(checkpointBlock),
+                checkpointBlock,
+                totalBlocks,
+                permutation != null,
+                hitCount.get(),
+                (end - startNanos) / 1_000_000,
+                isDone(),
+                cancelled);
+    }
+
+    /**
+     * 中断した位置から続きを検索するための条件を作成
+     * 順番どおりの場合は開始シードを、かき混ぜた順の場合は訪問順の番号を進める
+     */
+    public SearchQuery resumeQuery() {
+        long checkpointBlock = checkpointBlock();
+        if (permutation != null) {
+            return query.withOrder(query.order().resumeAt(checkpointBlock));
+        }
+        return query.withStartSeed(checkpointSeed(checkpointBlock));
+    }
+
+    /**
+     * 再開位置（訪問順の番号）を計算
+     * 未割り当てブロック、追いつき検索の残り、処理中ブロックのうち最小のもの
+     */
+    private long checkpointBlock() {
+        long frontier = catchUpNext < catchUpEnd ? catchUpNext : totalBlocks;
+        frontier = Math.min(frontier, nextBlock.get());
+        for (int i = 0; i < inFlight.length(); i++) {
+            frontier = Math.min(frontier, inFlight.get(i));
+        }
+        return Math.min(frontier, totalBlocks);
+    }
+
+    /**
+     * これより小さいシードはすべて処理済みというシード
+     * かき混ぜた順では全ブロック完了まで開始シードのまま
+     */
+    private long checkpointSeed(long checkpointBlock) {
+        if (checkpointBlock >= totalBlocks) return query.endSeed();
+        if (permutation != null) return query.startSeed();
+        return query.startSeed() + checkpointBlock * blockSize;
+    }
+
+    /**
+     * 訪問順の番号からブロック先頭シードを求める
+     */
+    private long blockStart(long ordinal) {
+        if (ordinal >= totalBlocks) return query.endSeed();
+        long block = permutation != null ? permutation.apply(ordinal) : ordinal;
+        return query.startSeed() + block * blockSize;
+    }
+
+    /**
+     * 次のブロックを1つ取り出して判定する
+     *
+     * @param slot ワーカー枠の番号
+     * @param matchers このワーカー専用の判定器
+     * @return 続けて処理できるブロックが残っている場合はtrue
+     */
+    boolean processBlock(int slot, MatcherCache matchers) {
+        if (!hasWork()) {
+            tryFinish();
+            return false;
+        }
+
+        long busyNanos = -1;
+        activeBlocks.incrementAndGet();
+        try {
+            long begin = System.nanoTime();
+            Claim claim = claim(slot);
+            if (claim == null) return false;
+
+            SeedMatcher matcher = matchers.get(claim.query());
+            SeedMatcher previous = claim.previous() != null ? matchers.get(claim.previous()) : null;
+            long from = blockStart(claim.ordinal());
+            long to = Math.min(from + blockSize, claim.query().endSeed());
+            long every = tracer.getSampleEvery();
+            long nextTrace = previous == null ? SeedTracer.firstSample(from, every) : Long.MAX_VALUE;
+            long seed = from;
+            for (; seed < to && !cancelled; seed++) {
+                if (seed == nextTrace) {
+                    tracer.trace(claim.query(), seed);
+                    nextTrace += every;
+                }
+                SearchHit hit = matcher.match(seed);
+                // 追いつき検索では以前の条件で通知済みのシードを除く
+                if (hit != null && (previous == null || previous.match(seed) == null)) {
+                    hitCount.incrementAndGet();
+                    if (!hits.publish(hit, this::isCancelled)) break;
+                }
+            }
+            if (previous == null) {
+                seedsProcessed.addAndGet(seed - from);
+            }
+            if (seed < to) return false; // 中断されたブロックは未処理として残す
+
+            inFlight.set(slot, IDLE);
+            busyNanos = System.nanoTime() - begin;
+        } catch (RuntimeException e) {
+            cancelled = true;
+            hits.fail(e);
+            completion.completeExceptionally(e);
+            return false;
+        } finally {
+            activeBlocks.decrementAndGet();
+            if (!hasWork()) {
+                tryFinish();
+            }
+        }
+
+        // 休止はブロックの外で行い、中断や終了処理を待たせない
+        if (hasWork()) {
+            throttle.pace(busyNanos, this::isCancelled);
+        }
+        return hasWork();
+    }
+
+    /**
+     * 次に処理するブロックと判定条件を取り出す
+     * 条件の変更と同時に行わないよう、取り出しはロックの中で行う
+     * 追いつき検索のブロックを優先する
+     *
+     * @return 残っていない場合はnull
+     */
+    private synchronized Claim claim(int slot) {
+        if (cancelled) return null;
+
+        while (catchUpNext < catchUpEnd) {
+            long ordinal = catchUpNext;
+            SearchQuery notified = covered.floorEntry(ordinal).getValue();
+            if (notified == query) {
+                // 現在の条件で検索済みの区間は飛ばす
+                Long segmentEnd = covered.higherKey(ordinal);
+                catchUpNext = Math.min(segmentEnd != null ? segmentEnd : mainStart, catchUpEnd);
+                continue;
+            }
+            inFlight.set(slot, ordinal);
+            catchUpNext = ordinal + 1;
+            relabel(ordinal, ordinal + 1, query);
+            return new Claim(ordinal, query, notified);
+        }
+
+        long ordinal = nextBlock.get();
+        if (ordinal >= totalBlocks) {
+            exhausted = true;
+            return null;
+        }
+        // 番号を進める前に処理中として公開し、再開位置が先に進みすぎないようにする
+        inFlight.set(slot, ordinal);
+        nextBlock.set(ordinal + 1);
+        return new Claim(ordinal, query, null);
+    }
+
+    /**
+     * 区間 [from, to) の通知済みの条件を書き換える
+     */
+    private void relabel(long from, long to, SearchQuery label) {
+        if (from >= to) return;
+        if (to < mainStart && !covered.containsKey(to)) {
+            covered.put(to, covered.floorEntry(to).getValue());
+        }
+        covered.subMap(from, true, to, false).clear();
+        covered.put(from, label);
+        mergeSegments();
+    }
+
+    /**
+     * 隣り合う同じ条件の区間をまとめる
+     */
+    private void mergeSegments() {
+        SearchQuery last = null;
+        Iterator<SearchQuery> it = covered.values().iterator();
+        while (it.hasNext()) {
+            SearchQuery label = it.next();
+            if (label == last) {
+                it.remove();
+            } else {
+                last = label;
+            }
+        }
+    }
+
+    private void tryFinish() {
+        if (markFinished()) {
+            finishedNanos = System.nanoTime();
+            hits.complete();
+            completion.complete(progress());
+            Runnable callback = onFinish;
+            if (callback != null) {
+                callback.run();
+            }
+        }
+    }
+}
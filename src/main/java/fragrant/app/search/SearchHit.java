@@ -0,0 +1,16 @@
+package fragrant.app.search;
+
+import fragrant.temple.loot.LootType;
+import fragrant.utils.Position;
+
+import java.util.List;
+
+/**
+ * 条件に一致したシード
+ *
+ * @param seed ワールドシード
+ * @param position 最初に条件を満たしたピラミッドのチャンク座標
+ * @param loot そのピラミッドの戦利品（4チェスト分）
+ */
+public record SearchHit(long seed, Position.ChunkPos position, List<LootType.LootItem> loot) {
+}
@@ -0,0 +1,69 @@
+package fragrant.app.search;
+
+/**
+ * 検索の進捗スナップショット
+ *
+ * @param startSeed 検索開始シード
+ * @param endSeed 検索終了シード（含まない）
+ * @param seedsProcessed 処理済みシード数
+ * @param checkpointSeed これより小さいシードはすべて処理済み
+ * @param checkpointBlock 再開位置（訪問順で何番目のブロックまで処理済みか）
+ * @param totalBlocks ブロック総数
+ * @param scrambled かき混ぜた順で訪問しているか
+ * @param hitCount 見つかったシード数
+ * @param elapsedTimeMs 経過時間
+ * @param done 検索が終了しているか
+ * @param cancelled 中断されたか
+ */
+public record SearchProgress(long startSeed, long endSeed, long seedsProcessed, long checkpointSeed,
+                             long checkpointBlock, long totalBlocks, boolean scrambled,
+                             long hitCount, long elapsedTimeMs, boolean done, boolean cancelled) {
+
+    /**
+     * 検索範囲に対する進捗（0.0～1.0）
+     */
+    public double fractionComplete() {
+        long total = endSeed - startSeed;
+        return total > 0 ? Math.min(1.0, (double) seedsProcessed / total) : 1.0;
+    }
+
+    /**
+     * シード空間全体に対する進捗（%）
+     */
+    public double percentOfSeedSpace() {
+        if (scrambled) {
+            double covered = totalBlocks > 0 ? (double) (endSeed - startSeed) * checkpointBlock / totalBlocks : 0;
+            return (startSeed + covered) * 100.0 / SearchQuery.SEED_LIMIT;
+        }
+        return checkpointSeed * 100.0 / SearchQuery.SEED_LIMIT;
+    }
+
+    /**
+     * 処理済みシードに対するヒットの割合
+     * かき混ぜた順では検索範囲全体の推定値として使える
+     */
+    public double hitRate() {
+        return seedsProcessed > 0 ? (double) hitCount / seedsProcessed : 0;
+    }
+
+    /**
+     * 検索範囲全体でのヒット数の推定値
+     */
+    public long estimatedTotalHits() {
+        return Math.round(hitRate() * (endSeed - startSeed));
+    }
+
+    /**
+     * 指定した速度で残りの範囲を処理するのにかかる時間（速度が0の場合は-1）
+     */
+    public long remainingTimeMs(long seedsPerSecond) {
+        if (done) return 0;
+        if (seedsPerSecond <= 0) return -1;
+        long remaining = Math.max(0, endSeed - startSeed - seedsProcessed);
+        return (long) (remaining * 1000.0 / seedsPerSecond);
+    }
+
+    public long seedsPerSecond() {
+        return elapsedTimeMs > 0 ? (long) (seedsProcessed * 1000.0 / elapsedTimeMs) : 0;
+    }
+}
@@ -0,0 +1,236 @@
+package fragrant.app.search;
+
+import fragrant.utils.Position;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * 検索条件をまとめた不変オブジェクト
+ * シード範囲は [startSeed, endSeed) の半開区間
+ *
+ * @param temples ピラミッドごとの配置と戦利品条件
+ * @param startSeed 検索開始シード
+ * @param endSeed 検索終了シード（この値は含まない）
+ * @param threadCount 使用スレッド数
+ * @param order シードの訪問順
+ * @param cluster 最初のピラミッドの周りの密集の条件（なしの場合はnull）
+ */
+public record SearchQuery(List<TempleQuery> temples, long startSeed, long endSeed, int threadCount, VisitOrder order,
+                          Cluster cluster) {
+    public static final long SEED_LIMIT = 1L << 32;
+
+    public SearchQuery(List<TempleQuery> temples, long startSeed, long endSeed, int threadCount) {
+        this(temples, startSeed, endSeed, threadCount, VisitOrder.SEQUENTIAL);
+    }
+
+    public SearchQuery(List<TempleQuery> temples, long startSeed, long endSeed, int threadCount, VisitOrder order) {
+        this(temples, startSeed, endSeed, threadCount, order, null);
+    }
+
+    public SearchQuery {
+        if (temples == null || temples.isEmpty()) {
+            throw new IllegalArgumentException("temples must not be empty");
+        }
+        if (startSeed < 0 || endSeed > SEED_LIMIT || startSeed > endSeed) {
+            throw new IllegalArgumentException("invalid seed range: [" + startSeed + ", " + endSeed + ")");
+        }
+        if (threadCount < 1) {
+            throw new IllegalArgumentException("threadCount must be positive: " + threadCount);
+        }
+        temples = List.copyOf(temples);
+        if (order == null) order = VisitOrder.SEQUENTIAL;
+    }
+
+    /**
+     * シードの訪問順
+     * scrambled の場合はブロック単位で鍵付き置換の順に訪問する（ブロック内は昇順）
+     * 再開は resumeBlock（訪問順での番号）で行うため、鍵とブロックサイズは固定して保存する
+     *
+     * @param scrambled かき混ぜた順で訪問するか
+     * @param key 置換の鍵
+     * @param blockSize ブロックのシード数（scrambled の場合のみ使用）
+     * @param resumeBlock 訪問順で何番目のブロックから始めるか
+     */
+    public record VisitOrder(boolean scrambled, long key, int blockSize, long resumeBlock) {
+        public static final VisitOrder SEQUENTIAL = new VisitOrder(false, 0, 0, 0);
+
+        public VisitOrder {
+            if (scrambled && blockSize < 1) {
+                throw new IllegalArgumentException("blockSize must be positive: " + blockSize);
+            }
+            if (resumeBlock < 0) {
+                throw new IllegalArgumentException("resumeBlock must not be negative: " + resumeBlock);
+            }
+        }
+
+        public static VisitOrder scrambled(long key, int blockSize) {
+            return new VisitOrder(true, key, blockSize, 0);
+        }
+
+        public VisitOrder resumeAt(long block) {
+            return new VisitOrder(scrambled, key, blockSize, block);
+        }
+    }
+
+    /**
+     * 最初のピラミッドの周りにピラミッドが密集しているという条件
+     * 最初のピラミッドの範囲にあってその戦利品条件を満たすピラミッドを含み、
+     * 互いの距離がすべて radius チャンク以内の count 個のピラミッドがあること
+     *
+     * @param count ピラミッドの数（最初のピラミッドを含む）
+     * @param radius ピラミッドのチャンク座標同士の距離の上限
+     */
+    public record Cluster(int count, int radius) {
+        public static final int MAX_COUNT = 4;
+        public static final int MAX_RADIUS = 64;
+
+        public Cluster {
+            if (count < 2 || count > MAX_COUNT) {
+                throw new IllegalArgumentException("cluster count must be between 2 and " + MAX_COUNT + ": " + count);
+            }
+            if (radius < 1 || radius > MAX_RADIUS) {
+                throw new IllegalArgumentException("cluster radius must be between 1 and " + MAX_RADIUS + ": " + radius);
+            }
+        }
+    }
+
+    /**
+     * チャンク範囲（両端を含む）
+     */
+    public record Area(int minX, int minZ, int maxX, int maxZ) {
+        public Area {
+            if (minX > maxX || minZ > maxZ) {
+                throw new IllegalArgumentException("invalid area: " + minX + "," + minZ + " - " + maxX + "," + maxZ);
+            }
+        }
+
+        public boolean isPoint() {
+            return minX == maxX && minZ == maxZ;
+        }
+    }
+
+    /**
+     * 1つのピラミッドに対する条件
+     *
+     * @param position 代表座標（範囲の中心）
+     * @param area 検索範囲、座標指定の場合はnull
+     * @param conditions チェストの条件アイテム
+     */
+    public record TempleQuery(Position.ChunkPos position, Area area, List<ConditionalItem> conditions) {
+        public TempleQuery {
+            if (position == null) {
+                throw new IllegalArgumentException("position must not be null");
+            }
+            conditions = conditions == null ? List.of() : List.copyOf(conditions);
+        }
+
+        /**
+         * 1チャンクだけを判定すればよいか
+         */
+        public boolean isFixed() {
+            return area == null || area.isPoint();
+        }
+
+        /**
+         * 1チャンク判定時の対象座標
+         */
+        public Position.ChunkPos fixedPosition() {
+            return area == null ? position : new Position.ChunkPos(area.minX(), area.minZ());
+        }
+
+        /**
+         * この条件を満たすピラミッドが other の条件も必ず満たすか
+         * 範囲が other の範囲に含まれ、other の戦利品条件がどれもこちらの条件から導けること
+         */
+        boolean narrows(TempleQuery other) {
+            if (isFixed() != other.isFixed()) return false;
+            if (isFixed()) {
+                if (!fixedPosition().equals(other.fixedPosition())) return false;
+            } else if (area.minX() < other.area.minX() || area.minZ() < other.area.minZ()
+                    || area.maxX() > other.area.maxX() || area.maxZ() > other.area.maxZ()) {
+                return false;
+            }
+
+            for (ConditionalItem required : other.conditions) {
+                boolean implied = false;
+                for (ConditionalItem condition : conditions) {
+                    if (condition.implies(required)) {
+                        implied = true;
+                        break;
+                    }
+                }
+                if (!implied) return false;
+            }
+            return true;
+        }
+
+        boolean hasConditions() {
+            return !conditions.isEmpty();
+        }
+    }
+
+    /**
+     * Templeタブ/Chestタブ形式のパラメータから検索条件を作成
+     */
+    public static SearchQuery fromTabs(List<Position.ChunkPos> templePositions,
+                                       Map<Position.ChunkPos, List<ConditionalItem>> templeChests,
+                                       Map<Integer, int[]> templeRanges,
+                                       long startSeed, int threadCount) {
+        List<TempleQuery> temples = new ArrayList<>(templePositions.size());
+        for (int i = 0; i < templePositions.size(); i++) {
+            Position.ChunkPos pos = templePositions.get(i);
+            int[] range = templeRanges.get(i + 1);
+            Area area = range == null ? null : new Area(range[0], range[1], range[2], range[3]);
+            temples.add(new TempleQuery(pos, area, templeChests.getOrDefault(pos, Collections.emptyList())));
+        }
+        return new SearchQuery(temples, startSeed, SEED_LIMIT, threadCount);
+    }
+
+    public SearchQuery withStartSeed(long startSeed) {
+        return new SearchQuery(temples, startSeed, endSeed, threadCount, order, cluster);
+    }
+
+    public SearchQuery withSeedRange(long startSeed, long endSeed) {
+        return new SearchQuery(temples, startSeed, endSeed, threadCount, order, cluster);
+    }
+
+    public SearchQuery withThreadCount(int threadCount) {
+        return new SearchQuery(temples, startSeed, endSeed, threadCount, order, cluster);
+    }
+
+    public SearchQuery withOrder(VisitOrder order) {
+        return new SearchQuery(temples, startSeed, endSeed, threadCount, order, cluster);
+    }
+
+    public SearchQuery withTemples(List<TempleQuery> temples) {
+        return new SearchQuery(temples, startSeed, endSeed, threadCount, order, cluster);
+    }
+
+    public SearchQuery withCluster(Cluster cluster) {
+        return new SearchQuery(temples, startSeed, endSeed, threadCount, order, cluster);
+    }
+
+    /**
+     * このクエリに一致するシードがすべて other にも一致することが確認できるか
+     * 確認できない場合はfalse（条件が狭まっていてもfalseになることがある）
+     */
+    public boolean narrows(SearchQuery other) {
+        if (temples.size() != other.temples.size() || !Objects.equals(cluster, other.cluster)) return false;
+        // 戦利品条件が1つもない検索は何にも一致しない
+        if (other.temples.stream().noneMatch(TempleQuery::hasConditions)) {
+            return temples.stream().noneMatch(TempleQuery::hasConditions);
+        }
+        for (int i = 0; i < temples.size(); i++) {
+            if (!temples.get(i).narrows(other.temples.get(i))) return false;
+        }
+        return true;
+    }
+
+    public long seedCount() {
+        return endSeed - startSeed;
+    }
+}
@@ -1,35 +1,60 @@
 package fragrant.app.search;
 
 import fragrant.temple.loot.*;
-import fragrant.temple.generator.DesertTempleGenerator;
+import fragrant.app.worker.WorkerProcess;
 import fragrant.utils.Position;
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.*;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.Flow;
+import java.util.function.LongPredicate;
 
+/**
+ * SearchEngine をGUIのコールバック形式で使うためのアダプタ
+ */
 public class Searcher {
-    private static final long MAX_SEED_VALUE = (1L << 32) - 1;
-    private static final long UPDATE_INTERVAL = MAX_SEED_VALUE / 100;
-    private final AtomicLong seedsProcessed = new AtomicLong(0);
-    private final AtomicLong currentSeed = new AtomicLong(0);
+    private static final long PROGRESS_INTERVAL_MS = 500;
+    private static final long WORKER_POLL_INTERVAL_MS = 20;
     private final int threadCount;
+    private final FairShareScheduler scheduler;
+    private final SearchEngine engine;
+    private int weight = 1;
+    private boolean preview = false;
+    private boolean scrambled = false;
+    private boolean outOfProcess = false;
+    private SearchQuery.Cluster cluster;
+    private SearchQuery resume;  // かき混ぜた順で中断した検索の続き
+    private long lastProcessed = 0;
+    private long lastElapsedMs = 0;
     private volatile boolean isCalculating = false;
     private volatile boolean isStopped = false;
-    private long startTime;
+    private volatile SearchHandle handle;
+    private volatile SeedListSearch listSearch;
+    private volatile WorldScan worldScan;
+    private volatile WorkerProcess worker;
+    private volatile SearchQuery verifyQuery;  // 検索中に条件を変更した場合、届いたヒットをこの条件で確認し直す
     private List<Position.ChunkPos> templePositions;
     private Map<Position.ChunkPos, List<ConditionalItem>> templeChests;
     private Map<Integer, int[]> templeRanges;
     private ProgressCallback progressCallback;
     private ResultCallback resultCallback;
-    private ExecutorService executor;
 
     /**
      * 検索の進捗を通知するためのコールバックインターフェース
      */
     public interface ProgressCallback {
-        void updateLanguage();
         void onProgressUpdate(double percentComplete, long currentSeed, long seedsPerSecond, long elapsedTimeMs);
+
+        /**
+         * かき混ぜた順で検索しているときのヒット数の推定値
+         */
+        default void onHitEstimate(double hitRate, long estimatedTotalHits) { }
+
+        /**
+         * 現在の速度で検索範囲を終えるまでの残り時間（不明な場合は-1）
+         * onProgressUpdateの直前に通知される
+         */
+        default void onRemainingTime(long remainingMs) { }
     }
 
     /**
@@ -45,6 +70,65 @@ public class Searcher {
      */
     public Searcher(int threadCount) {
         this.threadCount = threadCount;
+        this.scheduler = null;
+        this.engine = new SearchEngine();
+    }
+
+    /**
+     * 共有ワーカープールで検索を行うSearcherを作成
+     */
+    public Searcher(FairShareScheduler scheduler) {
+        this.threadCount = scheduler.workerCount();
+        this.scheduler = scheduler;
+        this.engine = scheduler.engine();  // 一覧検索や子プロセスにも同じCPU制限を適用する
+    }
+
+    /**
+     * 共有プールでの配分を設定（次回の検索開始から有効）
+     *
+     * @param weight 重み
+     * @param preview trueの場合は他の検索より優先
+     */
+    public void setShare(int weight, boolean preview) {
+        this.weight = Math.max(1, weight);
+        this.preview = preview;
+    }
+
+    /**
+     * 実行中の検索のハンドル（子プロセスでの検索の場合や検索していない場合はnull）
+     */
+    public SearchHandle currentHandle() {
+        return handle;
+    }
+
+    /**
+     * シードをかき混ぜた順で訪問するか（次回の検索開始から有効）
+     * 検索範囲全体から均等にヒットが見つかるため、早い段階でヒット率を推定できる
+     */
+    public void setScrambled(boolean scrambled) {
+        this.scrambled = scrambled;
+    }
+
+    /**
+     * 検索を子プロセス（別JVM）で実行するか（次回の検索開始から有効）
+     * 検索側のGCやメモリ不足がGUIに影響しなくなる
+     */
+    public void setOutOfProcess(boolean outOfProcess) {
+        this.outOfProcess = outOfProcess;
+    }
+
+    /**
+     * 最初のピラミッドの周りの密集の条件（次回の検索開始から有効、なしの場合はnull）
+     */
+    public void setCluster(SearchQuery.Cluster cluster) {
+        this.cluster = cluster;
+    }
+
+    /**
+     * 中断した検索の続きを破棄（結果をクリアしたとき用）
+     */
+    public void clearResume() {
+        resume = null;
     }
 
     /**
@@ -74,37 +158,172 @@ public class Searcher {
     }
 
     public void startSearch(long startSeed) {
+        startSearch(startSeed, SearchQuery.SEED_LIMIT);
+    }
+
+    /**
+     * シード範囲 [startSeed, endSeed) を検索する（ベンチマークなど、範囲を区切って検索する場合）
+     */
+    public void startSearch(long startSeed, long endSeed) {
+        if (isCalculating) {
+            return;
+        }
+
+        SearchQuery query = SearchQuery.fromTabs(templePositions, templeChests, templeRanges, startSeed, threadCount)
+                .withSeedRange(startSeed, endSeed)
+                .withCluster(cluster);
+        isCalculating = true;
+        isStopped = false;
+        verifyQuery = null;
+
+        if (scrambled) {
+            // 同じ開始シードで中断していれば、同じ訪問順の続きから再開する
+            SearchQuery.VisitOrder order = resume != null && resume.startSeed() == startSeed
+                    ? resume.order()
+                    : SearchQuery.VisitOrder.scrambled(new Random().nextLong(), SearchEngine.DEFAULT_BLOCK_SIZE);
+            query = query.withOrder(order);
+        }
+        resume = null;
+        lastProcessed = 0;
+        lastElapsedMs = 0;
+
+        if (outOfProcess) {
+            try {
+                WorkerProcess process = WorkerProcess.start(query);
+                handle = null;
+                worker = process;
+                pumpWorker(process);
+                return;
+            } catch (IOException e) {
+                // 子プロセスを起動できない場合はこのプロセス内で検索する
+                e.printStackTrace();
+            }
+        }
+        worker = null;
+        handle = scheduler != null ? scheduler.submit(query, weight, preview) : engine.start(query);
+        handle.subscribe(new ResultForwarder());
+        monitorProgress(handle);
+    }
+
+    /**
+     * 候補シードのリストファイルだけを判定する（共有プールは使わず専用スレッドで実行）
+     * ヒットはファイル内の順に通知される
+     */
+    public void startSeedListSearch(Path file) throws IOException {
+        if (isCalculating) {
+            return;
+        }
+
+        SearchQuery query = SearchQuery.fromTabs(templePositions, templeChests, templeRanges, 0, threadCount)
+                .withCluster(cluster);
+        SeedListSearch search = engine.start(query, SeedFile.open(file));
+        isCalculating = true;
+        isStopped = false;
+        lastProcessed = 0;
+        lastElapsedMs = 0;
+        listSearch = search;
+        search.subscribe(new ResultForwarder());
+        monitorListProgress(search);
+    }
+
+    /**
+     * 1つのワールドシードで、中心から radius ブロック以内のピラミッドを近い順に判定する（専用スレッドで実行）
+     * 戦利品の条件は最初のピラミッドのものを使い、範囲は使わない
+     *
+     * @param limit 近い順に何件見つけたら終えるか（0は上限なし）
+     */
+    public void startWorldScan(long worldSeed, int centerX, int centerZ, int radius, int limit) {
         if (isCalculating) {
             return;
         }
 
+        List<ConditionalItem> conditions = templePositions.isEmpty()
+                ? List.of()
+                : templeChests.getOrDefault(templePositions.get(0), List.of());
+        WorldScan scan = engine.start(
+                new WorldScan.Query(worldSeed, centerX, centerZ, radius, conditions, limit, threadCount));
         isCalculating = true;
         isStopped = false;
-        seedsProcessed.set(0);
-        startTime = System.currentTimeMillis();
-        currentSeed.set(startSeed);
+        lastProcessed = 0;
+        lastElapsedMs = 0;
+        worldScan = scan;
+        scan.subscribe(new ResultForwarder());
+        monitorWorldScanProgress(scan);
+    }
+
+    /**
+     * 実行中の検索に setSearchParams の条件を反映できるか
+     * 子プロセスでの検索とリスト検索、ワールドスキャン、密集の条件付きの検索では反映できない
+     */
+    public boolean canUpdateConditions() {
+        SearchHandle current = handle;
+        return isCalculating && worker == null && listSearch == null && worldScan == null
+                && current != null && !current.isDone() && current.query().cluster() == null;
+    }
 
-        executor = Executors.newFixedThreadPool(threadCount);
-        final Map<Long, Integer> seedMatchCounts = Collections.synchronizedMap(new HashMap<>(100));
-        final AtomicLong progressCounter = new AtomicLong(0);
+    /**
+     * setSearchParams で設定した条件を、検索を止めずに反映する
+     * 条件が広がった場合は検索済みの範囲を追いつき検索する
+     *
+     * @return 新しい条件に一致するか判定する述語（表示中の結果の絞り込み用、呼び出したスレッドでのみ使う）、
+     *         反映できない場合はnull
+     */
+    public LongPredicate updateConditions() {
+        if (!canUpdateConditions()) return null;
 
-        for (int threadId = 0; threadId < threadCount; threadId++) {
-            final int threadFinal = threadId;
-            executor.submit(() -> searchTask(startSeed + threadFinal, threadCount, progressCounter, seedMatchCounts));
+        SearchHandle current = handle;
+        SearchQuery query = SearchQuery.fromTabs(templePositions, templeChests, templeRanges, 0, threadCount);
+        try {
+            current.updateTemples(query.temples());
+        } catch (IllegalStateException e) {
+            return null;  // 反映する前に検索が終了した
         }
-        monitorProgress();
+        verifyQuery = current.query();
+
+        SeedMatcher matcher = new SeedMatcher(current.query());
+        return seed -> matcher.match(seed) != null;
     }
 
     public void stopSearch() {
         isStopped = true;
         isCalculating = false;
-        if (executor != null && !executor.isShutdown()) {
-            executor.shutdownNow();
+        SeedListSearch search = listSearch;
+        if (search != null) {
+            search.cancel();
+            listSearch = null;
+            return;
+        }
+        WorldScan scan = worldScan;
+        if (scan != null) {
+            scan.cancel();
+            worldScan = null;
+            return;
+        }
+        WorkerProcess process = worker;
+        if (process != null) {
+            process.cancel();
+            SearchProgress progress = process.progress();
+            if (progress.scrambled() && progress.checkpointBlock() < progress.totalBlocks()) {
+                resume = process.resumeQuery();
+            }
+            return;
+        }
+        if (handle != null) {
+            handle.cancel();
+            SearchProgress progress = handle.progress();
+            if (progress.scrambled() && progress.checkpointBlock() < progress.totalBlocks()) {
+                resume = handle.resumeQuery();
+            }
         }
     }
 
+    /**
+     * 再開位置のシードを取得（これより小さいシードは検索済み）
+     */
     public long getSeed() {
-        return currentSeed.get();
+        WorkerProcess process = worker;
+        if (process != null) return process.progress().checkpointSeed();
+        return handle != null ? handle.progress().checkpointSeed() : 0;
     }
 
     public boolean isCalculating() {
@@ -115,143 +334,153 @@ public class Searcher {
         return isStopped;
     }
 
-    private void searchTask(long startFromSeed, int step, AtomicLong progressCounter, Map<Long, Integer> seedMatchCounts) {
-        try {
-            for (long seed = startFromSeed; seed < MAX_SEED_VALUE && !isStopped; seed += step) {
-                currentSeed.set(seed);
-                seedsProcessed.incrementAndGet();
+    /**
+     * エンジンのヒットを結果コールバックへ転送
+     */
+    private class ResultForwarder implements Flow.Subscriber<SearchHit> {
+        private SearchQuery verifiedWith;
+        private SeedMatcher verifier;
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            subscription.request(Long.MAX_VALUE);
+        }
 
-                if (progressCounter.incrementAndGet() % UPDATE_INTERVAL == 0) {
-                    updateProgressDisplay();
+        @Override
+        public void onNext(SearchHit hit) {
+            // 条件の変更前に判定されたヒットは新しい条件で確認し直す
+            SearchQuery query = verifyQuery;
+            if (query != null) {
+                if (query != verifiedWith) {
+                    verifier = new SeedMatcher(query);
+                    verifiedWith = query;
                 }
+                if (verifier.match(hit.seed()) == null) return;
+            }
+            if (resultCallback != null) {
+                resultCallback.onSearchResult(hit.seed(), hit.position(), hit.loot());
+            }
+        }
 
-                Map<Integer, List<Position.ChunkPos>> foundTemplesPerRange = getTemplePos(seed);
-                if (foundTemplesPerRange == null) continue;
+        @Override
+        public void onError(Throwable throwable) {
+            throwable.printStackTrace();
+            onComplete();
+        }
 
-                processFoundTemples(seed, foundTemplesPerRange, seedMatchCounts);
+        @Override
+        public void onComplete() {
+            isCalculating = false;
+            listSearch = null;
+            worldScan = null;
+            if (resultCallback != null) {
+                resultCallback.onSearchComplete();
             }
-        } catch (Exception e) {
-            e.printStackTrace();
         }
     }
 
-    /**
-     * 指定されたシードでピラミッドのチャンク位置を取得
-     */
-    private Map<Integer, List<Position.ChunkPos>> getTemplePos(long seed) {
-        Map<Integer, List<Position.ChunkPos>> foundTemplesPerRange = new HashMap<>(templePositions.size());
-
-        for (int i = 0; i < templePositions.size(); i++) {
-            int templeId = i + 1;
-            int[] range = templeRanges.get(templeId);
-
-            // 特定の座標で検索する場合
-            if (range == null) {
-                Position.ChunkPos pos = templePositions.get(i);
-                if (!DesertTempleGenerator.isTempleChunk(seed, pos)) {
-                    return null;
+    private void monitorProgress(SearchHandle searchHandle) {
+        Thread monitor = new Thread(() -> {
+            try {
+                while (!searchHandle.isDone()) {
+                    Thread.sleep(PROGRESS_INTERVAL_MS);
+                    updateProgressDisplay(searchHandle.progress());
                 }
-
-                List<Position.ChunkPos> singlePosList = new ArrayList<>(1);
-                singlePosList.add(pos);
-                foundTemplesPerRange.put(templeId, singlePosList);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
             }
-            // 範囲で検索する場合
-            else {
-                // 範囲が1点の場合
-                if (range[0] == range[2] && range[1] == range[3]) {
-                    Position.ChunkPos pos = new Position.ChunkPos(range[0], range[1]);
-                    if (!DesertTempleGenerator.isTempleChunk(seed, pos)) {
-                        return null;
-                    }
+        }, "search-progress");
+        monitor.setDaemon(true);
+        monitor.start();
+    }
 
-                    List<Position.ChunkPos> singlePosList = new ArrayList<>(1);
-                    singlePosList.add(pos);
-                    foundTemplesPerRange.put(templeId, singlePosList);
-                }
-                // 実際の範囲検索
-                else {
-                    List<Position.ChunkPos> rangeTemples = DesertTempleGenerator.getTemplesArea(
-                            seed, range[0], range[1], range[2], range[3]);
-                    if (rangeTemples.isEmpty()) {
-                        return null;
+    /**
+     * 子プロセスのヒットと進捗を読み出してコールバックへ渡す
+     */
+    private void pumpWorker(WorkerProcess process) {
+        Thread reader = new Thread(() -> {
+            try {
+                long lastProgress = 0;
+                while (true) {
+                    process.setCpuLimit(engine.throttle().getTargetFraction());
+                    boolean finished = process.isFinished();  // 終了後に残りのヒットを読み切るため先に確認
+                    int read = process.poll(this::forwardWorkerHit);
+
+                    long now = System.currentTimeMillis();
+                    if (finished || now - lastProgress >= PROGRESS_INTERVAL_MS) {
+                        updateProgressDisplay(process.progress());
+                        lastProgress = now;
                     }
-
-                    foundTemplesPerRange.put(templeId, rangeTemples);
+                    if (finished) break;
+                    if (read == 0) Thread.sleep(WORKER_POLL_INTERVAL_MS);
+                }
+                if (process.isFailed()) {
+                    System.err.println("Search worker process failed (exit code " + process.exitCode() + ")");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                process.close();
+                isCalculating = false;
+                if (resultCallback != null) {
+                    resultCallback.onSearchComplete();
                 }
             }
-        }
-
-        return foundTemplesPerRange;
+        }, "search-worker-reader");
+        reader.setDaemon(true);
+        reader.start();
     }
 
     /**
-     * 見つかったピラミッドの内容を検証し、条件に一致するかチェック
+     * 子プロセスからはシードと座標だけを受け取り、戦利品はこちらで再生成する
      */
-    private void processFoundTemples(long seed, Map<Integer, List<Position.ChunkPos>> foundTemplesPerRange,
-                                     Map<Long, Integer> seedMatchCounts) {
-        int matchCount = 0;
-        Map<Position.ChunkPos, List<LootType.LootItem>> cachedLoot = new HashMap<>();
-        Position.ChunkPos matchingPos = null;
-
-        for (int i = 0; i < templePositions.size(); i++) {
-            int templeId = i + 1;
-            List<Position.ChunkPos> templePosInRange = foundTemplesPerRange.get(templeId);
-            Position.ChunkPos representativePos = templePositions.get(i);
-            List<ConditionalItem> knownContents = templeChests.get(representativePos);
-
-            if (knownContents.isEmpty()) continue;
-
-            boolean foundMatch = false;
-            for (Position.ChunkPos pos : templePosInRange) {
-                List<LootType.LootItem> generatedLoot = cachedLoot.computeIfAbsent(pos,
-                        p -> DesertTempleLoot.generateLoot(seed, p.x(), p.z()));
-
-                if (checkMatch(knownContents, generatedLoot)) {
-                    matchCount++;
-                    foundMatch = true;
-                    if (matchingPos == null) matchingPos = pos;
-                    break;
-                }
-            }
-
-            if (!foundMatch) {
-                return;
-            }
-        }
-
-        if (matchCount > 0) {
-            seedMatchCounts.put(seed, matchCount);
-            Position.ChunkPos actualPos = matchingPos != null ? matchingPos :
-                    getSimpleTemplePos(seed, foundTemplesPerRange);
-            List<LootType.LootItem> loot = cachedLoot.getOrDefault(actualPos,
-                    DesertTempleLoot.generateLoot(seed, actualPos.x(), actualPos.z()));
-
-            if (resultCallback != null) {
-                resultCallback.onSearchResult(seed, actualPos, loot);
-            }
+    private void forwardWorkerHit(long seed, int chunkX, int chunkZ) {
+        if (resultCallback != null) {
+            resultCallback.onSearchResult(seed, new Position.ChunkPos(chunkX, chunkZ),
+                    DesertTempleLoot.generateLoot(seed, chunkX, chunkZ));
         }
     }
 
-    private void monitorProgress() {
-        new Thread(() -> {
+    private void monitorListProgress(SeedListSearch search) {
+        Thread monitor = new Thread(() -> {
             try {
-                while (isCalculating && !executor.isTerminated()) {
-                    Thread.sleep(500);
-                    updateProgressDisplay();
+                while (!search.isDone()) {
+                    Thread.sleep(PROGRESS_INTERVAL_MS);
+                    SeedListSearch.Progress progress = search.progress();
+                    if (progressCallback != null) {
+                        // 100%の通知で画面側が停止するため、配信が終わるまでは100%未満にとどめる
+                        double percent = progress.done() ? 100.0 : Math.min(99.9, progress.fractionComplete() * 100.0);
+                        progressCallback.onProgressUpdate(percent, 0,
+                                progress.seedsPerSecond(), progress.elapsedTimeMs());
+                    }
                 }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, "seed-list-progress");
+        monitor.setDaemon(true);
+        monitor.start();
+    }
 
-                executor.shutdown();
-                isCalculating = false;
-
-                if (resultCallback != null) {
-                    resultCallback.onSearchComplete();
+    private void monitorWorldScanProgress(WorldScan scan) {
+        Thread monitor = new Thread(() -> {
+            try {
+                while (!scan.isDone()) {
+                    Thread.sleep(PROGRESS_INTERVAL_MS);
+                    WorldScan.Progress progress = scan.progress();
+                    if (progressCallback != null) {
+                        // 100%の通知で画面側が停止するため、配信が終わるまでは100%未満にとどめる
+                        double percent = progress.done() ? 100.0 : Math.min(99.9, progress.fractionComplete() * 100.0);
+                        progressCallback.onProgressUpdate(percent, 0,
+                                progress.templesPerSecond(), progress.elapsedTimeMs());
+                    }
                 }
-
             } catch (InterruptedException e) {
                 Thread.currentThread().interrupt();
             }
-        }).start();
+        }, "world-scan-progress");
+        monitor.setDaemon(true);
+        monitor.start();
     }
 
     /**
@@ -318,29 +547,23 @@ public class Searcher {
         return map;
     }
 
-    /**
-     * 最初の有効なピラミッド位置を取得
-     */
-    private Position.ChunkPos getSimpleTemplePos(long seed, Map<Integer, List<Position.ChunkPos>> foundTemplesPerRange) {
-        for (List<Position.ChunkPos> temples : foundTemplesPerRange.values()) {
-            for (Position.ChunkPos pos : temples) {
-                if (DesertTempleGenerator.isTempleChunk(seed, pos)) {
-                    return pos;
-                }
-            }
-        }
-        return templePositions.isEmpty() ? new Position.ChunkPos(0, 0) : templePositions.getFirst();
-    }
-
-    private void updateProgressDisplay() {
+    private void updateProgressDisplay(SearchProgress progress) {
         if (progressCallback != null) {
-            long currentTime = System.currentTimeMillis();
-            long elapsedTime = currentTime - startTime;
-            long currentProcessed = seedsProcessed.get();
-            double seedsPerSecond = elapsedTime > 0 ? (currentProcessed * 1000.0 / elapsedTime) : 0;
-            double percentComplete = (currentSeed.get() * 100.0 / MAX_SEED_VALUE);
-
-            progressCallback.onProgressUpdate(percentComplete, currentSeed.get(), (long)seedsPerSecond, elapsedTime);
+            // 共有プールでは配分が変わるため、直近の区間の速度を通知する
+            long elapsed = progress.elapsedTimeMs() - lastElapsedMs;
+            long seedsPerSecond = elapsed > 0
+                    ? (progress.seedsProcessed() - lastProcessed) * 1000 / elapsed
+                    : progress.seedsPerSecond();
+            lastElapsedMs = progress.elapsedTimeMs();
+            lastProcessed = progress.seedsProcessed();
+
+            // 直近の速度から求めるので、CPU制限の変更もすぐに反映される
+            progressCallback.onRemainingTime(progress.remainingTimeMs(seedsPerSecond));
+            progressCallback.onProgressUpdate(progress.percentOfSeedSpace(), progress.checkpointSeed(),
+                    seedsPerSecond, progress.elapsedTimeMs());
+            if (progress.scrambled()) {
+                progressCallback.onHitEstimate(progress.hitRate(), progress.estimatedTotalHits());
+            }
         }
     }
 
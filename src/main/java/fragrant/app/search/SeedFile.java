@@ -0,0 +1,208 @@
+package fragrant.app.search;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.function.LongPredicate;
+
+/**
+ * 候補シードのリストファイル
+ * ファイルをチャンク単位でメモリマップして読み、ヒープには読み込まない
+ *
+ * <ul>
+ *   <li>TEXT: 1行1シード（10進数）。先頭の数値だけを読み、数値で始まらない行は読み飛ばす</li>
+ *   <li>UINT32_LE: 符号なし32bitリトルエンディアンの連続</li>
+ *   <li>INT64_LE: 64bitリトルエンディアンの連続</li>
+ *   <li>SEED_SET: シードの集合のファイル（SeedSet）。1ブロックを1チャンクとして昇順に読む</li>
+ * </ul>
+ */
+public final class SeedFile {
+    public static final int DEFAULT_CHUNK_BYTES = 1 << 22;
+    private static final int MAX_LINE = 256;  // チャンク境界をまたぐ行のために余分にマップする長さ
+    private final Path path;
+    private final Format format;
+    private final long size;
+    private final int chunkBytes;
+    private final SeedSet set;
+
+    public enum Format {
+        TEXT(1), UINT32_LE(4), INT64_LE(8), SEED_SET(1);
+
+        private final int recordBytes;
+
+        Format(int recordBytes) {
+            this.recordBytes = recordBytes;
+        }
+
+        /**
+         * 拡張子から形式を判定（.u32 / .i64 / .bin は64bit、.bss は集合、それ以外はテキスト）
+         */
+        public static Format detect(Path path) {
+            String name = path.getFileName().toString().toLowerCase(Locale.ROOT);
+            if (name.endsWith(SeedSet.EXTENSION)) return SEED_SET;
+            if (name.endsWith(".u32")) return UINT32_LE;
+            if (name.endsWith(".i64") || name.endsWith(".bin")) return INT64_LE;
+            return TEXT;
+        }
+    }
+
+    private SeedFile(Path path, Format format, long size, int chunkBytes, SeedSet set) {
+        this.path = path;
+        this.format = format;
+        this.size = size;
+        this.chunkBytes = chunkBytes;
+        this.set = set;
+    }
+
+    public static SeedFile open(Path path) throws IOException {
+        return open(path, Format.detect(path), DEFAULT_CHUNK_BYTES);
+    }
+
+    /**
+     * @param chunkBytes 1ワーカーが一度に読むバイト数（バイナリ形式では1件のサイズの倍数に切り下げる）
+     */
+    public static SeedFile open(Path path, Format format, int chunkBytes) throws IOException {
+        if (chunkBytes < format.recordBytes) {
+            throw new IllegalArgumentException("chunkBytes too small: " + chunkBytes);
+        }
+        if (format == Format.SEED_SET) {
+            // 進捗はブロックのデータのバイト数で数える
+            SeedSet set = SeedSet.open(path);
+            return new SeedFile(path, format, set.dataBytes(), chunkBytes, set);
+        }
+        long size = Files.size(path);
+        if (size % format.recordBytes != 0) {
+            throw new IllegalArgumentException("file size is not a multiple of " + format.recordBytes + ": " + path);
+        }
+        return new SeedFile(path, format, size, chunkBytes - chunkBytes % format.recordBytes, null);
+    }
+
+    public Path path() {
+        return path;
+    }
+
+    public Format format() {
+        return format;
+    }
+
+    public long size() {
+        return size;
+    }
+
+    public long chunkCount() {
+        if (set != null) return set.blockCount();
+        return (size + chunkBytes - 1) / chunkBytes;
+    }
+
+    /**
+     * チャンクのバイト数（進捗表示用）
+     */
+    long chunkLength(long chunk) {
+        if (set != null) return set.blockBytes((int) chunk);
+        return Math.min(chunkBytes, size - chunk * chunkBytes);
+    }
+
+    /**
+     * シード数（テキスト形式では不明なので-1）
+     */
+    public long seedCount() {
+        if (set != null) return set.cardinality();
+        return format == Format.TEXT ? -1 : size / format.recordBytes;
+    }
+
+    /**
+     * 1チャンク分のシードをファイル内の順に渡す
+     *
+     * @param consumer falseを返すと読み取りを中断する
+     * @return 数値として読めなかった行の数
+     */
+    long scan(FileChannel channel, long chunk, LongPredicate consumer) throws IOException {
+        if (set != null) {
+            set.forEachInBlock((int) chunk, consumer);
+            return 0;
+        }
+        long start = chunk * chunkBytes;
+        long end = start + chunkLength(chunk);
+        if (format != Format.TEXT) {
+            MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+            buf.order(ByteOrder.LITTLE_ENDIAN);
+            while (buf.hasRemaining()) {
+                long seed = format == Format.UINT32_LE ? Integer.toUnsignedLong(buf.getInt()) : buf.getLong();
+                if (!consumer.test(seed)) break;
+            }
+            return 0;
+        }
+        return scanText(channel, start, end, consumer);
+    }
+
+    /**
+     * テキスト形式のチャンクを読む
+     * 行頭がチャンク内にある行をこのチャンクの担当とする
+     */
+    private long scanText(FileChannel channel, long start, long end, LongPredicate consumer) throws IOException {
+        long mapFrom = start == 0 ? 0 : start - 1;
+        long mapTo = Math.min(size, end + MAX_LINE);
+        MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, mapFrom, mapTo - mapFrom);
+        int limit = (int) (end - mapFrom);
+        int length = buf.limit();
+
+        int pos = 0;
+        if (start > 0) {
+            // 直前のバイトが改行でなければ、前のチャンクから続く行を読み飛ばす
+            while (pos < length && buf.get(pos) != '\n') pos++;
+            pos++;
+        }
+
+        long invalid = 0;
+        while (pos < limit) {
+            int eol = pos;
+            while (eol < length && buf.get(eol) != '\n') eol++;
+            if (eol == length && mapTo < size) {
+                invalid++;  // MAX_LINE を超える行
+                break;
+            }
+
+            long seed = parseSeed(buf, pos, eol);
+            if (seed != Long.MIN_VALUE) {
+                if (!consumer.test(seed)) break;
+            } else if (!isBlank(buf, pos, eol)) {
+                invalid++;
+            }
+            pos = eol + 1;
+        }
+        return invalid;
+    }
+
+    /**
+     * 行頭の10進数を読む（読めなければ Long.MIN_VALUE）
+     */
+    private static long parseSeed(MappedByteBuffer buf, int from, int to) {
+        int i = from;
+        while (i < to && (buf.get(i) == ' ' || buf.get(i) == '\t')) i++;
+        boolean negative = i < to && buf.get(i) == '-';
+        if (negative) i++;
+
+        long value = 0;
+        int digits = 0;
+        for (; i < to; i++) {
+            int d = buf.get(i) - '0';
+            if (d < 0 || d > 9) break;
+            if (++digits > 18) return Long.MIN_VALUE;
+            value = value * 10 + d;
+        }
+        if (digits == 0) return Long.MIN_VALUE;
+        return negative ? -value : value;
+    }
+
+    private static boolean isBlank(MappedByteBuffer buf, int from, int to) {
+        for (int i = from; i < to; i++) {
+            byte b = buf.get(i);
+            if (b != ' ' && b != '\t' && b != '\r') return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,202 @@
+package fragrant.app.search;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 候補シードのリストファイルだけを判定する検索
+ * ファイルをチャンクに分けてワーカーで並列に判定し、ヒットはファイル内の順に配信する
+ */
+public final class SeedListSearch implements Flow.Publisher<SearchHit> {
+    private final SearchQuery query;
+    private final SeedFile seeds;
+    private final FileChannel channel;
+    private final HitPublisher hits;
+    private final CpuThrottle throttle;
+    private final SeedTracer tracer;
+    private final int window;  // 配信待ちにできるチャンク数
+    private final Map<Long, List<SearchHit>> pending = new HashMap<>();
+    private final AtomicLong seedsChecked = new AtomicLong(0);
+    private final AtomicLong bytesProcessed = new AtomicLong(0);
+    private final AtomicLong hitCount = new AtomicLong(0);
+    private final AtomicLong invalidLines = new AtomicLong(0);
+    private final AtomicInteger activeWorkers;
+    private final CompletableFuture<Progress> completion = new CompletableFuture<>();
+    private final long startNanos = System.nanoTime();
+    private long nextChunk = 0;
+    private long nextToEmit = 0;
+    private volatile boolean cancelled = false;
+    private volatile Throwable failure;
+    private volatile long finishedNanos = 0;
+
+    /**
+     * リスト検索の進捗スナップショット
+     *
+     * @param seedsChecked 判定したシード数
+     * @param bytesProcessed 読み終えたバイト数
+     * @param totalBytes ファイルサイズ
+     * @param hitCount 見つかったシード数
+     * @param invalidLines 数値として読めなかった行の数
+     * @param elapsedTimeMs 経過時間
+     * @param done 検索が終了しているか
+     * @param cancelled 中断されたか
+     */
+    public record Progress(long seedsChecked, long bytesProcessed, long totalBytes, long hitCount,
+                           long invalidLines, long elapsedTimeMs, boolean done, boolean cancelled) {
+        public double fractionComplete() {
+            return totalBytes > 0 ? (double) bytesProcessed / totalBytes : 1.0;
+        }
+
+        public long seedsPerSecond() {
+            return elapsedTimeMs > 0 ? (long) (seedsChecked * 1000.0 / elapsedTimeMs) : 0;
+        }
+    }
+
+    SeedListSearch(SearchQuery query, SeedFile seeds, int hitBufferSize, Executor deliveryExecutor,
+                   CpuThrottle throttle, SeedTracer tracer) throws IOException {
+        this.query = query;
+        this.seeds = seeds;
+        this.channel = FileChannel.open(seeds.path(), StandardOpenOption.READ);
+        this.hits = new HitPublisher(hitBufferSize, deliveryExecutor, this::cancel);
+        this.throttle = throttle;
+        this.tracer = tracer;
+        this.window = query.threadCount() * 4;
+        this.activeWorkers = new AtomicInteger(query.threadCount());
+    }
+
+    public SearchQuery query() {
+        return query;
+    }
+
+    public SeedFile seeds() {
+        return seeds;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super SearchHit> subscriber) {
+        hits.subscribe(subscriber);
+    }
+
+    public void cancel() {
+        cancelled = true;
+        synchronized (this) {
+            notifyAll();
+        }
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public boolean isDone() {
+        return finishedNanos != 0;
+    }
+
+    public CompletableFuture<Progress> completion() {
+        return completion;
+    }
+
+    public Progress progress() {
+        long end = finishedNanos != 0 ? finishedNanos : System.nanoTime();
+        return new Progress(seedsChecked.get(), bytesProcessed.get(), seeds.size(), hitCount.get(),
+                invalidLines.get(), (end - startNanos) / 1_000_000, isDone(), cancelled);
+    }
+
+    /**
+     * ワーカーの処理（チャンクがなくなるまで判定を続ける）
+     */
+    void runWorker(SeedMatcher matcher) {
+        try {
+            long chunk;
+            while ((chunk = claim()) >= 0) {
+                long begin = System.nanoTime();
+                List<SearchHit> found = new ArrayList<>();
+                long[] checked = {0};
+                long every = tracer.getSampleEvery();
+                long invalid = seeds.scan(channel, chunk, seed -> {
+                    if (cancelled) return false;
+                    checked[0]++;
+                    if (every > 0 && seed % every == 0) tracer.trace(query, seed);
+                    SearchHit hit = matcher.match(seed);
+                    if (hit != null) found.add(hit);
+                    return true;
+                });
+                seedsChecked.addAndGet(checked[0]);
+                invalidLines.addAndGet(invalid);
+                if (cancelled) break;
+                emit(chunk, found);
+                bytesProcessed.addAndGet(seeds.chunkLength(chunk));
+                throttle.pace(System.nanoTime() - begin, this::isCancelled);
+            }
+        } catch (IOException | RuntimeException e) {
+            failure = e;
+            cancel();
+        } finally {
+            if (activeWorkers.decrementAndGet() == 0) {
+                finish();
+            }
+        }
+    }
+
+    /**
+     * 次のチャンクを取得（配信待ちが多すぎる場合は先頭のチャンクが終わるまで待つ）
+     *
+     * @return チャンク番号、残っていない場合は-1
+     */
+    private synchronized long claim() {
+        try {
+            while (!cancelled && nextChunk < seeds.chunkCount() && nextChunk - nextToEmit >= window) {
+                wait();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            cancelled = true;
+        }
+        if (cancelled || nextChunk >= seeds.chunkCount()) return -1;
+        return nextChunk++;
+    }
+
+    /**
+     * チャンクのヒットを登録し、ファイル順で先頭から揃った分を配信
+     */
+    private synchronized void emit(long chunk, List<SearchHit> found) {
+        pending.put(chunk, found);
+        List<SearchHit> ready;
+        while ((ready = pending.remove(nextToEmit)) != null) {
+            for (SearchHit hit : ready) {
+                if (!hits.publish(hit, this::isCancelled)) return;
+                hitCount.incrementAndGet();
+            }
+            nextToEmit++;
+        }
+        notifyAll();
+    }
+
+    private void finish() {
+        finishedNanos = System.nanoTime();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+
+        Throwable error = failure;
+        if (error != null) {
+            hits.fail(error);
+            completion.completeExceptionally(error);
+        } else {
+            hits.complete();
+            completion.complete(progress());
+        }
+    }
+}
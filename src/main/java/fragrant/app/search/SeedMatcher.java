@@ -0,0 +1,116 @@
+package fragrant.app.search;
+
+import fragrant.temple.generator.DesertTempleGenerator;
+import fragrant.temple.loot.DesertTempleLoot;
+import fragrant.temple.loot.LootType;
+import fragrant.utils.Position;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 1シード分の判定（ピラミッド配置 → 戦利品条件）を行う
+ * スレッドごとに1つ作成して使う
+ */
+public class SeedMatcher {
+    private final SearchQuery.TempleQuery[] temples;
+    private final Position.ChunkPos[] fixedPositions;
+    private final List<List<Position.ChunkPos>> foundTemples;
+
+    public SeedMatcher(SearchQuery query) {
+        List<SearchQuery.TempleQuery> list = query.temples();
+        this.temples = list.toArray(new SearchQuery.TempleQuery[0]);
+        this.fixedPositions = new Position.ChunkPos[temples.length];
+        this.foundTemples = new ArrayList<>(temples.length);
+
+        for (int i = 0; i < temples.length; i++) {
+            if (temples[i].isFixed()) {
+                fixedPositions[i] = temples[i].fixedPosition();
+                foundTemples.add(List.of(fixedPositions[i]));
+            } else {
+                foundTemples.add(List.of());
+            }
+        }
+    }
+
+    /**
+     * シードを判定する
+     *
+     * @return 条件に一致した場合はヒット、一致しない場合はnull
+     */
+    public SearchHit match(long seed) {
+        if (!findTemples(seed)) return null;
+        return checkLoot(seed);
+    }
+
+    /**
+     * すべてのピラミッドが配置されているか確認し、見つかった座標を保持
+     */
+    boolean findTemples(long seed) {
+        for (int i = 0; i < temples.length; i++) {
+            if (fixedPositions[i] != null) {
+                if (!DesertTempleGenerator.isTempleChunk(seed, fixedPositions[i])) {
+                    return false;
+                }
+            } else {
+                SearchQuery.Area area = temples[i].area();
+                List<Position.ChunkPos> rangeTemples = DesertTempleGenerator.getTemplesArea(
+                        seed, area.minX(), area.minZ(), area.maxX(), area.maxZ());
+                if (rangeTemples.isEmpty()) {
+                    return false;
+                }
+                foundTemples.set(i, rangeTemples);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 直前の findTemples で見つかったピラミッドの座標
+     */
+    List<Position.ChunkPos> foundTemples(int index) {
+        return foundTemples.get(index);
+    }
+
+    SearchQuery.TempleQuery temple(int index) {
+        return temples[index];
+    }
+
+    int templeCount() {
+        return temples.length;
+    }
+
+    /**
+     * 見つかったピラミッドの戦利品が条件を満たすか確認
+     */
+    SearchHit checkLoot(long seed) {
+        Map<Position.ChunkPos, List<LootType.LootItem>> cachedLoot = new HashMap<>();
+        Position.ChunkPos matchingPos = null;
+
+        for (int i = 0; i < temples.length; i++) {
+            List<ConditionalItem> knownContents = temples[i].conditions();
+            if (knownContents.isEmpty()) continue;
+
+            boolean foundMatch = false;
+            for (Position.ChunkPos pos : foundTemples.get(i)) {
+                List<LootType.LootItem> generatedLoot = cachedLoot.computeIfAbsent(pos,
+                        p -> DesertTempleLoot.generateLoot(seed, p.x(), p.z()));
+
+                if (Searcher.checkMatch(knownContents, generatedLoot)) {
+                    foundMatch = true;
+                    if (matchingPos == null) matchingPos = pos;
+                    break;
+                }
+            }
+
+            if (!foundMatch) {
+                return null;
+            }
+        }
+
+        if (matchingPos == null) return null;
+        return new SearchHit(seed, matchingPos, cachedLoot.get(matchingPos));
+    }
+}
@@ -0,0 +1,222 @@
+package fragrant.app.search;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.function.LongPredicate;
+
+/**
+ * 32bitシードの集合のファイル（.bss）
+ * シードを上位16bitごとのブロックに分け、ブロック内の下位16bitを件数に応じて
+ * 並べた配列（4096件以下）かビットマップ（8KB）で持つ。ファイル全体をメモリマップして読む
+ *
+ * <pre>
+ * ヘッダー（32バイト、リトルエンディアン）:
+ *   int MAGIC, int VERSION, long 件数, int ブロック数, int 0, long 目次の位置
+ * ブロックのデータ（上位16bitの昇順）:
+ *   配列: 下位16bitを符号なしshortで昇順に件数分 / ビットマップ: long × 1024
+ * 目次（ブロックごとに16バイト）:
+ *   int 上位16bit, int 件数, long データの位置
+ * </pre>
+ */
+public final class SeedSet {
+    public static final int MAGIC = 0x31535342; // "BSS1"
+    public static final int VERSION = 1;
+    public static final String EXTENSION = ".bss";
+    public static final long SEED_LIMIT = 1L << 32;
+    static final int HEADER_BYTES = 32;
+    static final int DIRECTORY_ENTRY_BYTES = 16;
+    static final int BLOCK_VALUES = 1 << 16;
+    static final int BITMAP_WORDS = BLOCK_VALUES / 64;
+    // これを超える件数のブロックはビットマップにする（配列の方が小さい間は配列）
+    static final int ARRAY_MAX = 4096;
+
+    private final Path path;
+    private final MappedByteBuffer buf;
+    private final long cardinality;
+    private final int[] keys;
+    private final int[] counts;
+    private final int[] offsets;
+
+    private SeedSet(Path path, MappedByteBuffer buf, long cardinality, int[] keys, int[] counts, int[] offsets) {
+        this.path = path;
+        this.buf = buf;
+        this.cardinality = cardinality;
+        this.keys = keys;
+        this.counts = counts;
+        this.offsets = offsets;
+    }
+
+    public static SeedSet open(Path path) throws IOException {
+        MappedByteBuffer buf;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_BYTES || channel.size() > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("not a seed set file: " + path);
+            }
+            buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        buf.order(ByteOrder.LITTLE_ENDIAN);
+        if (buf.getInt(0) != MAGIC) throw new IllegalArgumentException("not a seed set file: " + path);
+        if (buf.getInt(4) != VERSION) {
+            throw new IllegalArgumentException("unsupported seed set version " + buf.getInt(4) + ": " + path);
+        }
+
+        long cardinality = buf.getLong(8);
+        int blockCount = buf.getInt(16);
+        long directory = buf.getLong(24);
+        if (blockCount < 0 || blockCount > BLOCK_VALUES
+                || directory < HEADER_BYTES || directory + (long) blockCount * DIRECTORY_ENTRY_BYTES > buf.limit()) {
+            throw new IllegalArgumentException("corrupt seed set header: " + path);
+        }
+
+        int[] keys = new int[blockCount];
+        int[] counts = new int[blockCount];
+        int[] offsets = new int[blockCount];
+        long total = 0;
+        for (int i = 0; i < blockCount; i++) {
+            int entry = (int) directory + i * DIRECTORY_ENTRY_BYTES;
+            keys[i] = buf.getInt(entry);
+            counts[i] = buf.getInt(entry + 4);
+            long offset = buf.getLong(entry + 8);
+            if (keys[i] < 0 || keys[i] >= BLOCK_VALUES || (i > 0 && keys[i] <= keys[i - 1])
+                    || counts[i] <= 0 || counts[i] > BLOCK_VALUES
+                    || offset < HEADER_BYTES || offset + bytesFor(counts[i]) > directory) {
+                throw new IllegalArgumentException("corrupt seed set block " + i + ": " + path);
+            }
+            offsets[i] = (int) offset;
+            total += counts[i];
+        }
+        if (total != cardinality) throw new IllegalArgumentException("corrupt seed set count: " + path);
+        return new SeedSet(path, buf, cardinality, keys, counts, offsets);
+    }
+
+    /**
+     * 件数からブロックのデータのバイト数
+     */
+    static int bytesFor(int count) {
+        return count > ARRAY_MAX ? BITMAP_WORDS * 8 : count * 2;
+    }
+
+    public Path path() {
+        return path;
+    }
+
+    public long cardinality() {
+        return cardinality;
+    }
+
+    public int blockCount() {
+        return keys.length;
+    }
+
+    public int key(int block) {
+        return keys[block];
+    }
+
+    public int blockCardinality(int block) {
+        return counts[block];
+    }
+
+    public int blockBytes(int block) {
+        return bytesFor(counts[block]);
+    }
+
+    /**
+     * すべてのブロックのデータのバイト数
+     */
+    public long dataBytes() {
+        long bytes = 0;
+        for (int count : counts) bytes += bytesFor(count);
+        return bytes;
+    }
+
+    /**
+     * ブロックの位置（見つからなければ -(挿入位置) - 1）
+     */
+    public int findBlock(int key) {
+        return Arrays.binarySearch(keys, key);
+    }
+
+    public boolean contains(long seed) {
+        if (seed < 0 || seed >= SEED_LIMIT) return false;
+        int block = findBlock((int) (seed >>> 16));
+        if (block < 0) return false;
+
+        int low = (int) (seed & 0xFFFF);
+        int offset = offsets[block];
+        if (counts[block] > ARRAY_MAX) {
+            return (buf.getLong(offset + (low >>> 6) * 8) & (1L << low)) != 0;
+        }
+        int from = 0;
+        int to = counts[block] - 1;
+        while (from <= to) {
+            int mid = (from + to) >>> 1;
+            int value = Short.toUnsignedInt(buf.getShort(offset + mid * 2));
+            if (value < low) {
+                from = mid + 1;
+            } else if (value > low) {
+                to = mid - 1;
+            } else {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * ブロックをビットマップとして読む
+     *
+     * @param bitmap 長さ1024の配列（上書きされる）
+     */
+    public void readBitmap(int block, long[] bitmap) {
+        int offset = offsets[block];
+        if (counts[block] > ARRAY_MAX) {
+            for (int i = 0; i < BITMAP_WORDS; i++) bitmap[i] = buf.getLong(offset + i * 8);
+            return;
+        }
+        Arrays.fill(bitmap, 0);
+        for (int i = 0; i < counts[block]; i++) {
+            int value = Short.toUnsignedInt(buf.getShort(offset + i * 2));
+            bitmap[value >>> 6] |= 1L << value;
+        }
+    }
+
+    /**
+     * ブロック内のシードを昇順に渡す
+     *
+     * @param consumer false を返すと中断する
+     * @return 最後まで渡した場合は true
+     */
+    public boolean forEachInBlock(int block, LongPredicate consumer) {
+        long high = (long) keys[block] << 16;
+        int offset = offsets[block];
+        if (counts[block] > ARRAY_MAX) {
+            for (int i = 0; i < BITMAP_WORDS; i++) {
+                long word = buf.getLong(offset + i * 8);
+                while (word != 0) {
+                    int bit = Long.numberOfTrailingZeros(word);
+                    if (!consumer.test(high | (i << 6 | bit))) return false;
+                    word &= word - 1;
+                }
+            }
+            return true;
+        }
+        for (int i = 0; i < counts[block]; i++) {
+            if (!consumer.test(high | Short.toUnsignedInt(buf.getShort(offset + i * 2)))) return false;
+        }
+        return true;
+    }
+
+    /**
+     * すべてのシードを昇順に渡す
+     */
+    public void forEach(LongPredicate consumer) {
+        for (int block = 0; block < keys.length; block++) {
+            if (!forEachInBlock(block, consumer)) return;
+        }
+    }
+}
@@ -0,0 +1,279 @@
+package fragrant.app.search;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * シードの集合のファイル同士の演算（和・積・差）
+ * 上位16bitが同じブロック同士をビットマップで演算する。ブロックは一定数ずつ並列に処理し、
+ * 結果はキーの順にそのままファイルへ書く（同時に処理中のブロックは threads * 2 組まで）
+ *
+ * <pre>
+ * --seedset union|intersect|difference a.bss b.bss out.bss [--threads N]
+ * --seedset import seeds.txt out.bss   （SeedFile が読める形式から作る）
+ * --seedset export set.bss seeds.txt
+ * --seedset info set.bss
+ * </pre>
+ */
+public enum SeedSetOperation {
+    UNION, INTERSECTION, DIFFERENCE;
+
+    private static final int BLOCKS_PER_TASK = 64;
+
+    /**
+     * 演算結果の1ブロック（件数が0なら書かない）
+     */
+    private record Block(int key, long[] bitmap, int count) { }
+
+    /**
+     * 演算するブロックの組（片方にない場合は-1）
+     */
+    private record Pair(int key, int a, int b) { }
+
+    /**
+     * a と b を演算して out に書く
+     *
+     * @return 結果の件数
+     */
+    public long apply(SeedSet a, SeedSet b, Path out, int threads) throws IOException {
+        checkOutput(out, a.path(), b.path());
+        List<Pair> pairs = pairs(a, b);
+        AtomicInteger threadNumber = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, threads), r -> {
+            Thread thread = new Thread(r, "seed-set-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try (SeedSetWriter writer = new SeedSetWriter(out)) {
+            Deque<Future<List<Block>>> pending = new ArrayDeque<>();
+            int next = 0;
+            while (next < pairs.size() || !pending.isEmpty()) {
+                while (next < pairs.size() && pending.size() < Math.max(1, threads) * 2) {
+                    List<Pair> task = pairs.subList(next, Math.min(pairs.size(), next + BLOCKS_PER_TASK));
+                    next += task.size();
+                    pending.addLast(executor.submit(() -> compute(task, a, b)));
+                }
+                for (Block block : await(pending.removeFirst())) {
+                    writer.addBlock(block.key(), block.bitmap(), block.count());
+                }
+            }
+            writer.commit();
+            return writer.cardinality();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * 結果に関係するブロックの組をキーの順に並べる
+     */
+    private List<Pair> pairs(SeedSet a, SeedSet b) {
+        List<Pair> pairs = new ArrayList<>();
+        int i = 0;
+        int j = 0;
+        while (i < a.blockCount() || j < b.blockCount()) {
+            int keyA = i < a.blockCount() ? a.key(i) : Integer.MAX_VALUE;
+            int keyB = j < b.blockCount() ? b.key(j) : Integer.MAX_VALUE;
+            int key = Math.min(keyA, keyB);
+            int blockA = keyA == key ? i++ : -1;
+            int blockB = keyB == key ? j++ : -1;
+            boolean needed = switch (this) {
+                case UNION -> true;
+                case INTERSECTION -> blockA >= 0 && blockB >= 0;
+                case DIFFERENCE -> blockA >= 0;
+            };
+            if (needed) pairs.add(new Pair(key, blockA, blockB));
+        }
+        return pairs;
+    }
+
+    private List<Block> compute(List<Pair> task, SeedSet a, SeedSet b) {
+        List<Block> blocks = new ArrayList<>(task.size());
+        long[] other = new long[SeedSet.BITMAP_WORDS];
+        for (Pair pair : task) {
+            long[] result = new long[SeedSet.BITMAP_WORDS];
+            if (pair.a() >= 0) a.readBitmap(pair.a(), result);
+            if (pair.b() >= 0) {
+                b.readBitmap(pair.b(), other);
+            } else {
+                Arrays.fill(other, 0);
+            }
+
+            int count = 0;
+            for (int w = 0; w < SeedSet.BITMAP_WORDS; w++) {
+                long word = switch (this) {
+                    case UNION -> result[w] | other[w];
+                    case INTERSECTION -> result[w] & other[w];
+                    case DIFFERENCE -> result[w] & ~other[w];
+                };
+                result[w] = word;
+                count += Long.bitCount(word);
+            }
+            if (count > 0) blocks.add(new Block(pair.key(), result, count));
+        }
+        return blocks;
+    }
+
+    private static <T> T await(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("seed set operation interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof UncheckedIOException io) throw io.getCause();
+            throw new IllegalStateException("seed set operation failed", e.getCause());
+        }
+    }
+
+    /**
+     * 候補シードのリスト（SeedFile が読める形式）から集合のファイルを作る
+     * 1回目の読み取りで範囲と並び順を確かめ、昇順ならそのまま書き、順不同なら全件を並べ替えてから書く
+     *
+     * @return 結果の件数
+     */
+    public static long importList(Path list, Path out) throws IOException {
+        checkOutput(out, list);
+        SeedFile seeds = SeedFile.open(list);
+        boolean[] sorted = {true};
+        long[] last = {-1};
+        long[] count = {0};
+        try (FileChannel channel = FileChannel.open(list, StandardOpenOption.READ)) {
+            for (long chunk = 0; chunk < seeds.chunkCount(); chunk++) {
+                seeds.scan(channel, chunk, seed -> {
+                    if (seed < 0 || seed >= SeedSet.SEED_LIMIT) {
+                        throw new IllegalArgumentException("seed out of range: " + seed);
+                    }
+                    if (seed < last[0]) sorted[0] = false;
+                    last[0] = seed;
+                    count[0]++;
+                    return true;
+                });
+            }
+
+            if (sorted[0]) {
+                try (SeedSetWriter writer = new SeedSetWriter(out)) {
+                    for (long chunk = 0; chunk < seeds.chunkCount(); chunk++) {
+                        seeds.scan(channel, chunk, seed -> {
+                            try {
+                                writer.add(seed);
+                            } catch (IOException e) {
+                                throw new UncheckedIOException(e);
+                            }
+                            return true;
+                        });
+                    }
+                    writer.commit();
+                    return writer.cardinality();
+                } catch (UncheckedIOException e) {
+                    throw e.getCause();
+                }
+            }
+
+            if (count[0] > Integer.MAX_VALUE - 8) throw new IllegalArgumentException("too many seeds: " + count[0]);
+            long[] all = new long[(int) count[0]];
+            int[] size = {0};
+            for (long chunk = 0; chunk < seeds.chunkCount(); chunk++) {
+                seeds.scan(channel, chunk, seed -> {
+                    all[size[0]++] = seed;
+                    return true;
+                });
+            }
+            return SeedSetWriter.write(out, all);
+        }
+    }
+
+    /**
+     * 集合のファイルを1行1シードのテキストに書き出す
+     */
+    public static long exportText(SeedSet set, Path out) throws IOException {
+        checkOutput(out, set.path());
+        try (BufferedWriter writer = Files.newBufferedWriter(out)) {
+            long[] written = {0};
+            set.forEach(seed -> {
+                try {
+                    writer.write(Long.toString(seed));
+                    writer.newLine();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                written[0]++;
+                return true;
+            });
+            return written[0];
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * 出力先が入力のファイルでないことを確かめる（メモリマップしている入力を書き換えると読み取りが壊れる）
+     */
+    private static void checkOutput(Path out, Path... inputs) throws IOException {
+        if (!Files.exists(out)) return;
+        for (Path input : inputs) {
+            if (Files.isSameFile(out, input)) {
+                throw new IllegalArgumentException("output must not be one of the inputs: " + out);
+            }
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            throw new IllegalArgumentException(
+                    "usage: --seedset union|intersect|difference|import|export|info <files...> [--threads N]");
+        }
+        int threads = Runtime.getRuntime().availableProcessors();
+        List<String> files = new ArrayList<>();
+        for (int i = 1; i < args.length; i++) {
+            if ("--threads".equals(args[i])) {
+                threads = Integer.parseInt(args[++i]);
+            } else {
+                files.add(args[i]);
+            }
+        }
+
+        long begin = System.nanoTime();
+        long count = switch (args[0]) {
+            case "union", "intersect", "difference" -> {
+                if (files.size() != 3) throw new IllegalArgumentException(args[0] + " needs <a> <b> <out>");
+                SeedSetOperation op = switch (args[0]) {
+                    case "union" -> UNION;
+                    case "intersect" -> INTERSECTION;
+                    default -> DIFFERENCE;
+                };
+                yield op.apply(SeedSet.open(Path.of(files.get(0))), SeedSet.open(Path.of(files.get(1))),
+                        Path.of(files.get(2)), threads);
+            }
+            case "import" -> importList(Path.of(files.get(0)), Path.of(files.get(1)));
+            case "export" -> exportText(SeedSet.open(Path.of(files.get(0))), Path.of(files.get(1)));
+            case "info" -> {
+                SeedSet set = SeedSet.open(Path.of(files.get(0)));
+                int bitmaps = 0;
+                for (int block = 0; block < set.blockCount(); block++) {
+                    if (set.blockCardinality(block) > SeedSet.ARRAY_MAX) bitmaps++;
+                }
+                System.out.printf("blocks=%d (bitmap %d, array %d), data=%,d bytes%n", set.blockCount(), bitmaps,
+                        set.blockCount() - bitmaps, set.dataBytes());
+                yield set.cardinality();
+            }
+            default -> throw new IllegalArgumentException("unknown seed set command: " + args[0]);
+        };
+        System.out.printf("%,d seeds (%d ms)%n", count, (System.nanoTime() - begin) / 1_000_000);
+    }
+}
@@ -0,0 +1,167 @@
+package fragrant.app.search;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * シードの集合のファイル（SeedSet の形式）を先頭から順に書く
+ * シードは昇順に渡す（同じシードは無視する）
+ * 隣の一時ファイルに書き、commit() で目次とヘッダーを書いてから出力先と置き換える
+ * commit() せずに close() した場合（途中で失敗した場合）は一時ファイルを消し、出力先は変わらない
+ */
+public final class SeedSetWriter implements Closeable {
+    private final Path path;
+    private final Path temp;
+    private final FileChannel channel;
+    private final ByteBuffer directory;
+    private final long[] bitmap = new long[SeedSet.BITMAP_WORDS];
+    private final ByteBuffer block = ByteBuffer.allocate(SeedSet.BITMAP_WORDS * 8).order(ByteOrder.LITTLE_ENDIAN);
+    private long position = SeedSet.HEADER_BYTES;
+    private long cardinality;
+    private int blockCount;
+    private int lastKey = -1;
+    private long lastSeed = -1;
+    // add() で集めている途中のブロック
+    private int currentKey = -1;
+    private int currentCount;
+    private boolean closed;
+
+    public SeedSetWriter(Path path) throws IOException {
+        this.path = path;
+        this.temp = path.resolveSibling(path.getFileName() + ".tmp");
+        this.channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        this.directory = ByteBuffer.allocate(SeedSet.BLOCK_VALUES * SeedSet.DIRECTORY_ENTRY_BYTES)
+                .order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * 昇順にシードを1つ追加する
+     */
+    public void add(long seed) throws IOException {
+        if (seed < 0 || seed >= SeedSet.SEED_LIMIT) {
+            throw new IllegalArgumentException("seed out of range: " + seed);
+        }
+        if (seed <= lastSeed) {
+            if (seed == lastSeed) return;
+            throw new IllegalArgumentException("seeds must be added in ascending order: " + seed + " after " + lastSeed);
+        }
+        lastSeed = seed;
+
+        int key = (int) (seed >>> 16);
+        if (key != currentKey) {
+            flushCurrent();
+            currentKey = key;
+        }
+        int low = (int) (seed & 0xFFFF);
+        bitmap[low >>> 6] |= 1L << low;
+        currentCount++;
+    }
+
+    private void flushCurrent() throws IOException {
+        if (currentCount > 0) {
+            addBlock(currentKey, bitmap, currentCount);
+        }
+        Arrays.fill(bitmap, 0);
+        currentCount = 0;
+    }
+
+    /**
+     * ブロックを1つまとめて追加する（集合演算用）
+     *
+     * @param key 上位16bit（前のブロックより大きいこと）
+     * @param values 下位16bitのビットマップ（長さ1024）
+     * @param count ビットマップの立っているビットの数（0なら何もしない）
+     */
+    public void addBlock(int key, long[] values, int count) throws IOException {
+        if (count == 0) return;
+        if (key <= lastKey || key >= SeedSet.BLOCK_VALUES) {
+            throw new IllegalArgumentException("blocks must be added in ascending key order: " + key);
+        }
+        lastKey = key;
+
+        block.clear();
+        if (count > SeedSet.ARRAY_MAX) {
+            for (long word : values) block.putLong(word);
+        } else {
+            for (int i = 0; i < values.length; i++) {
+                long word = values[i];
+                while (word != 0) {
+                    block.putShort((short) (i << 6 | Long.numberOfTrailingZeros(word)));
+                    word &= word - 1;
+                }
+            }
+        }
+        block.flip();
+        directory.putInt(key).putInt(count).putLong(position);
+        while (block.hasRemaining()) {
+            position += channel.write(block, position);
+        }
+        cardinality += count;
+        blockCount++;
+    }
+
+    public long cardinality() {
+        return cardinality + currentCount;
+    }
+
+    /**
+     * 目次とヘッダーを書き、出力先のファイルを置き換える
+     */
+    public void commit() throws IOException {
+        if (closed) throw new IllegalStateException("writer is already closed");
+        flushCurrent();
+        long directoryOffset = position;
+        directory.flip();
+        while (directory.hasRemaining()) {
+            position += channel.write(directory, position);
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(SeedSet.HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(SeedSet.MAGIC).putInt(SeedSet.VERSION).putLong(cardinality).putInt(blockCount).putInt(0)
+                .putLong(directoryOffset);
+        header.flip();
+        long at = 0;
+        while (header.hasRemaining()) {
+            at += channel.write(header, at);
+        }
+        channel.close();
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        closed = true;
+    }
+
+    /**
+     * commit() していなければ書きかけの一時ファイルを消す
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        try {
+            channel.close();
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * 任意の順のシードを並べ替えて書く
+     */
+    public static long write(Path path, long[] seeds) throws IOException {
+        long[] sorted = seeds.clone();
+        Arrays.parallelSort(sorted);
+        try (SeedSetWriter writer = new SeedSetWriter(path)) {
+            for (long seed : sorted) writer.add(seed);
+            writer.commit();
+            return writer.cardinality();
+        }
+    }
+}
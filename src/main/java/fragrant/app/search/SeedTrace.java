@@ -0,0 +1,60 @@
+package fragrant.app.search;
+
+import fragrant.utils.Position;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 1シード分の判定の記録（トレース用）
+ *
+ * @param seed ワールドシード
+ * @param stage 判定が終わった段階
+ * @param detail 不一致の理由（一致した場合はnull）
+ * @param placementNanos ピラミッド配置の判定にかかった時間
+ * @param lootNanos 戦利品の生成と判定にかかった時間
+ * @param temples 判定したピラミッドごとの記録（不一致が確定した時点まで）
+ */
+public record SeedTrace(long seed, Stage stage, String detail, long placementNanos, long lootNanos,
+                        List<TempleTrace> temples) {
+
+    public enum Stage {
+        PLACEMENT,      // ピラミッドが配置されていない
+        CLUSTER,        // 密集の条件（SearchQuery.cluster()）を満たすピラミッドがない
+        LOOT,           // 戦利品条件を満たさない
+        NO_CONDITIONS,  // 戦利品条件が1つもない（通常の検索では一致しない）
+        MATCHED
+    }
+
+    /**
+     * 1つのピラミッドの記録
+     *
+     * @param index SearchQuery.temples() の番号
+     * @param fixed 1チャンクだけを判定したか
+     * @param found 見つかったピラミッドの座標
+     * @param cellTemple 座標指定で配置されなかった場合に、同じグリッドに配置されたピラミッドの座標
+     * @param loot 戦利品を生成した座標ごとの記録
+     */
+    public record TempleTrace(int index, boolean fixed, List<Position.ChunkPos> found, Position.ChunkPos cellTemple,
+                              List<LootTrace> loot) { }
+
+    /**
+     * 1つの座標の戦利品の記録
+     *
+     * @param position チャンク座標
+     * @param chunkSeed チャンクシード
+     * @param chestSeeds 4つのチェストシード
+     * @param chestCounts チェストごとのアイテム数（分け方は Searcher.checkMatch と同じ）
+     * @param failedCondition 満たさなかった最初の条件（満たした場合はnull）
+     */
+    public record LootTrace(Position.ChunkPos position, int chunkSeed, List<Integer> chestSeeds,
+                            List<Map<String, Integer>> chestCounts, String failedCondition) {
+        public boolean matched() {
+            return failedCondition == null;
+        }
+    }
+
+    public boolean matched() {
+        return stage == Stage.MATCHED;
+    }
+}
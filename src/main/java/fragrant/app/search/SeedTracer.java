@@ -0,0 +1,316 @@
+package fragrant.app.search;
+
+import fragrant.temple.generator.DesertTempleGenerator;
+import fragrant.temple.loot.DesertTempleLoot;
+import fragrant.temple.loot.LootType;
+import fragrant.utils.BedrockRandom;
+import fragrant.utils.Position;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 一部のシードについて判定の詳細を記録する（遅い検索や結果が出ない検索の調査用）
+ * 記録するのは {@link #setSampleEvery} の倍数のシードだけで、記録は上限付きのリングバッファに残す
+ * 無効（0）の場合、検索側はブロックごとに設定を1回読むだけで判定の処理は変わらない
+ */
+public final class SeedTracer {
+    public static final int DEFAULT_CAPACITY = 256;
+    private final SeedTrace[] ring;
+    private long recorded = 0;
+    private volatile long sampleEvery = 0;
+
+    public SeedTracer() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public SeedTracer(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        this.ring = new SeedTrace[capacity];
+    }
+
+    /**
+     * @param every every の倍数のシードを記録する（0で無効）
+     */
+    public void setSampleEvery(long every) {
+        if (every < 0) {
+            throw new IllegalArgumentException("sampleEvery must not be negative: " + every);
+        }
+        this.sampleEvery = every;
+    }
+
+    public long getSampleEvery() {
+        return sampleEvery;
+    }
+
+    public boolean isEnabled() {
+        return sampleEvery > 0;
+    }
+
+    /**
+     * from 以上で最初に記録するシード（無効な場合は Long.MAX_VALUE）
+     */
+    static long firstSample(long from, long every) {
+        if (every <= 0) return Long.MAX_VALUE;
+        return Math.ceilDiv(from, every) * every;
+    }
+
+    void trace(SearchQuery query, long seed) {
+        SeedTrace trace = evaluate(query, seed);
+        synchronized (this) {
+            ring[(int) (recorded++ % ring.length)] = trace;
+        }
+    }
+
+    /**
+     * 記録されたトレース（古い順、最大 capacity 件）
+     */
+    public synchronized List<SeedTrace> traces() {
+        int size = (int) Math.min(recorded, ring.length);
+        List<SeedTrace> list = new ArrayList<>(size);
+        for (long i = recorded - size; i < recorded; i++) {
+            list.add(ring[(int) (i % ring.length)]);
+        }
+        return list;
+    }
+
+    /**
+     * これまでに記録した件数（リングバッファから消えた分も含む）
+     */
+    public synchronized long recorded() {
+        return recorded;
+    }
+
+    public synchronized void clear() {
+        Arrays.fill(ring, null);
+        recorded = 0;
+    }
+
+    /**
+     * SeedMatcher と同じ手順で1シードを判定し、途中経過を記録する
+     * 密集の条件がある場合は ClusterMatcher と同じ判定を、範囲内の全ピラミッドから素直に行う
+     */
+    public static SeedTrace evaluate(SearchQuery query, long seed) {
+        if (query.cluster() != null) return evaluateCluster(query, seed);
+
+        List<SearchQuery.TempleQuery> queries = query.temples();
+        List<SeedTrace.TempleTrace> temples = new ArrayList<>();
+        List<List<Position.ChunkPos>> found = new ArrayList<>();
+        long placementNanos = 0;
+
+        for (int i = 0; i < queries.size(); i++) {
+            SearchQuery.TempleQuery temple = queries.get(i);
+            long begin = System.nanoTime();
+            List<Position.ChunkPos> positions;
+            if (temple.isFixed()) {
+                Position.ChunkPos pos = temple.fixedPosition();
+                positions = DesertTempleGenerator.isTempleChunk(seed, pos) ? List.of(pos) : List.of();
+            } else {
+                SearchQuery.Area area = temple.area();
+                positions = DesertTempleGenerator.getTemplesArea(seed, area.minX(), area.minZ(), area.maxX(), area.maxZ());
+            }
+            placementNanos += System.nanoTime() - begin;
+
+            if (positions.isEmpty()) {
+                Position.ChunkPos cellTemple = temple.isFixed() ? cellTemple(seed, temple.fixedPosition()) : null;
+                temples.add(new SeedTrace.TempleTrace(i, temple.isFixed(), positions, cellTemple, List.of()));
+                String detail = "temple " + (i + 1) + (temple.isFixed()
+                        ? " not at " + temple.fixedPosition() + " (grid has " + cellTemple + ")"
+                        : " not in area");
+                return new SeedTrace(seed, SeedTrace.Stage.PLACEMENT, detail, placementNanos, 0, temples);
+            }
+            found.add(positions);
+        }
+
+        if (queries.stream().noneMatch(SearchQuery.TempleQuery::hasConditions)) {
+            for (int i = 0; i < queries.size(); i++) {
+                temples.add(new SeedTrace.TempleTrace(i, queries.get(i).isFixed(), found.get(i), null, List.of()));
+            }
+            return new SeedTrace(seed, SeedTrace.Stage.NO_CONDITIONS, "no loot conditions", placementNanos, 0, temples);
+        }
+
+        long lootNanos = 0;
+        for (int i = 0; i < queries.size(); i++) {
+            SearchQuery.TempleQuery temple = queries.get(i);
+            List<SeedTrace.LootTrace> loot = new ArrayList<>();
+            boolean matched = !temple.hasConditions();
+            if (!matched) {
+                for (Position.ChunkPos pos : found.get(i)) {
+                    long begin = System.nanoTime();
+                    List<LootType.LootItem> items = DesertTempleLoot.generateLoot(seed, pos.x(), pos.z());
+                    boolean ok = Searcher.checkMatch(temple.conditions(), items);
+                    lootNanos += System.nanoTime() - begin;
+
+                    loot.add(traceLoot(seed, pos, items, ok ? null : temple.conditions()));
+                    if (ok) {
+                        matched = true;
+                        break;
+                    }
+                }
+            }
+            temples.add(new SeedTrace.TempleTrace(i, temple.isFixed(), found.get(i), null, loot));
+
+            if (!matched) {
+                String detail = "temple " + (i + 1) + ": " + loot.getFirst().failedCondition();
+                return new SeedTrace(seed, SeedTrace.Stage.LOOT, detail, placementNanos, lootNanos, temples);
+            }
+        }
+        return new SeedTrace(seed, SeedTrace.Stage.MATCHED, null, placementNanos, lootNanos, temples);
+    }
+
+    /**
+     * 密集の条件付きの判定（ClusterMatcher と同じ結果になる基準の実装）
+     * 最初のピラミッドの範囲内のピラミッドをグリッド順に起点とし、起点を含み互いに距離内にある
+     * cluster.count() 個のピラミッドがあり、起点の戦利品が条件を満たすものを探す
+     * 他のピラミッドがある場合は、密集の条件を除いた通常の判定も満たす必要がある
+     */
+    private static SeedTrace evaluateCluster(SearchQuery query, long seed) {
+        SearchQuery.Cluster cluster = query.cluster();
+        SearchQuery.TempleQuery first = query.temples().getFirst();
+        Position.ChunkPos fixed = first.fixedPosition();
+        SearchQuery.Area area = first.area() != null ? first.area()
+                : new SearchQuery.Area(fixed.x(), fixed.z(), fixed.x(), fixed.z());
+        long radius2 = (long) cluster.radius() * cluster.radius();
+
+        long begin = System.nanoTime();
+        List<Position.ChunkPos> anchors = new ArrayList<>(DesertTempleGenerator.getTemplesArea(
+                seed, area.minX(), area.minZ(), area.maxX(), area.maxZ()));
+        int spacing = DesertTempleGenerator.SPACING;
+        anchors.sort(Comparator.<Position.ChunkPos>comparingInt(p -> Math.floorDiv(p.x(), spacing))
+                .thenComparingInt(p -> Math.floorDiv(p.z(), spacing)));
+        List<Position.ChunkPos> clustered = new ArrayList<>();
+        for (Position.ChunkPos anchor : anchors) {
+            List<Position.ChunkPos> near = new ArrayList<>();
+            for (Position.ChunkPos pos : DesertTempleGenerator.getTemplesArea(seed,
+                    clamp((long) anchor.x() - cluster.radius()), clamp((long) anchor.z() - cluster.radius()),
+                    clamp((long) anchor.x() + cluster.radius()), clamp((long) anchor.z() + cluster.radius()))) {
+                if (!pos.equals(anchor) && distance2(anchor, pos) <= radius2) near.add(pos);
+            }
+            if (hasClique(near, new ArrayList<>(), 0, cluster.count() - 1, radius2)) clustered.add(anchor);
+        }
+        long placementNanos = System.nanoTime() - begin;
+
+        List<SeedTrace.TempleTrace> temples = new ArrayList<>();
+        if (clustered.isEmpty()) {
+            temples.add(new SeedTrace.TempleTrace(0, first.isFixed(), anchors, null, List.of()));
+            String detail = anchors.isEmpty()
+                    ? "temple 1 not in area"
+                    : "no " + cluster.count() + " temples within " + cluster.radius() + " chunks of temple 1";
+            SeedTrace.Stage stage = anchors.isEmpty() ? SeedTrace.Stage.PLACEMENT : SeedTrace.Stage.CLUSTER;
+            return new SeedTrace(seed, stage, detail, placementNanos, 0, temples);
+        }
+
+        long lootNanos = 0;
+        List<SeedTrace.LootTrace> loot = new ArrayList<>();
+        boolean matched = false;
+        for (Position.ChunkPos anchor : clustered) {
+            begin = System.nanoTime();
+            List<LootType.LootItem> items = DesertTempleLoot.generateLoot(seed, anchor.x(), anchor.z());
+            boolean ok = Searcher.checkMatch(first.conditions(), items);
+            lootNanos += System.nanoTime() - begin;
+
+            loot.add(traceLoot(seed, anchor, items, ok ? null : first.conditions()));
+            if (ok) {
+                matched = true;
+                break;
+            }
+        }
+        temples.add(new SeedTrace.TempleTrace(0, first.isFixed(), clustered, null, loot));
+        if (!matched) {
+            String detail = "temple 1: " + loot.getFirst().failedCondition();
+            return new SeedTrace(seed, SeedTrace.Stage.LOOT, detail, placementNanos, lootNanos, temples);
+        }
+        if (query.temples().size() == 1) {
+            return new SeedTrace(seed, SeedTrace.Stage.MATCHED, null, placementNanos, lootNanos, temples);
+        }
+
+        // 他のピラミッドは通常の判定の結果をそのまま使う（最初のピラミッドの記録だけ密集の判定に置き換える）
+        SeedTrace rest = evaluate(query.withCluster(null), seed);
+        if (rest.temples().size() > 1) temples.addAll(rest.temples().subList(1, rest.temples().size()));
+        return new SeedTrace(seed, rest.stage(), rest.detail(), placementNanos + rest.placementNanos(),
+                lootNanos + rest.lootNanos(), temples);
+    }
+
+    /**
+     * candidates[from..] から、chosen のすべてと互いに距離内のものを remaining 個選べるか
+     */
+    private static boolean hasClique(List<Position.ChunkPos> candidates, List<Position.ChunkPos> chosen, int from,
+                                     int remaining, long radius2) {
+        if (remaining == 0) return true;
+        for (int i = from; i < candidates.size(); i++) {
+            Position.ChunkPos pos = candidates.get(i);
+            if (chosen.stream().anyMatch(other -> distance2(pos, other) > radius2)) continue;
+            chosen.add(pos);
+            if (hasClique(candidates, chosen, i + 1, remaining - 1, radius2)) return true;
+            chosen.removeLast();
+        }
+        return false;
+    }
+
+    private static long distance2(Position.ChunkPos a, Position.ChunkPos b) {
+        long dx = (long) a.x() - b.x();
+        long dz = (long) a.z() - b.z();
+        return dx * dx + dz * dz;
+    }
+
+    private static int clamp(long value) {
+        return (int) Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, value));
+    }
+
+    /**
+     * 指定したチャンクと同じグリッドに配置されたピラミッド
+     */
+    private static Position.ChunkPos cellTemple(long seed, Position.ChunkPos pos) {
+        int spacing = DesertTempleGenerator.SPACING;
+        int minX = Math.floorDiv(pos.x(), spacing) * spacing;
+        int minZ = Math.floorDiv(pos.z(), spacing) * spacing;
+        List<Position.ChunkPos> cell = DesertTempleGenerator.getTemplesArea(
+                seed, minX, minZ, minX + spacing - 1, minZ + spacing - 1);
+        return cell.isEmpty() ? null : cell.getFirst();
+    }
+
+    /**
+     * @param failed 条件を満たさなかった場合はその条件のリスト、満たした場合はnull
+     */
+    private static SeedTrace.LootTrace traceLoot(long seed, Position.ChunkPos pos, List<LootType.LootItem> items,
+                                                 List<ConditionalItem> failed) {
+        int chunkSeed = new BedrockRandom.ChunkRand(seed).chunkSeed(pos.x(), pos.z());
+        List<Integer> chestSeeds = DesertTempleLoot.generateChestSeed(seed, pos.x(), pos.z());
+
+        Map<Integer, List<LootType.LootItem>> chests = Searcher.chestSplit(items);
+        List<Map<String, Integer>> chestCounts = new ArrayList<>(chests.size());
+        Map<String, Integer> totals = new LinkedHashMap<>();
+        for (int chest = 0; chest < chests.size(); chest++) {
+            Map<String, Integer> counts = new LinkedHashMap<>();
+            for (LootType.LootItem item : chests.get(chest)) {
+                counts.merge(item.getName(), item.getCount(), Integer::sum);
+                totals.merge(item.getName(), item.getCount(), Integer::sum);
+            }
+            chestCounts.add(counts);
+        }
+
+        String failedCondition = null;
+        if (failed != null) {
+            for (ConditionalItem condition : failed) {
+                int chest = condition.getTargetChestId();
+                int actual = chest == -1
+                        ? totals.getOrDefault(condition.getName(), 0)
+                        : chestCounts.get(chest).getOrDefault(condition.getName(), 0);
+                if (!condition.matchesCount(actual)) {
+                    failedCondition = condition.getName() + " " + condition.getCompareOperator() + " "
+                            + condition.getCount() + (chest == -1 ? "" : " in chest " + (chest + 1))
+                            + ", actual " + actual;
+                    break;
+                }
+            }
+            if (failedCondition == null) failedCondition = "no loot";
+        }
+        return new SeedTrace.LootTrace(pos, chunkSeed, chestSeeds, chestCounts, failedCondition);
+    }
+}
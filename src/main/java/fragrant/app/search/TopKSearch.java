@@ -0,0 +1,198 @@
+package fragrant.app.search;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * スコアの高い上位K件のシードを探す検索
+ * ワーカーごとの上位K件を最後にまとめ、ワーカー間で共有するK件目のスコアで枝刈りする
+ *
+ * <pre>{@code
+ * TopKSearch search = TopKSearch.start(new SearchEngine(), query, score, 10, TopKSearch.Budget.timeLimit(60_000));
+ * TopKSearch.Report report = search.report().join();
+ * }</pre>
+ */
+public final class TopKSearch {
+    private final SearchQuery query;
+    private final ScoreSpec score;
+    private final int k;
+    private final Budget budget;
+    private final double maxScore;
+    private final List<RankedMatcher> matchers = Collections.synchronizedList(new ArrayList<>());
+    private final AtomicLong thresholdBits = new AtomicLong(Double.doubleToLongBits(Double.NEGATIVE_INFINITY));
+    private final AtomicLong accepted = new AtomicLong(0);
+    private final AtomicReference<StopReason> stopReason = new AtomicReference<>();
+    private SearchHandle handle;
+    private CompletableFuture<Report> report;
+
+    /**
+     * 検索を打ち切る条件（0は無制限）
+     *
+     * @param timeLimitMs 実行時間の上限
+     * @param maxAccepted 上位K件の候補として受け入れたシード数の上限
+     */
+    public record Budget(long timeLimitMs, long maxAccepted) {
+        public static final Budget UNLIMITED = new Budget(0, 0);
+
+        public Budget {
+            if (timeLimitMs < 0 || maxAccepted < 0) {
+                throw new IllegalArgumentException("budget must not be negative");
+            }
+        }
+
+        public static Budget timeLimit(long timeLimitMs) {
+            return new Budget(timeLimitMs, 0);
+        }
+    }
+
+    public enum StopReason {
+        COMPLETED,      // 範囲をすべて検索した
+        BOUND_REACHED,  // K件すべてがスコア上限に達し、これ以上スコアの高いシードはない（同点のシードは最小とは限らない）
+        TIME_BUDGET,
+        RESULT_BUDGET,
+        CANCELLED;
+
+        /**
+         * 結果が検索範囲全体での上位K件（同点はシードの小さい順）であることが保証されるか
+         * BOUND_REACHED では未検索の範囲にスコア上限と同点でシードの小さいものが残りうるため保証されない
+         */
+        public boolean isExact() {
+            return this == COMPLETED;
+        }
+    }
+
+    /**
+     * 検索結果と検索範囲の網羅状況
+     *
+     * @param top スコアの高い順の上位K件
+     * @param coverage 終了時点の進捗（処理済みシード数、再開位置）
+     * @param stopReason 終了した理由
+     * @param candidates ピラミッドの配置条件を満たしたシード数
+     * @param prunedTemples スコアの上限で打ち切ったピラミッド数
+     * @param maxScore スコアの理論上の上限
+     */
+    public record Report(List<RankedHit> top, SearchProgress coverage, StopReason stopReason,
+                         long candidates, long prunedTemples, double maxScore) {
+        public boolean isExact() {
+            return stopReason.isExact();
+        }
+    }
+
+    private TopKSearch(SearchQuery query, ScoreSpec score, int k, Budget budget) {
+        validate(query, score, k);
+        this.query = query;
+        this.score = score;
+        this.k = k;
+        this.budget = budget == null ? Budget.UNLIMITED : budget;
+        this.maxScore = score.upperBound();
+    }
+
+    /**
+     * 検索条件とスコアの組み合わせを確認する（ジョブとして投入する前の確認にも使う）
+     */
+    public static void validate(SearchQuery query, ScoreSpec score, int k) {
+        if (k < 1) {
+            throw new IllegalArgumentException("k must be positive: " + k);
+        }
+        if (score.templeIndex() >= query.temples().size()) {
+            throw new IllegalArgumentException("templeIndex out of range: " + score.templeIndex());
+        }
+        if (query.cluster() != null) {
+            throw new IllegalArgumentException("cluster conditions are not supported in top-k searches");
+        }
+    }
+
+    /**
+     * 専用のスレッドプールで上位K件検索を開始する
+     */
+    public static TopKSearch start(SearchEngine engine, SearchQuery query, ScoreSpec score, int k, Budget budget) {
+        TopKSearch search = new TopKSearch(query, score, k, budget);
+        search.handle = engine.createHandle(query, query.threadCount());
+        engine.start(search.handle, q -> {
+            RankedMatcher matcher = new RankedMatcher(q, search, score, k);
+            search.matchers.add(matcher);
+            return matcher;
+        });
+        search.report = search.handle.completion().thenApply(search::buildReport);
+
+        if (search.budget.timeLimitMs() > 0) {
+            CompletableFuture.delayedExecutor(search.budget.timeLimitMs(), TimeUnit.MILLISECONDS)
+                    .execute(() -> search.stop(StopReason.TIME_BUDGET));
+        }
+        return search;
+    }
+
+    public SearchQuery query() {
+        return query;
+    }
+
+    public SearchHandle handle() {
+        return handle;
+    }
+
+    /**
+     * 検索終了時に完了するFuture
+     */
+    public CompletableFuture<Report> report() {
+        return report;
+    }
+
+    public void cancel() {
+        stop(StopReason.CANCELLED);
+    }
+
+    /**
+     * 枝刈りに使う下限（いずれかのワーカーのK件目のスコアの最大値）
+     */
+    double threshold() {
+        return Double.longBitsToDouble(thresholdBits.get());
+    }
+
+    /**
+     * ワーカーが候補を受け入れたときに呼ぶ
+     *
+     * @param kthScore そのワーカーのK件目のスコア（K件に満たない場合は負の無限大）
+     */
+    void onAccepted(double kthScore) {
+        long current;
+        while (kthScore > Double.longBitsToDouble(current = thresholdBits.get())) {
+            if (thresholdBits.compareAndSet(current, Double.doubleToLongBits(kthScore))) break;
+        }
+
+        if (threshold() >= maxScore) {
+            stop(StopReason.BOUND_REACHED);
+        } else if (budget.maxAccepted() > 0 && accepted.incrementAndGet() >= budget.maxAccepted()) {
+            stop(StopReason.RESULT_BUDGET);
+        }
+    }
+
+    private void stop(StopReason reason) {
+        if (stopReason.compareAndSet(null, reason)) {
+            handle.cancel();
+        }
+    }
+
+    private Report buildReport(SearchProgress progress) {
+        List<RankedHit> all = new ArrayList<>();
+        long candidates = 0;
+        long pruned = 0;
+        synchronized (matchers) {
+            for (RankedMatcher matcher : matchers) {
+                all.addAll(matcher.top());
+                candidates += matcher.candidates();
+                pruned += matcher.pruned();
+            }
+        }
+        all.sort(RankedHit.BEST_FIRST);
+        List<RankedHit> top = List.copyOf(all.subList(0, Math.min(k, all.size())));
+
+        StopReason reason = stopReason.get();
+        if (reason == null || !progress.cancelled()) reason = StopReason.COMPLETED;
+        return new Report(top, progress, reason, candidates, pruned, maxScore);
+    }
+}
@@ -0,0 +1,472 @@
+package fragrant.app.search;
+
+import fragrant.temple.generator.DesertTempleGenerator;
+import fragrant.temple.loot.DesertTempleLoot;
+import fragrant.temple.loot.LootType;
+import fragrant.utils.Json;
+import fragrant.utils.Position;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 1つのワールドシードで、中心から一定距離内のピラミッドのうち戦利品が条件を満たすものを探す
+ * 範囲をグリッドのタイルに分け、中心のタイルを囲む周ごとに、周の中では近い順にワーカーで並列に判定する
+ * タイルは周ごとに作るため、範囲が広くてもメモリは周1つ分で済む
+ * ヒットは中心に近い順に配信する（それより近いピラミッドを含みうるタイルがすべて終わってから配信する）
+ * 件数の上限に達したら残りのタイルは判定しない
+ */
+public final class WorldScan implements Flow.Publisher<SearchHit> {
+    // 1タイルのグリッド数（1辺）。16 × 32チャンク = 8192ブロック四方
+    public static final int TILE_CELLS = 16;
+    public static final int MAX_RADIUS = 30_000_000;
+    private static final int CELL_BLOCKS = DesertTempleGenerator.SPACING * 16;
+    private static final Comparator<Candidate> NEAREST_FIRST = Comparator.comparingLong(Candidate::distance2)
+            .thenComparingInt(c -> c.hit().position().x())
+            .thenComparingInt(c -> c.hit().position().z());
+
+    /**
+     * ワールドスキャンの条件
+     *
+     * @param worldSeed ワールドシード
+     * @param centerX 中心のブロックX
+     * @param centerZ 中心のブロックZ
+     * @param radius 中心からの距離（ブロック、ピラミッドの中心で測る）
+     * @param conditions 戦利品の条件（空の場合は範囲内のすべてのピラミッド）
+     * @param limit 近い順に何件見つけたら終えるか（0は上限なし）
+     * @param threadCount 使用スレッド数
+     */
+    public record Query(long worldSeed, int centerX, int centerZ, int radius, List<ConditionalItem> conditions,
+                        int limit, int threadCount) {
+        public Query {
+            if (radius < 0 || radius > MAX_RADIUS) {
+                throw new IllegalArgumentException("radius must be between 0 and " + MAX_RADIUS + ": " + radius);
+            }
+            if (Math.abs((long) centerX) > MAX_RADIUS || Math.abs((long) centerZ) > MAX_RADIUS) {
+                throw new IllegalArgumentException("center is outside the world: " + centerX + ", " + centerZ);
+            }
+            if (limit < 0) {
+                throw new IllegalArgumentException("limit must not be negative: " + limit);
+            }
+            if (threadCount < 1) {
+                throw new IllegalArgumentException("threadCount must be positive: " + threadCount);
+            }
+            conditions = conditions == null ? List.of() : List.copyOf(conditions);
+        }
+
+        /**
+         * ピラミッドの中心と中心の距離の2乗
+         */
+        long distance2(Position.ChunkPos pos) {
+            long dx = pos.x() * 16L + 8 - centerX;
+            long dz = pos.z() * 16L + 8 - centerZ;
+            return dx * dx + dz * dz;
+        }
+    }
+
+    /**
+     * ワールドスキャンの進捗スナップショット
+     *
+     * @param tilesDone 判定を終えたタイル数
+     * @param tileCount 範囲内のタイル数
+     * @param templesChecked 戦利品を判定したピラミッド数
+     * @param hitCount 配信したヒット数
+     * @param elapsedTimeMs 経過時間
+     * @param done 終了しているか
+     * @param cancelled 中断されたか（件数の上限に達した場合は含まない）
+     */
+    public record Progress(long tilesDone, long tileCount, long templesChecked, long hitCount, long elapsedTimeMs,
+                           boolean done, boolean cancelled) {
+        public double fractionComplete() {
+            return tileCount > 0 ? (double) tilesDone / tileCount : 1.0;
+        }
+
+        public long templesPerSecond() {
+            return elapsedTimeMs > 0 ? (long) (templesChecked * 1000.0 / elapsedTimeMs) : 0;
+        }
+    }
+
+    /**
+     * タイル（グリッド座標の左上と、範囲内のピラミッドの中心が取りうる最短距離の2乗）
+     */
+    record Tile(int gridX, int gridZ, long minDistance2) { }
+
+    /**
+     * 中心のタイルから数えて number 周目のタイル
+     *
+     * @param tiles 範囲にかかるタイル（最短距離の順）
+     * @param minDistance2 範囲外のものも含めた周の最短距離の2乗（これより外の周のタイルはすべてこれ以上遠い）
+     */
+    record Ring(int number, Tile[] tiles, long minDistance2) { }
+
+    private record Candidate(long distance2, SearchHit hit) { }
+
+    private final Query query;
+    private final long radius2;
+    private final long tileCount;
+    private final HitPublisher hits;
+    private final int window;  // 配信待ちにできるタイル数
+    // 判定中・配信待ちのタイル（通し番号 % window の位置）
+    private final Tile[] claimed;
+    private final boolean[] finished;
+    private final PriorityQueue<Candidate> pending = new PriorityQueue<>(NEAREST_FIRST);
+    private final AtomicLong tilesDone = new AtomicLong(0);
+    private final AtomicLong templesChecked = new AtomicLong(0);
+    private final AtomicLong hitCount = new AtomicLong(0);
+    private final AtomicInteger activeWorkers;
+    private final CompletableFuture<Progress> completion = new CompletableFuture<>();
+    private final long startNanos = System.nanoTime();
+    private Ring ring;      // タイルを取得中の周
+    private Ring nextRing;  // 次の周（未取得のタイルの最短距離に使う）
+    private int ringPosition = 0;
+    private long nextTile = 0;
+    private long firstUnfinished = 0;
+    private volatile boolean cancelled = false;
+    private volatile boolean limitReached = false;
+    private volatile Throwable failure;
+    private volatile long finishedNanos = 0;
+
+    WorldScan(Query query, int hitBufferSize, Executor deliveryExecutor) {
+        this.query = query;
+        this.radius2 = (long) query.radius() * query.radius();
+        this.tileCount = tileCount(query);
+        this.hits = new HitPublisher(hitBufferSize, deliveryExecutor, this::cancel);
+        this.window = query.threadCount() * 4;
+        this.claimed = new Tile[window];
+        this.finished = new boolean[window];
+        this.ring = ring(query, 0);
+        this.nextRing = ring(query, 1);
+        this.activeWorkers = new AtomicInteger(query.threadCount());
+    }
+
+    /**
+     * 中心のタイルを囲む number 周目のタイルのうち範囲にかかるものを、最短距離の順に並べる
+     */
+    static Ring ring(Query query, int number) {
+        long radius2 = (long) query.radius() * query.radius();
+        int centerGridX = centerGrid(query.centerX());
+        int centerGridZ = centerGrid(query.centerZ());
+
+        List<Tile> list = new ArrayList<>();
+        long min = Long.MAX_VALUE;
+        for (int i = -number; i <= number; i++) {
+            // 上下の辺はすべて、それ以外は左右の端だけ
+            int step = Math.abs(i) == number ? 1 : 2 * number;
+            for (int j = -number; j <= number; j += step) {
+                int gridX = centerGridX + i * TILE_CELLS;
+                int gridZ = centerGridZ + j * TILE_CELLS;
+                long d2 = square(axisDistance(query.centerX(), gridX)) + square(axisDistance(query.centerZ(), gridZ));
+                min = Math.min(min, d2);
+                if (d2 <= radius2) list.add(new Tile(gridX, gridZ, d2));
+            }
+        }
+        // 同じ距離のタイルは周を回る順のまま
+        list.sort(Comparator.comparingLong(Tile::minDistance2));
+        return new Ring(number, list.toArray(new Tile[0]), min);
+    }
+
+    /**
+     * 範囲にかかるタイルの数（タイルは作らず、列ごとに数える）
+     */
+    static long tileCount(Query query) {
+        long radius2 = (long) query.radius() * query.radius();
+        long[] rows = axisDistances2(query.centerZ(), radius2);
+        long count = 0;
+        for (long column : axisDistances2(query.centerX(), radius2)) {
+            count += countAtMost(rows, radius2 - column);
+        }
+        return count;
+    }
+
+    private static int countAtMost(long[] sorted, long limit) {
+        int low = 0;
+        int high = sorted.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sorted[mid] <= limit) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * 1つの軸で、中心との距離の2乗が radius2 以下になるタイルの列ごとの距離の2乗（昇順）
+     */
+    private static long[] axisDistances2(int center, long radius2) {
+        int centerGrid = centerGrid(center);
+        List<Long> list = new ArrayList<>();
+        for (int k = 0; square(axisDistance(center, centerGrid + k * TILE_CELLS)) <= radius2; k++) {
+            list.add(square(axisDistance(center, centerGrid + k * TILE_CELLS)));
+        }
+        for (int k = 1; square(axisDistance(center, centerGrid - k * TILE_CELLS)) <= radius2; k++) {
+            list.add(square(axisDistance(center, centerGrid - k * TILE_CELLS)));
+        }
+        return list.stream().mapToLong(Long::longValue).sorted().toArray();
+    }
+
+    /**
+     * 中心を含むタイルの左上のグリッド座標（中心が中央付近に来るようにずらす）
+     */
+    private static int centerGrid(int center) {
+        return Math.floorDiv(center, CELL_BLOCKS) - TILE_CELLS / 2;
+    }
+
+    /**
+     * grid から始まるタイル内のピラミッドの中心が取りうる範囲と、中心との1つの軸での最短距離
+     */
+    private static long axisDistance(int center, int grid) {
+        int spacing = DesertTempleGenerator.SPACING;
+        int lastOffset = DesertTempleGenerator.SEPARATION - 1;
+        long min = (long) grid * spacing * 16 + 8;
+        long max = ((long) (grid + TILE_CELLS - 1) * spacing + lastOffset) * 16 + 8;
+        return Math.max(0, Math.max(min - center, center - max));
+    }
+
+    private static long square(long value) {
+        return value * value;
+    }
+
+    public Query query() {
+        return query;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super SearchHit> subscriber) {
+        hits.subscribe(subscriber);
+    }
+
+    public void cancel() {
+        cancelled = true;
+        synchronized (this) {
+            notifyAll();
+        }
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    private boolean isStopping() {
+        return cancelled || limitReached;
+    }
+
+    public boolean isDone() {
+        return finishedNanos != 0;
+    }
+
+    public CompletableFuture<Progress> completion() {
+        return completion;
+    }
+
+    public Progress progress() {
+        long end = finishedNanos != 0 ? finishedNanos : System.nanoTime();
+        return new Progress(tilesDone.get(), tileCount, templesChecked.get(), hitCount.get(),
+                (end - startNanos) / 1_000_000, isDone(), cancelled);
+    }
+
+    /**
+     * ワーカーの処理（タイルがなくなるか、上限に達するまで判定を続ける）
+     */
+    void runWorker() {
+        try {
+            long index;
+            while ((index = claim()) >= 0) {
+                // 判定を終えるまでこの位置は上書きされない
+                List<Candidate> found = scanTile(claimed[(int) (index % window)]);
+                if (isStopping()) break;
+                tilesDone.incrementAndGet();
+                emit(index, found);
+            }
+        } catch (RuntimeException e) {
+            failure = e;
+            cancel();
+        } finally {
+            if (activeWorkers.decrementAndGet() == 0) {
+                finish();
+            }
+        }
+    }
+
+    private List<Candidate> scanTile(Tile tile) {
+        int spacing = DesertTempleGenerator.SPACING;
+        List<Position.ChunkPos> temples = DesertTempleGenerator.getTemplesArea(query.worldSeed(),
+                tile.gridX() * spacing, tile.gridZ() * spacing,
+                (tile.gridX() + TILE_CELLS) * spacing - 1, (tile.gridZ() + TILE_CELLS) * spacing - 1);
+
+        List<Candidate> found = new ArrayList<>();
+        long checked = 0;
+        for (Position.ChunkPos pos : temples) {
+            if (cancelled) break;
+            long d2 = query.distance2(pos);
+            if (d2 > radius2) continue;
+            checked++;
+            List<LootType.LootItem> loot = DesertTempleLoot.generateLoot(query.worldSeed(), pos.x(), pos.z());
+            if (Searcher.checkMatch(query.conditions(), loot)) {
+                found.add(new Candidate(d2, new SearchHit(query.worldSeed(), pos, loot)));
+            }
+        }
+        templesChecked.addAndGet(checked);
+        return found;
+    }
+
+    /**
+     * 次のタイルを取得（配信待ちが多すぎる場合は最も近い未完了のタイルが終わるまで待つ）
+     *
+     * @return タイルの通し番号、残っていない場合は-1
+     */
+    private synchronized long claim() {
+        try {
+            while (!isStopping() && nextTile - firstUnfinished >= window) {
+                wait();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            cancelled = true;
+        }
+        if (isStopping()) return -1;
+        Tile tile = takeTile();
+        if (tile == null) return -1;
+        int slot = (int) (nextTile % window);
+        claimed[slot] = tile;
+        finished[slot] = false;
+        return nextTile++;
+    }
+
+    /**
+     * 次のタイル（今の周を使い切ったら次の周へ進む）、範囲内に残っていない場合はnull
+     */
+    private Tile takeTile() {
+        while (ringPosition >= ring.tiles().length) {
+            // 周の最短距離は外側ほど大きいため、次の周が範囲外ならそれより外もすべて範囲外
+            if (nextRing.minDistance2() > radius2) return null;
+            ring = nextRing;
+            ringPosition = 0;
+            nextRing = ring(query, ring.number() + 1);
+        }
+        return ring.tiles()[ringPosition++];
+    }
+
+    /**
+     * 判定を終えていないタイル（未取得の分も含む）の最短距離の2乗
+     */
+    private long unfinishedMinDistance2() {
+        long min = nextRing.minDistance2();
+        if (ringPosition < ring.tiles().length) {
+            min = Math.min(min, ring.tiles()[ringPosition].minDistance2());
+        }
+        for (long i = firstUnfinished; i < nextTile; i++) {
+            int slot = (int) (i % window);
+            if (!finished[slot]) min = Math.min(min, claimed[slot].minDistance2());
+        }
+        return min;
+    }
+
+    /**
+     * タイルのヒットを登録し、未完了のタイルのどれよりも近いヒットを近い順に配信
+     */
+    private synchronized void emit(long index, List<Candidate> found) {
+        if (limitReached) return;  // 上限に達した後に判定を終えたタイルのヒットは配信しない
+        finished[(int) (index % window)] = true;
+        pending.addAll(found);
+        while (firstUnfinished < nextTile && finished[(int) (firstUnfinished % window)]) {
+            firstUnfinished++;
+        }
+        long frontier = unfinishedMinDistance2();
+
+        Candidate next;
+        while ((next = pending.peek()) != null && next.distance2() < frontier) {
+            pending.poll();
+            if (!hits.publish(next.hit(), this::isCancelled)) return;
+            if (hitCount.incrementAndGet() == query.limit()) {
+                limitReached = true;
+                pending.clear();
+                break;
+            }
+        }
+        notifyAll();
+    }
+
+    private void finish() {
+        finishedNanos = System.nanoTime();
+        Throwable error = failure;
+        if (error != null) {
+            hits.fail(error);
+            completion.completeExceptionally(error);
+        } else {
+            hits.complete();
+            completion.complete(progress());
+        }
+    }
+
+    /**
+     * コマンドラインから実行し、ヒットを近い順に出力する
+     * <pre>
+     * --worldscan seed centerX centerZ radius [--limit K] [--threads N] [--query query.json]
+     * </pre>
+     * 条件は検索条件のJSON（QueryJson の形式）の最初のピラミッドのもの。省略時は範囲内のすべてのピラミッド
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 4) {
+            throw new IllegalArgumentException(
+                    "usage: --worldscan seed centerX centerZ radius [--limit K] [--threads N] [--query query.json]");
+        }
+        int limit = 0;
+        int threads = Runtime.getRuntime().availableProcessors();
+        List<ConditionalItem> conditions = List.of();
+        for (int i = 4; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--limit" -> limit = Integer.parseInt(args[i + 1]);
+                case "--threads" -> threads = Integer.parseInt(args[i + 1]);
+                case "--query" -> conditions = QueryJson.fromJson(
+                        Json.parseObject(Files.readString(Path.of(args[i + 1]))), threads).temples().get(0).conditions();
+                default -> throw new IllegalArgumentException("unknown option: " + args[i]);
+            }
+        }
+
+        Query query = new Query(Long.parseLong(args[0]), Integer.parseInt(args[1]), Integer.parseInt(args[2]),
+                Integer.parseInt(args[3]), conditions, limit, threads);
+        WorldScan scan = new SearchEngine().start(query);
+        CompletableFuture<Void> delivered = new CompletableFuture<>();
+        scan.subscribe(new Flow.Subscriber<>() {
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                subscription.request(Long.MAX_VALUE);
+            }
+
+            @Override
+            public void onNext(SearchHit hit) {
+                Position.ChunkPos pos = hit.position();
+                System.out.printf("%d\t%d\t%d\t%d\t%d\t%s%n", Math.round(Math.sqrt(query.distance2(pos))),
+                        pos.x(), pos.z(), pos.x() * 16 + 8, pos.z() * 16 + 8, Searcher.formatCounts(hit.loot()));
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                throwable.printStackTrace();
+                delivered.complete(null);
+            }
+
+            @Override
+            public void onComplete() {
+                delivered.complete(null);
+            }
+        });
+        delivered.join();
+        Progress progress = scan.completion().join();
+        System.err.printf("%,d hits, %,d temples in %,d tiles (%d ms)%n", progress.hitCount(),
+                progress.templesChecked(), progress.tilesDone(), progress.elapsedTimeMs());
+    }
+}
@@ -0,0 +1,68 @@
+package fragrant.app.service;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * ジョブのヒットを順に読むカーソル（クライアントごとに1つ）
+ * 新しいヒットはジョブが保持している分から、そこから外れた古いヒットはヒットのファイルから読む
+ */
+class HitCursor implements Closeable {
+    private final SearchJob job;
+    private final JobStore store;
+    private int position;
+    private BufferedReader file;  // ファイルから読んでいる間だけ開く
+
+    HitCursor(SearchJob job, JobStore store, int position) {
+        this.job = job;
+        this.store = store;
+        this.position = position;
+    }
+
+    int position() {
+        return position;
+    }
+
+    /**
+     * 次のヒットを最大 max 件読む（まだない場合は空）
+     */
+    List<String> next(int max) throws IOException {
+        List<String> lines = job.hitsFrom(position, max);
+        if (lines != null) {
+            close();
+            position += lines.size();
+            return lines;
+        }
+
+        lines = new ArrayList<>();
+        if (file == null) {
+            file = store.openHits(job);
+            if (file == null) return lines;
+            for (int i = 0; i < position; i++) {
+                if (file.readLine() == null) {
+                    close();
+                    return lines;
+                }
+            }
+        }
+        String line;
+        while (lines.size() < max && (line = file.readLine()) != null) {
+            lines.add(line);
+        }
+        // ファイルの終わりに達した場合は、次に開き直して書き出された分から読む
+        if (lines.size() < max) close();
+        position += lines.size();
+        return lines;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (file != null) {
+            file.close();
+            file = null;
+        }
+    }
+}
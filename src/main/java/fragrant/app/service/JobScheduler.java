@@ -0,0 +1,325 @@
+package fragrant.app.service;
+
+import fragrant.app.search.AggregateSearch;
+import fragrant.app.search.AggregateSpec;
+import fragrant.app.search.QueryJson;
+import fragrant.app.search.ScoreSpec;
+import fragrant.app.search.SearchEngine;
+import fragrant.app.search.SearchHandle;
+import fragrant.app.search.SearchHit;
+import fragrant.app.search.SearchQuery;
+import fragrant.app.search.TopKSearch;
+import fragrant.utils.Json;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.UUID;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ジョブを優先度順に実行するスケジューラ
+ * 実行中ジョブのスレッド数の合計がスレッド予算を超えないように起動する
+ * 通常の検索・上位K件検索・集計を同じキューとスレッド予算で扱う
+ */
+public class JobScheduler {
+    private static final int DEFAULT_TOP_K = 10;
+    private static final long SAVE_INTERVAL_MS = 1000;
+    private static final long SHUTDOWN_TIMEOUT_MS = 5000;
+    private final SearchEngine engine;
+    private final JobStore store;
+    private final int threadBudget;
+    private final Map<String, SearchJob> jobs = new LinkedHashMap<>();
+    private final PriorityQueue<SearchJob> queue = new PriorityQueue<>(
+            Comparator.comparingInt(SearchJob::priority).reversed().thenComparingLong(SearchJob::sequence));
+    private final ScheduledExecutorService saver;
+    private int usedThreads = 0;
+    private long nextSequence = 0;
+    private volatile boolean shuttingDown = false;
+
+    public JobScheduler(SearchEngine engine, JobStore store, int threadBudget) {
+        this.engine = engine;
+        this.store = store;
+        this.threadBudget = Math.max(1, threadBudget);
+        this.saver = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "job-saver");
+            t.setDaemon(true);
+            return t;
+        });
+        saver.scheduleWithFixedDelay(this::saveRunningJobs, SAVE_INTERVAL_MS, SAVE_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    public int threadBudget() {
+        return threadBudget;
+    }
+
+    /**
+     * 保存済みジョブを復元し、未完了のものを再度キューに入れる
+     */
+    public synchronized void restore() throws IOException {
+        for (SearchJob job : store.loadAll()) {
+            jobs.put(job.id(), job);
+            nextSequence = Math.max(nextSequence, job.sequence() + 1);
+            if (!job.state().isTerminal()) {
+                job.setState(SearchJob.State.QUEUED);
+                queue.add(job);
+            }
+        }
+        dispatch();
+    }
+
+    /**
+     * ジョブを投入
+     *
+     * @param query 検索条件（スレッド数はジョブのスレッド予算として扱う）
+     * @param priority 大きいほど先に実行
+     */
+    public synchronized SearchJob submit(SearchQuery query, int priority) {
+        return submit(SearchJob.Kind.SEARCH, query, null, priority);
+    }
+
+    /**
+     * 上位K件検索・集計のジョブを投入（spec は投入時に確認し、不正な場合は IllegalArgumentException）
+     *
+     * @param spec TOP_K は {"score": {...}, "k": 10, "timeLimitMs": 0, "maxAccepted": 0}、
+     *             AGGREGATE は {"aggregate": {...}}（通常の検索ではnull）
+     */
+    public synchronized SearchJob submit(SearchJob.Kind kind, SearchQuery query, Map<String, Object> spec,
+                                         int priority) {
+        int threads = Math.min(query.threadCount(), threadBudget);
+        query = query.withThreadCount(threads);
+        switch (kind) {
+            case SEARCH -> { }
+            case TOP_K -> {
+                TopKSearch.validate(query, scoreSpec(spec), topK(spec));
+                budget(spec);
+            }
+            case AGGREGATE -> AggregateSearch.validate(query, aggregateSpec(spec));
+        }
+
+        SearchJob job = new SearchJob(UUID.randomUUID().toString(), kind, query, spec,
+                priority, nextSequence++, System.currentTimeMillis());
+        jobs.put(job.id(), job);
+        queue.add(job);
+        save(job);
+        dispatch();
+        return job;
+    }
+
+    public synchronized SearchJob get(String id) {
+        return jobs.get(id);
+    }
+
+    public synchronized Collection<SearchJob> list() {
+        return new ArrayList<>(jobs.values());
+    }
+
+    /**
+     * ジョブを中断（待機中であればキューから外す）
+     */
+    public synchronized boolean cancel(String id) {
+        SearchJob job = jobs.get(id);
+        if (job == null || job.state().isTerminal()) return false;
+
+        if (queue.remove(job)) {
+            job.setState(SearchJob.State.CANCELLED);
+            job.signal();
+            save(job);
+        } else {
+            job.cancel();
+        }
+        return true;
+    }
+
+    /**
+     * キューの先頭から、スレッド予算に収まる限りジョブを起動
+     * 先頭が収まらない場合は後続を追い越させない（高優先度ジョブの飢餓防止）
+     */
+    private void dispatch() {
+        while (!queue.isEmpty() && usedThreads + queue.peek().threads() <= threadBudget) {
+            SearchJob job = queue.poll();
+            usedThreads += job.threads();
+            start(job);
+        }
+    }
+
+    private void start(SearchJob job) {
+        SearchQuery query = job.resumeQuery();
+        switch (job.kind()) {
+            case SEARCH -> {
+                SearchHandle handle = engine.start(query);
+                job.attach(handle, handle::cancel);
+                running(job);
+                handle.subscribe(new JobSubscriber(job));
+            }
+            case TOP_K -> {
+                TopKSearch search = TopKSearch.start(engine, query, scoreSpec(job.spec()), topK(job.spec()),
+                        budget(job.spec()));
+                job.attach(search.handle(), search::cancel);
+                running(job);
+                search.report().whenComplete((report, error) ->
+                        complete(job, report != null ? QueryJson.reportToJson(report) : null, error));
+            }
+            case AGGREGATE -> {
+                AggregateSearch search = AggregateSearch.start(engine, query, aggregateSpec(job.spec()));
+                job.attach(search.handle(), search::cancel);
+                running(job);
+                search.report().whenComplete((report, error) ->
+                        complete(job, report != null ? QueryJson.aggregateReportToJson(report) : null, error));
+            }
+        }
+    }
+
+    private void running(SearchJob job) {
+        job.setState(SearchJob.State.RUNNING);
+        save(job);
+    }
+
+    private static ScoreSpec scoreSpec(Map<String, Object> spec) {
+        return QueryJson.scoreFromJson(Json.asObject(spec.get("score")));
+    }
+
+    private static int topK(Map<String, Object> spec) {
+        return Json.getInt(spec, "k", DEFAULT_TOP_K);
+    }
+
+    private static TopKSearch.Budget budget(Map<String, Object> spec) {
+        return new TopKSearch.Budget(Json.getLong(spec, "timeLimitMs", 0), Json.getLong(spec, "maxAccepted", 0));
+    }
+
+    private static AggregateSpec aggregateSpec(Map<String, Object> spec) {
+        return QueryJson.aggregateFromJson(Json.asObject(spec.get("aggregate")));
+    }
+
+    /**
+     * 上位K件検索・集計の終了時に結果を記録する
+     */
+    private void complete(SearchJob job, Map<String, Object> result, Throwable error) {
+        job.setResult(result);
+        finish(job, error instanceof CompletionException && error.getCause() != null ? error.getCause() : error);
+    }
+
+    private synchronized void finish(SearchJob job, Throwable error) {
+        usedThreads -= job.threads();
+        job.updateProgress();
+        if (error != null) {
+            job.setState(SearchJob.State.FAILED);
+            job.setError(String.valueOf(error.getMessage()));
+        } else if (shuttingDown) {
+            job.setState(SearchJob.State.QUEUED);  // 再起動後に続きから再開（上位K件検索・集計は最初から）
+            job.setResult(null);
+        } else if (job.isCancelRequested()) {
+            job.setState(SearchJob.State.CANCELLED);
+        } else {
+            job.setState(SearchJob.State.DONE);
+        }
+        job.signal();
+        save(job);
+        if (!shuttingDown) {
+            dispatch();
+        }
+    }
+
+    private void saveRunningJobs() {
+        List<SearchJob> running = new ArrayList<>();
+        synchronized (this) {
+            for (SearchJob job : jobs.values()) {
+                if (job.state() == SearchJob.State.RUNNING) running.add(job);
+            }
+        }
+        for (SearchJob job : running) {
+            job.updateProgress();
+            job.signal();
+            save(job);
+        }
+    }
+
+    private void save(SearchJob job) {
+        try {
+            store.save(job);
+        } catch (IOException e) {
+            System.err.println("Failed to save job " + job.id() + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * 実行中のジョブを保存して停止（再起動後に再開される）
+     */
+    public void shutdown() {
+        shuttingDown = true;
+        saver.shutdownNow();
+        List<SearchJob> running = new ArrayList<>();
+        synchronized (this) {
+            queue.clear();
+            for (SearchJob job : jobs.values()) {
+                if (job.state() == SearchJob.State.RUNNING) running.add(job);
+            }
+        }
+        for (SearchJob job : running) {
+            job.handle().cancel();
+        }
+
+        long deadline = System.currentTimeMillis() + SHUTDOWN_TIMEOUT_MS;
+        try {
+            for (SearchJob job : running) {
+                while (job.state() == SearchJob.State.RUNNING && System.currentTimeMillis() < deadline) {
+                    job.awaitChange(Integer.MAX_VALUE, 100);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            store.close();
+        } catch (IOException e) {
+            System.err.println("Failed to close job store: " + e.getMessage());
+        }
+    }
+
+    /**
+     * エンジンからのヒットをジョブへ記録
+     */
+    private class JobSubscriber implements Flow.Subscriber<SearchHit> {
+        private final SearchJob job;
+
+        JobSubscriber(SearchJob job) {
+            this.job = job;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            subscription.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(SearchHit hit) {
+            String line = Json.write(QueryJson.hitToJson(hit));
+            if (job.addHit(hit.seed(), line)) {
+                try {
+                    store.appendHit(job, line);
+                } catch (IOException e) {
+                    System.err.println("Failed to write hit for job " + job.id() + ": " + e.getMessage());
+                }
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            finish(job, throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            finish(job, null);
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package fragrant.app.service;
+
+import fragrant.app.search.QueryJson;
+import fragrant.app.search.SearchQuery;
+import fragrant.utils.Json;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * ジョブ状態をディレクトリに保存する
+ * {@code <id>.json} にジョブ情報、{@code <id>.hits} にヒット（1行1JSON）を書き込む
+ */
+public class JobStore {
+    private final Path directory;
+    private final Map<String, BufferedWriter> hitWriters = new HashMap<>();
+
+    public JobStore(Path directory) throws IOException {
+        this.directory = directory;
+        Files.createDirectories(directory);
+    }
+
+    /**
+     * ジョブ情報を保存（一時ファイル経由で置き換える）
+     */
+    public synchronized void save(SearchJob job) throws IOException {
+        BufferedWriter writer = hitWriters.get(job.id());
+        if (writer != null) {
+            writer.flush();
+            if (job.state().isTerminal()) {
+                writer.close();
+                hitWriters.remove(job.id());
+            }
+        }
+
+        Map<String, Object> json = job.statusJson();
+        json.put("sequence", job.sequence());
+        json.put("query", QueryJson.toJson(job.query()));
+        if (job.spec() != null) json.put("spec", job.spec());
+        if (job.result() != null) json.put("result", job.result());
+
+        Path target = directory.resolve(job.id() + ".json");
+        Path temp = directory.resolve(job.id() + ".json.tmp");
+        Files.writeString(temp, Json.write(json), StandardCharsets.UTF_8);
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public synchronized void appendHit(SearchJob job, String line) throws IOException {
+        BufferedWriter writer = hitWriters.get(job.id());
+        if (writer == null) {
+            writer = Files.newBufferedWriter(directory.resolve(job.id() + ".hits"), StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            hitWriters.put(job.id(), writer);
+        }
+        writer.write(line);
+        writer.newLine();
+    }
+
+    /**
+     * ヒットのファイルを先頭から読む（書き込み待ちの分は先に書き出す）
+     *
+     * @return まだヒットがない場合はnull
+     */
+    public synchronized BufferedReader openHits(SearchJob job) throws IOException {
+        BufferedWriter writer = hitWriters.get(job.id());
+        if (writer != null) writer.flush();
+        Path hits = directory.resolve(job.id() + ".hits");
+        return Files.exists(hits) ? Files.newBufferedReader(hits, StandardCharsets.UTF_8) : null;
+    }
+
+    /**
+     * 保存済みのジョブをすべて読み込む
+     */
+    public synchronized List<SearchJob> loadAll() throws IOException {
+        List<SearchJob> jobs = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*.json")) {
+            for (Path file : files) {
+                try {
+                    jobs.add(load(file));
+                } catch (IOException | RuntimeException e) {
+                    System.err.println("Failed to load job " + file.getFileName() + ": " + e.getMessage());
+                }
+            }
+        }
+        jobs.sort((a, b) -> Long.compare(a.sequence(), b.sequence()));
+        return jobs;
+    }
+
+    private SearchJob load(Path file) throws IOException {
+        Map<String, Object> json = Json.parseObject(Files.readString(file, StandardCharsets.UTF_8));
+        SearchQuery query = QueryJson.fromJson(Json.asObject(json.get("query")), 1);
+        SearchJob job = new SearchJob(
+                Json.getString(json, "id", null),
+                SearchJob.Kind.valueOf(Json.getString(json, "kind", "SEARCH")),
+                query,
+                json.get("spec") != null ? Json.asObject(json.get("spec")) : null,
+                Json.getInt(json, "priority", 0),
+                Json.getLong(json, "sequence", 0),
+                Json.getLong(json, "submittedAt", 0));
+
+        job.setState(SearchJob.State.valueOf(Json.getString(json, "state", "QUEUED")));
+        job.setError(Json.getString(json, "error", null));
+        if (json.get("result") != null) job.setResult(Json.asObject(json.get("result")));
+        job.restoreProgress(Json.getLong(json, "checkpointSeed", query.startSeed()),
+                Json.getLong(json, "checkpointBlock", 0),
+                Json.getLong(json, "seedsProcessed", 0));
+
+        Path hits = directory.resolve(job.id() + ".hits");
+        if (Files.exists(hits)) {
+            try (BufferedReader reader = Files.newBufferedReader(hits, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.isBlank()) continue;
+                    long seed = Json.getLong(Json.parseObject(line), "seed", -1);
+                    job.restoreHit(seed, line);
+                }
+            }
+        }
+        return job;
+    }
+
+    public synchronized void close() throws IOException {
+        for (BufferedWriter writer : hitWriters.values()) {
+            writer.close();
+        }
+        hitWriters.clear();
+    }
+}
@@ -0,0 +1,291 @@
+package fragrant.app.service;
+
+import fragrant.app.search.SearchHandle;
+import fragrant.app.search.SearchProgress;
+import fragrant.app.search.SearchQuery;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * サービスに投入された検索ジョブ
+ * ヒットはJSON行として直近の RECENT_HITS 件だけを保持する（すべてのヒットは JobStore のファイルにある）
+ * 上位K件検索と集計はヒットを出さず、終了時に結果のJSONを1つ持つ
+ */
+public class SearchJob {
+    static final int RECENT_HITS = 10_000;
+
+    public enum Kind {
+        SEARCH,     // ヒットを列挙する通常の検索（中断した位置から再開できる）
+        TOP_K,      // 上位K件検索（spec は /topk の本文、再開時は最初からやり直す）
+        AGGREGATE   // 集計（spec は /aggregate の本文、再開時は最初からやり直す）
+    }
+
+    public enum State {
+        QUEUED, RUNNING, DONE, CANCELLED, FAILED;
+
+        public boolean isTerminal() {
+            return this == DONE || this == CANCELLED || this == FAILED;
+        }
+    }
+
+    private final String id;
+    private final Kind kind;
+    private final SearchQuery query;
+    private final Map<String, Object> spec;
+    private final int priority;
+    private final long sequence;
+    private final long submittedAt;
+    private final String[] recentHits = new String[RECENT_HITS];  // hitCount 件目が hitCount % RECENT_HITS に入る
+    private int hitCount;
+    private final Set<Long> resumedSeeds = new HashSet<>();  // 再開時に重複を除くため
+    private volatile State state = State.QUEUED;
+    private volatile long checkpointSeed;
+    private volatile long checkpointBlock;
+    private volatile long seedsProcessed;
+    private volatile String error;
+    private volatile SearchHandle handle;
+    private volatile Runnable canceller;
+    private volatile boolean cancelRequested;
+    private volatile Map<String, Object> result;
+    private long processedBeforeResume;
+
+    public SearchJob(String id, SearchQuery query, int priority, long sequence, long submittedAt) {
+        this(id, Kind.SEARCH, query, null, priority, sequence, submittedAt);
+    }
+
+    /**
+     * @param spec 上位K件検索・集計の指定（通常の検索ではnull）
+     */
+    public SearchJob(String id, Kind kind, SearchQuery query, Map<String, Object> spec, int priority, long sequence,
+                     long submittedAt) {
+        this.id = id;
+        this.kind = kind;
+        this.query = query;
+        this.spec = spec;
+        this.priority = priority;
+        this.sequence = sequence;
+        this.submittedAt = submittedAt;
+        this.checkpointSeed = query.startSeed();
+    }
+
+    public String id() {
+        return id;
+    }
+
+    public Kind kind() {
+        return kind;
+    }
+
+    public SearchQuery query() {
+        return query;
+    }
+
+    public Map<String, Object> spec() {
+        return spec;
+    }
+
+    /**
+     * 上位K件検索・集計の結果（終了前や通常の検索ではnull）
+     */
+    public Map<String, Object> result() {
+        return result;
+    }
+
+    void setResult(Map<String, Object> result) {
+        this.result = result;
+    }
+
+    public int priority() {
+        return priority;
+    }
+
+    public long sequence() {
+        return sequence;
+    }
+
+    public long submittedAt() {
+        return submittedAt;
+    }
+
+    public int threads() {
+        return query.threadCount();
+    }
+
+    public State state() {
+        return state;
+    }
+
+    void setState(State state) {
+        this.state = state;
+    }
+
+    void setError(String error) {
+        this.error = error;
+    }
+
+    SearchHandle handle() {
+        return handle;
+    }
+
+    /**
+     * 実行開始時に呼ぶ（通常の検索は前回までの処理数を引き継ぐ）
+     *
+     * @param canceller 検索を中断する処理
+     */
+    void attach(SearchHandle handle, Runnable canceller) {
+        this.processedBeforeResume = kind == Kind.SEARCH ? seedsProcessed : 0;
+        this.handle = handle;
+        this.canceller = canceller;
+    }
+
+    /**
+     * 実行中の検索を中断する
+     */
+    void cancel() {
+        cancelRequested = true;
+        Runnable c = canceller;
+        if (c != null) c.run();
+    }
+
+    boolean isCancelRequested() {
+        return cancelRequested;
+    }
+
+    void restoreProgress(long checkpointSeed, long checkpointBlock, long seedsProcessed) {
+        this.checkpointSeed = checkpointSeed;
+        this.checkpointBlock = checkpointBlock;
+        this.seedsProcessed = seedsProcessed;
+    }
+
+    /**
+     * 実行中の検索から進捗を取り込む
+     */
+    void updateProgress() {
+        SearchHandle h = handle;
+        if (h != null) {
+            SearchProgress p = h.progress();
+            checkpointSeed = p.checkpointSeed();
+            checkpointBlock = p.checkpointBlock();
+            seedsProcessed = processedBeforeResume + p.seedsProcessed();
+        }
+    }
+
+    public long checkpointSeed() {
+        return checkpointSeed;
+    }
+
+    public long checkpointBlock() {
+        return checkpointBlock;
+    }
+
+    /**
+     * 保存済みの再開位置から続きを検索するための条件
+     */
+    SearchQuery resumeQuery() {
+        // 上位K件検索・集計は途中の集計を保存しないので最初からやり直す
+        if (kind != Kind.SEARCH) return query;
+        SearchQuery.VisitOrder order = query.order();
+        if (order.scrambled()) {
+            return query.withOrder(order.resumeAt(checkpointBlock));
+        }
+        return query.withStartSeed(checkpointSeed);
+    }
+
+    /**
+     * 検索範囲に対する再開位置の割合（%）
+     */
+    private double percent() {
+        long total = query.seedCount();
+        if (total <= 0) return 100.0;
+        SearchQuery.VisitOrder order = query.order();
+        if (order.scrambled()) {
+            long blocks = (total + order.blockSize() - 1) / order.blockSize();
+            return Math.min(checkpointBlock, blocks) * 100.0 / blocks;
+        }
+        return (checkpointSeed - query.startSeed()) * 100.0 / total;
+    }
+
+    /**
+     * 再開時に復元したヒットを登録
+     */
+    synchronized void restoreHit(long seed, String line) {
+        addRecent(line);
+        if (seed >= checkpointSeed) {
+            resumedSeeds.add(seed);
+        }
+    }
+
+    /**
+     * ヒットを追加
+     *
+     * @return 新規のヒットであればtrue
+     */
+    synchronized boolean addHit(long seed, String line) {
+        if (resumedSeeds.remove(seed)) {
+            return false;
+        }
+        addRecent(line);
+        notifyAll();
+        return true;
+    }
+
+    private void addRecent(String line) {
+        recentHits[hitCount % RECENT_HITS] = line;
+        hitCount++;
+    }
+
+    public synchronized int hitCount() {
+        return hitCount;
+    }
+
+    /**
+     * 指定位置以降のヒットを最大 max 件取得
+     *
+     * @return 指定位置がもう保持していない古いヒットの場合はnull（HitCursor でファイルから読む）
+     */
+    synchronized List<String> hitsFrom(int index, int max) {
+        if (index >= hitCount) return List.of();
+        if (index < hitCount - RECENT_HITS) return null;
+        int count = Math.min(max, hitCount - index);
+        List<String> lines = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            lines.add(recentHits[(index + i) % RECENT_HITS]);
+        }
+        return lines;
+    }
+
+    /**
+     * 新しいヒットが来るか状態が変わるまで待機
+     */
+    public synchronized void awaitChange(int knownHits, long timeoutMs) throws InterruptedException {
+        if (hitCount <= knownHits && !state.isTerminal()) {
+            wait(timeoutMs);
+        }
+    }
+
+    synchronized void signal() {
+        notifyAll();
+    }
+
+    public Map<String, Object> statusJson() {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("id", id);
+        json.put("kind", kind.name());
+        json.put("state", state.name());
+        json.put("priority", priority);
+        json.put("threads", threads());
+        json.put("submittedAt", submittedAt);
+        json.put("checkpointSeed", checkpointSeed);
+        if (query.order().scrambled()) json.put("checkpointBlock", checkpointBlock);
+        json.put("seedsProcessed", seedsProcessed);
+        json.put("percent", percent());
+        json.put("hits", hitCount());
+        if (error != null) json.put("error", error);
+        return json;
+    }
+}
@@ -0,0 +1,387 @@
+package fragrant.app.service;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import fragrant.app.search.QueryJson;
+import fragrant.app.search.SearchEngine;
+import fragrant.app.search.SearchQuery;
+import fragrant.app.search.SeedTracer;
+import fragrant.utils.Json;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * JDK組み込みHTTPサーバーで検索ジョブを受け付けるサービス
+ *
+ * <pre>
+ * POST   /jobs              ジョブ投入（本文: {"priority": 0, "query": {...}}）
+ * GET    /jobs              ジョブ一覧
+ * GET    /jobs/{id}         ジョブ状態
+ * DELETE /jobs/{id}         ジョブ中断
+ * GET    /jobs/{id}/hits    ヒット一覧（1行1JSON、チャンク転送）
+ * GET    /jobs/{id}/events  ヒットと進捗のSSE（?from=n で n 件目から）
+ * GET    /jobs/{id}/result  上位K件検索・集計の結果（終了前は409）
+ * POST   /topk              上位K件検索のジョブ投入（本文: {"priority": 0, "query": {...}, "score": {...}, "k": 10,
+ *                           "timeLimitMs": 0, "maxAccepted": 0}）
+ * GET    /trace             判定のトレース（{"sampleEvery": n, "recorded": n, "traces": [...]}）
+ * POST   /trace             トレースの設定（本文: {"sampleEvery": 1000, "clear": true}、0で無効）
+ * POST   /aggregate         件数と分布の集計のジョブ投入（本文: {"priority": 0, "query": {...}, "aggregate": {...}}）
+ * </pre>
+ * GET の応答はどのオリジンからも読めるようにし、それ以外は allowedOrigin に指定したオリジンにだけ許可する
+ * GET 以外で Origin が allowedOrigin と異なるリクエストは実行せずに403を返し（フォームなどプリフライトのない投稿も防ぐ）、
+ * POST の本文は Content-Type: application/json に限る。OPTIONS（プリフライト）には allowedOrigin にだけ応答する
+ */
+public class SearchService {
+    private static final long EVENT_INTERVAL_MS = 500;
+    private static final int EVENT_BATCH = 1000;  // 1回に送るヒットの最大件数
+    private final HttpServer server;
+    private final SearchEngine engine = new SearchEngine();
+    private final JobStore store;
+    private final JobScheduler scheduler;
+    private final String allowedOrigin;
+    private final ExecutorService httpExecutor;
+
+    public SearchService(InetSocketAddress address, Path dataDirectory, int threadBudget) throws IOException {
+        this(address, dataDirectory, threadBudget, null);
+    }
+
+    /**
+     * @param allowedOrigin GET 以外のリクエストを許可するオリジン（nullの場合はどこにも許可しない）
+     */
+    public SearchService(InetSocketAddress address, Path dataDirectory, int threadBudget, String allowedOrigin)
+            throws IOException {
+        this.store = new JobStore(dataDirectory);
+        this.scheduler = new JobScheduler(engine, store, threadBudget);
+        this.allowedOrigin = allowedOrigin;
+        this.server = HttpServer.create(address, 0);
+        this.httpExecutor = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "search-service-http");
+            t.setDaemon(true);
+            return t;
+        });
+        server.setExecutor(httpExecutor);
+        server.createContext("/jobs", this::handle);
+        server.createContext("/topk", exchange -> handleSpecJob(exchange, SearchJob.Kind.TOP_K));
+        server.createContext("/aggregate", exchange -> handleSpecJob(exchange, SearchJob.Kind.AGGREGATE));
+        server.createContext("/trace", this::handleTrace);
+    }
+
+    public void start() throws IOException {
+        scheduler.restore();
+        server.start();
+    }
+
+    public void stop() {
+        server.stop(0);
+        scheduler.shutdown();
+        httpExecutor.shutdownNow();
+    }
+
+    /**
+     * 実際に待ち受けているアドレス（ポート0を指定した場合の確認用）
+     */
+    public InetSocketAddress getAddress() {
+        return server.getAddress();
+    }
+
+    public JobScheduler getScheduler() {
+        return scheduler;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            if (!checkOrigin(exchange)) return;
+            String[] parts = exchange.getRequestURI().getPath().replaceAll("/+$", "").split("/");
+            String method = exchange.getRequestMethod();
+
+            // parts: ["", "jobs", id, sub]
+            if (parts.length == 2) {
+                switch (method) {
+                    case "POST" -> submitJob(exchange);
+                    case "GET" -> listJobs(exchange);
+                    default -> sendJson(exchange, 405, error("method not allowed"));
+                }
+                return;
+            }
+
+            SearchJob job = scheduler.get(parts[2]);
+            if (job == null) {
+                sendJson(exchange, 404, error("job not found"));
+                return;
+            }
+
+            if (parts.length == 3) {
+                switch (method) {
+                    case "GET" -> sendJson(exchange, 200, job.statusJson());
+                    case "DELETE" -> {
+                        scheduler.cancel(job.id());
+                        sendJson(exchange, 200, job.statusJson());
+                    }
+                    default -> sendJson(exchange, 405, error("method not allowed"));
+                }
+            } else if (parts.length == 4 && "GET".equals(method) && "hits".equals(parts[3])) {
+                streamHits(exchange, job);
+            } else if (parts.length == 4 && "GET".equals(method) && "events".equals(parts[3])) {
+                streamEvents(exchange, job);
+            } else if (parts.length == 4 && "GET".equals(method) && "result".equals(parts[3])) {
+                sendResult(exchange, job);
+            } else {
+                sendJson(exchange, 404, error("not found"));
+            }
+        } catch (IllegalArgumentException e) {
+            sendJson(exchange, 400, error(e.getMessage()));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * 上位K件検索・集計のジョブを投入（結果は終了後に /jobs/{id}/result で取得する）
+     * 本文の query と priority 以外がジョブの指定になる
+     */
+    private void handleSpecJob(HttpExchange exchange, SearchJob.Kind kind) throws IOException {
+        try {
+            if (!checkOrigin(exchange)) return;
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                sendJson(exchange, 405, error("method not allowed"));
+                return;
+            }
+
+            Map<String, Object> body;
+            try (InputStream in = exchange.getRequestBody()) {
+                body = Json.parseObject(new String(in.readAllBytes(), StandardCharsets.UTF_8));
+            }
+            SearchQuery query = QueryJson.fromJson(Json.asObject(body.get("query")), scheduler.threadBudget());
+            Map<String, Object> spec = new LinkedHashMap<>(body);
+            spec.remove("query");
+            spec.remove("priority");
+            SearchJob job = scheduler.submit(kind, query, spec, Json.getInt(body, "priority", 0));
+            sendJson(exchange, 201, job.statusJson());
+        } catch (IllegalArgumentException e) {
+            sendJson(exchange, 400, error(e.getMessage()));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void handleTrace(HttpExchange exchange) throws IOException {
+        try {
+            if (!checkOrigin(exchange)) return;
+            SeedTracer tracer = engine.tracer();
+            switch (exchange.getRequestMethod()) {
+                case "GET" -> {
+                    Map<String, Object> json = new LinkedHashMap<>();
+                    json.put("sampleEvery", tracer.getSampleEvery());
+                    json.put("recorded", tracer.recorded());
+                    json.put("traces", QueryJson.tracesToJson(tracer.traces()));
+                    sendJson(exchange, 200, json);
+                }
+                case "POST" -> {
+                    Map<String, Object> body;
+                    try (InputStream in = exchange.getRequestBody()) {
+                        body = Json.parseObject(new String(in.readAllBytes(), StandardCharsets.UTF_8));
+                    }
+                    if (Json.getBoolean(body, "clear", false)) tracer.clear();
+                    tracer.setSampleEvery(Json.getLong(body, "sampleEvery", tracer.getSampleEvery()));
+
+                    Map<String, Object> json = new LinkedHashMap<>();
+                    json.put("sampleEvery", tracer.getSampleEvery());
+                    json.put("recorded", tracer.recorded());
+                    sendJson(exchange, 200, json);
+                }
+                default -> sendJson(exchange, 405, error("method not allowed"));
+            }
+        } catch (IllegalArgumentException e) {
+            sendJson(exchange, 400, error(e.getMessage()));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void submitJob(HttpExchange exchange) throws IOException {
+        Map<String, Object> body;
+        try (InputStream in = exchange.getRequestBody()) {
+            body = Json.parseObject(new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+        Object queryJson = body.containsKey("query") ? body.get("query") : body;
+        SearchQuery query = QueryJson.fromJson(Json.asObject(queryJson), scheduler.threadBudget());
+        SearchJob job = scheduler.submit(query, Json.getInt(body, "priority", 0));
+        sendJson(exchange, 201, job.statusJson());
+    }
+
+    private void sendResult(HttpExchange exchange, SearchJob job) throws IOException {
+        Map<String, Object> result = job.result();
+        if (result != null) {
+            sendJson(exchange, 200, result);
+        } else if (job.kind() == SearchJob.Kind.SEARCH) {
+            sendJson(exchange, 404, error("search jobs have no result; use /hits"));
+        } else if (job.state().isTerminal()) {
+            sendJson(exchange, 404, error("job finished without a result"));
+        } else {
+            sendJson(exchange, 409, error("job has not finished"));
+        }
+    }
+
+    private void listJobs(HttpExchange exchange) throws IOException {
+        List<Object> list = new ArrayList<>();
+        for (SearchJob job : scheduler.list()) {
+            list.add(job.statusJson());
+        }
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("jobs", list);
+        sendJson(exchange, 200, json);
+    }
+
+    /**
+     * CORS の確認（GET はどのオリジンにも、それ以外は設定したオリジンにだけ許可する）
+     * 許可しないリクエストと OPTIONS にはここで応答する
+     *
+     * @return リクエストを処理してよい場合はtrue
+     */
+    private boolean checkOrigin(HttpExchange exchange) throws IOException {
+        String method = exchange.getRequestMethod();
+        if ("GET".equals(method)) {
+            exchange.getResponseHeaders().set("Access-Control-Allow-Origin", "*");
+            return true;
+        }
+
+        // ブラウザは GET 以外のクロスオリジンのリクエストに Origin を付ける（付いていなければブラウザ以外から）
+        String origin = exchange.getRequestHeaders().getFirst("Origin");
+        if (origin != null && !origin.equals(allowedOrigin)) {
+            sendJson(exchange, 403, error("origin not allowed"));
+            return false;
+        }
+        if (origin != null) {
+            exchange.getResponseHeaders().set("Access-Control-Allow-Origin", allowedOrigin);
+            exchange.getResponseHeaders().set("Vary", "Origin");
+        }
+
+        if ("OPTIONS".equals(method)) {
+            if (origin == null) {
+                sendJson(exchange, 403, error("origin not allowed"));
+            } else {
+                exchange.getResponseHeaders().set("Access-Control-Allow-Methods", "GET, POST, DELETE");
+                exchange.getResponseHeaders().set("Access-Control-Allow-Headers", "Content-Type");
+                exchange.getResponseHeaders().set("Access-Control-Max-Age", "600");
+                exchange.sendResponseHeaders(204, -1);
+            }
+            return false;
+        }
+        // text/plain やフォームの本文はプリフライトなしで送られるため受け付けない
+        if ("POST".equals(method) && !isJson(exchange.getRequestHeaders().getFirst("Content-Type"))) {
+            sendJson(exchange, 415, error("Content-Type must be application/json"));
+            return false;
+        }
+        return true;
+    }
+
+    private static boolean isJson(String contentType) {
+        if (contentType == null) return false;
+        int semicolon = contentType.indexOf(';');
+        String type = semicolon >= 0 ? contentType.substring(0, semicolon) : contentType;
+        return type.trim().equalsIgnoreCase("application/json");
+    }
+
+    private void streamHits(HttpExchange exchange, SearchJob job) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/x-ndjson; charset=utf-8");
+        exchange.sendResponseHeaders(200, 0);
+        // 呼び出した時点までのヒットを返す
+        int end = job.hitCount();
+        try (OutputStream out = exchange.getResponseBody();
+             HitCursor cursor = new HitCursor(job, store, 0)) {
+            while (cursor.position() < end) {
+                List<String> lines = cursor.next(Math.min(EVENT_BATCH, end - cursor.position()));
+                if (lines.isEmpty()) break;
+                for (String line : lines) {
+                    out.write((line + "\n").getBytes(StandardCharsets.UTF_8));
+                }
+            }
+        }
+    }
+
+    /**
+     * SSEでヒットと進捗を配信（ジョブ終了で done イベントを送って閉じる）
+     */
+    private void streamEvents(HttpExchange exchange, SearchJob job) throws IOException {
+        int from = parseFrom(exchange.getRequestURI().getQuery());
+        exchange.getResponseHeaders().set("Content-Type", "text/event-stream; charset=utf-8");
+        exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+        exchange.sendResponseHeaders(200, 0);
+
+        try (OutputStream out = exchange.getResponseBody();
+             HitCursor cursor = new HitCursor(job, store, from)) {
+            long lastProgress = 0;
+            while (true) {
+                boolean terminal = job.state().isTerminal();
+                List<String> hits = cursor.next(EVENT_BATCH);
+                for (String hit : hits) {
+                    writeEvent(out, "hit", hit);
+                }
+                // 送りきれていない場合は待たずに続ける
+                if (hits.size() == EVENT_BATCH) {
+                    out.flush();
+                    continue;
+                }
+
+                long now = System.currentTimeMillis();
+                if (terminal || now - lastProgress >= EVENT_INTERVAL_MS) {
+                    writeEvent(out, "progress", Json.write(job.statusJson()));
+                    lastProgress = now;
+                }
+                out.flush();
+
+                if (terminal) {
+                    writeEvent(out, "done", Json.write(job.statusJson()));
+                    break;
+                }
+                job.awaitChange(cursor.position(), EVENT_INTERVAL_MS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static int parseFrom(String query) {
+        if (query == null) return 0;
+        for (String param : query.split("&")) {
+            if (param.startsWith("from=")) {
+                try {
+                    return Math.max(0, Integer.parseInt(param.substring(5)));
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("invalid from: " + param.substring(5));
+                }
+            }
+        }
+        return 0;
+    }
+
+    private static void writeEvent(OutputStream out, String event, String data) throws IOException {
+        out.write(("event: " + event + "\ndata: " + data + "\n\n").getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void sendJson(HttpExchange exchange, int status, Object json) throws IOException {
+        byte[] body = Json.write(json).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static Map<String, Object> error(String message) {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("error", message);
+        return json;
+    }
+}
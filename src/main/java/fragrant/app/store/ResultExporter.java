@@ -0,0 +1,306 @@
+package fragrant.app.store;
+
+import fragrant.temple.loot.DesertTempleLoot;
+import fragrant.temple.loot.LootType;
+import fragrant.utils.Json;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.LongConsumer;
+
+/**
+ * 結果を座標とチェストごとの戦利品付きでファイルに書き出す
+ * 戦利品の再生成と書式化は一定件数ずつ並列に行い、書き込みは元の順番で行う
+ * 同時に処理中の塊は threads * 2 個までなので、件数によらず使用メモリは一定
+ *
+ * <pre>
+ * CSV:   seed,chunkX,chunkZ,blockX,blockZ,chest1,chest2,chest3,chest4（アイテムは "; " 区切り）
+ * JSONL: 1行1件 {"seed", "chunkX", "chunkZ", "blockX", "blockZ", "chests": [[{"name", "count", "enchantment"}]]}
+ * バイナリ（ビッグエンディアン）:
+ *   int MAGIC, int VERSION
+ *   塊ごとに int 件数, short 名前の数, UTF 名前...,
+ *     1件ごとに long seed, int chunkX, int chunkZ, byte チェスト数,
+ *       チェストごとに byte アイテム数, アイテムごとに short 名前, byte 個数, short エンチャント名（なしは-1）, byte レベル
+ *   int 0（終端）
+ * </pre>
+ */
+public final class ResultExporter {
+    public static final int MAGIC = 0x4244544C; // "BDTL"
+    public static final int VERSION = 1;
+    public static final int BATCH_SIZE = 1024;
+
+    public enum Format {
+        CSV("csv"), JSONL("jsonl"), BINARY("bin");
+
+        private final String extension;
+
+        Format(String extension) {
+            this.extension = extension;
+        }
+
+        public String extension() {
+            return extension;
+        }
+
+        /**
+         * 拡張子から書式を決める（不明な場合は CSV）
+         */
+        public static Format forFile(Path file) {
+            String name = file.getFileName().toString().toLowerCase();
+            for (Format format : values()) {
+                if (name.endsWith("." + format.extension)) return format;
+            }
+            return CSV;
+        }
+    }
+
+    /**
+     * 書き出す行（表示順）
+     */
+    public record Rows(long[] seeds, int[] chunkX, int[] chunkZ) {
+        public Rows {
+            if (seeds.length != chunkX.length || seeds.length != chunkZ.length) {
+                throw new IllegalArgumentException("row arrays must have the same length");
+            }
+        }
+
+        public int size() {
+            return seeds.length;
+        }
+    }
+
+    private final int threads;
+
+    public ResultExporter(int threads) {
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * すべての行を書き出す（out は閉じない）
+     *
+     * @param progress 書き込んだ件数ごとに呼ばれる（書き込み側のスレッド）
+     * @param cancelled true を返したら途中でやめて CancellationException を投げる
+     * @return 書き出した件数
+     */
+    public long export(Rows rows, Format format, OutputStream out, LongConsumer progress,
+                       BooleanSupplier cancelled) throws IOException {
+        AtomicInteger threadNumber = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "export-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            out.write(header(format));
+
+            int batches = (rows.size() + BATCH_SIZE - 1) / BATCH_SIZE;
+            Deque<Future<byte[]>> pending = new ArrayDeque<>();
+            int submitted = 0;
+            long written = 0;
+            while (submitted < batches || !pending.isEmpty()) {
+                // 先の塊を一定数まで並列に処理させておく
+                while (submitted < batches && pending.size() < threads * 2) {
+                    int from = submitted++ * BATCH_SIZE;
+                    int to = Math.min(rows.size(), from + BATCH_SIZE);
+                    pending.addLast(executor.submit(() -> encode(rows, from, to, format)));
+                }
+                if (cancelled.getAsBoolean()) {
+                    pending.forEach(f -> f.cancel(true));
+                    throw new CancellationException("export cancelled");
+                }
+
+                out.write(await(pending.removeFirst()));
+                written += Math.min(BATCH_SIZE, rows.size() - written);
+                progress.accept(written);
+            }
+
+            out.write(footer(format));
+            out.flush();
+            return written;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static byte[] await(Future<byte[]> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("export interrupted");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof UncheckedIOException io) throw io.getCause();
+            throw new IllegalStateException("export failed", e.getCause());
+        }
+    }
+
+    private static byte[] header(Format format) {
+        return switch (format) {
+            case CSV -> "seed,chunkX,chunkZ,blockX,blockZ,chest1,chest2,chest3,chest4\n"
+                    .getBytes(StandardCharsets.UTF_8);
+            case JSONL -> new byte[0];
+            case BINARY -> ByteBuffer.allocate(8).putInt(MAGIC).putInt(VERSION).array();
+        };
+    }
+
+    private static byte[] footer(Format format) {
+        return format == Format.BINARY ? new byte[4] : new byte[0];
+    }
+
+    /**
+     * [from, to) の行の戦利品を生成して書式化する（ワーカースレッド）
+     */
+    static byte[] encode(Rows rows, int from, int to, Format format) {
+        List<List<List<LootType.LootItem>>> loot = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            Map<Integer, List<LootType.LootItem>> byChest =
+                    DesertTempleLoot.generateLootByChest(rows.seeds()[i], rows.chunkX()[i], rows.chunkZ()[i]);
+            List<List<LootType.LootItem>> chests = new ArrayList<>(byChest.size());
+            for (int chest = 0; chest < byChest.size(); chest++) {
+                chests.add(byChest.getOrDefault(chest, List.of()));
+            }
+            loot.add(chests);
+        }
+        return switch (format) {
+            case CSV -> csv(rows, from, to, loot);
+            case JSONL -> jsonl(rows, from, to, loot);
+            case BINARY -> binary(rows, from, to, loot);
+        };
+    }
+
+    private static byte[] csv(Rows rows, int from, int to, List<List<List<LootType.LootItem>>> loot) {
+        StringBuilder sb = new StringBuilder((to - from) * 256);
+        for (int i = from; i < to; i++) {
+            int x = rows.chunkX()[i];
+            int z = rows.chunkZ()[i];
+            sb.append(rows.seeds()[i]).append(',').append(x).append(',').append(z).append(',')
+                    .append(x * 16 + 8).append(',').append(z * 16 + 8);
+            for (List<LootType.LootItem> chest : loot.get(i - from)) {
+                sb.append(',');
+                StringBuilder cell = new StringBuilder();
+                for (LootType.LootItem item : chest) {
+                    if (!cell.isEmpty()) cell.append("; ");
+                    cell.append(item);
+                }
+                appendCsvCell(sb, cell);
+            }
+            sb.append('\n');
+        }
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void appendCsvCell(StringBuilder sb, CharSequence cell) {
+        boolean quote = false;
+        for (int i = 0; i < cell.length() && !quote; i++) {
+            char c = cell.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            sb.append(cell);
+            return;
+        }
+        sb.append('"');
+        for (int i = 0; i < cell.length(); i++) {
+            char c = cell.charAt(i);
+            if (c == '"') sb.append('"');
+            sb.append(c);
+        }
+        sb.append('"');
+    }
+
+    private static byte[] jsonl(Rows rows, int from, int to, List<List<List<LootType.LootItem>>> loot) {
+        StringBuilder sb = new StringBuilder((to - from) * 512);
+        for (int i = from; i < to; i++) {
+            int x = rows.chunkX()[i];
+            int z = rows.chunkZ()[i];
+            Map<String, Object> json = new LinkedHashMap<>();
+            json.put("seed", rows.seeds()[i]);
+            json.put("chunkX", x);
+            json.put("chunkZ", z);
+            json.put("blockX", x * 16 + 8);
+            json.put("blockZ", z * 16 + 8);
+
+            List<Object> chests = new ArrayList<>();
+            for (List<LootType.LootItem> chest : loot.get(i - from)) {
+                List<Object> items = new ArrayList<>(chest.size());
+                for (LootType.LootItem item : chest) {
+                    Map<String, Object> itemJson = new LinkedHashMap<>();
+                    itemJson.put("name", item.getName());
+                    itemJson.put("count", item.getCount());
+                    if (item.getEnchantment() != null) {
+                        itemJson.put("enchantment", Map.of("name", item.getEnchantment().name(),
+                                "level", item.getEnchantment().level()));
+                    }
+                    items.add(itemJson);
+                }
+                chests.add(items);
+            }
+            json.put("chests", chests);
+            sb.append(Json.write(json)).append('\n');
+        }
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] binary(Rows rows, int from, int to, List<List<List<LootType.LootItem>>> loot) {
+        // 名前の表は塊ごとに持つ（塊を並列に作れるようにするため）
+        Map<String, Integer> names = new LinkedHashMap<>();
+        for (List<List<LootType.LootItem>> chests : loot) {
+            for (List<LootType.LootItem> chest : chests) {
+                for (LootType.LootItem item : chest) {
+                    names.computeIfAbsent(item.getName(), _ -> names.size());
+                    if (item.getEnchantment() != null) {
+                        names.computeIfAbsent(item.getEnchantment().name(), _ -> names.size());
+                    }
+                }
+            }
+        }
+        if (names.size() > Short.MAX_VALUE) throw new IllegalStateException("too many names in one batch");
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream((to - from) * 64);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(to - from);
+            out.writeShort(names.size());
+            for (String name : names.keySet()) out.writeUTF(name);
+
+            for (int i = from; i < to; i++) {
+                out.writeLong(rows.seeds()[i]);
+                out.writeInt(rows.chunkX()[i]);
+                out.writeInt(rows.chunkZ()[i]);
+                List<List<LootType.LootItem>> chests = loot.get(i - from);
+                out.writeByte(chests.size());
+                for (List<LootType.LootItem> chest : chests) {
+                    out.writeByte(chest.size());
+                    for (LootType.LootItem item : chest) {
+                        out.writeShort(names.get(item.getName()));
+                        out.writeByte(item.getCount());
+                        LootType.Enchantment enchantment = item.getEnchantment();
+                        out.writeShort(enchantment != null ? names.get(enchantment.name()) : -1);
+                        out.writeByte(enchantment != null ? enchantment.level() : 0);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,772 @@
+package fragrant.app.store;
+
+import fragrant.app.search.ConditionalItem;
+import fragrant.app.search.Searcher;
+import fragrant.temple.loot.DesertTempleLootTable;
+import fragrant.temple.loot.LootType;
+import fragrant.utils.Json;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 検索結果をディレクトリに保存する追記型のストア（結果タブごとに1つ）
+ * アイテム数を記録しておくので、条件での絞り込みに戦利品の再生成がいらない
+ *
+ * <ul>
+ *   <li>store.json: 形式のバージョン、アイテムの並びと今の世代</li>
+ *   <li>hits.&lt;世代&gt;.dat: シード順に並べたレコード（メモリマップで読む）</li>
+ *   <li>tail.&lt;世代&gt;.dat: hits にまだ併合していない追記分（追加順）</li>
+ *   <li>deleted.&lt;世代&gt;.dat: 削除したシード（シード, 削除時点の tail の件数）</li>
+ *   <li>summaries.txt: アイテムの要約文字列（行番号がID）</li>
+ *   <li>index/&lt;item&gt;.idx: hits のアイテム数ごとの副索引</li>
+ * </ul>
+ * レコードは seed(8) chunkX(4) chunkZ(4) summaryId(4) と、チェストごと・アイテムごとの個数（1バイト、255で飽和）
+ * compact で tail と削除を反映した次の世代の hits を書き、副索引を作り直す
+ * 世代は store.json を書き換えた時点で切り替わるので、途中で終了しても追記分が二重に読まれることはない
+ */
+public final class ResultStore implements Closeable {
+    public static final int VERSION = 2;
+    public static final int CHESTS = 4;
+    private static final int TOTAL_SLOT = CHESTS;  // 副索引の全チェスト合計の区分
+    private static final int SLOTS = CHESTS + 1;
+    private static final int MAX_COUNT = 255;
+    private static final int HEADER_BYTES = 20;
+    private static final int WRITE_BUFFER_BYTES = 1 << 16;
+    private static final int INDEX_HEADER_BYTES = 8;
+    private static final Pattern GENERATION_FILE = Pattern.compile("(hits|tail|deleted)\\.(\\d+)\\.dat");
+
+    private final Path directory;
+    private final List<String> items;
+    private final Map<String, Integer> itemIndex = new HashMap<>();
+    private final int recordBytes;
+    private long generation;
+
+    private final List<String> summaries = new ArrayList<>();
+    private final Map<String, Integer> summaryIndex = new HashMap<>();
+    private BufferedWriter summaryWriter;
+
+    private FileChannel tailChannel;
+    private final ByteBuffer writeBuffer;
+    private long tailCount;
+
+    private final Map<Long, Long> deleted = new HashMap<>();
+    private FileChannel deletedChannel;
+
+    private Records primary;
+
+    /**
+     * 読み取り結果（シード順の hits の分のあとに追加順の tail の分）
+     */
+    public record Rows(long[] seeds, int[] chunkX, int[] chunkZ, int[] summaryIds, List<String> summaries) {
+        public int size() {
+            return seeds.length;
+        }
+    }
+
+    private ResultStore(Path directory, List<String> items, long generation) {
+        this.directory = directory;
+        this.items = items;
+        this.generation = generation;
+        for (int i = 0; i < items.size(); i++) {
+            itemIndex.put(items.get(i), i);
+        }
+        this.recordBytes = HEADER_BYTES + CHESTS * items.size();
+        this.writeBuffer = ByteBuffer.allocate(Math.max(WRITE_BUFFER_BYTES, recordBytes)).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * ストアを開く（ディレクトリがなければ作成する）
+     */
+    public static ResultStore open(Path directory) throws IOException {
+        Files.createDirectories(directory.resolve("index"));
+        Path meta = directory.resolve("store.json");
+        if (!Files.exists(meta)) {
+            ResultStore store = new ResultStore(directory, DesertTempleLootTable.getLootTable(), 0);
+            store.writeMeta(0);
+            store.load();
+            return store;
+        }
+
+        Map<String, Object> json = Json.parseObject(Files.readString(meta, StandardCharsets.UTF_8));
+        int version = Json.getInt(json, "version", 0);
+        if (version != 1 && version != VERSION) {
+            throw new IOException("unsupported result store version: " + directory);
+        }
+        List<String> items = new ArrayList<>();
+        for (Object item : Json.getList(json, "items")) {
+            items.add(item.toString());
+        }
+        ResultStore store = new ResultStore(directory, items, Json.getLong(json, "generation", 0));
+        if (version == 1) store.upgrade();
+        store.load();
+        return store;
+    }
+
+    /**
+     * 世代のない形式（バージョン1）のファイルを世代0に移す（途中で終了しても次に開いたときにやり直す）
+     */
+    private void upgrade() throws IOException {
+        for (String name : List.of("hits", "tail", "deleted")) {
+            Path old = directory.resolve(name + ".dat");
+            if (Files.exists(old)) {
+                Files.move(old, generationFile(name, 0), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        // 副索引の見出しの形式が違うので、次の compact で作り直す
+        deleteIndexes();
+        writeMeta(0);
+    }
+
+    /**
+     * store.json を書き換える（一時ファイルから置き換えるので、途中で終了しても前の内容が残る）
+     */
+    private void writeMeta(long generation) throws IOException {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("version", VERSION);
+        json.put("items", items);
+        json.put("generation", generation);
+        Path temp = directory.resolve("store.json.tmp");
+        Files.writeString(temp, Json.write(json), StandardCharsets.UTF_8);
+        Files.move(temp, directory.resolve("store.json"), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void load() throws IOException {
+        Path summaryFile = directory.resolve("summaries.txt");
+        if (Files.exists(summaryFile)) {
+            for (String line : Files.readAllLines(summaryFile, StandardCharsets.UTF_8)) {
+                summaryIndex.putIfAbsent(line, summaries.size());
+                summaries.add(line);
+            }
+        }
+        summaryWriter = Files.newBufferedWriter(summaryFile, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+
+        deleteOtherGenerations();
+        openGeneration();
+    }
+
+    /**
+     * 切り替えの途中で終了したときに残った、今の世代以外のファイルを削除する
+     */
+    private void deleteOtherGenerations() throws IOException {
+        List<Path> stale = new ArrayList<>();
+        try (var files = Files.list(directory)) {
+            for (Path file : files.toList()) {
+                Matcher matcher = GENERATION_FILE.matcher(file.getFileName().toString());
+                if (matcher.matches() && Long.parseLong(matcher.group(2)) != generation) stale.add(file);
+            }
+        }
+        for (Path file : stale) {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * 今の世代の tail と削除を開き、hits をマップする
+     */
+    private void openGeneration() throws IOException {
+        tailChannel = FileChannel.open(tailFile(),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        // 書き込み途中で終了したレコードは切り捨てる
+        tailCount = tailChannel.size() / recordBytes;
+        tailChannel.truncate(tailCount * recordBytes);
+        tailChannel.position(tailCount * recordBytes);
+
+        deletedChannel = FileChannel.open(deletedFile(),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long deletedCount = deletedChannel.size() / 16;
+        if (deletedCount > 0) {
+            ByteBuffer buf = readFully(deletedChannel, 0, Math.toIntExact(deletedCount * 16));
+            for (long i = 0; i < deletedCount; i++) {
+                deleted.merge(buf.getLong(), buf.getLong(), Math::max);
+            }
+        }
+        deletedChannel.truncate(deletedCount * 16);
+        deletedChannel.position(deletedCount * 16);
+
+        primary = Records.map(hitsFile(), recordBytes);
+    }
+
+    /**
+     * 次の世代に切り替える（次の世代の hits は書き終えておく。tail と削除は空になる）
+     * store.json を書き換えた時点で確定し、失敗した場合は今の世代のまま開き直す
+     */
+    private void switchGeneration(long next) throws IOException {
+        // 置き換えるファイルのマップを先に解放する
+        primary.close();
+        tailChannel.close();
+        deletedChannel.close();
+        try {
+            writeMeta(next);
+        } catch (IOException e) {
+            Files.deleteIfExists(generationFile("hits", next));
+            openGeneration();
+            throw e;
+        }
+
+        long previous = generation;
+        generation = next;
+        for (String name : List.of("hits", "tail", "deleted")) {
+            Files.deleteIfExists(generationFile(name, previous));
+        }
+        deleted.clear();
+        openGeneration();
+    }
+
+    private Path generationFile(String name, long generation) {
+        return directory.resolve(name + "." + generation + ".dat");
+    }
+
+    private Path hitsFile() {
+        return generationFile("hits", generation);
+    }
+
+    private Path tailFile() {
+        return generationFile("tail", generation);
+    }
+
+    private Path deletedFile() {
+        return generationFile("deleted", generation);
+    }
+
+    private static ByteBuffer readFully(FileChannel channel, long position, int bytes) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        while (buf.hasRemaining()) {
+            if (channel.read(buf, position + buf.position()) < 0) throw new EOFException();
+        }
+        return buf.flip();
+    }
+
+    /**
+     * 閉じたストアのディレクトリを削除する
+     */
+    public static void delete(Path directory) throws IOException {
+        if (!Files.isDirectory(directory)) return;
+        try (var files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    public Path directory() {
+        return directory;
+    }
+
+    /**
+     * 保存されているレコード数（削除済みを含む）
+     */
+    public synchronized long recordCount() {
+        return primary.count() + tailCount;
+    }
+
+    /**
+     * 検索結果を追記する（どのスレッドからでも呼べる）
+     */
+    public synchronized void append(long seed, int chunkX, int chunkZ, String summary,
+                                    List<LootType.LootItem> loot) throws IOException {
+        Integer summaryId = summaryIndex.get(summary);
+        if (summaryId == null) {
+            summaryId = summaries.size();
+            summaries.add(summary);
+            summaryIndex.put(summary, summaryId);
+            summaryWriter.write(summary);
+            summaryWriter.newLine();
+        }
+
+        if (writeBuffer.remaining() < recordBytes) writeTail();
+        writeBuffer.putLong(seed).putInt(chunkX).putInt(chunkZ).putInt(summaryId);
+        int countsAt = writeBuffer.position();
+        writeBuffer.put(new byte[CHESTS * items.size()]);
+
+        Map<Integer, List<LootType.LootItem>> chests = Searcher.chestSplit(loot);
+        for (int chest = 0; chest < CHESTS; chest++) {
+            for (LootType.LootItem item : chests.get(chest)) {
+                Integer index = itemIndex.get(item.getName());
+                if (index == null) continue;
+                int at = countsAt + chest * items.size() + index;
+                writeBuffer.put(at, (byte) Math.min(MAX_COUNT, (writeBuffer.get(at) & 0xFF) + item.getCount()));
+            }
+        }
+        tailCount++;
+    }
+
+    private void writeTail() throws IOException {
+        // レコードが参照する要約を先に書く
+        summaryWriter.flush();
+        writeBuffer.flip();
+        while (writeBuffer.hasRemaining()) {
+            tailChannel.write(writeBuffer);
+        }
+        writeBuffer.clear();
+    }
+
+    /**
+     * 書き込み待ちの内容をファイルに書き出す
+     */
+    public synchronized void flush() throws IOException {
+        writeTail();
+    }
+
+    /**
+     * シードを削除する（それまでに追記された同じシードのレコードがすべて見えなくなる）
+     */
+    public synchronized void delete(long[] seeds) throws IOException {
+        if (seeds.length == 0) return;
+        flush();
+        ByteBuffer buf = ByteBuffer.allocate(seeds.length * 16).order(ByteOrder.LITTLE_ENDIAN);
+        for (long seed : seeds) {
+            buf.putLong(seed).putLong(tailCount);
+            deleted.put(seed, tailCount);
+        }
+        buf.flip();
+        while (buf.hasRemaining()) {
+            deletedChannel.write(buf);
+        }
+    }
+
+    /**
+     * すべてのレコードと要約を削除する（空の次の世代に切り替える）
+     */
+    public synchronized void clear() throws IOException {
+        writeBuffer.clear();
+        switchGeneration(generation + 1);
+        deleteIndexes();
+
+        // 要約はレコードがなくなってから消す（途中で終了しても使われない行が残るだけ）
+        summaryWriter.close();
+        summaries.clear();
+        summaryIndex.clear();
+        summaryWriter = Files.newBufferedWriter(directory.resolve("summaries.txt"), StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    private void deleteIndexes() throws IOException {
+        for (String item : items) {
+            Files.deleteIfExists(indexFile(item));
+        }
+    }
+
+    private Path indexFile(String item) {
+        return directory.resolve("index").resolve(item.replaceFirst("^minecraft:", "") + ".idx");
+    }
+
+    private boolean isDeleted(long seed, long tailIndex) {
+        Long limit = deleted.get(seed);
+        return limit != null && tailIndex < limit;
+    }
+
+    /**
+     * tail と削除を反映した次の世代の hits を書いて切り替え、副索引を作り直す
+     * 処理中は追記が待たされる
+     */
+    public synchronized void compact() throws IOException {
+        flush();
+        if (tailCount == 0 && deleted.isEmpty()) return;
+
+        long total = primary.count() + tailCount;
+        if (total > Integer.MAX_VALUE) throw new IllegalStateException("too many records: " + total);
+        long next = generation + 1;
+        try (Records tail = Records.map(tailFile(), recordBytes);
+             FileChannel out = FileChannel.open(generationFile("hits", next), StandardOpenOption.CREATE,
+                     StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            long[] order = mergeOrder(primary, tail);
+            ByteBuffer buf = ByteBuffer.allocate(Math.max(WRITE_BUFFER_BYTES, recordBytes));
+            byte[] record = new byte[recordBytes];
+            for (long key : order) {
+                if (key < 0) primary.read(-1 - key, record);
+                else tail.read(key, record);
+                if (buf.remaining() < recordBytes) {
+                    buf.flip();
+                    while (buf.hasRemaining()) out.write(buf);
+                    buf.clear();
+                }
+                buf.put(record);
+            }
+            buf.flip();
+            while (buf.hasRemaining()) out.write(buf);
+            // 世代を切り替える前に中身を確定させる
+            out.force(true);
+        }
+        switchGeneration(next);
+        writeIndexes();
+    }
+
+    /**
+     * 残すレコードのシード順の並び（hits は -1 - 位置、tail は位置）
+     * hits はシード順なので、tail の分だけを並べ替えて併合する
+     */
+    private long[] mergeOrder(Records primary, Records tail) {
+        List<Long> tailKeys = new ArrayList<>();
+        for (long i = 0; i < tailCount; i++) {
+            if (!isDeleted(tail.seed(i), i)) tailKeys.add(i);
+        }
+        tailKeys.sort((a, b) -> compareRecords(tail, a, tail, b));
+
+        long[] order = new long[(int) (primary.count() + tailKeys.size())];
+        int size = 0;
+        int t = 0;
+        for (long i = 0; i < primary.count(); i++) {
+            if (isDeleted(primary.seed(i), -1)) continue;
+            while (t < tailKeys.size() && compareRecords(tail, tailKeys.get(t), primary, i) < 0) {
+                order[size++] = tailKeys.get(t++);
+            }
+            order[size++] = -1 - i;
+        }
+        while (t < tailKeys.size()) order[size++] = tailKeys.get(t++);
+        return Arrays.copyOf(order, size);
+    }
+
+    /**
+     * シード順、同じシードは座標順
+     */
+    private static int compareRecords(Records a, long ra, Records b, long rb) {
+        int c = Long.compare(a.seed(ra), b.seed(rb));
+        return c != 0 ? c : Long.compare(a.position(ra), b.position(rb));
+    }
+
+    /**
+     * アイテムごとに、区分（チェスト1-4と合計）ごと・個数ごとのレコード番号の一覧を書き出す
+     * 個数0のレコードは含めない
+     * <pre>
+     * long                      作成時の世代（異なる場合は使わない）
+     * int[SLOTS][MAX_COUNT + 2] 個数 c のレコードは ordinals[start[s][c] .. start[s][c + 1])
+     * int[]                     レコード番号（区分・個数ごとに昇順）
+     * </pre>
+     */
+    private void writeIndexes() throws IOException {
+        int count = (int) primary.count();
+        int itemCount = items.size();
+        int[][][] buckets = new int[itemCount][SLOTS][MAX_COUNT + 2];
+
+        // 1回目: 個数ごとの件数
+        for (int r = 0; r < count; r++) {
+            for (int item = 0; item < itemCount; item++) {
+                int sum = 0;
+                for (int chest = 0; chest < CHESTS; chest++) {
+                    int c = primary.count(r, chest * itemCount + item);
+                    sum += c;
+                    if (c > 0) buckets[item][chest][c + 1]++;
+                }
+                if (sum > 0) buckets[item][TOTAL_SLOT][Math.min(MAX_COUNT, sum) + 1]++;
+            }
+        }
+
+        for (int item = 0; item < itemCount; item++) {
+            int[][] start = buckets[item];
+            int offset = 0;
+            for (int slot = 0; slot < SLOTS; slot++) {
+                start[slot][0] = offset;
+                for (int c = 1; c <= MAX_COUNT + 1; c++) {
+                    start[slot][c] += start[slot][c - 1];
+                }
+                offset = start[slot][MAX_COUNT + 1];
+            }
+            int[][] cursor = new int[SLOTS][];
+            for (int slot = 0; slot < SLOTS; slot++) cursor[slot] = start[slot].clone();
+
+            // 2回目: レコード番号を振り分ける
+            int[] ordinals = new int[offset];
+            for (int r = 0; r < count; r++) {
+                int sum = 0;
+                for (int chest = 0; chest < CHESTS; chest++) {
+                    int c = primary.count(r, chest * itemCount + item);
+                    sum += c;
+                    if (c > 0) ordinals[cursor[chest][c]++] = r;
+                }
+                if (sum > 0) ordinals[cursor[TOTAL_SLOT][Math.min(MAX_COUNT, sum)]++] = r;
+            }
+
+            Path temp = indexFile(items.get(item) + ".tmp");
+            try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer buf = ByteBuffer.allocate(INDEX_HEADER_BYTES + 4 * (SLOTS * (MAX_COUNT + 2)
+                        + ordinals.length)).order(ByteOrder.LITTLE_ENDIAN);
+                buf.putLong(generation);
+                for (int[] slotStart : start) {
+                    for (int s : slotStart) buf.putInt(s);
+                }
+                for (int ordinal : ordinals) buf.putInt(ordinal);
+                buf.flip();
+                while (buf.hasRemaining()) out.write(buf);
+            }
+            Files.move(temp, indexFile(items.get(item)), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+
+    /**
+     * すべてのレコードを読む（削除済みを除く）
+     */
+    public synchronized Rows readAll() throws IOException {
+        flush();
+        try (Records tail = Records.map(tailFile(), recordBytes)) {
+            RowsBuilder rows = new RowsBuilder();
+            for (long i = 0; i < primary.count(); i++) {
+                if (!isDeleted(primary.seed(i), -1)) rows.add(primary, i);
+            }
+            for (long i = 0; i < tailCount; i++) {
+                if (!isDeleted(tail.seed(i), i)) rows.add(tail, i);
+            }
+            return rows.build(summaries);
+        }
+    }
+
+    /**
+     * 条件をすべて満たすレコードを読む（条件の意味は Searcher.checkMatch と同じ）
+     * hits は最も絞り込める条件の副索引で候補を選び、tail はすべて調べる
+     */
+    public synchronized Rows query(List<ConditionalItem> conditions) throws IOException {
+        flush();
+        int[] item = new int[conditions.size()];
+        int[] lo = new int[conditions.size()];
+        int[] hi = new int[conditions.size()];
+        int[] slot = new int[conditions.size()];
+        for (int i = 0; i < conditions.size(); i++) {
+            ConditionalItem condition = conditions.get(i);
+            Integer index = itemIndex.get(condition.getName());
+            item[i] = index == null ? -1 : index;
+            int chest = condition.getTargetChestId();
+            slot[i] = chest == -1 ? TOTAL_SLOT : chest >= 0 && chest < CHESTS ? chest : -1;
+            int n = condition.getCount();
+            switch (condition.getCompareOperator()) {
+                case EQUAL -> { lo[i] = n; hi[i] = n; }
+                case GREATER_OR_EQUAL -> { lo[i] = n; hi[i] = Integer.MAX_VALUE; }
+                case LESS_OR_EQUAL -> { lo[i] = Integer.MIN_VALUE; hi[i] = n; }
+            }
+        }
+
+        RowsBuilder rows = new RowsBuilder();
+        int[] candidates = indexCandidates(item, slot, lo, hi);
+        if (candidates == null) {
+            for (long r = 0; r < primary.count(); r++) {
+                if (matches(primary, r, item, slot, lo, hi) && !isDeleted(primary.seed(r), -1)) rows.add(primary, r);
+            }
+        } else {
+            for (int r : candidates) {
+                if (matches(primary, r, item, slot, lo, hi) && !isDeleted(primary.seed(r), -1)) rows.add(primary, r);
+            }
+        }
+        try (Records tail = Records.map(tailFile(), recordBytes)) {
+            for (long r = 0; r < tailCount; r++) {
+                if (matches(tail, r, item, slot, lo, hi) && !isDeleted(tail.seed(r), r)) rows.add(tail, r);
+            }
+        }
+        return rows.build(summaries);
+    }
+
+    /**
+     * 1以上の個数を求める条件のうち、候補が最も少ない副索引のレコード番号（昇順）
+     * 使える条件がない場合や副索引がない場合は null（全件を調べる）
+     */
+    private int[] indexCandidates(int[] item, int[] slot, int[] lo, int[] hi) throws IOException {
+        if (primary.count() == 0) return new int[0];
+
+        int best = -1;
+        long bestFrom = 0, bestTo = 0;
+        FileChannel bestChannel = null;
+        try {
+            for (int i = 0; i < item.length; i++) {
+                if (lo[i] < 1 || lo[i] > hi[i]) continue;
+                if (item[i] < 0 || slot[i] < 0) return new int[0];  // 常に0個
+                Path file = indexFile(items.get(item[i]));
+                if (!Files.exists(file)) return null;
+
+                FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+                int from = Math.min(MAX_COUNT, lo[i]);
+                int to = Math.min(MAX_COUNT, hi[i]) + 1;
+                ByteBuffer header = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN);
+                long base = INDEX_HEADER_BYTES + 4L * slot[i] * (MAX_COUNT + 2);
+                channel.read(header.limit(8), 0);
+                channel.read(header.limit(12), base + 4L * from);
+                channel.read(header.limit(16), base + 4L * to);
+                if (header.getLong(0) != generation) {
+                    channel.close();
+                    return null;
+                }
+                long start = header.getInt(8);
+                long end = header.getInt(12);
+                if (best < 0 || end - start < bestTo - bestFrom) {
+                    if (bestChannel != null) bestChannel.close();
+                    best = i;
+                    bestFrom = start;
+                    bestTo = end;
+                    bestChannel = channel;
+                } else {
+                    channel.close();
+                }
+            }
+            if (best < 0) return null;
+
+            int[] ordinals = new int[(int) (bestTo - bestFrom)];
+            if (ordinals.length > 0) {
+                long ordinalsAt = INDEX_HEADER_BYTES + 4L * SLOTS * (MAX_COUNT + 2);
+                readFully(bestChannel, ordinalsAt + 4 * bestFrom, 4 * ordinals.length).asIntBuffer().get(ordinals);
+            }
+            // 個数ごとに並んでいるので、シード順に戻す
+            Arrays.sort(ordinals);
+            return ordinals;
+        } finally {
+            if (bestChannel != null) bestChannel.close();
+        }
+    }
+
+    private boolean matches(Records records, long r, int[] item, int[] slot, int[] lo, int[] hi) {
+        int itemCount = items.size();
+        for (int i = 0; i < item.length; i++) {
+            int count = 0;
+            if (item[i] >= 0) {
+                if (slot[i] == TOTAL_SLOT) {
+                    for (int chest = 0; chest < CHESTS; chest++) {
+                        count += records.count(r, chest * itemCount + item[i]);
+                    }
+                } else if (slot[i] >= 0 && slot[i] < CHESTS) {
+                    count = records.count(r, slot[i] * itemCount + item[i]);
+                }
+            }
+            if (count < lo[i] || count > hi[i]) return false;
+        }
+        return true;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        flush();
+        summaryWriter.close();
+        tailChannel.close();
+        deletedChannel.close();
+        primary.close();
+    }
+
+    /**
+     * レコードファイルをメモリマップで読む（閉じるとすぐにマップを解放する）
+     */
+    private static final class Records implements Closeable {
+        private static final ValueLayout.OfLong LONG = ValueLayout.JAVA_LONG_UNALIGNED.withOrder(ByteOrder.LITTLE_ENDIAN);
+        private static final ValueLayout.OfInt INT = ValueLayout.JAVA_INT_UNALIGNED.withOrder(ByteOrder.LITTLE_ENDIAN);
+
+        private final int recordBytes;
+        private final long count;
+        private final Arena arena;  // ファイルがない場合はnull
+        private final MemorySegment data;
+
+        private Records(int recordBytes, long count, Arena arena, MemorySegment data) {
+            this.recordBytes = recordBytes;
+            this.count = count;
+            this.arena = arena;
+            this.data = data;
+        }
+
+        static Records map(Path file, int recordBytes) throws IOException {
+            if (!Files.exists(file)) return new Records(recordBytes, 0, null, MemorySegment.NULL);
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                long count = channel.size() / recordBytes;
+                if (count == 0) return new Records(recordBytes, 0, null, MemorySegment.NULL);
+                Arena arena = Arena.ofShared();
+                try {
+                    MemorySegment data = channel.map(FileChannel.MapMode.READ_ONLY, 0, count * recordBytes, arena);
+                    return new Records(recordBytes, count, arena, data);
+                } catch (IOException | RuntimeException e) {
+                    arena.close();
+                    throw e;
+                }
+            }
+        }
+
+        long count() {
+            return count;
+        }
+
+        private long offset(long r) {
+            return r * recordBytes;
+        }
+
+        long seed(long r) {
+            return data.get(LONG, offset(r));
+        }
+
+        int chunkX(long r) {
+            return data.get(INT, offset(r) + 8);
+        }
+
+        int chunkZ(long r) {
+            return data.get(INT, offset(r) + 12);
+        }
+
+        /**
+         * 座標の順序（x, z の順）
+         */
+        long position(long r) {
+            return ((long) chunkX(r) << 32) | (chunkZ(r) & 0xFFFFFFFFL);
+        }
+
+        int summaryId(long r) {
+            return data.get(INT, offset(r) + 16);
+        }
+
+        int count(long r, int slot) {
+            return data.get(ValueLayout.JAVA_BYTE, offset(r) + HEADER_BYTES + slot) & 0xFF;
+        }
+
+        void read(long r, byte[] record) {
+            MemorySegment.copy(data, ValueLayout.JAVA_BYTE, offset(r), record, 0, recordBytes);
+        }
+
+        @Override
+        public void close() {
+            if (arena != null) arena.close();
+        }
+    }
+
+    private static final class RowsBuilder {
+        private long[] seeds = new long[1024];
+        private int[] chunkX = new int[1024];
+        private int[] chunkZ = new int[1024];
+        private int[] summaryIds = new int[1024];
+        private int size;
+
+        void add(Records records, long r) {
+            if (size == seeds.length) {
+                int capacity = size * 2;
+                seeds = Arrays.copyOf(seeds, capacity);
+                chunkX = Arrays.copyOf(chunkX, capacity);
+                chunkZ = Arrays.copyOf(chunkZ, capacity);
+                summaryIds = Arrays.copyOf(summaryIds, capacity);
+            }
+            seeds[size] = records.seed(r);
+            chunkX[size] = records.chunkX(r);
+            chunkZ[size] = records.chunkZ(r);
+            summaryIds[size] = records.summaryId(r);
+            size++;
+        }
+
+        Rows build(List<String> summaries) {
+            return new Rows(Arrays.copyOf(seeds, size), Arrays.copyOf(chunkX, size), Arrays.copyOf(chunkZ, size),
+                    Arrays.copyOf(summaryIds, size), List.copyOf(summaries));
+        }
+    }
+}
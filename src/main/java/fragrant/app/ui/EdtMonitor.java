@@ -0,0 +1,203 @@
+package fragrant.app.ui;
+
+import java.awt.*;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * EDTの応答の遅れを計測する（調査用、既定では動かさない）
+ * 一定間隔でEDTに空のイベントを送り、実行されるまでの時間を分布に記録する
+ * しきい値を超えても実行されない場合はEDTのスタックを定期的に記録し、止まっていた箇所を残す
+ *
+ * -Dfragrant.edtmonitor=true で起動時から有効になる（しきい値は -Dfragrant.edtmonitor.thresholdMs）
+ */
+public final class EdtMonitor {
+    public static final String PROPERTY = "fragrant.edtmonitor";
+    public static final String THRESHOLD_PROPERTY = "fragrant.edtmonitor.thresholdMs";
+    private static final long PROBE_INTERVAL_MS = 10;
+    private static final long SAMPLE_INTERVAL_MS = 100;
+    private static final int MAX_STALLS = 100;
+    private static final int MAX_SAMPLES_PER_STALL = 20;
+    private static final EdtMonitor INSTANCE = new EdtMonitor();
+
+    /**
+     * しきい値を超えてEDTが止まっていた記録
+     *
+     * @param startMillis 止まり始めた時刻（エポックミリ秒）
+     * @param durationNanos 応答するまでの時間
+     * @param samples 止まっている間に採ったEDTのスタック（古い順）
+     */
+    public record Stall(long startMillis, long durationNanos, List<StackTraceElement[]> samples) {
+        /**
+         * 止まっていた箇所（最初のサンプルで JDK 以外の最も内側のフレーム）
+         */
+        public String where() {
+            if (samples.isEmpty()) return "";
+            for (StackTraceElement frame : samples.getFirst()) {
+                String className = frame.getClassName();
+                if (!className.startsWith("java.") && !className.startsWith("javax.")
+                        && !className.startsWith("sun.") && !className.startsWith("jdk.")) {
+                    return frame.toString();
+                }
+            }
+            return samples.getFirst().length > 0 ? samples.getFirst()[0].toString() : "";
+        }
+    }
+
+    private final LatencyHistogram histogram = new LatencyHistogram();
+    private final Deque<Stall> stalls = new ArrayDeque<>();
+    private volatile long thresholdMs = Long.getLong(THRESHOLD_PROPERTY, 500);
+    private volatile Thread edt;
+    private volatile long startedAt;
+    private Thread watchdog;
+
+    private EdtMonitor() { }
+
+    public static EdtMonitor get() {
+        return INSTANCE;
+    }
+
+    /**
+     * システムプロパティで指定されていれば計測を始める
+     */
+    public static void startIfRequested() {
+        if (Boolean.getBoolean(PROPERTY)) INSTANCE.start();
+    }
+
+    public synchronized void start() {
+        if (watchdog != null) return;
+        startedAt = System.currentTimeMillis();
+        watchdog = new Thread(this::run, "edt-monitor");
+        watchdog.setDaemon(true);
+        watchdog.start();
+    }
+
+    public synchronized void stop() {
+        if (watchdog == null) return;
+        watchdog.interrupt();
+        watchdog = null;
+    }
+
+    public synchronized boolean isRunning() {
+        return watchdog != null;
+    }
+
+    public long getThresholdMs() {
+        return thresholdMs;
+    }
+
+    public void setThresholdMs(long thresholdMs) {
+        if (thresholdMs <= 0) throw new IllegalArgumentException("threshold must be positive: " + thresholdMs);
+        this.thresholdMs = thresholdMs;
+    }
+
+    public LatencyHistogram histogram() {
+        return histogram;
+    }
+
+    public List<Stall> stalls() {
+        synchronized (stalls) {
+            return List.copyOf(stalls);
+        }
+    }
+
+    public void clear() {
+        histogram.reset();
+        synchronized (stalls) {
+            stalls.clear();
+        }
+        startedAt = System.currentTimeMillis();
+    }
+
+    private void run() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                probe();
+                Thread.sleep(PROBE_INTERVAL_MS);
+            }
+        } catch (InterruptedException e) {
+            // stop() で終了
+        }
+    }
+
+    /**
+     * 空のイベントを1つ送り、実行されるまで待つ
+     */
+    private void probe() throws InterruptedException {
+        CountDownLatch dispatched = new CountDownLatch(1);
+        long[] dispatchedAt = new long[1];
+        long postedMillis = System.currentTimeMillis();
+        long posted = System.nanoTime();
+        EventQueue.invokeLater(() -> {
+            edt = Thread.currentThread();
+            dispatchedAt[0] = System.nanoTime();
+            dispatched.countDown();
+        });
+
+        List<StackTraceElement[]> samples = new ArrayList<>();
+        long wait = thresholdMs;
+        while (!dispatched.await(wait, TimeUnit.MILLISECONDS)) {
+            // しきい値を超えたので止まっている箇所を記録する（EDTが入れ替わっていれば記録しない）
+            Thread thread = edt;
+            if (thread != null && samples.size() < MAX_SAMPLES_PER_STALL) {
+                samples.add(thread.getStackTrace());
+            }
+            wait = SAMPLE_INTERVAL_MS;
+        }
+
+        long latency = dispatchedAt[0] - posted;
+        histogram.record(latency / 1000);
+        if (!samples.isEmpty()) {
+            synchronized (stalls) {
+                if (stalls.size() >= MAX_STALLS) stalls.removeFirst();
+                stalls.addLast(new Stall(postedMillis, latency, List.copyOf(samples)));
+            }
+        }
+    }
+
+    /**
+     * 分布と記録をJSONにする（保存用）
+     */
+    public Map<String, Object> toJson() {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("since", startedAt);
+        json.put("thresholdMs", thresholdMs);
+        json.put("count", histogram.count());
+        json.put("meanMicros", Math.round(histogram.mean()));
+        json.put("p50Micros", histogram.percentile(50));
+        json.put("p90Micros", histogram.percentile(90));
+        json.put("p99Micros", histogram.percentile(99));
+        json.put("p999Micros", histogram.percentile(99.9));
+        json.put("maxMicros", histogram.max());
+
+        List<Object> buckets = new ArrayList<>();
+        for (long[] bucket : histogram.buckets()) {
+            buckets.add(List.of(bucket[0], bucket[1], bucket[2]));
+        }
+        json.put("buckets", buckets);
+
+        List<Object> stallList = new ArrayList<>();
+        for (Stall stall : stalls()) {
+            Map<String, Object> s = new LinkedHashMap<>();
+            s.put("start", stall.startMillis());
+            s.put("durationMs", stall.durationNanos() / 1_000_000);
+            s.put("where", stall.where());
+            List<Object> samples = new ArrayList<>();
+            for (StackTraceElement[] sample : stall.samples()) {
+                List<Object> frames = new ArrayList<>();
+                for (StackTraceElement frame : sample) frames.add(frame.toString());
+                samples.add(frames);
+            }
+            s.put("samples", samples);
+            stallList.add(s);
+        }
+        json.put("stalls", stallList);
+        return json;
+    }
+}
@@ -0,0 +1,141 @@
+package fragrant.app.ui;
+
+import fragrant.utils.Json;
+
+import javax.swing.*;
+import javax.swing.table.DefaultTableModel;
+import java.awt.*;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * EDTの応答時間の分布と、止まっていた記録（EDTのスタック）を表示し、JSONで保存する
+ */
+public class EdtMonitorDialog extends JDialog {
+    private static final int BAR_WIDTH = 40;
+
+    private final Frame parent;
+    private final EdtMonitor monitor;
+    private final DefaultTableModel model;
+    private final JLabel summary = new JLabel();
+    private final JTextArea detail = new JTextArea();
+    private List<EdtMonitor.Stall> stalls = List.of();
+
+    public EdtMonitorDialog(Frame parent, EdtMonitor monitor) {
+        super(parent, parent.t("edtMonitor"), false);
+        this.parent = parent;
+        this.monitor = monitor;
+        this.model = new DefaultTableModel(parent.t("stallHeader").split(","), 0);
+
+        JTable table = new JTable(model);
+        table.setDefaultEditor(Object.class, null);
+        table.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        table.getSelectionModel().addListSelectionListener(e -> {
+            if (e.getValueIsAdjusting()) return;
+            int row = table.getSelectedRow();
+            detail.setText(row < 0 ? histogramText() : stackText(stalls.get(row)));
+            detail.setCaretPosition(0);
+        });
+        detail.setEditable(false);
+        detail.setFont(new Font(Font.MONOSPACED, Font.PLAIN, detail.getFont().getSize()));
+
+        JSplitPane split = new JSplitPane(JSplitPane.VERTICAL_SPLIT, new JScrollPane(table), new JScrollPane(detail));
+        split.setResizeWeight(0.4);
+
+        JCheckBox enabledCheckBox = new JCheckBox(parent.t("edtMonitorEnabled"), monitor.isRunning());
+        enabledCheckBox.addActionListener(_ -> {
+            if (enabledCheckBox.isSelected()) {
+                monitor.start();
+            } else {
+                monitor.stop();
+            }
+        });
+        JButton refreshButton = new JButton(parent.t("refresh"));
+        refreshButton.addActionListener(_ -> refresh());
+        JButton clearButton = new JButton(parent.t("clear"));
+        clearButton.addActionListener(_ -> {
+            monitor.clear();
+            refresh();
+        });
+        JButton saveButton = new JButton(parent.t("saveJson"));
+        saveButton.addActionListener(_ -> save());
+
+        JPanel buttons = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        buttons.add(enabledCheckBox);
+        buttons.add(refreshButton);
+        buttons.add(clearButton);
+        buttons.add(saveButton);
+
+        summary.setBorder(BorderFactory.createEmptyBorder(4, 4, 4, 4));
+        add(summary, BorderLayout.NORTH);
+        add(split, BorderLayout.CENTER);
+        add(buttons, BorderLayout.SOUTH);
+        setSize(760, 520);
+        setLocationRelativeTo(parent);
+        refresh();
+    }
+
+    private void refresh() {
+        LatencyHistogram histogram = monitor.histogram();
+        summary.setText(String.format("n=%,d  mean=%,d µs  p50=%,d  p90=%,d  p99=%,d  p99.9=%,d  max=%,d µs",
+                histogram.count(), Math.round(histogram.mean()), histogram.percentile(50),
+                histogram.percentile(90), histogram.percentile(99), histogram.percentile(99.9), histogram.max()));
+
+        stalls = monitor.stalls();
+        model.setRowCount(0);
+        SimpleDateFormat format = new SimpleDateFormat("HH:mm:ss.SSS");
+        for (EdtMonitor.Stall stall : stalls) {
+            model.addRow(new Object[]{
+                    format.format(new Date(stall.startMillis())),
+                    stall.durationNanos() / 1_000_000,
+                    stall.samples().size(),
+                    stall.where()
+            });
+        }
+        detail.setText(histogramText());
+        detail.setCaretPosition(0);
+    }
+
+    /**
+     * 件数のある区間を棒グラフで表示する
+     */
+    private String histogramText() {
+        long[][] buckets = monitor.histogram().buckets();
+        long maxCount = 1;
+        for (long[] bucket : buckets) maxCount = Math.max(maxCount, bucket[2]);
+
+        StringBuilder sb = new StringBuilder();
+        for (long[] bucket : buckets) {
+            int bar = (int) Math.max(1, bucket[2] * BAR_WIDTH / maxCount);
+            sb.append(String.format("%,10d - %,10d µs %,9d %s%n", bucket[0], bucket[1], bucket[2], "#".repeat(bar)));
+        }
+        return sb.toString();
+    }
+
+    private String stackText(EdtMonitor.Stall stall) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < stall.samples().size(); i++) {
+            sb.append("#").append(i + 1).append('\n');
+            for (StackTraceElement frame : stall.samples().get(i)) {
+                sb.append("    at ").append(frame).append('\n');
+            }
+        }
+        return sb.toString();
+    }
+
+    private void save() {
+        JFileChooser chooser = new JFileChooser();
+        chooser.setDialogTitle(parent.t("saveJson"));
+        if (chooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) return;
+
+        try {
+            Files.writeString(chooser.getSelectedFile().toPath(), Json.write(monitor.toJson()), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            JOptionPane.showMessageDialog(this, e.getMessage());
+        }
+    }
+}
@@ -1,49 +1,84 @@
 package fragrant.app.ui;
 
+import fragrant.app.search.FairShareScheduler;
+import fragrant.app.search.SearchEngine;
+import fragrant.app.search.SeedTracer;
+import fragrant.app.store.ResultStore;
 import fragrant.app.ui.tab.Chest;
 import fragrant.app.ui.tab.Result;
 import fragrant.app.ui.tab.Temple;
 import fragrant.utils.Position;
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
-import javax.imageio.ImageIO;
 import java.awt.*;
-import java.net.URL;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
 import java.util.prefs.Preferences;
 
 public class Frame extends JFrame {
+    private static final Path RESULTS_DIRECTORY = Path.of("results");  // 結果タブごとの保存先（results/<番号>）
     private final Preferences prefs = Preferences.userNodeForPackage(Frame.class);
     private final Language languager;
-    private final AtomicBoolean isCalculating = new AtomicBoolean(false);
+    private final AtomicInteger runningSearches = new AtomicInteger(0);  // 検索中の結果タブの数
     private final AtomicLong currentSeed = new AtomicLong(0);
     private final Map<Integer, ImageIcon> selectedIcons = new HashMap<>();
     private final Map<Integer, ImageIcon> unselectedIcons = new HashMap<>();
     private int fontSize;
     private JTabbedPane tabPane;
     private Temple templeTab;
-    private Chest chestTab;
-    private Result resultTab;
+    private LazyTab<Chest> chestTab;
+    private final List<LazyTab<Result>> resultTabs = new ArrayList<>();
+    // 中身を作る前の結果タブが使う保存先（新しいタブに同じ番号を使わないようにする）
+    private final Set<Path> reservedResultDirectories = new HashSet<>();
+    private final FairShareScheduler searchScheduler;
     private JSpinner threadSpinner;
     private boolean useBlockCoordinates;
 
     public Frame() {
         languager = new Language(_ -> updateLanguage());
-        Position.setLanguage(languager);
+        Position.setLanguage(languager::get);
 
         fontSize = prefs.getInt("fontSize", 12);
         useBlockCoordinates = prefs.getBoolean("useBlockCoordinates", false);
+        searchScheduler = new FairShareScheduler(new SearchEngine(), getThreadCount());
+        searchScheduler.engine().throttle().setTargetFraction(prefs.getInt("cpuLimit", 100) / 100.0);
 
         initUI();
+
+        // 共有ワーカープールでの検索ごとの割り当てを結果タブに表示する
+        new Timer(1000, _ -> {
+            List<FairShareScheduler.SearchStats> stats = searchScheduler.stats();
+            for (LazyTab<Result> tab : resultTabs) {
+                tab.ifBuilt(result -> result.showShare(stats));
+            }
+        }).start();
     }
 
     private void initUI() {
         setTitle(t("title"));
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosing(WindowEvent e) {
+                for (LazyTab<Result> tab : resultTabs) {
+                    tab.ifBuilt(Result::closeStore);
+                }
+            }
+        });
         setSize(620, 450);
         setLocationRelativeTo(null);
 
@@ -68,23 +103,24 @@ public class Frame extends JFrame {
     }
 
     private void loadAppIcon() {
-        try {
-            URL appIconUrl = getClass().getResource("/icon/app.png");
-            if (appIconUrl != null) {
-                Image originalIcon = ImageIO.read(appIconUrl);
-                Image resizedIcon = originalIcon.getScaledInstance(100, 100, Image.SCALE_SMOOTH);
-                setIconImage(resizedIcon);
+        IconAtlas.request(List.of("app"), 100, () -> {
+            ImageIcon icon = IconAtlas.get("app", 100);
+            if (icon != null) {
+                setIconImage(icon.getImage());
             } else {
                 System.err.println("アプリアイコンが見つかりません: /icon/app.png");
             }
-        } catch (Exception e) {
-            System.err.println("アプリアイコンの読み込みエラー: " + e.getMessage());
-        }
+        });
     }
 
     private JPanel createTopPanel() {
         JPanel topPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
 
+        JButton newResultButton = new JButton("+");
+        newResultButton.setToolTipText(t("newResultTab"));
+        newResultButton.addActionListener(_ -> addResultTab());
+        topPanel.add(newResultButton);
+
         JButton settingsButton = createSettingsButton();
         topPanel.add(settingsButton);
 
@@ -92,19 +128,15 @@ public class Frame extends JFrame {
     }
 
     private JButton createSettingsButton() {
-        JButton settingsButton;
-
-        try {
-            URL iconUrl = getClass().getResource("/icon/tab/Settings.png");
-            if (iconUrl != null) {
-                Image img = ImageIO.read(iconUrl).getScaledInstance(20, 20, Image.SCALE_SMOOTH);
-                settingsButton = new JButton(new ImageIcon(img));
-            } else {
-                settingsButton = new JButton("⚙");
+        // アイコンを作り終えるまでは文字で表示する
+        JButton settingsButton = new JButton("⚙");
+        IconAtlas.request(List.of("tab/Settings"), 20, () -> {
+            ImageIcon icon = IconAtlas.get("tab/Settings", 20);
+            if (icon != null) {
+                settingsButton.setText(null);
+                settingsButton.setIcon(icon);
             }
-        } catch (Exception e) {
-            settingsButton = new JButton("⚙");
-        }
+        });
 
         settingsButton.setBorder(BorderFactory.createEmptyBorder(4, 4, 4, 4));
         settingsButton.addActionListener(_ -> showSettingsDialog());
@@ -114,15 +146,125 @@ public class Frame extends JFrame {
 
     private void initTabs() {
         tabPane = new JTabbedPane();
-        tabPane.addChangeListener(_ -> updateTabIcons());
+        tabPane.addChangeListener(_ -> {
+            // 表示されたタブの中身をここで作る
+            if (tabPane.getSelectedComponent() instanceof LazyTab<?> tab) tab.get();
+            updateTabIcons();
+        });
 
-        templeTab = new Temple(this);
-        chestTab = new Chest(this, templeTab);
-        resultTab = new Result(this, templeTab, chestTab);
+        // 最初に表示されるピラミッドタブ以外は、表示されるまで作らない
+        templeTab = Startup.time("temple tab", () -> new Temple(this));
+        chestTab = lazyTab("chest tab", () -> new Chest(this, templeTab));
+        // 保存済みの結果ごとに結果タブを開く（最初の1つは既定の結果タブ）
+        List<Path> stored = storedResultDirectories();
+        resultTabs.add(lazyResultTab(stored.isEmpty() ? nextResultDirectory() : stored.getFirst(), false));
 
         tabPane.addTab(t("temples"), null, templeTab);
         tabPane.addTab(t("chests"), null, chestTab);
-        tabPane.addTab(t("results"), null, resultTab);
+        tabPane.addTab(t("results"), null, resultTabs.getFirst());
+
+        for (Path directory : stored.subList(Math.min(1, stored.size()), stored.size())) {
+            resultTabs.add(lazyResultTab(directory, true));
+            tabPane.addTab(resultTabTitle(resultTabs.size() - 1), null, resultTabs.getLast());
+        }
+    }
+
+    /**
+     * 初めて表示されたときに作るタブ（作るときに現在のフォントを適用する）
+     */
+    private <T extends JComponent> LazyTab<T> lazyTab(String name, Supplier<T> factory) {
+        return new LazyTab<>(() -> {
+            T tab = Startup.time(name, factory);
+            updateComponentFont(tab, new Font("SansSerif", Font.PLAIN, fontSize));
+            return tab;
+        });
+    }
+
+    private LazyTab<Result> lazyResultTab(Path directory, boolean closable) {
+        reservedResultDirectories.add(directory);
+        return lazyTab("result tab", () -> {
+            Result tab = new Result(this, templeTab, chestTab.get(), openResultStore(directory));
+            reservedResultDirectories.remove(directory);
+            tab.setClosable(closable);
+            return tab;
+        });
+    }
+
+    /**
+     * 保存済みの結果のディレクトリ（番号順）
+     */
+    private List<Path> storedResultDirectories() {
+        List<Path> directories = new ArrayList<>();
+        if (!Files.isDirectory(RESULTS_DIRECTORY)) return directories;
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(RESULTS_DIRECTORY)) {
+            for (Path entry : entries) {
+                if (Files.exists(entry.resolve("store.json")) && entry.getFileName().toString().matches("\\d+")) {
+                    directories.add(entry);
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Failed to list stored results: " + e.getMessage());
+        }
+        directories.sort((a, b) -> Integer.compare(Integer.parseInt(a.getFileName().toString()),
+                Integer.parseInt(b.getFileName().toString())));
+        return directories;
+    }
+
+    /**
+     * まだ使われていない番号のディレクトリ
+     */
+    private Path nextResultDirectory() {
+        int number = 1;
+        while (Files.exists(RESULTS_DIRECTORY.resolve(String.valueOf(number)))
+                || reservedResultDirectories.contains(RESULTS_DIRECTORY.resolve(String.valueOf(number)))) {
+            number++;
+        }
+        return RESULTS_DIRECTORY.resolve(String.valueOf(number));
+    }
+
+    private ResultStore openResultStore(Path directory) {
+        try {
+            return ResultStore.open(directory);
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Failed to open result store " + directory + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 結果タブを追加（共有ワーカープールで並行して検索できる）
+     */
+    private void addResultTab() {
+        LazyTab<Result> tab = lazyResultTab(nextResultDirectory(), true);
+        resultTabs.add(tab);
+        tabPane.addTab(resultTabTitle(resultTabs.size() - 1), null, tab);
+        tabPane.setSelectedComponent(tab);
+    }
+
+    /**
+     * 追加した結果タブを閉じる（最初の結果タブは閉じない）
+     */
+    public void closeResultTab(Result tab) {
+        int index = -1;
+        for (int i = 0; i < resultTabs.size(); i++) {
+            if (resultTabs.get(i).isBuilt() && resultTabs.get(i).get() == tab) index = i;
+        }
+        if (index <= 0) return;
+
+        tab.stopSearch();
+        tab.dispose();
+        if (tab.closeStore()) {
+            // 結果のないタブは保存先も消す（次回起動時に開かない）
+            tab.deleteStore();
+        }
+        tabPane.remove(resultTabs.remove(index));
+        for (int i = 0; i < resultTabs.size(); i++) {
+            tabPane.setTitleAt(tabPane.indexOfComponent(resultTabs.get(i)), resultTabTitle(i));
+        }
+    }
+
+    private String resultTabTitle(int index) {
+        return index == 0 ? t("results") : t("results") + " " + (index + 1);
     }
 
     private void showSettingsDialog() {
@@ -164,6 +306,48 @@ public class Frame extends JFrame {
         ));
         threadPanel.add(threadSpinner);
 
+        // CPU使用率の上限（検索中でもすぐに反映）
+        JPanel cpuPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        cpuPanel.add(new JLabel(t("cpuLimit") + ": "));
+
+        JSpinner cpuLimitSpinner = new JSpinner(new SpinnerNumberModel(prefs.getInt("cpuLimit", 100), 10, 100, 10));
+        cpuLimitSpinner.addChangeListener(_ -> {
+            int cpuLimit = (Integer) cpuLimitSpinner.getValue();
+            prefs.putInt("cpuLimit", cpuLimit);
+            searchScheduler.engine().throttle().setTargetFraction(cpuLimit / 100.0);
+        });
+        cpuPanel.add(cpuLimitSpinner);
+
+        // 判定のトレース（調査用のため保存せず、検索中でもすぐに反映）
+        JPanel tracePanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        tracePanel.add(new JLabel(t("trace") + ": "));
+
+        SeedTracer tracer = searchScheduler.engine().tracer();
+        JSpinner traceSpinner = new JSpinner(new SpinnerNumberModel(
+                (int) Math.min(tracer.getSampleEvery(), Integer.MAX_VALUE), 0, Integer.MAX_VALUE, 1000));
+        traceSpinner.addChangeListener(_ -> tracer.setSampleEvery((Integer) traceSpinner.getValue()));
+        tracePanel.add(traceSpinner);
+
+        JButton showTracesButton = new JButton(t("showTraces"));
+        showTracesButton.addActionListener(_ -> {
+            TraceDialog traceDialog = new TraceDialog(this, tracer);
+            updateComponentFont(traceDialog, new Font("SansSerif", Font.PLAIN, fontSize));
+            traceDialog.setVisible(true);
+        });
+        tracePanel.add(showTracesButton);
+
+        // EDTの応答時間（調査用のため保存しない）
+        JPanel edtPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        edtPanel.add(new JLabel(t("edtMonitor") + ": "));
+
+        JButton showEdtMonitorButton = new JButton(t("showTraces"));
+        showEdtMonitorButton.addActionListener(_ -> {
+            EdtMonitorDialog edtMonitorDialog = new EdtMonitorDialog(this, EdtMonitor.get());
+            updateComponentFont(edtMonitorDialog, new Font("SansSerif", Font.PLAIN, fontSize));
+            edtMonitorDialog.setVisible(true);
+        });
+        edtPanel.add(showEdtMonitorButton);
+
         // 座標表示形式の切り替え
         AtomicBoolean tempUseBlockCoordinates = new AtomicBoolean(useBlockCoordinates);
         JPanel coordPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
@@ -189,8 +373,8 @@ public class Frame extends JFrame {
             if (tempUseBlockCoordinates.get() != useBlockCoordinates) {
                 useBlockCoordinates = tempUseBlockCoordinates.get();
                 prefs.putBoolean("useBlockCoordinates", useBlockCoordinates);
-                if (resultTab != null) {
-                    resultTab.updateCoordinateDisplay();
+                for (LazyTab<Result> tab : resultTabs) {
+                    tab.ifBuilt(Result::updateCoordinateDisplay);
                 }
             }
 
@@ -200,6 +384,9 @@ public class Frame extends JFrame {
         panel.add(langPanel);
         panel.add(fontPanel);
         panel.add(threadPanel);
+        panel.add(cpuPanel);
+        panel.add(tracePanel);
+        panel.add(edtPanel);
         panel.add(coordPanel);
         panel.add(okButton);
 
@@ -210,6 +397,7 @@ public class Frame extends JFrame {
     }
 
     private void updateFontSize() {
+        IconAtlas.setItemSize(IconAtlas.itemSizeFor(fontSize));
         Font newFont = new Font("SansSerif", Font.PLAIN, fontSize);
 
         SwingUtilities.invokeLater(() -> {
@@ -231,103 +419,48 @@ public class Frame extends JFrame {
 
     private void loadTabIcons() {
         SwingUtilities.invokeLater(() -> {
-            try {
-                int tabHeight = tabPane.getUI().getTabBounds(tabPane, 0).height;
-                int normalIconSize = Math.max(24, tabHeight - 10);
-                int templeIconSize = Math.max(29, tabHeight);
-
-                // ピラミッドアイコン
-                loadIconPair(
-                        "/icon/tab/DesertTemple1.png",
-                        "/icon/tab/DesertTemple2.png",
-                        0,
-                        templeIconSize
-                );
-
-                // チェストアイコン
-                loadIconPair(
-                        "/icon/tab/Chest1.png",
-                        "/icon/tab/Chest2.png",
-                        1,
-                        normalIconSize
-                );
-
-                // 虫眼鏡アイコン
-                loadIconPair(
-                        "/icon/tab/Glass1.png",
-                        "/icon/tab/Glass2.png",
-                        2,
-                        normalIconSize
-                );
-
-                if (!selectedIcons.containsKey(2) || !unselectedIcons.containsKey(2)) {
-                    loadSingleIcon("/icon/tab/Glass.png", 2, normalIconSize);
-                }
-
-                updateTabIcons();
-            } catch (Exception e) {
-                System.err.println("画像の読み込みまたはリサイズエラー: " + e.getMessage());
-            }
+            int tabHeight = tabPane.getUI().getTabBounds(tabPane, 0).height;
+            int normalIconSize = Math.max(24, tabHeight - 10);
+            int templeIconSize = Math.max(29, tabHeight);
+
+            // ピラミッドアイコン
+            loadIconPair("tab/DesertTemple1", "tab/DesertTemple2", 0, templeIconSize);
+            // チェストアイコン
+            loadIconPair("tab/Chest1", "tab/Chest2", 1, normalIconSize);
+            // 虫眼鏡アイコン
+            loadIconPair("tab/Glass1", "tab/Glass2", 2, normalIconSize);
         });
     }
 
     /**
-     * アイコンペア（選択/非選択状態）をロード
+     * アイコンペア（選択/非選択状態）をアトラスに用意させ、できたらタブに反映する
      */
-    private void loadIconPair(String selectedPath, String unselectedPath, int tabIndex, int size) {
-        try {
-            URL selectedUrl = getClass().getResource(selectedPath);
-            URL unselectedUrl = getClass().getResource(unselectedPath);
-
-            if (selectedUrl != null && unselectedUrl != null) {
-                Image selectedImg = ImageIO.read(selectedUrl);
-                Image unselectedImg = ImageIO.read(unselectedUrl);
-
-                Image resizedSelectedImg = selectedImg.getScaledInstance(size, size, Image.SCALE_SMOOTH);
-                Image resizedUnselectedImg = unselectedImg.getScaledInstance(size, size, Image.SCALE_SMOOTH);
-
-                selectedIcons.put(tabIndex, new ImageIcon(resizedSelectedImg));
-                unselectedIcons.put(tabIndex, new ImageIcon(resizedUnselectedImg));
-            } else {
-                System.err.println("アイコンが見つかりません: " + selectedPath + " または " + unselectedPath);
-            }
-        } catch (Exception e) {
-            System.err.println("アイコンロードエラー: " + e.getMessage());
-        }
-    }
-
-    /**
-     * 単一アイコンをロード（選択/非選択両方に同じアイコンを使用）
-     */
-    private void loadSingleIcon(String path, int tabIndex, int size) {
-        try {
-            URL iconUrl = getClass().getResource(path);
-            if (iconUrl != null) {
-                Image iconImg = ImageIO.read(iconUrl);
-                Image resizedIconImg = iconImg.getScaledInstance(size, size, Image.SCALE_SMOOTH);
-                ImageIcon icon = new ImageIcon(resizedIconImg);
-
-                selectedIcons.put(tabIndex, icon);
-                unselectedIcons.put(tabIndex, icon);
+    private void loadIconPair(String selectedName, String unselectedName, int tabIndex, int size) {
+        IconAtlas.request(List.of(selectedName, unselectedName), size, () -> {
+            ImageIcon selected = IconAtlas.get(selectedName, size);
+            ImageIcon unselected = IconAtlas.get(unselectedName, size);
+            if (selected != null && unselected != null) {
+                selectedIcons.put(tabIndex, selected);
+                unselectedIcons.put(tabIndex, unselected);
+                updateTabIcons();
             } else {
-                System.err.println("フォールバックアイコンが見つかりません: " + path);
+                System.err.println("Icon not found: " + selectedName + " or " + unselectedName);
             }
-        } catch (Exception e) {
-            System.err.println("フォールバックアイコンロードエラー: " + e.getMessage());
-        }
+        });
     }
 
     private void updateTabIcons() {
         int selectedIndex = tabPane.getSelectedIndex();
 
         for (int i = 0; i < tabPane.getTabCount(); i++) {
+            int iconIndex = Math.min(i, 2); // 追加した結果タブも虫眼鏡アイコン
             if (i == selectedIndex) {
-                if (selectedIcons.containsKey(i)) {
-                    tabPane.setIconAt(i, selectedIcons.get(i));
+                if (selectedIcons.containsKey(iconIndex)) {
+                    tabPane.setIconAt(i, selectedIcons.get(iconIndex));
                 }
             } else {
-                if (unselectedIcons.containsKey(i)) {
-                    tabPane.setIconAt(i, unselectedIcons.get(i));
+                if (unselectedIcons.containsKey(iconIndex)) {
+                    tabPane.setIconAt(i, unselectedIcons.get(iconIndex));
                 }
             }
         }
@@ -338,13 +471,17 @@ public class Frame extends JFrame {
 
         tabPane.setTitleAt(0, t("temples"));
         tabPane.setTitleAt(1, t("chests"));
-        tabPane.setTitleAt(2, t("results"));
+        for (int i = 0; i < resultTabs.size(); i++) {
+            tabPane.setTitleAt(tabPane.indexOfComponent(resultTabs.get(i)), resultTabTitle(i));
+        }
 
         updateTabIcons();
 
         templeTab.updateLanguage();
-        chestTab.updateLanguage();
-        resultTab.updateLanguage();
+        chestTab.ifBuilt(Chest::updateLanguage);
+        for (LazyTab<Result> tab : resultTabs) {
+            tab.ifBuilt(Result::updateLanguage);
+        }
     }
 
     /**
@@ -354,16 +491,40 @@ public class Frame extends JFrame {
         return languager.get(key);
     }
 
-    public AtomicBoolean getIsCalculating() {
-        return isCalculating;
+    /**
+     * 結果タブの検索の開始・終了を通知する（タブごとに開始と終了を交互に呼ぶ）
+     */
+    public void searchRunning(boolean running) {
+        if (running) {
+            runningSearches.incrementAndGet();
+        } else {
+            runningSearches.decrementAndGet();
+        }
+    }
+
+    /**
+     * いずれかの結果タブで検索中か
+     */
+    public boolean isCalculating() {
+        return runningSearches.get() > 0;
     }
 
     public AtomicLong getCurrentSeed() {
         return currentSeed;
     }
 
-    public void selectResultsTab() {
-        tabPane.setSelectedIndex(2);
+    public void selectResultsTab(Result tab) {
+        // タブに置かれているのは LazyTab なので、中身が tab のものを探す
+        for (LazyTab<Result> lazy : resultTabs) {
+            if (lazy.isBuilt() && lazy.get() == tab) {
+                tabPane.setSelectedComponent(lazy);
+                return;
+            }
+        }
+    }
+
+    public FairShareScheduler getSearchScheduler() {
+        return searchScheduler;
     }
 
     public int getThreadCount() {
@@ -371,7 +532,7 @@ public class Frame extends JFrame {
     }
 
     public Chest getChestTabPanel() {
-        return chestTab;
+        return chestTab.get();
     }
 
     public boolean useBlockCoordinates() {
@@ -0,0 +1,263 @@
+package fragrant.app.ui;
+
+import javax.imageio.ImageIO;
+import javax.swing.*;
+import java.awt.*;
+import java.awt.image.BaseMultiResolutionImage;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.FileSystemNotFoundException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
+
+/**
+ * /icon/ 以下のアイコン（item/*.png, tab/*.png, app.png）をまとめて扱う
+ * 元画像は最初に1枚のアトラスへ読み込み、必要な大きさごとに縮小したアトラスを裏のスレッドで作る
+ * 縮小は画面の拡大率ごとに作り、解像度違いの画像（MultiResolutionImage）として渡す
+ *
+ * 描画時の取得は不変のMapを引くだけで、画像の読み込みや縮小は行わない
+ * まだ作られていないアイコンは null になり、作り終えたら呼び出し元に通知して再描画する
+ * 名前は "item/bone" "tab/Chest1" "app" の形式
+ */
+public final class IconAtlas {
+    private static final double[] BASE_SCALES = {1.0, 1.5, 2.0};
+    private static final ExecutorService loader = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "icon-atlas");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private static volatile Map<Key, ImageIcon> icons = Map.of();
+    private static volatile int itemSize = 16;
+
+    // 以下は loader スレッドからのみ使う
+    private static BufferedImage sourceAtlas;
+    private static Map<String, Rectangle> sourceTiles;
+
+    private record Key(String name, int size) { }
+
+    private IconAtlas() { }
+
+    /**
+     * 元画像の読み込みを裏で始める（起動時にウィンドウを作る前に呼ぶ）
+     */
+    public static void preload() {
+        loader.execute(() -> Startup.time("icons", IconAtlas::loadSources));
+    }
+
+    /**
+     * フォントの大きさに合わせたアイテムアイコンの大きさ
+     */
+    public static int itemSizeFor(int fontSize) {
+        return Math.max(16, Math.round(fontSize * 4 / 3f));
+    }
+
+    /**
+     * アイテムアイコンの大きさを変えて、その大きさのアトラスを裏で作る
+     * 作り終えたら開いているウィンドウを再描画する
+     */
+    public static void setItemSize(int size) {
+        loader.execute(() -> {
+            render(itemNames(), size);
+            itemSize = size;
+            SwingUtilities.invokeLater(() -> {
+                for (Window window : Window.getWindows()) {
+                    window.repaint();
+                }
+            });
+        });
+    }
+
+    /**
+     * 指定した大きさのアイコンを裏で作る
+     *
+     * @param onReady 作り終えたらEDTで呼ぶ
+     */
+    public static void request(Collection<String> names, int size, Runnable onReady) {
+        List<String> copy = List.copyOf(names);
+        loader.execute(() -> {
+            render(copy, size);
+            SwingUtilities.invokeLater(onReady);
+        });
+    }
+
+    /**
+     * 現在の大きさのアイテムアイコン（"minecraft:" は付いていてもよい）
+     */
+    public static ImageIcon item(String itemName) {
+        return icons.get(new Key("item/" + itemName.replace("minecraft:", ""), itemSize));
+    }
+
+    public static ImageIcon get(String name, int size) {
+        return icons.get(new Key(name, size));
+    }
+
+    /**
+     * まだ作っていないものを作って公開する（loader スレッドのみ）
+     */
+    private static void render(List<String> names, int size) {
+        loadSources();
+        List<String> missing = new ArrayList<>();
+        for (String name : names) {
+            if (sourceTiles.containsKey(name) && !icons.containsKey(new Key(name, size))) missing.add(name);
+        }
+        if (missing.isEmpty()) return;
+
+        double[] scales = scales();
+        // 倍率ごとに1枚のアトラスに描き、アイコンはその一部として参照する
+        Map<String, Image[]> variants = new HashMap<>();
+        for (int s = 0; s < scales.length; s++) {
+            int pixels = Math.max(1, (int) Math.round(size * scales[s]));
+            BufferedImage atlas = new BufferedImage(pixels * missing.size(), pixels, BufferedImage.TYPE_INT_ARGB);
+            Graphics2D g = atlas.createGraphics();
+            for (int i = 0; i < missing.size(); i++) {
+                Rectangle tile = sourceTiles.get(missing.get(i));
+                BufferedImage source = sourceAtlas.getSubimage(tile.x, tile.y, tile.width, tile.height);
+                g.drawImage(scale(source, pixels), i * pixels, 0, null);
+            }
+            g.dispose();
+
+            for (int i = 0; i < missing.size(); i++) {
+                variants.computeIfAbsent(missing.get(i), _ -> new Image[scales.length])[s] =
+                        atlas.getSubimage(i * pixels, 0, pixels, pixels);
+            }
+        }
+
+        Map<Key, ImageIcon> next = new HashMap<>(icons);
+        for (String name : missing) {
+            next.put(new Key(name, size), new ImageIcon(new BaseMultiResolutionImage(variants.get(name))));
+        }
+        icons = Map.copyOf(next);
+    }
+
+    /**
+     * 描き分ける倍率（1倍、1.5倍、2倍と画面の倍率）
+     */
+    private static double[] scales() {
+        TreeSet<Double> scales = new TreeSet<>();
+        for (double scale : BASE_SCALES) scales.add(scale);
+        if (!GraphicsEnvironment.isHeadless()) {
+            for (GraphicsDevice device : GraphicsEnvironment.getLocalGraphicsEnvironment().getScreenDevices()) {
+                scales.add(device.getDefaultConfiguration().getDefaultTransform().getScaleX());
+            }
+        }
+        return scales.stream().mapToDouble(Double::doubleValue).toArray();
+    }
+
+    /**
+     * 縮小は半分ずつ段階的に行い、拡大はドット絵が崩れないように最近傍で行う
+     */
+    private static BufferedImage scale(BufferedImage source, int pixels) {
+        BufferedImage current = source;
+        int w = source.getWidth();
+        int h = source.getHeight();
+        while (w / 2 >= pixels && h / 2 >= pixels) {
+            w /= 2;
+            h /= 2;
+            current = draw(current, w, h, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        }
+        Object interpolation = pixels > w ? RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR
+                : RenderingHints.VALUE_INTERPOLATION_BICUBIC;
+        return draw(current, pixels, pixels, interpolation);
+    }
+
+    private static BufferedImage draw(BufferedImage source, int w, int h, Object interpolation) {
+        BufferedImage target = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = target.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, interpolation);
+        g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+        g.drawImage(source, 0, 0, w, h, null);
+        g.dispose();
+        return target;
+    }
+
+    /**
+     * すべての元画像を1枚のアトラスに読み込む（初回のみ）
+     */
+    private static void loadSources() {
+        if (sourceAtlas != null) return;
+
+        Map<String, BufferedImage> images = new LinkedHashMap<>();
+        for (String name : listIcons()) {
+            try (InputStream in = IconAtlas.class.getResourceAsStream("/icon/" + name + ".png")) {
+                BufferedImage image = in == null ? null : ImageIO.read(in);
+                if (image != null) images.put(name, image);
+            } catch (IOException e) {
+                System.err.println("Failed to load icon: " + name + " (" + e.getMessage() + ")");
+            }
+        }
+
+        int tile = 1;
+        for (BufferedImage image : images.values()) {
+            tile = Math.max(tile, Math.max(image.getWidth(), image.getHeight()));
+        }
+        int columns = Math.max(1, (int) Math.ceil(Math.sqrt(images.size())));
+        int rows = Math.max(1, (images.size() + columns - 1) / columns);
+        BufferedImage atlas = new BufferedImage(columns * tile, rows * tile, BufferedImage.TYPE_INT_ARGB);
+        Map<String, Rectangle> tiles = new HashMap<>();
+        Graphics2D g = atlas.createGraphics();
+        int i = 0;
+        for (Map.Entry<String, BufferedImage> entry : images.entrySet()) {
+            int x = (i % columns) * tile;
+            int y = (i / columns) * tile;
+            BufferedImage image = entry.getValue();
+            g.drawImage(image, x, y, null);
+            tiles.put(entry.getKey(), new Rectangle(x, y, image.getWidth(), image.getHeight()));
+            i++;
+        }
+        g.dispose();
+
+        sourceTiles = Map.copyOf(tiles);
+        sourceAtlas = atlas;
+    }
+
+    private static List<String> itemNames() {
+        loadSources();
+        return sourceTiles.keySet().stream().filter(name -> name.startsWith("item/")).toList();
+    }
+
+    /**
+     * /icon/ 以下のPNGの名前（ディレクトリからでもjarからでも読める）
+     */
+    private static List<String> listIcons() {
+        List<String> names = new ArrayList<>();
+        URL root = IconAtlas.class.getResource("/icon/app.png");
+        if (root == null) return names;
+        try {
+            URI uri = root.toURI();
+            if ("jar".equals(uri.getScheme())) {
+                // jar のファイルシステムは開いたままにする（他で開いている可能性があるため閉じない）
+                try {
+                    FileSystems.getFileSystem(uri);
+                } catch (FileSystemNotFoundException e) {
+                    FileSystems.newFileSystem(uri, Map.of());
+                }
+            }
+            Path iconDir = Path.of(uri).getParent();
+            try (Stream<Path> files = Files.walk(iconDir, 2)) {
+                files.filter(p -> p.toString().endsWith(".png")).forEach(p -> {
+                    String relative = iconDir.relativize(p).toString().replace('\\', '/');
+                    names.add(relative.substring(0, relative.length() - ".png".length()));
+                });
+            }
+        } catch (IOException | URISyntaxException | RuntimeException e) {
+            System.err.println("Failed to list icons: " + e.getMessage());
+        }
+        return names;
+    }
+}
@@ -7,24 +7,37 @@ import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.Consumer;
 
 public class Language {
     public static final String[] LANG = {"English", "日本語"};
     private static final String[] LANG_KEY = {"en", "ja"};
-    private final Map<String, Properties> languageProperties = new HashMap<>();
+    private static CompletableFuture<Map<String, Properties>> loading;
+    private final Map<String, Properties> languageProperties;
     private final Consumer<String> languageChangeListener;
     private int selectedLanguageIndex = 0; // 0: English, 1: 日本語
 
     public Language(Consumer<String> languageChangeListener) {
         this.languageChangeListener = languageChangeListener;
-        loadAllLanguages();
+        this.languageProperties = preload().join();
     }
 
-    private void loadAllLanguages() {
+    /**
+     * 言語ファイルの読み込みを裏で始める（2回目以降は同じ読み込みを返す）
+     */
+    public static synchronized CompletableFuture<Map<String, Properties>> preload() {
+        if (loading == null) {
+            loading = Startup.load("languages", Language::loadAllLanguages);
+        }
+        return loading;
+    }
+
+    private static Map<String, Properties> loadAllLanguages() {
+        Map<String, Properties> languageProperties = new HashMap<>();
         for (String langKey : LANG_KEY) {
             Properties props = new Properties();
-            try (InputStream is = getClass().getResourceAsStream("/language/" + langKey + ".properties")) {
+            try (InputStream is = Language.class.getResourceAsStream("/language/" + langKey + ".properties")) {
                 if (is != null) {
                     props.load(new InputStreamReader(is, StandardCharsets.UTF_8));
                     languageProperties.put(langKey, props);
@@ -37,6 +50,7 @@ public class Language {
                 e.printStackTrace();
             }
         }
+        return languageProperties;
     }
 
     /**
@@ -0,0 +1,43 @@
+package fragrant.app.ui;
+
+import javax.swing.*;
+import java.awt.*;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * 初めて表示されたとき（または get() で参照されたとき）に中身を作るタブ
+ * タブには常にこのパネルを置くので、中身を作る前後でタブの位置や参照は変わらない
+ */
+final class LazyTab<T extends JComponent> extends JPanel {
+    private final Supplier<T> factory;
+    private T content;
+
+    LazyTab(Supplier<T> factory) {
+        super(new BorderLayout());
+        this.factory = factory;
+    }
+
+    /**
+     * 中身（まだなければここで作る、EDTのみ）
+     */
+    T get() {
+        if (content == null) {
+            content = factory.get();
+            add(content, BorderLayout.CENTER);
+            revalidate();
+        }
+        return content;
+    }
+
+    boolean isBuilt() {
+        return content != null;
+    }
+
+    /**
+     * 作られている場合だけ中身に対して実行する
+     */
+    void ifBuilt(Consumer<T> action) {
+        if (content != null) action.accept(content);
+    }
+}
@@ -0,0 +1,118 @@
+package fragrant.app.ui;
+
+import fragrant.temple.loot.DesertTempleLoot;
+import fragrant.temple.loot.DesertTempleLootTable;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * 起動時の読み込みを裏のスレッドで先に始め、各段階の時間を記録する
+ * 言語ファイルと戦利品テーブルはここで、アイコンは IconAtlas の読み込みスレッドで読み込む
+ *
+ * -Dfragrant.startup.report=true で、ウィンドウの表示後に各段階の時間を表示する
+ */
+public final class Startup {
+    public static final String REPORT_PROPERTY = "fragrant.startup.report";
+    private static final long BEGIN = System.nanoTime();
+    private static final AtomicInteger threadNumber = new AtomicInteger();
+    private static final ExecutorService executor = Executors.newFixedThreadPool(2, r -> {
+        Thread thread = new Thread(r, "startup-" + threadNumber.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+    private static final List<Phase> phases = new ArrayList<>();
+    private static boolean reported;
+
+    /**
+     * 1つの段階（開始と終了は起動からの経過ミリ秒）
+     */
+    private record Phase(String name, String thread, long startMs, long endMs) { }
+
+    private Startup() { }
+
+    /**
+     * ウィンドウを作る前に呼び、重い読み込みを裏で始める
+     */
+    public static void preload() {
+        Language.preload();
+        load("loot tables", () -> {
+            List<String> items = DesertTempleLootTable.getLootTable();
+            // 生成側のクラスの初期化も済ませておく
+            DesertTempleLoot.generateLoot(0, 0, 0);
+            return items;
+        });
+        IconAtlas.preload();
+    }
+
+    /**
+     * 裏のスレッドで読み込み、かかった時間を記録する
+     */
+    static <T> CompletableFuture<T> load(String name, Supplier<T> task) {
+        return CompletableFuture.supplyAsync(() -> time(name, task), executor);
+    }
+
+    /**
+     * 呼び出したスレッドで実行し、かかった時間を記録する
+     */
+    public static <T> T time(String name, Supplier<T> task) {
+        long start = elapsedMs();
+        try {
+            return task.get();
+        } finally {
+            record(name, start);
+        }
+    }
+
+    public static void time(String name, Runnable task) {
+        time(name, () -> {
+            task.run();
+            return null;
+        });
+    }
+
+    private static void record(String name, long startMs) {
+        Phase phase = new Phase(name, Thread.currentThread().getName(), startMs, elapsedMs());
+        synchronized (phases) {
+            // 表示後に遅れて作られたタブなどは記録しない
+            if (!reported) phases.add(phase);
+        }
+    }
+
+    private static long elapsedMs() {
+        return (System.nanoTime() - BEGIN) / 1_000_000;
+    }
+
+    /**
+     * ウィンドウが表示されたあとに呼び、各段階の時間を表示する（1回のみ、REPORT_PROPERTY が有効な場合）
+     */
+    public static void report() {
+        List<Phase> snapshot;
+        synchronized (phases) {
+            if (reported) return;
+            reported = true;
+            snapshot = new ArrayList<>(phases);
+        }
+        if (!Boolean.getBoolean(REPORT_PROPERTY)) return;
+        snapshot.sort(Comparator.comparingLong(Phase::startMs));
+
+        StringBuilder sb = new StringBuilder();
+        long sinceProcessStart = ProcessHandle.current().info().startInstant()
+                .map(start -> Duration.between(start, Instant.now()).toMillis()).orElse(-1L);
+        sb.append(String.format("Startup: window visible after %d ms (%d ms since process start)%n",
+                elapsedMs(), sinceProcessStart));
+        for (Phase phase : snapshot) {
+            sb.append(String.format("  %-20s %6d ms  (%d-%d ms, %s)%n", phase.name(),
+                    phase.endMs() - phase.startMs(), phase.startMs(), phase.endMs(), phase.thread()));
+        }
+        System.out.print(sb);
+    }
+}
@@ -0,0 +1,96 @@
+package fragrant.app.ui;
+
+import fragrant.app.search.QueryJson;
+import fragrant.app.search.SeedTrace;
+import fragrant.app.search.SeedTracer;
+import fragrant.utils.Json;
+
+import javax.swing.*;
+import javax.swing.table.DefaultTableModel;
+import java.awt.*;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+/**
+ * 記録された判定のトレースを一覧表示し、JSONで保存する
+ */
+public class TraceDialog extends JDialog {
+    private final Frame parent;
+    private final SeedTracer tracer;
+    private final DefaultTableModel model;
+    private final JTextArea detail = new JTextArea();
+    private List<SeedTrace> traces = List.of();
+
+    public TraceDialog(Frame parent, SeedTracer tracer) {
+        super(parent, parent.t("traces"), false);
+        this.parent = parent;
+        this.tracer = tracer;
+        this.model = new DefaultTableModel(parent.t("traceHeader").split(","), 0);
+
+        JTable table = new JTable(model);
+        table.setDefaultEditor(Object.class, null);
+        table.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        table.getSelectionModel().addListSelectionListener(e -> {
+            if (e.getValueIsAdjusting()) return;
+            int row = table.getSelectedRow();
+            detail.setText(row < 0 ? "" : Json.write(QueryJson.traceToJson(traces.get(row))));
+            detail.setCaretPosition(0);
+        });
+        detail.setEditable(false);
+        detail.setLineWrap(true);
+
+        JSplitPane split = new JSplitPane(JSplitPane.VERTICAL_SPLIT, new JScrollPane(table), new JScrollPane(detail));
+        split.setResizeWeight(0.6);
+
+        JButton refreshButton = new JButton(parent.t("refresh"));
+        refreshButton.addActionListener(_ -> refresh());
+        JButton clearButton = new JButton(parent.t("clear"));
+        clearButton.addActionListener(_ -> {
+            tracer.clear();
+            refresh();
+        });
+        JButton saveButton = new JButton(parent.t("saveJson"));
+        saveButton.addActionListener(_ -> save());
+
+        JPanel buttons = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        buttons.add(refreshButton);
+        buttons.add(clearButton);
+        buttons.add(saveButton);
+
+        add(split, BorderLayout.CENTER);
+        add(buttons, BorderLayout.SOUTH);
+        setSize(700, 500);
+        setLocationRelativeTo(parent);
+        refresh();
+    }
+
+    private void refresh() {
+        traces = tracer.traces();
+        model.setRowCount(0);
+        for (SeedTrace trace : traces) {
+            model.addRow(new Object[]{
+                    trace.seed(),
+                    trace.stage(),
+                    trace.detail() != null ? trace.detail() : "",
+                    trace.placementNanos() / 1000,
+                    trace.lootNanos() / 1000
+            });
+        }
+        detail.setText("");
+    }
+
+    private void save() {
+        JFileChooser chooser = new JFileChooser();
+        chooser.setDialogTitle(parent.t("saveJson"));
+        if (chooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) return;
+
+        try {
+            Files.writeString(chooser.getSelectedFile().toPath(),
+                    Json.write(QueryJson.tracesToJson(traces)), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            JOptionPane.showMessageDialog(this, e.getMessage());
+        }
+    }
+}
@@ -19,7 +19,6 @@ import java.util.Objects;
 public class Chest extends JPanel {
     private static final String ALL_CHESTS = "All Chests";
     private static final String[] CHEST_NUMS = {ALL_CHESTS, "Chest 1", "Chest 2", "Chest 3", "Chest 4"};
-    private static final String[] ITEMS = DesertTempleLootTable.getLootTable().stream().sorted().toArray(String[]::new);
     private final Frame parent;
     private final Temple templeTabPanel;
     private JTable chestTable;
@@ -267,7 +266,7 @@ public class Chest extends JPanel {
         }
 
         // アイテム名コンボボックス
-        JComboBox<String> itemNameComboBox = new JComboBox<>(ITEMS);
+        JComboBox<String> itemNameComboBox = new JComboBox<>(Items.ALL);
         itemNameComboBox.setName("itemNameComboBox");
         itemNameComboBox.setRenderer(new ItemIcon());
         if (!selectedItem.isEmpty()) {
@@ -397,6 +396,13 @@ public class Chest extends JPanel {
         return chestTableModel;
     }
 
+    /**
+     * アイテムの一覧（最初にダイアログを開いたときに作る）
+     */
+    private static final class Items {
+        static final String[] ALL = DesertTempleLootTable.getLootTable().stream().sorted().toArray(String[]::new);
+    }
+
     /**
      * ヘルパー
      */
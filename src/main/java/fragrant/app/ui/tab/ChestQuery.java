@@ -0,0 +1,68 @@
+package fragrant.app.ui.tab;
+
+import fragrant.app.search.ConditionalItem;
+import fragrant.app.search.Searcher;
+import fragrant.temple.generator.DesertTempleGenerator;
+import fragrant.utils.Position;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * チェスト表示の対象（条件を満たすピラミッドとその戦利品）を求める
+ * Templeタブの条件はEDTで取り出しておき、求める処理はどのスレッドからでも呼べる
+ *
+ * @param maxTemples 1つのピラミッド条件につき表示する最大数
+ */
+record ChestQuery(List<Position.ChunkPos> positions, Map<Integer, int[]> ranges,
+                  Map<Position.ChunkPos, List<ConditionalItem>> conditions, int maxTemples) {
+
+    /**
+     * 表示するピラミッド
+     *
+     * @param posIndex 範囲内のピラミッドの中での番号
+     * @param positionCount 範囲内のピラミッドの数
+     */
+    record Temple(int templeIndex, int posIndex, int positionCount, Position.ChunkPos pos, LootCache.TempleLoot loot) { }
+
+    /**
+     * ピラミッド条件ごとの表示内容
+     *
+     * @param hiddenCount 条件を満たすが表示しきれなかった数
+     */
+    record Group(int templeIndex, List<Temple> temples, int hiddenCount) { }
+
+    List<Group> resolve(long seed, LootCache cache) {
+        List<Group> groups = new ArrayList<>();
+        for (int templeIndex = 0; templeIndex < positions.size(); templeIndex++) {
+            Position.ChunkPos representative = positions.get(templeIndex);
+            List<Position.ChunkPos> candidates = templesAt(seed, representative, ranges.get(templeIndex + 1));
+            if (candidates.isEmpty()) continue;
+
+            List<ConditionalItem> required = conditions.getOrDefault(representative, List.of());
+            List<Temple> temples = new ArrayList<>();
+            int hidden = 0;
+            for (int posIndex = 0; posIndex < candidates.size(); posIndex++) {
+                Position.ChunkPos pos = candidates.get(posIndex);
+                LootCache.TempleLoot loot = cache.get(seed, pos);
+                if (!Searcher.checkMatch(required, loot.all())) continue;
+
+                if (temples.size() < maxTemples) {
+                    temples.add(new Temple(templeIndex, posIndex, candidates.size(), pos, loot));
+                } else {
+                    hidden++;
+                }
+            }
+            groups.add(new Group(templeIndex, temples, hidden));
+        }
+        return groups;
+    }
+
+    private static List<Position.ChunkPos> templesAt(long seed, Position.ChunkPos representative, int[] range) {
+        if (range == null) {
+            return DesertTempleGenerator.isTempleChunk(seed, representative) ? List.of(representative) : List.of();
+        }
+        return DesertTempleGenerator.getTemplesArea(seed, range[0], range[1], range[2], range[3]);
+    }
+}
@@ -0,0 +1,82 @@
+package fragrant.app.ui.tab;
+
+import fragrant.temple.loot.DesertTempleLoot;
+import fragrant.temple.loot.LootType;
+import fragrant.utils.Position;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * チェスト表示用の戦利品キャッシュ（ピラミッド単位、件数に上限のあるLRU）
+ * 生成はロックの外で行うので、同じピラミッドを同時に求めると重複して生成することがある
+ */
+final class LootCache {
+    private final int capacity;
+    private final Map<Key, TempleLoot> entries;
+    private long hits;
+    private long misses;
+
+    private record Key(long seed, int chunkX, int chunkZ) { }
+
+    /**
+     * 1つのピラミッドの戦利品
+     *
+     * @param chests チェストごとのアイテム
+     * @param all 全チェストのアイテム（DesertTempleLoot.generateLoot と同じ並び）
+     */
+    record TempleLoot(List<List<LootType.LootItem>> chests, List<LootType.LootItem> all) { }
+
+    LootCache(int capacity) {
+        this.capacity = capacity;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, TempleLoot> eldest) {
+                return size() > LootCache.this.capacity;
+            }
+        };
+    }
+
+    TempleLoot get(long seed, Position.ChunkPos pos) {
+        Key key = new Key(seed, pos.x(), pos.z());
+        synchronized (this) {
+            TempleLoot loot = entries.get(key);
+            if (loot != null) {
+                hits++;
+                return loot;
+            }
+            misses++;
+        }
+
+        Map<Integer, List<LootType.LootItem>> byChest = DesertTempleLoot.generateLootByChest(seed, pos.x(), pos.z());
+        List<List<LootType.LootItem>> chests = new ArrayList<>(byChest.size());
+        List<LootType.LootItem> all = new ArrayList<>();
+        for (int chest = 0; chest < byChest.size(); chest++) {
+            chests.add(byChest.get(chest));
+            all.addAll(byChest.get(chest));
+        }
+        TempleLoot loot = new TempleLoot(chests, all);
+        synchronized (this) {
+            entries.put(key, loot);
+        }
+        return loot;
+    }
+
+    synchronized void clear() {
+        entries.clear();
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    synchronized long hits() {
+        return hits;
+    }
+
+    synchronized long misses() {
+        return misses;
+    }
+}
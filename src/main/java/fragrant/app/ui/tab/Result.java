@@ -1,24 +1,44 @@
 package fragrant.app.ui.tab;
 
 import fragrant.app.search.ConditionalItem;
+import fragrant.app.search.FairShareScheduler;
+import fragrant.app.search.SearchHandle;
+import fragrant.app.search.SearchQuery;
+import fragrant.app.search.SeedSet;
+import fragrant.app.search.SeedSetWriter;
 import fragrant.app.search.Searcher;
+import fragrant.app.store.ResultExporter;
+import fragrant.app.store.ResultStore;
 import fragrant.app.ui.Frame;
 import fragrant.app.ui.ItemIcon;
 import fragrant.app.ui.ProgressBar;
 import fragrant.temple.loot.*;
-import fragrant.temple.generator.DesertTempleGenerator;
 import fragrant.utils.Position;
 import javax.swing.*;
 import javax.swing.Timer;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.filechooser.FileNameExtensionFilter;
 import javax.swing.table.DefaultTableModel;
-import javax.swing.table.DefaultTableCellRenderer;
 import java.awt.*;
 import java.awt.datatransfer.StringSelection;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.*;
 import java.util.List;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongPredicate;
 
 public class Result extends JPanel implements Searcher.ProgressCallback, Searcher.ResultCallback {
     public static final long MAX_SEED = (1L << 32) - 1;
@@ -27,12 +47,28 @@ public class Result extends JPanel implements Searcher.ProgressCallback, Searche
     private final fragrant.app.ui.Frame parent;
     private final Temple templeTab;
     private final Chest chestTab;
-    private final Map<Long, Map<Position.ChunkPos, List<LootType.LootItem>>> lootCache = new ConcurrentHashMap<>();
+    private final ResultStore store;  // 開けなかった場合はnull（結果は保存されない）
+    private static final int LOOT_CACHE_TEMPLES = 4096;
+    private static final int MAX_PREFETCH_ROWS = 64;
+    private final LootCache lootCache = new LootCache(LOOT_CACHE_TEMPLES);
+    private final AtomicReference<Prefetch> prefetchRequest = new AtomicReference<>();
+    private final ExecutorService prefetcher = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "loot-prefetch");
+        thread.setDaemon(true);
+        return thread;
+    });
     private JTable resultTable;
-    private DefaultTableModel resultTableModel;
-    private JButton findButton, clearButton;
-    private JTextField startSeedField;
-    private JLabel startSeedLabel, progressLabel;
+    private JScrollPane resultScrollPane;
+    private ResultTableModel resultTableModel;
+    private JButton findButton, seedListButton, worldScanButton, applyButton, clearButton, closeButton;
+    private JToggleButton storedQueryButton;
+    private boolean seedListMode = false;
+    private long remainingTimeMs = -1;  // EDTからのみ参照
+    private boolean running = false;  // Frame の検索中の数に数えているか（EDTからのみ参照）
+    private JTextField startSeedField, filterField;
+    private JLabel startSeedLabel, progressLabel, weightLabel, shareLabel, filterLabel, clusterLabel, clusterRadiusLabel;
+    private JSpinner weightSpinner, clusterSpinner, clusterRadiusSpinner;
+    private JCheckBox previewCheckBox, scrambledCheckBox, separateProcessCheckBox;
     private JProgressBar progressBar;
     private ProgressBar progressBarUI;
     private JPopupMenu popupMenu;
@@ -40,11 +76,12 @@ public class Result extends JPanel implements Searcher.ProgressCallback, Searche
     private Timer animationTimer;
     private boolean useBlockCoordinates = false;
 
-    public Result(Frame parent, Temple templeTabPanel, Chest chestTabPanel) {
+    public Result(Frame parent, Temple templeTabPanel, Chest chestTabPanel, ResultStore store) {
         this.parent = parent;
         this.templeTab = templeTabPanel;
         this.chestTab = chestTabPanel;
-        this.seedSearcher = new Searcher(parent.getThreadCount());
+        this.store = store;
+        this.seedSearcher = new Searcher(parent.getSearchScheduler());
         this.seedSearcher.setProgressCallback(this);
         this.seedSearcher.setResultCallback(this);
         this.useBlockCoordinates = parent.useBlockCoordinates();
@@ -52,38 +89,144 @@ public class Result extends JPanel implements Searcher.ProgressCallback, Searche
         setLayout(new BorderLayout(5, 5));
         initUI();
         setupEventListeners();
+        loadStoredResults();
     }
 
-    private void initUI() {
-        String[] resultColumnNames = parent.t("resultHeader").split(",");
-        resultTableModel = new DefaultTableModel(resultColumnNames, 0) {
-            @Override
-            public boolean isCellEditable(int row, int column) {
-                return false;
+    /**
+     * 保存済みの結果を表に読み込み、未併合の追記分があれば裏で併合する
+     */
+    private void loadStoredResults() {
+        if (store == null) return;
+        try {
+            resultTableModel.load(store.readAll());
+        } catch (IOException e) {
+            System.err.println("Failed to read stored results: " + e.getMessage());
+        }
+        compactStore();
+    }
+
+    private void compactStore() {
+        if (store == null) return;
+        Thread thread = new Thread(() -> {
+            try {
+                store.compact();
+            } catch (IOException e) {
+                System.err.println("Failed to compact stored results: " + e.getMessage());
             }
-            @Override
-            public Class<?> getColumnClass(int columnIndex) {
-                return columnIndex <= 2 ? Long.class : Object.class;
+        }, "result-store-compact");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void clearStore() {
+        if (store == null) return;
+        try {
+            store.clear();
+        } catch (IOException e) {
+            System.err.println("Failed to clear stored results: " + e.getMessage());
+        }
+    }
+
+    private void deleteStored(long[] seeds) {
+        if (store == null) return;
+        try {
+            store.delete(seeds);
+        } catch (IOException e) {
+            System.err.println("Failed to delete stored results: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 保存中の結果を書き出して閉じる（アプリ終了時・タブを閉じるとき）
+     *
+     * @return 保存されている結果がない場合はtrue
+     */
+    public boolean closeStore() {
+        if (store == null) return false;
+        try {
+            boolean empty = store.recordCount() == 0;
+            store.close();
+            return empty;
+        } catch (IOException e) {
+            System.err.println("Failed to close stored results: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * タブを閉じるときに呼ぶ（先読みのスレッドとタイマーを止め、戦利品のキャッシュを捨てる）
+     */
+    public void dispose() {
+        setRunning(false);
+        prefetchRequest.set(null);
+        prefetcher.shutdownNow();
+        lootCache.clear();
+        if (progressUpdateTimer != null) progressUpdateTimer.stop();
+        if (animationTimer != null) animationTimer.stop();
+    }
+
+    /**
+     * 閉じた保存先を削除する
+     */
+    public void deleteStore() {
+        if (store == null) return;
+        try {
+            ResultStore.delete(store.directory());
+        } catch (IOException e) {
+            System.err.println("Failed to delete stored results: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 保存済みの結果を、Chestタブの条件（ヒットとして記録されるピラミッドの条件）で絞り込んで表示する
+     * 戦利品は再生成せず、保存したアイテム数と副索引で判定する
+     */
+    private void queryStoredResults() {
+        if (store == null) return;
+        try {
+            if (storedQueryButton.isSelected()) {
+                updateChests();
+                Map<Position.ChunkPos, List<ConditionalItem>> templeChests = templeTab.getTempleChests();
+                List<ConditionalItem> conditions = List.of();
+                for (Position.ChunkPos pos : templeTab.getTemplePositions()) {
+                    List<ConditionalItem> items = templeChests.get(pos);
+                    if (items != null && !items.isEmpty()) {
+                        conditions = items;
+                        break;
+                    }
+                }
+                resultTableModel.load(store.query(conditions));
+            } else {
+                resultTableModel.load(store.readAll());
             }
-        };
+        } catch (IOException e) {
+            System.err.println("Failed to query stored results: " + e.getMessage());
+        }
+    }
+
+    private void initUI() {
+        String[] resultColumnNames = parent.t("resultHeader").split(",");
+        resultTableModel = new ResultTableModel(resultColumnNames);
+        resultTableModel.setBlockCoordinates(useBlockCoordinates);
         resultTable = new JTable(resultTableModel);
         resultTable.setDefaultEditor(Object.class, null);
         resultTable.setSelectionMode(ListSelectionModel.MULTIPLE_INTERVAL_SELECTION);
-        resultTable.setAutoCreateRowSorter(true);
-        resultTable.setDefaultRenderer(Object.class, new DefaultTableCellRenderer() {
+        // 並び替えはモデル側で行う（表の行番号がそのまま表示順）
+        resultTable.getTableHeader().addMouseListener(new MouseAdapter() {
             @Override
-            public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected, boolean hasFocus, int row, int column) {
-                Component c = super.getTableCellRendererComponent(table, value, isSelected, hasFocus, row, column);
-                if (column <= 2) ((JLabel) c).setHorizontalAlignment(SwingConstants.RIGHT);
-                return c;
+            public void mouseClicked(MouseEvent e) {
+                int column = resultTable.columnAtPoint(e.getPoint());
+                if (column < 0) return;
+                resultTable.clearSelection();
+                resultTableModel.sortBy(resultTable.convertColumnIndexToModel(column));
             }
         });
 
-        if (resultTable.getColumnCount() > 3) {
-            resultTable.getColumnModel().getColumn(3).setCellRenderer(new ItemIcon());
+        if (resultTable.getColumnCount() > ResultTableModel.COLUMN_ITEMS) {
+            resultTable.getColumnModel().getColumn(ResultTableModel.COLUMN_ITEMS).setCellRenderer(new ItemIcon());
         }
 
-        JScrollPane resultScrollPane = new JScrollPane(resultTable);
+        resultScrollPane = new JScrollPane(resultTable);
         add(resultScrollPane, BorderLayout.CENTER);
 
         initPopupMenu();
@@ -95,14 +238,27 @@ public class Result extends JPanel implements Searcher.ProgressCallback, Searche
         JMenuItem copyMenuItem = new JMenuItem(parent.t("copy"));
         JMenuItem clearMenuItem = new JMenuItem(parent.t("delete"));
         JMenuItem viewChestsMenuItem = new JMenuItem(parent.t("viewChests"));
+        JMenuItem exportMenuItem = new JMenuItem(parent.t("export"));
+        JMenuItem saveSeedSetMenuItem = new JMenuItem(parent.t("saveSeedSet"));
+        JMenuItem keepSeedSetMenuItem = new JMenuItem(parent.t("keepSeedSet"));
+        JMenuItem removeSeedSetMenuItem = new JMenuItem(parent.t("removeSeedSet"));
 
         copyMenuItem.addActionListener(_ -> copySelected());
         clearMenuItem.addActionListener(_ -> deleteSelected());
         viewChestsMenuItem.addActionListener(_ -> viewChests());
+        exportMenuItem.addActionListener(_ -> exportResults());
+        saveSeedSetMenuItem.addActionListener(_ -> saveSeedSet());
+        keepSeedSetMenuItem.addActionListener(_ -> filterBySeedSet(true));
+        removeSeedSetMenuItem.addActionListener(_ -> filterBySeedSet(false));
 
         popupMenu.add(copyMenuItem);
         popupMenu.add(clearMenuItem);
         popupMenu.add(viewChestsMenuItem);
+        popupMenu.add(exportMenuItem);
+        popupMenu.addSeparator();
+        popupMenu.add(saveSeedSetMenuItem);
+        popupMenu.add(keepSeedSetMenuItem);
+        popupMenu.add(removeSeedSetMenuItem);
     }
 
     private void initControlPanel() {
@@ -110,14 +266,73 @@ public class Result extends JPanel implements Searcher.ProgressCallback, Searche
         JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
 
         findButton = new JButton(parent.t("find"));
+        seedListButton = new JButton(parent.t("seedList"));
+        worldScanButton = new JButton(parent.t("worldScan"));
+        applyButton = new JButton(parent.t("applyConditions"));
+        applyButton.setEnabled(false);
         clearButton = new JButton(parent.t("clear"));
+        storedQueryButton = new JToggleButton(parent.t("queryStored"));
+        storedQueryButton.setEnabled(store != null);
         startSeedLabel = new JLabel(parent.t("startSeed"));
         startSeedField = new JTextField("0", 10);
 
+        // アイテムの要約での絞り込み
+        filterLabel = new JLabel(parent.t("filter"));
+        filterField = new JTextField(10);
+        filterField.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                applyFilter();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                applyFilter();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                applyFilter();
+            }
+        });
+
+        // 共有ワーカープールでの配分
+        weightLabel = new JLabel(parent.t("weight"));
+        weightSpinner = new JSpinner(new SpinnerNumberModel(1, 1, 10, 1));
+        previewCheckBox = new JCheckBox(parent.t("preview"));
+        shareLabel = new JLabel();
+        scrambledCheckBox = new JCheckBox(parent.t("scrambled"));
+        separateProcessCheckBox = new JCheckBox(parent.t("separateProcess"));
+
+        // 最初のピラミッドの周りに何個のピラミッドが集まっているか（1は条件なし）
+        clusterLabel = new JLabel(parent.t("cluster"));
+        clusterSpinner = new JSpinner(new SpinnerNumberModel(1, 1, SearchQuery.Cluster.MAX_COUNT, 1));
+        clusterRadiusLabel = new JLabel(parent.t("clusterRadius"));
+        clusterRadiusSpinner = new JSpinner(new SpinnerNumberModel(16, 1, SearchQuery.Cluster.MAX_RADIUS, 1));
+        closeButton = new JButton(parent.t("closeTab"));
+        closeButton.setVisible(false);
+
         buttonPanel.add(findButton);
+        buttonPanel.add(seedListButton);
+        buttonPanel.add(worldScanButton);
+        buttonPanel.add(applyButton);
         buttonPanel.add(clearButton);
+        buttonPanel.add(storedQueryButton);
         buttonPanel.add(startSeedLabel);
         buttonPanel.add(startSeedField);
+        buttonPanel.add(filterLabel);
+        buttonPanel.add(filterField);
+        buttonPanel.add(weightLabel);
+        buttonPanel.add(weightSpinner);
+        buttonPanel.add(previewCheckBox);
+        buttonPanel.add(shareLabel);
+        buttonPanel.add(scrambledCheckBox);
+        buttonPanel.add(separateProcessCheckBox);
+        buttonPanel.add(clusterLabel);
+        buttonPanel.add(clusterSpinner);
+        buttonPanel.add(clusterRadiusLabel);
+        buttonPanel.add(clusterRadiusSpinner);
+        buttonPanel.add(closeButton);
 
         JPanel statusPanel = new JPanel(new BorderLayout(5, 5));
         progressBar = new JProgressBar(0, 100);
@@ -137,6 +352,12 @@ public class Result extends JPanel implements Searcher.ProgressCallback, Searche
         add(controlPanel, BorderLayout.SOUTH);
     }
 
+    private void applyFilter() {
+        String text = filterField.getText().trim().toLowerCase(Locale.ROOT);
+        resultTable.clearSelection();
+        resultTableModel.setSummaryFilter(text.isEmpty() ? null : summary -> summary.toLowerCase(Locale.ROOT).contains(text));
+    }
+
     private void showMenu(MouseEvent e) {
         int row = resultTable.rowAtPoint(e.getPoint());
         if (row >= 0 && !resultTable.isRowSelected(row)) {
@@ -165,7 +386,7 @@ public class Result extends JPanel implements Searcher.ProgressCallback, Searche
     }
 
     private void clearAll() {
-        if (resultTableModel.getRowCount() == 0) return;
+        if (resultTableModel.size() == 0) return;
 
         int option = JOptionPane.showConfirmDialog(parent,
                 parent.t("clearResults"),
@@ -174,10 +395,12 @@ public class Result extends JPanel implements Searcher.ProgressCallback, Searche
                 JOptionPane.WARNING_MESSAGE);
 
         if (option == JOptionPane.YES_OPTION) {
-            resultTableModel.setRowCount(0);
+            resultTableModel.clear();
+            clearStore();
             parent.getCurrentSeed().set(0);
             startSeedField.setText("0");
             lootCache.clear();
+            seedSearcher.clearResume();
         }
     }
 
@@ -187,8 +410,7 @@ public class Result extends JPanel implements Searcher.ProgressCallback, Searche
 
         StringBuilder seedsText = new StringBuilder(selectedRows.length * 10);
         for (int i = 0; i < selectedRows.length; i++) {
-            int modelRow = resultTable.convertRowIndexToModel(selectedRows[i]);
-            seedsText.append(resultTableModel.getValueAt(modelRow, 0));
+            seedsText.append(resultTableModel.getSeed(selectedRows[i]));
             if (i < selectedRows.length - 1) seedsText.append('\n');
         }
 
@@ -196,96 +418,277 @@ public class Result extends JPanel implements Searcher.ProgressCallback, Searche
         Toolkit.getDefaultToolkit().getSystemClipboard().setContents(selection, null);
     }
 
-    private void deleteSelected() {
-        int[] selectedRows = resultTable.getSelectedRows();
-        if (selectedRows.length == 0) return;
-
-        int[] modelRows = new int[selectedRows.length];
-        for (int i = 0; i < selectedRows.length; i++) {
-            modelRows[i] = resultTable.convertRowIndexToModel(selectedRows[i]);
+    /**
+     * 選択中の行（2行以上選択されていなければ全行）を表示順に戦利品付きで書き出す
+     */
+    private void exportResults() {
+        int[] rows = resultTable.getSelectedRows();
+        if (rows.length < 2) {
+            rows = new int[resultTableModel.getRowCount()];
+            for (int i = 0; i < rows.length; i++) rows[i] = i;
         }
-        Arrays.sort(modelRows);
+        if (rows.length == 0) return;
 
-        for (int i = modelRows.length - 1; i >= 0; i--) {
-            long seed = (Long) resultTableModel.getValueAt(modelRows[i], 0);
-            resultTableModel.removeRow(modelRows[i]);
-            lootCache.remove(seed);
+        JFileChooser chooser = new JFileChooser();
+        chooser.setDialogTitle(parent.t("export"));
+        for (ResultExporter.Format format : ResultExporter.Format.values()) {
+            chooser.addChoosableFileFilter(new FileNameExtensionFilter(
+                    format.name() + " (*." + format.extension() + ")", format.extension()));
+        }
+        chooser.setAcceptAllFileFilterUsed(false);
+        if (chooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) return;
+
+        // 拡張子がなければ選んだ書式の拡張子を付ける
+        Path file = chooser.getSelectedFile().toPath();
+        if (!file.getFileName().toString().contains(".")
+                && chooser.getFileFilter() instanceof FileNameExtensionFilter filter) {
+            file = file.resolveSibling(file.getFileName() + "." + filter.getExtensions()[0]);
+        }
+        if (Files.exists(file) && !confirmOverwrite(file, parent.t("export"))) return;
+        ResultExporter.Format format = ResultExporter.Format.forFile(file);
+
+        long[] seeds = new long[rows.length];
+        int[] chunkX = new int[rows.length];
+        int[] chunkZ = new int[rows.length];
+        for (int i = 0; i < rows.length; i++) {
+            seeds[i] = resultTableModel.getSeed(rows[i]);
+            chunkX[i] = resultTableModel.getChunkX(rows[i]);
+            chunkZ[i] = resultTableModel.getChunkZ(rows[i]);
         }
+        ResultExporter.Rows exportRows = new ResultExporter.Rows(seeds, chunkX, chunkZ);
+
+        ProgressMonitor monitor = new ProgressMonitor(this, parent.t("export"), file.getFileName().toString(),
+                0, exportRows.size());
+        monitor.setMillisToDecideToPopup(200);
+        AtomicBoolean cancelled = new AtomicBoolean();
+        Path target = file;
+        new SwingWorker<Long, Long>() {
+            @Override
+            protected Long doInBackground() throws IOException {
+                // 同じディレクトリの一時ファイルに書き、最後まで書けた場合だけ置き換える（途中でやめても元のファイルは残る）
+                Path temp = Files.createTempFile(target.toAbsolutePath().getParent(),
+                        target.getFileName().toString(), ".tmp");
+                try {
+                    long count;
+                    try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16)) {
+                        count = new ResultExporter(parent.getThreadCount()).export(exportRows, format, out,
+                                this::publish, cancelled::get);
+                    }
+                    Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                    return count;
+                } finally {
+                    Files.deleteIfExists(temp);
+                }
+            }
+
+            @Override
+            protected void process(List<Long> chunks) {
+                monitor.setProgress((int) (long) chunks.getLast());
+                if (monitor.isCanceled()) cancelled.set(true);
+            }
+
+            @Override
+            protected void done() {
+                monitor.close();
+                try {
+                    get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (ExecutionException e) {
+                    if (!(e.getCause() instanceof CancellationException)) {
+                        JOptionPane.showMessageDialog(Result.this, String.valueOf(e.getCause().getMessage()));
+                    }
+                }
+            }
+        }.execute();
     }
 
-    private void viewChests() {
-        int selectedRow = resultTable.getSelectedRow();
-        if (selectedRow < 0) return;
+    private boolean confirmOverwrite(Path file, String title) {
+        int option = JOptionPane.showConfirmDialog(this,
+                parent.t("confirmOverwrite") + "\n" + file,
+                title,
+                JOptionPane.YES_NO_OPTION,
+                JOptionPane.WARNING_MESSAGE);
+        return option == JOptionPane.YES_OPTION;
+    }
 
-        int modelRow = resultTable.convertRowIndexToModel(selectedRow);
-        long seed = (Long) resultTableModel.getValueAt(modelRow, 0);
-        displayChests(seed);
+    private JFileChooser seedSetChooser(String title) {
+        JFileChooser chooser = new JFileChooser();
+        chooser.setDialogTitle(title);
+        chooser.setFileFilter(new FileNameExtensionFilter("Seed set (*" + SeedSet.EXTENSION + ")",
+                SeedSet.EXTENSION.substring(1)));
+        return chooser;
     }
 
-    private void displayChests(long seed) {
-        JPanel chestsPanel = new JPanel();
-        chestsPanel.setLayout(new BoxLayout(chestsPanel, BoxLayout.Y_AXIS));
+    /**
+     * 結果のシードを集合のファイルに保存する（同じシードは1つにまとめる）
+     */
+    private void saveSeedSet() {
+        int rowCount = resultTableModel.getRowCount();
+        if (rowCount == 0) return;
 
-        List<Position.ChunkPos> templePositions = templeTab.getTemplePositions();
-        Map<Integer, int[]> templeRanges = templeTab.getTempleRanges();
-        Map<Position.ChunkPos, List<ConditionalItem>> templeChests = templeTab.getTempleChests();
+        JFileChooser chooser = seedSetChooser(parent.t("saveSeedSet"));
+        if (chooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) return;
+        Path file = chooser.getSelectedFile().toPath();
+        if (!file.getFileName().toString().contains(".")) {
+            file = file.resolveSibling(file.getFileName() + SeedSet.EXTENSION);
+        }
+        if (Files.exists(file) && !confirmOverwrite(file, parent.t("saveSeedSet"))) return;
 
-        for (int templeIndex = 0; templeIndex < templePositions.size(); templeIndex++) {
-            int templeId = templeIndex + 1;
-            Position.ChunkPos representativePos = templePositions.get(templeIndex);
-            int[] range = templeRanges.get(templeId);
+        long[] seeds = new long[rowCount];
+        for (int i = 0; i < rowCount; i++) seeds[i] = resultTableModel.getSeed(i);
+        Path target = file;
+        new SwingWorker<Long, Void>() {
+            @Override
+            protected Long doInBackground() throws IOException {
+                return SeedSetWriter.write(target, seeds);
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (ExecutionException e) {
+                    JOptionPane.showMessageDialog(Result.this, String.valueOf(e.getCause().getMessage()));
+                }
+            }
+        }.execute();
+    }
+
+    /**
+     * 集合のファイルに含まれる（keep が false なら含まれない）結果だけを残す
+     * 別の条件で検索した結果との積や差を、検索し直さずに求める
+     */
+    private void filterBySeedSet(boolean keep) {
+        if (resultTableModel.size() == 0) return;
 
-            List<Position.ChunkPos> templePosInRange = getTempleRange(seed, representativePos, range);
-            if (templePosInRange.isEmpty()) continue;
+        JFileChooser chooser = seedSetChooser(parent.t(keep ? "keepSeedSet" : "removeSeedSet"));
+        if (chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) return;
 
-            processTemplesInRange(seed, chestsPanel, templeIndex, templePosInRange, representativePos, templeChests);
+        SeedSet set;
+        try {
+            set = SeedSet.open(chooser.getSelectedFile().toPath());
+        } catch (IOException | IllegalArgumentException e) {
+            JOptionPane.showMessageDialog(this, e.getMessage());
+            return;
         }
+        resultTable.clearSelection();
+        deleteStored(resultTableModel.removeIf(seed -> set.contains(seed) != keep));
+    }
+
+    private void deleteSelected() {
+        int[] selectedRows = resultTable.getSelectedRows();
+        if (selectedRows.length == 0) return;
 
-        showChestsDialog(seed, chestsPanel);
+        resultTable.clearSelection();
+        deleteStored(resultTableModel.removeRows(selectedRows));
     }
 
-    private List<Position.ChunkPos> getTempleRange(long seed, Position.ChunkPos representativePos, int[] range) {
-        if (range == null) {
-            List<Position.ChunkPos> singlePos = new ArrayList<>(1);
-            if (DesertTempleGenerator.isTempleChunk(seed, representativePos)) {
-                singlePos.add(representativePos);
-            }
-            return singlePos;
-        } else {
-            return DesertTempleGenerator.getTemplesArea(seed, range[0], range[1], range[2], range[3]);
-        }
+    private void viewChests() {
+        int selectedRow = resultTable.getSelectedRow();
+        if (selectedRow < 0) return;
+
+        displayChests(resultTableModel.getSeed(selectedRow));
     }
 
-    private void processTemplesInRange(long seed, JPanel chestsPanel, int templeIndex,
-                                       List<Position.ChunkPos> templePosInRange,
-                                       Position.ChunkPos representativePos,
-                                       Map<Position.ChunkPos, List<ConditionalItem>> templeChests) {
+    /**
+     * Templeタブの条件を取り出す（EDTのみ）
+     */
+    private ChestQuery chestQuery() {
+        // Templeタブの内容は変更されるので、裏のスレッドに渡す前に写しを取る
+        Map<Position.ChunkPos, List<ConditionalItem>> conditions = new HashMap<>();
+        templeTab.getTempleChests().forEach((pos, items) -> conditions.put(pos, new ArrayList<>(items)));
+        return new ChestQuery(new ArrayList<>(templeTab.getTemplePositions()),
+                new HashMap<>(templeTab.getTempleRanges()), conditions, MAX_DISPLAYED_TEMPLES);
+    }
 
-        List<ConditionalItem> requiredItems = templeChests.get(representativePos);
-        int templesAdded = 0;
+    /**
+     * 先読みの依頼（新しい依頼が来たら古いものは途中でやめる）
+     */
+    private record Prefetch(ChestQuery query, long[] seeds) { }
+
+    /**
+     * 選択中と表示中の行のシードの戦利品を裏で生成しておく
+     */
+    private void schedulePrefetch() {
+        int rowCount = resultTable.getRowCount();
+        if (rowCount == 0 || prefetcher.isShutdown()) return;  // 閉じたタブに残っていたイベント
+
+        Rectangle visible = resultTable.getVisibleRect();
+        int first = resultTable.rowAtPoint(new Point(0, visible.y));
+        int last = resultTable.rowAtPoint(new Point(0, visible.y + visible.height - 1));
+        if (first < 0) first = 0;
+        if (last < 0) last = rowCount - 1;
+
+        int[] selected = resultTable.getSelectedRows();
+        long[] seeds = new long[Math.min(MAX_PREFETCH_ROWS, selected.length + last - first + 1)];
+        int count = 0;
+        for (int i = 0; i < selected.length && count < seeds.length; i++) {
+            seeds[count++] = resultTableModel.getSeed(selected[i]);
+        }
+        for (int row = first; row <= last && count < seeds.length; row++) {
+            seeds[count++] = resultTableModel.getSeed(row);
+        }
 
-        for (int posIndex = 0; posIndex < templePosInRange.size(); posIndex++) {
-            Position.ChunkPos pos = templePosInRange.get(posIndex);
+        if (prefetchRequest.getAndSet(new Prefetch(chestQuery(), Arrays.copyOf(seeds, count))) == null) {
+            prefetcher.execute(this::runPrefetch);
+        }
+    }
+
+    private void runPrefetch() {
+        Prefetch request;
+        while ((request = prefetchRequest.getAndSet(null)) != null) {
+            for (long seed : request.seeds()) {
+                if (prefetchRequest.get() != null) break;
+                request.query().resolve(seed, lootCache);
+            }
+        }
+    }
 
-            List<LootType.LootItem> generatedLoot = getOrGenerateLoot(seed, pos);
-            if (!Searcher.checkMatch(requiredItems, generatedLoot)) {
-                continue;
+    /**
+     * チェストの内容を表示する
+     * 戦利品は裏で求め（先読み済みならキャッシュから）、チェストの表はタブを選んだときに作る
+     */
+    private void displayChests(long seed) {
+        ChestQuery query = chestQuery();
+        setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
+        new SwingWorker<List<ChestQuery.Group>, Void>() {
+            @Override
+            protected List<ChestQuery.Group> doInBackground() {
+                return query.resolve(seed, lootCache);
             }
 
-            JPanel templePanel = createTemplePanel(seed, templeIndex, posIndex, pos, templePosInRange.size());
-            chestsPanel.add(templePanel);
-            templesAdded++;
+            @Override
+            protected void done() {
+                setCursor(Cursor.getDefaultCursor());
+                try {
+                    showChestsDialog(seed, createChestsPanel(get()));
+                } catch (InterruptedException | ExecutionException e) {
+                    e.printStackTrace();
+                }
+            }
+        }.execute();
+    }
 
-            if (templesAdded >= MAX_DISPLAYED_TEMPLES && templePosInRange.size() > MAX_DISPLAYED_TEMPLES) {
-                addMoreTemplesLabel(chestsPanel, templePosInRange.size() - MAX_DISPLAYED_TEMPLES);
-                break;
+    private JPanel createChestsPanel(List<ChestQuery.Group> groups) {
+        JPanel chestsPanel = new JPanel();
+        chestsPanel.setLayout(new BoxLayout(chestsPanel, BoxLayout.Y_AXIS));
+        for (ChestQuery.Group group : groups) {
+            for (ChestQuery.Temple temple : group.temples()) {
+                chestsPanel.add(createTemplePanel(temple));
+            }
+            if (group.hiddenCount() > 0) {
+                addMoreTemplesLabel(chestsPanel, group.hiddenCount());
             }
         }
-    }
 
-    private List<LootType.LootItem> getOrGenerateLoot(long seed, Position.ChunkPos pos) {
-        return lootCache.computeIfAbsent(seed, _ -> new HashMap<>())
-                .computeIfAbsent(pos, p -> DesertTempleLoot.generateLoot(seed, p.x(), p.z()));
+        JLabel cacheLabel = new JLabel(String.format("%s: %,d hits / %,d misses, %,d temples",
+                parent.t("lootCache"), lootCache.hits(), lootCache.misses(), lootCache.size()));
+        cacheLabel.setForeground(Color.GRAY);
+        chestsPanel.add(cacheLabel);
+        return chestsPanel;
     }
 
     private void addMoreTemplesLabel(JPanel chestsPanel, int remainingCount) {
@@ -294,10 +697,12 @@ public class Result extends JPanel implements Searcher.ProgressCallback, Searche
         chestsPanel.add(moreLabel);
     }
 
-    private JPanel createTemplePanel(long seed, int templeIndex, int posIndex, Position.ChunkPos pos, int totalPositions) {
+    private JPanel createTemplePanel(ChestQuery.Temple temple) {
         JPanel templePanel = new JPanel(new BorderLayout());
-        String posLabel = totalPositions > 1 ? " #" + (posIndex + 1) + " of " + totalPositions : "";
+        String posLabel = temple.positionCount() > 1
+                ? " #" + (temple.posIndex() + 1) + " of " + temple.positionCount() : "";
 
+        Position.ChunkPos pos = temple.pos();
         String coordsText;
         if (useBlockCoordinates) {
             Position.BlockPos blockPos = pos.toBlock();
@@ -307,27 +712,34 @@ public class Result extends JPanel implements Searcher.ProgressCallback, Searche
         }
 
         templePanel.setBorder(BorderFactory.createTitledBorder(
-                parent.t("temples") + " " + (templeIndex + 1) + posLabel + " " + coordsText));
+                parent.t("temples") + " " + (temple.templeIndex() + 1) + posLabel + " " + coordsText));
 
-        JTabbedPane chestTabs = createChestTabs(seed, pos);
+        JTabbedPane chestTabs = createChestTabs(temple.loot());
         templePanel.add(chestTabs, BorderLayout.CENTER);
 
         return templePanel;
     }
 
-    private JTabbedPane createChestTabs(long seed, Position.ChunkPos pos) {
-        List<Integer> chestSeeds = DesertTempleLoot.generateChestSeed(seed, pos.x(), pos.z());
+    /**
+     * チェストごとのタブ（表は選ばれたときに作る）
+     */
+    private JTabbedPane createChestTabs(LootCache.TempleLoot loot) {
         JTabbedPane chestTabs = new JTabbedPane();
-
-        for (int chestIndex = 0; chestIndex < chestSeeds.size(); chestIndex++) {
-            int chestSeed = chestSeeds.get(chestIndex);
-            List<LootType.LootItem> loot = DesertTempleLootGenerator.generateLootItems(
-                    DesertTempleLootTable.getDesertTempleLootTable(), chestSeed);
-
-            JScrollPane chestScrollPane = createChestLoot(loot);
-            chestTabs.addTab(parent.t("chest") + " " + (chestIndex + 1), chestScrollPane);
+        for (int chestIndex = 0; chestIndex < loot.chests().size(); chestIndex++) {
+            chestTabs.addTab(parent.t("chest") + " " + (chestIndex + 1), new JPanel(new BorderLayout()));
         }
 
+        Runnable buildSelected = () -> {
+            int index = chestTabs.getSelectedIndex();
+            if (index < 0) return;
+            JPanel holder = (JPanel) chestTabs.getComponentAt(index);
+            if (holder.getComponentCount() == 0) {
+                holder.add(createChestLoot(loot.chests().get(index)), BorderLayout.CENTER);
+                holder.revalidate();
+            }
+        };
+        chestTabs.addChangeListener(_ -> buildSelected.run());
+        buildSelected.run();
         return chestTabs;
     }
 
@@ -358,17 +770,34 @@ public class Result extends JPanel implements Searcher.ProgressCallback, Searche
                 JOptionPane.PLAIN_MESSAGE);
     }
 
-    @Override
     public void updateLanguage() {
         findButton.setText(seedSearcher.isCalculating() ? parent.t("stop") : parent.t("find"));
+        seedListButton.setText(parent.t("seedList"));
+        worldScanButton.setText(parent.t("worldScan"));
+        applyButton.setText(parent.t("applyConditions"));
         clearButton.setText(parent.t("clear"));
+        storedQueryButton.setText(parent.t("queryStored"));
         startSeedLabel.setText(parent.t("startSeed"));
+        filterLabel.setText(parent.t("filter"));
+        weightLabel.setText(parent.t("weight"));
+        previewCheckBox.setText(parent.t("preview"));
+        scrambledCheckBox.setText(parent.t("scrambled"));
+        separateProcessCheckBox.setText(parent.t("separateProcess"));
+        clusterLabel.setText(parent.t("cluster"));
+        clusterRadiusLabel.setText(parent.t("clusterRadius"));
+        closeButton.setText(parent.t("closeTab"));
 
         Component[] menuItems = popupMenu.getComponents();
-        if (menuItems.length >= 3) {
+        if (menuItems.length >= 4) {
             if (menuItems[0] instanceof JMenuItem) ((JMenuItem) menuItems[0]).setText(parent.t("copy"));
             if (menuItems[1] instanceof JMenuItem) ((JMenuItem) menuItems[1]).setText(parent.t("delete"));
             if (menuItems[2] instanceof JMenuItem) ((JMenuItem) menuItems[2]).setText(parent.t("viewChests"));
+            if (menuItems[3] instanceof JMenuItem) ((JMenuItem) menuItems[3]).setText(parent.t("export"));
+        }
+        if (menuItems.length >= 8) {
+            if (menuItems[5] instanceof JMenuItem) ((JMenuItem) menuItems[5]).setText(parent.t("saveSeedSet"));
+            if (menuItems[6] instanceof JMenuItem) ((JMenuItem) menuItems[6]).setText(parent.t("keepSeedSet"));
+            if (menuItems[7] instanceof JMenuItem) ((JMenuItem) menuItems[7]).setText(parent.t("removeSeedSet"));
         }
         updateCoordinateDisplay();
     }
@@ -404,12 +833,58 @@ public class Result extends JPanel implements Searcher.ProgressCallback, Searche
         }
     }
 
+    /**
+     * 追加した結果タブのみ閉じるボタンを表示
+     */
+    public void setClosable(boolean closable) {
+        closeButton.setVisible(closable);
+    }
+
+    /**
+     * 実行中の検索を停止（タブを閉じるとき用）
+     */
+    public void stopSearch() {
+        if (seedSearcher.isCalculating()) {
+            pauseFind();
+        }
+    }
+
+    /**
+     * 検索の開始・終了を Frame に通知する（停止と完了の両方から呼ばれても1回だけ数える）
+     */
+    private void setRunning(boolean running) {
+        if (this.running == running) return;
+        this.running = running;
+        parent.searchRunning(running);
+    }
+
+    /**
+     * 共有ワーカープールでのこのタブの検索の割り当て（使用中のワーカー数と直近の速度）を表示する
+     */
+    public void showShare(List<FairShareScheduler.SearchStats> stats) {
+        SearchHandle handle = seedSearcher.currentHandle();
+        String text = "";
+        for (FairShareScheduler.SearchStats share : stats) {
+            if (handle != null && share.handle() == handle && !handle.isDone()) {
+                text = parent.t("workers") + ": " + share.runningBlocks() + "/"
+                        + parent.getSearchScheduler().workerCount()
+                        + " (" + formatNumber(share.recentSeedsPerSecond()) + " seeds/sec)";
+            }
+        }
+        shareLabel.setText(text);
+    }
+
     private void pauseFind() {
         seedSearcher.stopSearch();
         findButton.setText(parent.t("find"));
+        seedListButton.setEnabled(true);
+        worldScanButton.setEnabled(true);
+        applyButton.setEnabled(false);
         startSeedField.setEnabled(true);
-        startSeedField.setText(String.valueOf(seedSearcher.getSeed()));
-        parent.getIsCalculating().set(false);
+        if (!seedListMode) {
+            startSeedField.setText(String.valueOf(seedSearcher.getSeed()));
+        }
+        setRunning(false);
         if (progressUpdateTimer != null) {
             progressUpdateTimer.stop();
         }
@@ -433,32 +908,180 @@ public class Result extends JPanel implements Searcher.ProgressCallback, Searche
     }
 
     private void find(long startSeed) {
+        if (!setSearchParams()) return;
+
+        final long finalStartSeed = handleStartSeed(startSeed);
+        if (finalStartSeed < 0) return;
+
+        seedListMode = false;
+        remainingTimeMs = -1;
+        setupSearch();
+        seedSearcher.setShare((Integer) weightSpinner.getValue(), previewCheckBox.isSelected());
+        seedSearcher.setScrambled(scrambledCheckBox.isSelected());
+        seedSearcher.setOutOfProcess(separateProcessCheckBox.isSelected());
+        seedSearcher.setCluster(clusterCondition());
+        seedSearcher.startSearch(finalStartSeed);
+        applyButton.setEnabled(seedSearcher.canUpdateConditions());
+        setRunning(true);
+    }
+
+    /**
+     * Temple/Chestタブの変更を検索を止めずに反映し、表示中の結果を新しい条件で絞り込む
+     */
+    private void applyConditions() {
+        updateChests();
+        if (!setSearchParams()) return;
+
+        LongPredicate matches = seedSearcher.updateConditions();
+        if (matches == null) {
+            applyButton.setEnabled(false);
+            return;
+        }
+        resultTable.clearSelection();
+        deleteStored(resultTableModel.removeIf(seed -> !matches.test(seed)));
+    }
+
+    /**
+     * 候補シードのリストファイルを選んで、そのシードだけを判定する
+     */
+    private void findFromSeedList() {
+        updateChests();
+        if (!setSearchParams()) return;
+
+        JFileChooser chooser = new JFileChooser();
+        chooser.setDialogTitle(parent.t("seedList"));
+        if (chooser.showOpenDialog(parent) != JFileChooser.APPROVE_OPTION) return;
+
+        if (resultTableModel.size() > 0) {
+            int option = JOptionPane.showConfirmDialog(parent,
+                    parent.t("confirmClearResults"),
+                    parent.t("confirmTitle"),
+                    JOptionPane.YES_NO_CANCEL_OPTION,
+                    JOptionPane.QUESTION_MESSAGE);
+            if (option == JOptionPane.CANCEL_OPTION || option == JOptionPane.CLOSED_OPTION) return;
+            if (option == JOptionPane.YES_OPTION) {
+                resultTableModel.clear();
+                clearStore();
+            }
+        }
+
+        seedListMode = true;
+        remainingTimeMs = -1;
+        setupSearch();
+        seedSearcher.setCluster(clusterCondition());
+        try {
+            seedSearcher.startSeedListSearch(chooser.getSelectedFile().toPath());
+        } catch (IOException | IllegalArgumentException e) {
+            pauseFind();
+            JOptionPane.showMessageDialog(parent, parent.t("errorSeedList") + "\n" + e.getMessage());
+            return;
+        }
+        setRunning(true);
+    }
+
+    /**
+     * 1つのワールドシードで、指定した範囲のピラミッドのうち最初のピラミッドの条件を満たすものを近い順に探す
+     */
+    private void scanWorld() {
+        updateChests();
+        if (!setSearchParams()) return;
+
+        JTextField seedField = new JTextField(12);
+        JTextField centerXField = new JTextField("0", 8);
+        JTextField centerZField = new JTextField("0", 8);
+        JTextField radiusField = new JTextField("100000", 8);
+        JTextField limitField = new JTextField("0", 8);
+
+        JPanel panel = new JPanel(new GridLayout(0, 2));
+        panel.add(new JLabel(parent.t("worldSeed")));
+        panel.add(seedField);
+        panel.add(new JLabel(parent.t("centerX")));
+        panel.add(centerXField);
+        panel.add(new JLabel(parent.t("centerZ")));
+        panel.add(centerZField);
+        panel.add(new JLabel(parent.t("radiusBlocks")));
+        panel.add(radiusField);
+        panel.add(new JLabel(parent.t("maxResults")));
+        panel.add(limitField);
+
+        int option = JOptionPane.showConfirmDialog(parent, panel, parent.t("worldScan"),
+                JOptionPane.OK_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE);
+        if (option != JOptionPane.OK_OPTION) return;
+
+        long worldSeed;
+        int centerX, centerZ, radius, limit;
+        try {
+            worldSeed = Long.parseLong(seedField.getText().trim());
+            centerX = Integer.parseInt(centerXField.getText().trim());
+            centerZ = Integer.parseInt(centerZField.getText().trim());
+            radius = Integer.parseInt(radiusField.getText().trim());
+            limit = Integer.parseInt(limitField.getText().trim());
+        } catch (NumberFormatException e) {
+            JOptionPane.showMessageDialog(parent, parent.t("errorInvalidCoordinates"));
+            return;
+        }
+
+        if (resultTableModel.size() > 0) {
+            int clear = JOptionPane.showConfirmDialog(parent,
+                    parent.t("confirmClearResults"),
+                    parent.t("confirmTitle"),
+                    JOptionPane.YES_NO_CANCEL_OPTION,
+                    JOptionPane.QUESTION_MESSAGE);
+            if (clear == JOptionPane.CANCEL_OPTION || clear == JOptionPane.CLOSED_OPTION) return;
+            if (clear == JOptionPane.YES_OPTION) {
+                resultTableModel.clear();
+                clearStore();
+            }
+        }
+
+        seedListMode = true;  // 開始シードは使わない
+        remainingTimeMs = -1;
+        setupSearch();
+        try {
+            seedSearcher.startWorldScan(worldSeed, centerX, centerZ, radius, limit);
+        } catch (IllegalArgumentException e) {
+            pauseFind();
+            JOptionPane.showMessageDialog(parent, e.getMessage());
+            return;
+        }
+        setRunning(true);
+    }
+
+    /**
+     * 密集の条件（ピラミッドの数が1の場合はnull）
+     */
+    private SearchQuery.Cluster clusterCondition() {
+        int count = (Integer) clusterSpinner.getValue();
+        return count < 2 ? null : new SearchQuery.Cluster(count, (Integer) clusterRadiusSpinner.getValue());
+    }
+
+    /**
+     * Templeタブの条件を検索パラメータとして設定
+     *
+     * @return 条件が不足している場合はfalse
+     */
+    private boolean setSearchParams() {
         List<Position.ChunkPos> templePositions = templeTab.getTemplePositions();
         Map<Position.ChunkPos, List<ConditionalItem>> templeChests = templeTab.getTempleChests();
         Map<Integer, int[]> templeRanges = templeTab.getTempleRanges();
 
         if (templePositions.isEmpty()) {
             JOptionPane.showMessageDialog(parent, parent.t("errorNoTemples"));
-            return;
+            return false;
         }
 
         boolean hasItems = templeChests.values().stream().anyMatch(items -> !items.isEmpty());
         if (!hasItems) {
             JOptionPane.showMessageDialog(parent, parent.t("errorNoItems"));
-            return;
+            return false;
         }
 
-        final long finalStartSeed = handleStartSeed(startSeed);
-        if (finalStartSeed < 0) return;
-
-        setupSearch();
         seedSearcher.setSearchParams(templePositions, templeChests, templeRanges);
-        seedSearcher.startSearch(finalStartSeed);
-        parent.getIsCalculating().set(true);
+        return true;
     }
 
     private long handleStartSeed(long startSeed) {
-        if (startSeed == 0 && resultTableModel.getRowCount() > 0) {
+        if (startSeed == 0 && resultTableModel.size() > 0) {
             int option = JOptionPane.showConfirmDialog(parent,
                     parent.t("confirmClearResults"),
                     parent.t("confirmTitle"),
@@ -473,14 +1096,17 @@ public class Result extends JPanel implements Searcher.ProgressCallback, Searche
                 startSeedField.setText(String.valueOf(seed));
                 return seed;
             } else {
-                resultTableModel.setRowCount(0);
+                resultTableModel.clear();
+                clearStore();
                 parent.getCurrentSeed().set(0);
                 startSeedField.setText("0");
+                seedSearcher.clearResume();
                 return 0;
             }
         } else {
             if (startSeed == 0) {
-                resultTableModel.setRowCount(0);
+                resultTableModel.clear();
+                clearStore();
                 parent.getCurrentSeed().set(0);
             }
             return startSeed;
@@ -489,6 +1115,8 @@ public class Result extends JPanel implements Searcher.ProgressCallback, Searche
 
     private void setupSearch() {
         findButton.setText(parent.t("stop"));
+        seedListButton.setEnabled(false);
+        worldScanButton.setEnabled(false);
         startSeedField.setEnabled(false);
         progressBar.setIndeterminate(false);
         progressBar.setValue(0);
@@ -521,7 +1149,18 @@ public class Result extends JPanel implements Searcher.ProgressCallback, Searche
             }
         });
 
+        seedListButton.addActionListener(_ -> findFromSeedList());
+        worldScanButton.addActionListener(_ -> scanWorld());
+        applyButton.addActionListener(_ -> applyConditions());
         clearButton.addActionListener(_ -> clearAll());
+        storedQueryButton.addActionListener(_ -> queryStoredResults());
+        closeButton.addActionListener(_ -> parent.closeResultTab(this));
+
+        // 選択中と表示中の行の戦利品を先読みする
+        resultTable.getSelectionModel().addListSelectionListener(e -> {
+            if (!e.getValueIsAdjusting()) schedulePrefetch();
+        });
+        resultScrollPane.getViewport().addChangeListener(_ -> schedulePrefetch());
 
         resultTable.addMouseListener(new MouseAdapter() {
             @Override
@@ -542,7 +1181,10 @@ public class Result extends JPanel implements Searcher.ProgressCallback, Searche
             progressBar.setValue((int)percentComplete);
             progressBar.setString(String.format("%.1f%%", percentComplete));
             progressLabel.setText(formatNumber(seedsPerSecond) + " seeds/sec " +
-                    formatET(elapsedTimeMs));
+                    formatET(elapsedTimeMs) +
+                    (remainingTimeMs >= 0 ? " (" + parent.t("remaining") + " " + formatET(remainingTimeMs) + ")" : ""));
+
+            progressLabel.setToolTipText(null);
 
             // 100%時に停止
             if (percentComplete >= 100.0) {
@@ -551,17 +1193,30 @@ public class Result extends JPanel implements Searcher.ProgressCallback, Searche
         });
     }
 
+    @Override
+    public void onRemainingTime(long remainingMs) {
+        SwingUtilities.invokeLater(() -> remainingTimeMs = remainingMs);
+    }
+
+    @Override
+    public void onHitEstimate(double hitRate, long estimatedTotalHits) {
+        SwingUtilities.invokeLater(() -> progressLabel.setToolTipText(
+                parent.t("estimatedHits") + ": " + formatNumber(estimatedTotalHits)
+                        + String.format(" (%.3g/seed)", hitRate)));
+    }
+
     @Override
     public void onSearchResult(long seed, Position.ChunkPos position, List<LootType.LootItem> loot) {
-        String itemSummary = Searcher.formatCounts(loot);
-        SwingUtilities.invokeLater(() -> {
-            if (useBlockCoordinates) {
-                Position.BlockPos blockPos = position.toBlock();
-                resultTableModel.addRow(new Object[]{seed, blockPos.x(), blockPos.z(), itemSummary});
-            } else {
-                resultTableModel.addRow(new Object[]{seed, position.x(), position.z(), itemSummary});
+        String summary = Searcher.formatCounts(loot);
+        // 連続するヒットはEDTでまとめて追加される
+        resultTableModel.offer(seed, position.x(), position.z(), summary);
+        if (store != null) {
+            try {
+                store.append(seed, position.x(), position.z(), summary, loot);
+            } catch (IOException e) {
+                System.err.println("Failed to store result: " + e.getMessage());
             }
-        });
+        }
     }
 
     @Override
@@ -576,17 +1231,21 @@ public class Result extends JPanel implements Searcher.ProgressCallback, Searche
             parent.getCurrentSeed().set(0);
             startSeedField.setEnabled(true);
             findButton.setText(parent.t("find"));
-            parent.getIsCalculating().set(false);
+            seedListButton.setEnabled(true);
+            worldScanButton.setEnabled(true);
+            applyButton.setEnabled(false);
+            setRunning(false);
+            compactStore();
 
             if (!seedSearcher.isStopped()) {
-                if (resultTableModel.getRowCount() == 0) {
+                if (resultTableModel.size() == 0) {
                     JOptionPane.showMessageDialog(parent, parent.t("noResults"));
                 } else {
-                    parent.selectResultsTab();
+                    parent.selectResultsTab(this);
                 }
             } else {
-                if (resultTableModel.getRowCount() > 0) {
-                    parent.selectResultsTab();
+                if (resultTableModel.size() > 0) {
+                    parent.selectResultsTab(this);
                 }
             }
 
@@ -615,46 +1274,12 @@ public class Result extends JPanel implements Searcher.ProgressCallback, Searche
             newHeaders = parent.t("resultHeader").split(",");
         }
 
-        resultTableModel.setColumnIdentifiers(newHeaders);
-
-        refreshTableData();
-
-        resultTable.getTableHeader().repaint();
-    }
-
-    private void refreshTableData() {
-        int rowCount = resultTableModel.getRowCount();
-        Object[][] data = new Object[rowCount][4];
-
-        for (int i = 0; i < rowCount; i++) {
-            data[i][0] = resultTableModel.getValueAt(i, 0); // シード
-            data[i][1] = resultTableModel.getValueAt(i, 1); // X
-            data[i][2] = resultTableModel.getValueAt(i, 2); // Z
-            data[i][3] = resultTableModel.getValueAt(i, 3); // アイテム
+        resultTableModel.setColumnNames(newHeaders);
+        for (int i = 0; i < newHeaders.length && i < resultTable.getColumnCount(); i++) {
+            resultTable.getColumnModel().getColumn(resultTable.convertColumnIndexToView(i)).setHeaderValue(newHeaders[i]);
         }
+        resultTableModel.setBlockCoordinates(useBlockCoordinates);
 
-        resultTableModel.setRowCount(0);
-
-        for (int i = 0; i < rowCount; i++) {
-            long seed = (Long) data[i][0];
-            int x = ((Number) data[i][1]).intValue();
-            int z = ((Number) data[i][2]).intValue();
-
-            // 座標変換
-            if (useBlockCoordinates) {
-                // チャンク座標からブロック座標への変換
-                x = x * 16 + 8;
-                z = z * 16 + 8;
-            } else {
-                // ブロック座標からチャンク座標への変換
-                x = (x - 8) / 16;
-                z = (z - 8) / 16;
-            }
-
-            resultTableModel.addRow(new Object[]{
-                    seed, x, z, data[i][3]
-            });
-        }
+        resultTable.getTableHeader().repaint();
     }
-
-}
\ No newline at end of file
+}
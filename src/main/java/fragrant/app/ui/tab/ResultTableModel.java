@@ -0,0 +1,504 @@
+package fragrant.app.ui.tab;
+
+import fragrant.app.store.ResultStore;
+import javax.swing.*;
+import javax.swing.table.AbstractTableModel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongPredicate;
+import java.util.function.Predicate;
+
+/**
+ * 検索結果の表のモデル
+ * シード・チャンク座標・アイテムの要約を列ごとのプリミティブ配列で持ち、行オブジェクトを作らない
+ * 要約文字列は同じものを1つにまとめてIDで参照し、ブロック座標への変換は表示時に行う
+ *
+ * 並び替えと絞り込みは表示順のインデックス配列（view）で行うため、JTable の RowSorter は使わない
+ * （表の行番号がそのまま表示順になる）
+ */
+public class ResultTableModel extends AbstractTableModel {
+    public static final int COLUMN_SEED = 0;
+    public static final int COLUMN_X = 1;
+    public static final int COLUMN_Z = 2;
+    public static final int COLUMN_ITEMS = 3;
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private String[] columnNames;
+    private boolean blockCoordinates;
+
+    // 追加順の格納領域（size 件が有効）
+    private long[] seeds = new long[INITIAL_CAPACITY];
+    private long[] chunks = new long[INITIAL_CAPACITY];
+    private int[] summaryIds = new int[INITIAL_CAPACITY];
+    private int size;
+
+    // 要約文字列の共有
+    private final List<String> summaries = new ArrayList<>();
+    private final Map<String, Integer> summaryIndex = new HashMap<>();
+
+    // 表示順（null の場合は追加順のまま全件を表示）
+    private int[] view;
+    private int viewSize;
+    private int sortColumn = -1;
+    private boolean ascending = true;
+    private Predicate<String> summaryFilter;
+    private boolean[] summaryAccepted = new boolean[0];
+
+    // 検索スレッドから受け取り、EDTでまとめて追加するまでの待ち行列
+    private final Object pendingLock = new Object();
+    private long[] pendingSeeds = new long[64];
+    private long[] pendingChunks = new long[64];
+    private String[] pendingSummaries = new String[64];
+    private int pendingSize;
+    private boolean flushScheduled;
+
+    public ResultTableModel(String[] columnNames) {
+        this.columnNames = columnNames;
+    }
+
+    /**
+     * 検索結果を追加する（どのスレッドからでも呼べる）
+     * 追加はEDTでまとめて行い、挿入イベントは1回にまとめて通知する
+     */
+    public void offer(long seed, int chunkX, int chunkZ, String summary) {
+        synchronized (pendingLock) {
+            if (pendingSize == pendingSeeds.length) {
+                int capacity = pendingSize * 2;
+                pendingSeeds = Arrays.copyOf(pendingSeeds, capacity);
+                pendingChunks = Arrays.copyOf(pendingChunks, capacity);
+                pendingSummaries = Arrays.copyOf(pendingSummaries, capacity);
+            }
+            pendingSeeds[pendingSize] = seed;
+            pendingChunks[pendingSize] = pack(chunkX, chunkZ);
+            pendingSummaries[pendingSize] = summary;
+            pendingSize++;
+            if (flushScheduled) return;
+            flushScheduled = true;
+        }
+        SwingUtilities.invokeLater(this::flush);
+    }
+
+    /**
+     * 待ち行列の結果を表に追加する（EDTのみ）
+     */
+    public void flush() {
+        long[] newSeeds;
+        long[] newChunks;
+        String[] newSummaries;
+        int count;
+        synchronized (pendingLock) {
+            flushScheduled = false;
+            count = pendingSize;
+            if (count == 0) return;
+            newSeeds = pendingSeeds;
+            newChunks = pendingChunks;
+            newSummaries = pendingSummaries;
+            pendingSeeds = new long[64];
+            pendingChunks = new long[64];
+            pendingSummaries = new String[64];
+            pendingSize = 0;
+        }
+
+        int first = size;
+        ensureCapacity(size + count);
+        System.arraycopy(newSeeds, 0, seeds, size, count);
+        System.arraycopy(newChunks, 0, chunks, size, count);
+        for (int i = 0; i < count; i++) {
+            summaryIds[size + i] = intern(newSummaries[i]);
+        }
+        size += count;
+
+        if (view == null) {
+            fireTableRowsInserted(first, size - 1);
+            return;
+        }
+
+        // 絞り込みを通った行を表示順に加える
+        int[] added = new int[count];
+        int addedCount = 0;
+        for (int row = first; row < size; row++) {
+            if (accepts(row)) added[addedCount++] = row;
+        }
+        if (addedCount == 0) return;
+
+        ensureViewCapacity(viewSize + addedCount);
+        if (sortColumn < 0) {
+            System.arraycopy(added, 0, view, viewSize, addedCount);
+            int firstView = viewSize;
+            viewSize += addedCount;
+            fireTableRowsInserted(firstView, viewSize - 1);
+        } else {
+            // 追加分だけを並べ替えて既存の表示順と併合する
+            int[] sortedAdded = Arrays.copyOf(added, addedCount);
+            sortIndices(sortedAdded, addedCount, comparator());
+            mergeIntoView(sortedAdded, addedCount);
+            fireTableDataChanged();
+        }
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= seeds.length) return;
+        int newCapacity = Math.max(capacity, seeds.length * 2);
+        seeds = Arrays.copyOf(seeds, newCapacity);
+        chunks = Arrays.copyOf(chunks, newCapacity);
+        summaryIds = Arrays.copyOf(summaryIds, newCapacity);
+    }
+
+    private void ensureViewCapacity(int capacity) {
+        if (capacity <= view.length) return;
+        view = Arrays.copyOf(view, Math.max(capacity, view.length * 2));
+    }
+
+    private int intern(String summary) {
+        Integer id = summaryIndex.get(summary);
+        if (id != null) return id;
+
+        int newId = summaries.size();
+        summaries.add(summary);
+        summaryIndex.put(summary, newId);
+        if (summaryFilter != null) {
+            if (newId >= summaryAccepted.length) {
+                summaryAccepted = Arrays.copyOf(summaryAccepted, Math.max(16, newId * 2));
+            }
+            summaryAccepted[newId] = summaryFilter.test(summary);
+        }
+        return newId;
+    }
+
+    private static long pack(int x, int z) {
+        return ((long) x << 32) | (z & 0xFFFFFFFFL);
+    }
+
+    private static int unpackX(long packed) {
+        return (int) (packed >> 32);
+    }
+
+    private static int unpackZ(long packed) {
+        return (int) packed;
+    }
+
+    /**
+     * 表示行から格納位置へ
+     */
+    private int storageRow(int row) {
+        return view == null ? row : view[row];
+    }
+
+    private boolean accepts(int storageRow) {
+        return summaryFilter == null || summaryAccepted[summaryIds[storageRow]];
+    }
+
+    /**
+     * 全件の数（絞り込みで隠れている行も含む）
+     */
+    public int size() {
+        return size;
+    }
+
+    public long getSeed(int row) {
+        return seeds[storageRow(row)];
+    }
+
+    public int getChunkX(int row) {
+        return unpackX(chunks[storageRow(row)]);
+    }
+
+    public int getChunkZ(int row) {
+        return unpackZ(chunks[storageRow(row)]);
+    }
+
+    public String getSummary(int row) {
+        return summaries.get(summaryIds[storageRow(row)]);
+    }
+
+    @Override
+    public int getRowCount() {
+        return view == null ? size : viewSize;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return columnNames.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return columnNames[column];
+    }
+
+    /**
+     * 列名を変更する（列の構成は変えないので、表のレンダラー設定は保たれる）
+     */
+    public void setColumnNames(String[] columnNames) {
+        this.columnNames = columnNames;
+    }
+
+    @Override
+    public Class<?> getColumnClass(int column) {
+        return switch (column) {
+            case COLUMN_SEED -> Long.class;
+            case COLUMN_X, COLUMN_Z -> Integer.class;
+            default -> String.class;
+        };
+    }
+
+    @Override
+    public boolean isCellEditable(int row, int column) {
+        return false;
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        int i = storageRow(row);
+        return switch (column) {
+            case COLUMN_SEED -> seeds[i];
+            case COLUMN_X -> toDisplay(unpackX(chunks[i]));
+            case COLUMN_Z -> toDisplay(unpackZ(chunks[i]));
+            default -> summaries.get(summaryIds[i]);
+        };
+    }
+
+    private int toDisplay(int chunk) {
+        return blockCoordinates ? chunk * 16 + 8 : chunk;
+    }
+
+    /**
+     * 座標の表示をチャンク座標とブロック座標で切り替える（データは変わらない）
+     */
+    public void setBlockCoordinates(boolean blockCoordinates) {
+        if (this.blockCoordinates == blockCoordinates) return;
+        this.blockCoordinates = blockCoordinates;
+        if (getRowCount() > 0) fireTableRowsUpdated(0, getRowCount() - 1);
+    }
+
+    /**
+     * 全件を削除する（待ち行列の結果は後で追加される）
+     */
+    public void clear() {
+        size = 0;
+        summaries.clear();
+        summaryIndex.clear();
+        summaryAccepted = new boolean[0];
+        if (seeds.length > INITIAL_CAPACITY * 64) {
+            seeds = new long[INITIAL_CAPACITY];
+            chunks = new long[INITIAL_CAPACITY];
+            summaryIds = new int[INITIAL_CAPACITY];
+        }
+        if (view != null) {
+            view = new int[INITIAL_CAPACITY];
+            viewSize = 0;
+        }
+        fireTableDataChanged();
+    }
+
+    /**
+     * 表の内容を保存済みの結果で置き換える（待ち行列の結果は後で追加される）
+     */
+    public void load(ResultStore.Rows rows) {
+        size = 0;
+        summaries.clear();
+        summaryIndex.clear();
+        summaryAccepted = new boolean[0];
+
+        int[] remap = new int[rows.summaries().size()];
+        for (int id = 0; id < remap.length; id++) {
+            remap[id] = intern(rows.summaries().get(id));
+        }
+        int count = rows.size();
+        seeds = new long[Math.max(INITIAL_CAPACITY, count)];
+        chunks = new long[seeds.length];
+        summaryIds = new int[seeds.length];
+        System.arraycopy(rows.seeds(), 0, seeds, 0, count);
+        for (int i = 0; i < count; i++) {
+            chunks[i] = pack(rows.chunkX()[i], rows.chunkZ()[i]);
+            summaryIds[i] = remap[rows.summaryIds()[i]];
+        }
+        size = count;
+        rebuildView();
+        fireTableDataChanged();
+    }
+
+    /**
+     * 表示行を削除する
+     *
+     * @return 削除した行のシード
+     */
+    public long[] removeRows(int[] rows) {
+        boolean[] removed = new boolean[size];
+        long[] removedSeeds = new long[rows.length];
+        for (int i = 0; i < rows.length; i++) {
+            int storage = storageRow(rows[i]);
+            removed[storage] = true;
+            removedSeeds[i] = seeds[storage];
+        }
+        compact(removed);
+        return removedSeeds;
+    }
+
+    /**
+     * シードが条件を満たさない行を削除する
+     *
+     * @return 削除した行のシード
+     */
+    public long[] removeIf(LongPredicate predicate) {
+        boolean[] removed = new boolean[size];
+        long[] removedSeeds = new long[16];
+        int removedCount = 0;
+        for (int i = 0; i < size; i++) {
+            if (!predicate.test(seeds[i])) continue;
+            removed[i] = true;
+            if (removedCount == removedSeeds.length) removedSeeds = Arrays.copyOf(removedSeeds, removedCount * 2);
+            removedSeeds[removedCount++] = seeds[i];
+        }
+        if (removedCount > 0) compact(removed);
+        return Arrays.copyOf(removedSeeds, removedCount);
+    }
+
+    private void compact(boolean[] removed) {
+        int write = 0;
+        for (int read = 0; read < size; read++) {
+            if (removed[read]) continue;
+            seeds[write] = seeds[read];
+            chunks[write] = chunks[read];
+            summaryIds[write] = summaryIds[read];
+            write++;
+        }
+        size = write;
+        rebuildView();
+        fireTableDataChanged();
+    }
+
+    /**
+     * 列で並び替える（同じ列を続けて指定すると昇順と降順を切り替える、-1 で追加順に戻す）
+     */
+    public void sortBy(int column) {
+        if (column < 0) {
+            sortColumn = -1;
+        } else if (column == sortColumn) {
+            ascending = !ascending;
+        } else {
+            sortColumn = column;
+            ascending = true;
+        }
+        rebuildView();
+        fireTableDataChanged();
+    }
+
+    public int getSortColumn() {
+        return sortColumn;
+    }
+
+    public boolean isAscending() {
+        return ascending;
+    }
+
+    /**
+     * アイテムの要約で絞り込む（null で解除）
+     * 判定は異なる要約ごとに1回だけ行う
+     */
+    public void setSummaryFilter(Predicate<String> filter) {
+        summaryFilter = filter;
+        if (filter != null) {
+            summaryAccepted = new boolean[Math.max(16, summaries.size())];
+            for (int id = 0; id < summaries.size(); id++) {
+                summaryAccepted[id] = filter.test(summaries.get(id));
+            }
+        }
+        rebuildView();
+        fireTableDataChanged();
+    }
+
+    private void rebuildView() {
+        if (summaryFilter == null && sortColumn < 0) {
+            view = null;
+            viewSize = 0;
+            return;
+        }
+
+        int[] newView = new int[Math.max(INITIAL_CAPACITY, size)];
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            if (accepts(i)) newView[count++] = i;
+        }
+        if (sortColumn >= 0) {
+            sortIndices(newView, count, comparator());
+        }
+        view = newView;
+        viewSize = count;
+    }
+
+    private void mergeIntoView(int[] added, int addedCount) {
+        IndexComparator cmp = comparator();
+        int[] merged = new int[Math.max(view.length, viewSize + addedCount)];
+        int a = 0, b = 0, out = 0;
+        while (a < viewSize && b < addedCount) {
+            merged[out++] = cmp.compare(view[a], added[b]) <= 0 ? view[a++] : added[b++];
+        }
+        while (a < viewSize) merged[out++] = view[a++];
+        while (b < addedCount) merged[out++] = added[b++];
+        view = merged;
+        viewSize = out;
+    }
+
+    /**
+     * 格納位置同士の比較（同じ値は追加順）
+     */
+    @FunctionalInterface
+    private interface IndexComparator {
+        int compare(int a, int b);
+    }
+
+    private IndexComparator comparator() {
+        IndexComparator base = switch (sortColumn) {
+            case COLUMN_SEED -> (a, b) -> Long.compare(seeds[a], seeds[b]);
+            case COLUMN_X -> (a, b) -> Integer.compare(unpackX(chunks[a]), unpackX(chunks[b]));
+            case COLUMN_Z -> (a, b) -> Integer.compare(unpackZ(chunks[a]), unpackZ(chunks[b]));
+            default -> {
+                int[] rank = summaryRanks();
+                yield (a, b) -> Integer.compare(rank[summaryIds[a]], rank[summaryIds[b]]);
+            }
+        };
+        return ascending
+                ? (a, b) -> { int c = base.compare(a, b); return c != 0 ? c : Integer.compare(a, b); }
+                : (a, b) -> { int c = base.compare(b, a); return c != 0 ? c : Integer.compare(a, b); };
+    }
+
+    /**
+     * 要約IDごとの文字列順での順位
+     */
+    private int[] summaryRanks() {
+        Integer[] ids = new Integer[summaries.size()];
+        for (int i = 0; i < ids.length; i++) ids[i] = i;
+        Arrays.sort(ids, (a, b) -> summaries.get(a).compareTo(summaries.get(b)));
+        int[] rank = new int[ids.length];
+        for (int i = 0; i < ids.length; i++) rank[ids[i]] = i;
+        return rank;
+    }
+
+    /**
+     * int配列のマージソート（ボックス化しない）
+     */
+    private static void sortIndices(int[] indices, int length, IndexComparator cmp) {
+        if (length < 2) return;
+        int[] buffer = new int[length];
+        for (int width = 1; width < length; width *= 2) {
+            for (int lo = 0; lo < length - width; lo += width * 2) {
+                int mid = lo + width;
+                int hi = Math.min(lo + width * 2, length);
+                if (cmp.compare(indices[mid - 1], indices[mid]) <= 0) continue;
+
+                int a = lo, b = mid, out = lo;
+                while (a < mid && b < hi) {
+                    buffer[out++] = cmp.compare(indices[a], indices[b]) <= 0 ? indices[a++] : indices[b++];
+                }
+                while (a < mid) buffer[out++] = indices[a++];
+                while (b < hi) buffer[out++] = indices[b++];
+                System.arraycopy(buffer, lo, indices, lo, hi - lo);
+            }
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package fragrant.app.worker;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 親プロセスと子プロセスで共有するメモリマップファイル
+ * 先頭に進捗と制御用のヘッダ、その後ろにヒット（シード・チャンク座標の16バイト固定長）のリングバッファを置く
+ * 書き込みは子プロセスのみ、読み出しは親プロセスのみの1対1で使う
+ */
+public final class RingChannel implements AutoCloseable {
+    private static final int MAGIC = 0x46445452;  // "FDTR"
+    private static final int HEADER_BYTES = 128;
+    private static final int RECORD_BYTES = 16;
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle INTS = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+
+    // ヘッダのオフセット
+    private static final int MAGIC_AT = 0;
+    private static final int CAPACITY_AT = 4;
+    private static final int WRITE_POS_AT = 8;
+    private static final int READ_POS_AT = 16;
+    private static final int SEEDS_PROCESSED_AT = 24;
+    private static final int CHECKPOINT_SEED_AT = 32;
+    private static final int CHECKPOINT_BLOCK_AT = 40;
+    private static final int TOTAL_BLOCKS_AT = 48;
+    private static final int HIT_COUNT_AT = 56;
+    private static final int ELAPSED_AT = 64;
+    private static final int STATE_AT = 72;
+    private static final int CANCEL_AT = 76;
+    private static final int CPU_LIMIT_AT = 80;  // CPU使用率の上限（千分率、0は制限なし）
+
+    public static final int STATE_RUNNING = 0;
+    public static final int STATE_DONE = 1;
+    public static final int STATE_CANCELLED = 2;
+    public static final int STATE_FAILED = 3;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+
+    /**
+     * 子プロセスから報告される進捗
+     */
+    public record Progress(long seedsProcessed, long checkpointSeed, long checkpointBlock, long totalBlocks,
+                           long hitCount, long elapsedTimeMs, int state) {
+        public boolean isTerminal() {
+            return state != STATE_RUNNING;
+        }
+    }
+
+    @FunctionalInterface
+    public interface HitConsumer {
+        void accept(long seed, int chunkX, int chunkZ);
+    }
+
+    private RingChannel(FileChannel channel, MappedByteBuffer buffer, int capacity) {
+        this.channel = channel;
+        this.buffer = buffer;
+        this.capacity = capacity;
+    }
+
+    /**
+     * 新しいチャネルファイルを作成（親プロセス側）
+     *
+     * @param capacity リングバッファに保持できるヒット数
+     */
+    public static RingChannel create(Path file, int capacity) throws IOException {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+                HEADER_BYTES + (long) capacity * RECORD_BYTES);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(CAPACITY_AT, capacity);
+        INTS.setRelease(buffer, MAGIC_AT, MAGIC);
+        return new RingChannel(channel, buffer, capacity);
+    }
+
+    /**
+     * 既存のチャネルファイルを開く（子プロセス側）
+     */
+    public static RingChannel open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        if ((int) INTS.getAcquire(buffer, MAGIC_AT) != MAGIC) {
+            channel.close();
+            throw new IOException("not a worker channel: " + file);
+        }
+        return new RingChannel(channel, buffer, buffer.getInt(CAPACITY_AT));
+    }
+
+    // 子プロセス側
+
+    /**
+     * ヒットを書き込む
+     *
+     * @return リングバッファが満杯の場合はfalse
+     */
+    public boolean offer(long seed, int chunkX, int chunkZ) {
+        long write = (long) LONGS.getOpaque(buffer, WRITE_POS_AT);
+        long read = (long) LONGS.getAcquire(buffer, READ_POS_AT);
+        if (write - read >= capacity) return false;
+
+        int at = HEADER_BYTES + (int) (write % capacity) * RECORD_BYTES;
+        buffer.putLong(at, seed);
+        buffer.putInt(at + 8, chunkX);
+        buffer.putInt(at + 12, chunkZ);
+        LONGS.setRelease(buffer, WRITE_POS_AT, write + 1);
+        return true;
+    }
+
+    public void writeProgress(long seedsProcessed, long checkpointSeed, long checkpointBlock, long totalBlocks,
+                              long hitCount, long elapsedTimeMs) {
+        LONGS.setOpaque(buffer, SEEDS_PROCESSED_AT, seedsProcessed);
+        LONGS.setOpaque(buffer, CHECKPOINT_SEED_AT, checkpointSeed);
+        LONGS.setOpaque(buffer, CHECKPOINT_BLOCK_AT, checkpointBlock);
+        LONGS.setOpaque(buffer, TOTAL_BLOCKS_AT, totalBlocks);
+        LONGS.setOpaque(buffer, HIT_COUNT_AT, hitCount);
+        LONGS.setRelease(buffer, ELAPSED_AT, elapsedTimeMs);
+    }
+
+    /**
+     * 終了状態を書き込む（すべてのヒットと最終進捗を書いた後に呼ぶ）
+     */
+    public void writeState(int state) {
+        INTS.setRelease(buffer, STATE_AT, state);
+    }
+
+    public boolean isCancelRequested() {
+        return (int) INTS.getAcquire(buffer, CANCEL_AT) != 0;
+    }
+
+    /**
+     * 親プロセスが指定したCPU使用率の上限（0より大きく1以下）
+     */
+    public double readCpuLimit() {
+        int permille = (int) INTS.getOpaque(buffer, CPU_LIMIT_AT);
+        return permille > 0 && permille < 1000 ? permille / 1000.0 : 1.0;
+    }
+
+    // 親プロセス側
+
+    /**
+     * 書き込まれたヒットをすべて読み出す
+     *
+     * @return 読み出した件数
+     */
+    public int poll(HitConsumer consumer) {
+        long read = (long) LONGS.getOpaque(buffer, READ_POS_AT);
+        long write = (long) LONGS.getAcquire(buffer, WRITE_POS_AT);
+        for (long i = read; i < write; i++) {
+            int at = HEADER_BYTES + (int) (i % capacity) * RECORD_BYTES;
+            consumer.accept(buffer.getLong(at), buffer.getInt(at + 8), buffer.getInt(at + 12));
+        }
+        LONGS.setRelease(buffer, READ_POS_AT, write);
+        return (int) (write - read);
+    }
+
+    public Progress readProgress() {
+        int state = (int) INTS.getAcquire(buffer, STATE_AT);
+        long elapsed = (long) LONGS.getAcquire(buffer, ELAPSED_AT);
+        return new Progress(
+                (long) LONGS.getOpaque(buffer, SEEDS_PROCESSED_AT),
+                (long) LONGS.getOpaque(buffer, CHECKPOINT_SEED_AT),
+                (long) LONGS.getOpaque(buffer, CHECKPOINT_BLOCK_AT),
+                (long) LONGS.getOpaque(buffer, TOTAL_BLOCKS_AT),
+                (long) LONGS.getOpaque(buffer, HIT_COUNT_AT),
+                elapsed,
+                state);
+    }
+
+    public void requestCancel() {
+        INTS.setRelease(buffer, CANCEL_AT, 1);
+    }
+
+    public void writeCpuLimit(double fraction) {
+        INTS.setOpaque(buffer, CPU_LIMIT_AT, (int) Math.round(Math.clamp(fraction, 0.001, 1.0) * 1000));
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,125 @@
+package fragrant.app.worker;
+
+import fragrant.app.search.QueryJson;
+import fragrant.app.search.SearchEngine;
+import fragrant.app.search.SearchHandle;
+import fragrant.app.search.SearchHit;
+import fragrant.app.search.SearchProgress;
+import fragrant.app.search.SearchQuery;
+import fragrant.utils.Json;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 子プロセス側の検索ワーカー
+ * 標準入力から検索条件（JSON）を読み、ヒットと進捗をチャネルファイルへ書き込む
+ * 起動したプロセス（GUI）の pid を受け取り、そのプロセスが終了したら検索を打ち切る
+ */
+public final class WorkerMain {
+    private static final long PROGRESS_INTERVAL_MS = 100;
+    private static final long FULL_WAIT_NANOS = 1_000_000;
+
+    private WorkerMain() { }
+
+    /**
+     * @param parentPid 起動したプロセスの pid（負の値の場合は確認しない）
+     * @return 終了コード
+     */
+    public static int run(Path channelFile, long parentPid) throws IOException, InterruptedException {
+        // pidの再利用は ProcessHandle の開始時刻で区別される
+        Optional<ProcessHandle> parent = parentPid >= 0 ? ProcessHandle.of(parentPid) : Optional.empty();
+        if (parentPid >= 0 && parent.isEmpty()) return 1;  // 起動したプロセスがすでに終了している
+
+        SearchQuery query = QueryJson.fromJson(
+                Json.parseObject(new String(System.in.readAllBytes(), StandardCharsets.UTF_8)), 1);
+
+        try (RingChannel ring = RingChannel.open(channelFile)) {
+            SearchEngine engine = new SearchEngine();
+            engine.throttle().setTargetFraction(ring.readCpuLimit());
+            SearchHandle handle = engine.start(query);
+            RingWriter writer = new RingWriter(ring, handle);
+            handle.subscribe(writer);
+            writeProgress(ring, handle.progress());
+
+            while (!writer.delivered.await(PROGRESS_INTERVAL_MS, TimeUnit.MILLISECONDS)) {
+                writeProgress(ring, handle.progress());
+                engine.throttle().setTargetFraction(ring.readCpuLimit());
+                if (ring.isCancelRequested() || !isParentAlive(parent)) {
+                    handle.cancel();
+                }
+            }
+
+            writeProgress(ring, handle.progress());
+            if (writer.error != null) {
+                writer.error.printStackTrace();
+                ring.writeState(RingChannel.STATE_FAILED);
+                return 1;
+            }
+            ring.writeState(handle.isCancelled() ? RingChannel.STATE_CANCELLED : RingChannel.STATE_DONE);
+            return 0;
+        }
+    }
+
+    private static void writeProgress(RingChannel ring, SearchProgress p) {
+        ring.writeProgress(p.seedsProcessed(), p.checkpointSeed(), p.checkpointBlock(), p.totalBlocks(),
+                p.hitCount(), p.elapsedTimeMs());
+    }
+
+    /**
+     * 親プロセスが終了していれば検索も打ち切る
+     * ProcessHandle.current().parent() は親の終了後に init などへ付け替えられるため使わない
+     */
+    private static boolean isParentAlive(Optional<ProcessHandle> parent) {
+        return parent.map(ProcessHandle::isAlive).orElse(true);
+    }
+
+    /**
+     * ヒットをリングバッファへ書き込む購読者
+     * バッファが満杯の間は待機し、検索側へ背圧をかける
+     */
+    private static final class RingWriter implements Flow.Subscriber<SearchHit> {
+        private final RingChannel ring;
+        private final SearchHandle handle;
+        private final CountDownLatch delivered = new CountDownLatch(1);
+        private volatile Throwable error;
+
+        RingWriter(RingChannel ring, SearchHandle handle) {
+            this.ring = ring;
+            this.handle = handle;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            subscription.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(SearchHit hit) {
+            while (!ring.offer(hit.seed(), hit.position().x(), hit.position().z())) {
+                if (ring.isCancelRequested() || handle.isCancelled()) {
+                    handle.cancel();
+                    return;
+                }
+                LockSupport.parkNanos(FULL_WAIT_NANOS);
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error = throwable;
+            delivered.countDown();
+        }
+
+        @Override
+        public void onComplete() {
+            delivered.countDown();
+        }
+    }
+}
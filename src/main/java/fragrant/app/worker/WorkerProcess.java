@@ -0,0 +1,187 @@
+package fragrant.app.worker;
+
+import fragrant.app.Main;
+import fragrant.app.search.QueryJson;
+import fragrant.app.search.SearchProgress;
+import fragrant.app.search.SearchQuery;
+import fragrant.utils.Json;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 検索を子プロセス（別JVM）で実行する
+ * 検索側のGCやメモリ不足がGUIのJVMに影響しないようにする
+ *
+ * 子プロセスのJVMオプションはシステムプロパティ {@value #JVM_OPTIONS_PROPERTY} で指定できる（空白区切り）
+ */
+public final class WorkerProcess implements AutoCloseable {
+    public static final String JVM_OPTIONS_PROPERTY = "fragrant.worker.jvmOptions";
+    private static final String DEFAULT_JVM_OPTIONS = "-Xmx1g";
+    private static final int RING_CAPACITY = 1 << 16;
+    private static final long CANCEL_GRACE_MS = 5000;
+    private final SearchQuery query;
+    private final Process process;
+    private final RingChannel ring;
+    private final Path file;
+    private volatile boolean cancelRequested = false;
+    private volatile SearchProgress finalProgress;
+
+    private WorkerProcess(SearchQuery query, Process process, RingChannel ring, Path file) {
+        this.query = query;
+        this.process = process;
+        this.ring = ring;
+        this.file = file;
+    }
+
+    /**
+     * 子プロセスを起動して検索を開始
+     */
+    public static WorkerProcess start(SearchQuery query) throws IOException {
+        Path file = Files.createTempFile("fragrant-search-", ".ring");
+        RingChannel ring = RingChannel.create(file, RING_CAPACITY);
+
+        List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(jvmOptions());
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(Main.class.getName());
+        command.add("--worker");
+        command.add(file.toString());
+        command.add(String.valueOf(ProcessHandle.current().pid()));
+
+        Process process;
+        try {
+            process = new ProcessBuilder(command)
+                    .redirectOutput(ProcessBuilder.Redirect.INHERIT)
+                    .redirectError(ProcessBuilder.Redirect.INHERIT)
+                    .start();
+            try (OutputStream in = process.getOutputStream()) {
+                in.write(Json.write(QueryJson.toJson(query)).getBytes(StandardCharsets.UTF_8));
+            }
+        } catch (IOException e) {
+            ring.close();
+            Files.deleteIfExists(file);
+            throw e;
+        }
+        return new WorkerProcess(query, process, ring, file);
+    }
+
+    private static List<String> jvmOptions() {
+        List<String> options = new ArrayList<>();
+        for (String option : System.getProperty(JVM_OPTIONS_PROPERTY, DEFAULT_JVM_OPTIONS).trim().split("\\s+")) {
+            if (!option.isEmpty()) options.add(option);
+        }
+        if (ManagementFactory.getRuntimeMXBean().getInputArguments().contains("--enable-preview")) {
+            options.add("--enable-preview");
+        }
+        return options;
+    }
+
+    public SearchQuery query() {
+        return query;
+    }
+
+    /**
+     * 子プロセスが書き込んだヒットを読み出す
+     */
+    public int poll(RingChannel.HitConsumer consumer) {
+        return finalProgress != null ? 0 : ring.poll(consumer);
+    }
+
+    /**
+     * 子プロセスが終了したか（異常終了を含む）
+     */
+    public boolean isFinished() {
+        return finalProgress != null || ring.readProgress().isTerminal() || !process.isAlive();
+    }
+
+    /**
+     * 終了状態を書かずに子プロセスが終了したか（メモリ不足など）
+     */
+    public boolean isFailed() {
+        RingChannel.Progress p = ring.readProgress();
+        return p.state() == RingChannel.STATE_FAILED || (!process.isAlive() && !p.isTerminal());
+    }
+
+    public int exitCode() {
+        return process.isAlive() ? -1 : process.exitValue();
+    }
+
+    public SearchProgress progress() {
+        SearchProgress cached = finalProgress;
+        if (cached != null) return cached;
+
+        RingChannel.Progress p = ring.readProgress();
+        SearchQuery.VisitOrder order = query.order();
+        // 最初の進捗が書かれる前は開始位置のまま
+        long checkpointSeed = Math.max(p.checkpointSeed(), query.startSeed());
+        long checkpointBlock = Math.max(p.checkpointBlock(), order.resumeBlock());
+        return new SearchProgress(query.startSeed(), query.endSeed(), p.seedsProcessed(),
+                checkpointSeed, checkpointBlock, p.totalBlocks(), order.scrambled(),
+                p.hitCount(), p.elapsedTimeMs(), isFinished(),
+                cancelRequested || p.state() == RingChannel.STATE_CANCELLED);
+    }
+
+    /**
+     * 中断した位置から続きを検索するための条件
+     */
+    public SearchQuery resumeQuery() {
+        SearchProgress p = progress();
+        if (p.scrambled()) {
+            return query.withOrder(query.order().resumeAt(p.checkpointBlock()));
+        }
+        return query.withStartSeed(p.checkpointSeed());
+    }
+
+    /**
+     * 子プロセスのCPU使用率の上限を変更（検索中でも反映される）
+     */
+    public void setCpuLimit(double fraction) {
+        if (finalProgress == null) {
+            ring.writeCpuLimit(fraction);
+        }
+    }
+
+    /**
+     * 検索の中断を要求（応答がなければ強制終了）
+     */
+    public void cancel() {
+        if (cancelRequested || finalProgress != null) return;
+        cancelRequested = true;
+        ring.requestCancel();
+        CompletableFuture.delayedExecutor(CANCEL_GRACE_MS, TimeUnit.MILLISECONDS).execute(() -> {
+            if (process.isAlive()) {
+                process.destroyForcibly();
+            }
+        });
+    }
+
+    /**
+     * 子プロセスを終了させ、チャネルファイルを削除
+     */
+    @Override
+    public void close() {
+        if (finalProgress != null) return;
+        finalProgress = progress();
+        if (process.isAlive()) {
+            process.destroyForcibly();
+        }
+        try {
+            ring.close();
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            // マップ中のファイルを削除できないOSでは終了時に削除する
+            file.toFile().deleteOnExit();
+        }
+    }
+}
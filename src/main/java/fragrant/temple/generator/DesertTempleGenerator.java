@@ -7,10 +7,17 @@ import java.util.ArrayList;
 import java.util.List;
 
 public class DesertTempleGenerator {
+    public static final int SALT = 14357617;
+    public static final int SPACING = 32;
+    public static final int SEPARATION = 24;
+    // グリッド座標ごとのシードの係数
+    public static final int GRID_X_FACTOR = -1724254968;
+    public static final int GRID_Z_FACTOR = -245998635;
+
     private record Config(int salt, int spacing, int sep, int n) { }
 
     private static Config getDesertTempleConfig() {
-        return new Config(14357617, 32, 24, 2);
+        return new Config(SALT, SPACING, SEPARATION, 2);
     }
 
     // 単一チャンクの速度向上のため
@@ -18,10 +25,20 @@ public class DesertTempleGenerator {
         Config c = getDesertTempleConfig();
         int sp = c.spacing(), se = c.sep();
         int xm = Math.floorMod(cp.x(), sp), zm = Math.floorMod(cp.z(), sp);
-        int[] nums = BedrockRandom.genNums(c.salt() + (int)seed - 245998635 * Math.floorDiv(cp.z(), sp) - 1724254968 * Math.floorDiv(cp.x(), sp), c.n());
+        int[] nums = BedrockRandom.genNums(c.salt() + (int)seed + GRID_Z_FACTOR * Math.floorDiv(cp.z(), sp) + GRID_X_FACTOR * Math.floorDiv(cp.x(), sp), c.n());
         return BedrockRandom.mod(nums[0], se) == xm && BedrockRandom.mod(nums[1], se) == zm;
     }
 
+    /**
+     * グリッドの1区画（SPACING チャンク四方）に配置されるピラミッドのチャンク座標
+     */
+    public static Position.ChunkPos getTempleInCell(long worldSeed, int gridX, int gridZ) {
+        Config c = getDesertTempleConfig();
+        int[] nums = BedrockRandom.genNums(c.salt() + (int) worldSeed + GRID_Z_FACTOR * gridZ + GRID_X_FACTOR * gridX, c.n());
+        return new Position.ChunkPos(gridX * c.spacing() + BedrockRandom.mod(nums[0], c.sep()),
+                gridZ * c.spacing() + BedrockRandom.mod(nums[1], c.sep()));
+    }
+
     public static List<Position.ChunkPos> getTemplesArea(long worldSeed, int minChunkX, int minChunkZ, int maxChunkX, int maxChunkZ) {
         Config config = getDesertTempleConfig();
         int spacing = config.spacing();
@@ -29,17 +46,18 @@ public class DesertTempleGenerator {
 
         List<Position.ChunkPos> temples = new ArrayList<>();
 
-        int minGridX = Math.floorDiv(minChunkX - (sep - 1), spacing);
+        // Integer.MIN_VALUE 付近で桁あふれしないよう long で計算する
+        int minGridX = (int) Math.floorDiv((long) minChunkX - (sep - 1), spacing);
         int maxGridX = Math.floorDiv(maxChunkX, spacing);
-        int minGridZ = Math.floorDiv(minChunkZ - (sep - 1), spacing);
+        int minGridZ = (int) Math.floorDiv((long) minChunkZ - (sep - 1), spacing);
         int maxGridZ = Math.floorDiv(maxChunkZ, spacing);
         int salt = config.salt() + (int) worldSeed;
 
         for (int gridX = minGridX; gridX <= maxGridX; gridX++) {
-            int xFactor = -1724254968 * gridX;
+            int xFactor = GRID_X_FACTOR * gridX;
 
             for (int gridZ = minGridZ; gridZ <= maxGridZ; gridZ++) {
-                int seedForGrid = salt - 245998635 * gridZ + xFactor;
+                int seedForGrid = salt + GRID_Z_FACTOR * gridZ + xFactor;
                 int[] nums = BedrockRandom.genNums(seedForGrid, config.n());
 
                 int xm = BedrockRandom.mod(nums[0], sep);
@@ -5,6 +5,7 @@ import fragrant.temple.loot.LootType.*;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 public class DesertTempleLootTable {
@@ -70,6 +71,40 @@ public class DesertTempleLootTable {
                 Collections.singletonList(function));
     }
 
+    /**
+     * 1つのチェストで取りうる「重み × アイテム数」の合計の上限
+     * 1回の抽選で選ばれるのは1エントリなので、プールごとに最も重い1エントリ × 最大回数で見積もる
+     *
+     * @param weights アイテム名ごとの重み（含まれないアイテムは0）
+     */
+    public static double maxWeightedCountPerChest(Map<String, Double> weights) {
+        double total = 0;
+        for (LootPool pool : DESERT_TEMPLE_LOOT_TABLE.pools()) {
+            int maxRolls = pool.getRolls() instanceof RollRange range ? range.max() : (Integer) pool.getRolls();
+            double maxPerRoll = 0;
+            for (LootEntry entry : pool.getEntries()) {
+                double weight = weights.getOrDefault(entry.name(), 0.0);
+                if (weight > 0 && "item".equals(entry.type())) {
+                    maxPerRoll = Math.max(maxPerRoll, weight * maxCount(entry));
+                }
+            }
+            total += maxRolls * maxPerRoll;
+        }
+        return total;
+    }
+
+    private static int maxCount(LootEntry entry) {
+        int count = 1;
+        if (entry.functions() != null) {
+            for (LootFunction function : entry.functions()) {
+                if ("set_count".equals(function.function())) {
+                    count = function.count().max();
+                }
+            }
+        }
+        return count;
+    }
+
     public static List<String> getLootTable() {
         List<String> items = new ArrayList<>();
         for (LootPool pool : DESERT_TEMPLE_LOOT_TABLE.pools()) {
@@ -143,11 +143,12 @@ public class BedrockRandom extends Random {
         }
 
         int mtCurrent = this.mt[this.mti];
-        int mtNext = this.mt[this.mti + 1];
+        // 最後の要素は先頭（再生成済み）の要素と組み合わせる
+        int mtNext = this.mti == N - 1 ? this.mt[0] : this.mt[this.mti + 1];
 
         if (this.mti >= N - M) {
             if (this.mti == N - 1) {
-                this.mt[N - 1] = MAG_01[mtCurrent & 1] ^ ((mtCurrent & L_MASK | this.mt[N - 1] & U_MASK) >>> 1) ^ this.mt[M - 1];
+                this.mt[N - 1] = MAG_01[mtNext & 1] ^ ((mtNext & L_MASK | mtCurrent & U_MASK) >>> 1) ^ this.mt[M - 1];
             } else {
                 this.mt[this.mti] = MAG_01[mtNext & 1] ^ ((mtNext & L_MASK | mtCurrent & U_MASK) >>> 1) ^ this.mt[this.mti - (N - M)];
             }
@@ -184,11 +185,14 @@ public class BedrockRandom extends Random {
         }
 
         public BedrockRandom chunkRandom(int chunkX, int chunkZ) {
+            return new BedrockRandom(chunkSeed(chunkX, chunkZ));
+        }
+
+        public int chunkSeed(int chunkX, int chunkZ) {
             BedrockRandom mt = new BedrockRandom((int) seed);
             long mulX = mt.nextInt() | 1;
             long mulZ = mt.nextInt() | 1;
-            long chunkSeed = seed ^ (mulX * chunkX + mulZ * chunkZ);
-            return new BedrockRandom((int) chunkSeed);
+            return (int) (seed ^ (mulX * chunkX + mulZ * chunkZ));
         }
     }
 }
@@ -1,15 +1,15 @@
 package fragrant.utils;
 
-import fragrant.app.ui.Language;
+import java.util.function.UnaryOperator;
 
 public class Position {
-    private static Language currentLanguage;
+    private static volatile UnaryOperator<String> currentLanguage;
 
     /**
      * 表示言語を設定
-     * @param language 使用する言語
+     * @param language 翻訳キーから表示文字列を返す関数
      */
-    public static void setLanguage(Language language) {
+    public static void setLanguage(UnaryOperator<String> language) {
         currentLanguage = language;
     }
 
@@ -17,14 +17,14 @@ public class Position {
      * 現在の言語に応じたチャンク位置のフォーマット文字列を返す
      */
     private static String getChunkFormat() {
-        return currentLanguage != null ? currentLanguage.get("chunkFmt") : "CPos{x=%d, z=%d}";
+        return currentLanguage != null ? currentLanguage.apply("chunkFmt") : "CPos{x=%d, z=%d}";
     }
 
     /**
      * 現在の言語に応じたブロック位置のフォーマット文字列を返す
      */
     private static String getBlockFormat() {
-        return currentLanguage != null ? currentLanguage.get("blockFmt") : "BPos{x=%d, z=%d}";
+        return currentLanguage != null ? currentLanguage.apply("blockFmt") : "BPos{x=%d, z=%d}";
     }
 
     public record ChunkPos(int x, int z) {